@@ -0,0 +1,38 @@
+#!/usr/bin/env bash
+# builds the fast-startup jar, explodes it and records a class-data-sharing archive
+#
+# the training run starts the spring context with aot-generated bean definitions and
+# exits right after refresh (spring.context.exit=onRefresh), dumping every loaded class
+# into target/cds/app.jsa. later starts map that archive instead of parsing classes.
+#
+# usage: scripts/build-cds-archive.sh
+# then:  scripts/run-fast.sh
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+mvn -B -q -Pfast-startup -DskipTests package
+
+JAR=target/raion-ev-configurator-1.0.0.jar
+OUT=target/cds
+
+rm -rf "$OUT"
+mkdir -p "$OUT/app"
+(cd "$OUT/app" && jar -xf "../../../$JAR")
+
+# cds needs a plain, stable classpath of jars - no nested fat jar, no class directories
+jar -cf "$OUT/application.jar" -C "$OUT/app/BOOT-INF/classes" .
+CLASSPATH="$OUT/application.jar"
+for lib in $(ls "$OUT/app/BOOT-INF/lib" | sort); do
+    CLASSPATH="$CLASSPATH:$OUT/app/BOOT-INF/lib/$lib"
+done
+echo "$CLASSPATH" > "$OUT/classpath.txt"
+
+java -XX:ArchiveClassesAtExit="$OUT/app.jsa" \
+     -Dspring.aot.enabled=true \
+     -Dspring.context.exit=onRefresh \
+     -Dspring.profiles.active=prod \
+     -cp "$CLASSPATH" \
+     com.raion.RaionConfiguratorApplication
+
+echo "cds archive written to $OUT/app.jsa"
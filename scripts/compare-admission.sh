@@ -0,0 +1,42 @@
+#!/usr/bin/env bash
+# runs the same overload test with admission control off and on
+# pick a rate above what the machine can serve to see the difference in goodput
+#
+# usage: scripts/compare-admission.sh [rate] [duration]
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+JAVA="${JAVA:-java}"
+RATE="${1:-400}"
+DURATION="${2:-30}"
+JAR=target/raion-ev-configurator-1.0.0.jar
+
+mvn -B -q -DskipTests package
+
+run_mode() {
+    local name="$1"
+    shift
+    local receipts
+    receipts="$(mktemp -d)"
+
+    "$JAVA" -Draion.receipts.folder="$receipts" -jar "$JAR" "$@" > "target/server-$name.log" 2>&1 &
+    local pid=$!
+    until curl -sf "http://localhost:8080/api/health/ready" > /dev/null; do
+        sleep 0.2
+    done
+
+    echo
+    echo "########## $name ##########"
+    java -cp target/test-classes:target/classes com.raion.perf.LoadGenerator \
+        --rate="$RATE" --duration="$DURATION" --warmup=20 --slo-ms=1000
+    curl -s "http://localhost:8080/api/health/admission"
+    echo
+
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+    rm -rf "$receipts"
+}
+
+run_mode "admission-off"
+run_mode "admission-on" --raion.admission.enabled=true
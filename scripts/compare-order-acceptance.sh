@@ -0,0 +1,41 @@
+#!/usr/bin/env bash
+# runs the same order-heavy load test with synchronous order placement (201) and with
+# asynchronous acceptance (202 + background receipt pipeline)
+#
+# usage: scripts/compare-order-acceptance.sh [rate] [duration]
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+JAVA="${JAVA:-java}"
+RATE="${1:-300}"
+DURATION="${2:-30}"
+MIX="vehicle=40,signature=20,order=25,signature-order=15"
+JAR=target/raion-ev-configurator-1.0.0.jar
+
+mvn -B -q -DskipTests package
+
+run_mode() {
+    local name="$1"
+    shift
+    local receipts
+    receipts="$(mktemp -d)"
+
+    "$JAVA" -Draion.receipts.folder="$receipts" -jar "$JAR" "$@" > "target/server-$name.log" 2>&1 &
+    local pid=$!
+    until curl -sf "http://localhost:8080/api/health/ready" > /dev/null; do
+        sleep 0.2
+    done
+
+    echo
+    echo "########## $name ##########"
+    java -cp target/test-classes:target/classes com.raion.perf.LoadGenerator \
+        --rate="$RATE" --duration="$DURATION" --warmup=20 --mix="$MIX"
+
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+    rm -rf "$receipts"
+}
+
+run_mode "sync-orders"
+run_mode "async-orders" --raion.async-orders.enabled=true
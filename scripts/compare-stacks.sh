@@ -0,0 +1,48 @@
+#!/usr/bin/env bash
+# runs the same load test against the servlet (tomcat) stack and the reactive (netty) stack
+#
+# usage: scripts/compare-stacks.sh [rate] [duration]
+#
+# pick a rate above what the servlet stack serves, so more requests wait than tomcat has
+# threads (200 by default) - below that both stacks just keep up
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+JAVA="${JAVA:-java}"
+RATE="${1:-250}"
+DURATION="${2:-30}"
+JAR=target/raion-ev-configurator-1.0.0.jar
+
+mvn -B -q -DskipTests package
+
+run_stack() {
+    local name="$1"
+    local port="$2"
+    shift 2
+    local data
+    data="$(mktemp -d)"
+
+    "$JAVA" -Draion.receipts.folder="$data/receipts" -jar "$JAR" \
+        --raion.orders.repository.folder="$data/orders" "$@" > "target/server-$name.log" 2>&1 &
+    local pid=$!
+    until curl -sf "http://localhost:$port/api/health/ready" > /dev/null; do
+        if ! kill -0 "$pid" 2> /dev/null; then
+            echo "$name server exited, see target/server-$name.log" >&2
+            exit 1
+        fi
+        sleep 0.2
+    done
+
+    echo
+    echo "########## $name ##########"
+    java -cp target/test-classes:target/classes com.raion.perf.LoadGenerator \
+        --url="http://localhost:$port" --rate="$RATE" --duration="$DURATION" --warmup=10
+
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+    rm -rf "$data"
+}
+
+run_stack "servlet" 8080
+run_stack "reactive" 8081 --spring.profiles.active=reactive
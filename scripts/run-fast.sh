@@ -0,0 +1,18 @@
+#!/usr/bin/env bash
+# starts the api with the prod profile, aot bean definitions and the cds archive
+# run scripts/build-cds-archive.sh first
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+OUT=target/cds
+if [ ! -f "$OUT/app.jsa" ]; then
+    echo "no cds archive found - run scripts/build-cds-archive.sh first" >&2
+    exit 1
+fi
+
+exec java -XX:SharedArchiveFile="$OUT/app.jsa" \
+     -Dspring.aot.enabled=true \
+     -Dspring.profiles.active=prod \
+     -cp "$(cat "$OUT/classpath.txt")" \
+     com.raion.RaionConfiguratorApplication "$@"
@@ -1,9 +1,13 @@
 package com.raion;
 
 import com.raion.services.ReceiptGenerator;
+import org.springframework.boot.LazyInitializationExcludeFilter;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -15,19 +19,32 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
  * - rest api for vehicle configuration and ordering
  * - cors enabled for frontend access
  * - automatic receipts folder creation
+ * - fast-startup "prod" profile (lazy beans, aot, cds) for autoscaling
  */
 @SpringBootApplication
 public class RaionConfiguratorApplication {
 
     public static void main(String[] args) {
         // start spring boot application
-        SpringApplication.run(RaionConfiguratorApplication.class, args);
+        ConfigurableApplicationContext context = SpringApplication.run(RaionConfiguratorApplication.class, args);
 
         // print startup information
-        printStartupInfo();
+        printStartupInfo(context.getEnvironment());
 
-        // print receipts folder information
-        ReceiptGenerator.printReceiptsFolderInfo();
+        // print receipts folder information off the startup path
+        // (loading the receipt count reads the manifest written since the last checkpoint)
+        Thread receiptsInfo = new Thread(ReceiptGenerator::printReceiptsFolderInfo, "receipts-folder-info");
+        receiptsInfo.setDaemon(true);
+        receiptsInfo.start();
+    }
+
+    /**
+     * keep controllers eager when lazy initialization is on (prod profile)
+     * so the first request doesn't pay for creating them
+     */
+    @Bean
+    static LazyInitializationExcludeFilter eagerControllers() {
+        return (beanName, beanDefinition, beanType) -> beanType.isAnnotationPresent(RestController.class);
     }
 
     /**
@@ -60,12 +77,12 @@ public class RaionConfiguratorApplication {
     /**
      * print startup information to console
      */
-    private static void printStartupInfo() {
+    private static void printStartupInfo(Environment environment) {
         System.out.println("\n" + "=".repeat(60));
         System.out.println("RAION MOTORS - EV Configurator API");
         System.out.println("=".repeat(60));
         System.out.println("Server Status: RUNNING");
-        System.out.println("API Base URL: http://localhost:8080/api");
+        System.out.println("API Base URL: http://localhost:" + environment.getProperty("server.port", "8080") + "/api");
         System.out.println("CORS Policy: Enabled (All origins allowed)");
         System.out.println("\nAvailable Endpoints:");
         System.out.println("  GET  /api/vehicles        - Get all vehicle models");
@@ -73,9 +90,19 @@ public class RaionConfiguratorApplication {
         System.out.println("  GET  /api/signatures      - Get all signature vehicles");
         System.out.println("  POST /api/order           - Place custom vehicle order");
         System.out.println("  POST /api/order/signature - Place signature vehicle order");
+        System.out.println("  GET  /api/health/ready    - Readiness (503 until warm-up is done)");
         System.out.println("\nConfiguration:");
         System.out.println("  Working Directory: " + System.getProperty("user.dir"));
         System.out.println("  Java Version: " + System.getProperty("java.version"));
+        System.out.println("  Web Stack: " + describeWebStack(environment));
         System.out.println("=".repeat(60) + "\n");
     }
+
+    /**
+     * describe which web stack serves requests (the reactive profile switches to webflux)
+     */
+    private static String describeWebStack(Environment environment) {
+        String type = environment.getProperty("spring.main.web-application-type", "servlet");
+        return "reactive".equalsIgnoreCase(type) ? "Reactive (WebFlux on Netty)" : "Servlet (Spring MVC on Tomcat)";
+    }
 }
\ No newline at end of file
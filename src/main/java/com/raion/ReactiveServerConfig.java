@@ -0,0 +1,46 @@
+package com.raion;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.reactive.config.CorsRegistry;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * configuration for the reactive (webflux) deployment
+ * only active with the "reactive" profile - see application-reactive.properties
+ *
+ * tomcat is on the classpath for the servlet stack, and spring boot would pick it for
+ * reactive apps too, so the netty server factory is declared explicitly here
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveServerConfig {
+
+    /**
+     * run the reactive stack on netty's event loop
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * same cors policy as the servlet stack (see RaionConfiguratorApplication)
+     */
+    @Bean
+    public WebFluxConfigurer reactiveCorsConfigurer() {
+        return new WebFluxConfigurer() {
+            @Override
+            public void addCorsMappings(CorsRegistry registry) {
+                registry.addMapping("/api/**")
+                        .allowedOriginPatterns("*")
+                        .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH")
+                        .allowedHeaders("*")
+                        .allowCredentials(false)
+                        .maxAge(3600);
+            }
+        };
+    }
+}
@@ -0,0 +1,117 @@
+package com.raion.controllers;
+
+import com.raion.repository.OrderRepository;
+import com.raion.services.AdmissionControl;
+import com.raion.services.CatalogCache;
+import com.raion.services.OrderSnapshotter;
+import com.raion.services.RateLimiter;
+import com.raion.services.ReceiptCompactor;
+import com.raion.services.ReceiptRecovery;
+import com.raion.services.StartupWarmup;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.LivenessState;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+// rest api controller for load balancer health checks
+// readiness stays 503 until startup (including the jit warm-up) has finished
+@RestController
+@RequestMapping("/api/health")
+@CrossOrigin(origins = "*", allowedHeaders = "*")
+public class HealthController {
+
+    private final ApplicationAvailability availability;
+    private final StartupWarmup warmup;
+    private final AdmissionControl admissionControl;
+    private final RateLimiter rateLimiter;
+    private final CatalogCache catalogCache;
+    private final ReceiptCompactor receiptCompactor;
+    private final ReceiptRecovery receiptRecovery;
+    private final OrderRepository orderRepository;
+    private final OrderSnapshotter orderSnapshotter;
+
+    public HealthController(ApplicationAvailability availability, StartupWarmup warmup,
+                            AdmissionControl admissionControl, RateLimiter rateLimiter,
+                            CatalogCache catalogCache, ReceiptCompactor receiptCompactor,
+                            ReceiptRecovery receiptRecovery, OrderRepository orderRepository,
+                            OrderSnapshotter orderSnapshotter) {
+        this.availability = availability;
+        this.warmup = warmup;
+        this.admissionControl = admissionControl;
+        this.rateLimiter = rateLimiter;
+        this.catalogCache = catalogCache;
+        this.receiptCompactor = receiptCompactor;
+        this.receiptRecovery = receiptRecovery;
+        this.orderRepository = orderRepository;
+        this.orderSnapshotter = orderSnapshotter;
+    }
+
+    // get /api/health/ready - 200 once the instance should receive traffic, 503 before
+    @GetMapping("/ready")
+    public ResponseEntity<Map<String, Object>> readiness() {
+        boolean ready = availability.getReadinessState() == ReadinessState.ACCEPTING_TRAFFIC
+                && warmup.isCompleted();
+
+        if (!ready) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(
+                    Map.of("status", "WARMING_UP", "warmupCompleted", warmup.isCompleted())
+            );
+        }
+        return ResponseEntity.ok(Map.of("status", "READY", "warmupCompleted", true));
+    }
+
+    // get /api/health/live - 200 while the application is running correctly
+    @GetMapping("/live")
+    public ResponseEntity<Map<String, Object>> liveness() {
+        if (availability.getLivenessState() != LivenessState.CORRECT) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("status", "BROKEN"));
+        }
+        return ResponseEntity.ok(Map.of("status", "LIVE"));
+    }
+
+    // get /api/health/admission - current concurrency limit, in-flight and rejected count per endpoint class
+    @GetMapping("/admission")
+    public ResponseEntity<Map<String, Object>> admission() {
+        return ResponseEntity.ok(admissionControl.getStats());
+    }
+
+    // get /api/health/rate-limit - tracked client counters, rejections and table size
+    @GetMapping("/rate-limit")
+    public ResponseEntity<Map<String, Object>> rateLimit() {
+        return ResponseEntity.ok(rateLimiter.getStats());
+    }
+
+    // get /api/health/catalog-cache - catalog cache hits, coalesced requests and computations
+    @GetMapping("/catalog-cache")
+    public ResponseEntity<Map<String, Object>> catalogCache() {
+        return ResponseEntity.ok(catalogCache.getStats());
+    }
+
+    // get /api/health/receipt-compaction - days and receipts compacted into segments, bytes saved
+    @GetMapping("/receipt-compaction")
+    public ResponseEntity<Map<String, Object>> receiptCompaction() {
+        return ResponseEntity.ok(receiptCompactor.getStats());
+    }
+
+    // get /api/health/receipt-recovery - last startup recovery pass: files checked, orphans deleted, incomplete receipts
+    @GetMapping("/receipt-recovery")
+    public ResponseEntity<Map<String, Object>> receiptRecovery() {
+        return ResponseEntity.ok(receiptRecovery.getStats());
+    }
+
+    // get /api/health/order-repository - stored orders, write batches, write failures and the order index
+    @GetMapping("/order-repository")
+    public ResponseEntity<Map<String, Object>> orderRepository() {
+        return ResponseEntity.ok(orderRepository.getStats());
+    }
+
+    // get /api/health/order-snapshots - snapshots written, failures and the last snapshot's size
+    @GetMapping("/order-snapshots")
+    public ResponseEntity<Map<String, Object>> orderSnapshots() {
+        return ResponseEntity.ok(orderSnapshotter.getStats());
+    }
+}
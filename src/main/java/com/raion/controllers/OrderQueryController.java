@@ -0,0 +1,143 @@
+package com.raion.controllers;
+
+import com.raion.models.TrimLevel;
+import com.raion.models.VehicleColor;
+import com.raion.repository.OrderIndex;
+import com.raion.repository.OrderIndex.Entry;
+import com.raion.repository.OrderIndex.Page;
+import com.raion.repository.OrderIndex.Query;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// rest api controller for listing stored orders, answered from the order index
+// shared by the servlet and reactive stacks - it only reads in-memory state
+@RestController
+@RequestMapping("/api/orders")
+@CrossOrigin(origins = "*", allowedHeaders = "*")
+public class OrderQueryController {
+
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 500;
+
+    private final OrderIndex orderIndex;
+
+    public OrderQueryController(OrderIndex orderIndex) {
+        this.orderIndex = orderIndex;
+    }
+
+    // get /api/orders?from=&to=&level=&trim=&color=&signature=&minTotal=&maxTotal=&limit=&cursor=
+    // newest first, one page at a time - pass nextCursor back as cursor for the next page
+    // from/to: yyyy-MM-dd (a date "to" includes that whole day) or yyyy-MM-ddTHH:mm:ss
+    // signature: a signature id, or "none" for custom vehicles; minTotal/maxTotal in dollars
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> listOrders(@RequestParam(required = false) String from,
+                                                          @RequestParam(required = false) String to,
+                                                          @RequestParam(required = false) Integer level,
+                                                          @RequestParam(required = false) String trim,
+                                                          @RequestParam(required = false) String color,
+                                                          @RequestParam(required = false) String signature,
+                                                          @RequestParam(required = false) BigDecimal minTotal,
+                                                          @RequestParam(required = false) BigDecimal maxTotal,
+                                                          @RequestParam(required = false) Integer limit,
+                                                          @RequestParam(required = false) String cursor) {
+        Page page;
+        try {
+            int pageSize = limit != null ? limit : DEFAULT_LIMIT;
+            if (pageSize < 1 || pageSize > MAX_LIMIT) {
+                throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+            }
+            if (level != null && (level < 1 || level > OrderIndex.MAX_LEVEL)) {
+                throw new IllegalArgumentException("Invalid level. Must be 1, 2, 3, or 4");
+            }
+
+            Query query = new Query(
+                    from != null ? epochSecond(from, false) : Long.MIN_VALUE,
+                    to != null ? epochSecond(to, true) : Long.MAX_VALUE,
+                    level != null ? level : 0,
+                    trim != null ? parseTrim(trim) : null,
+                    color != null ? parseColor(color) : null,
+                    signature,
+                    minTotal != null ? cents(minTotal) : 0,
+                    maxTotal != null ? cents(maxTotal) : Long.MAX_VALUE);
+            page = orderIndex.query(query, cursor, pageSize);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        List<Map<String, Object>> orders = new ArrayList<>(page.orders().size());
+        for (Entry entry : page.orders()) {
+            orders.add(toJson(entry));
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("orders", orders);
+        body.put("count", orders.size());
+        body.put("nextCursor", page.nextCursor());
+        return ResponseEntity.ok(body);
+    }
+
+    private static Map<String, Object> toJson(Entry entry) {
+        Map<String, Object> order = new LinkedHashMap<>();
+        order.put("orderId", entry.orderId());
+        order.put("orderDate", entry.orderDate().toString());
+        order.put("level", entry.level());
+        order.put("trim", entry.trim());
+        order.put("color", entry.color());
+        order.put("signature", entry.signature());
+        order.put("total", entry.totalCents() / 100.0);
+        order.put("receiptUrl", "/api/order/" + entry.orderId() + "/receipt");
+        return order;
+    }
+
+    // accepted the way the order endpoints accept them ("Off-Road", "offroad", "OFFROAD")
+    private static TrimLevel parseTrim(String value) {
+        TrimLevel trim = TrimLevel.fromAlias(value);
+        if (trim == null) {
+            throw new IllegalArgumentException("invalid trim: " + value);
+        }
+        return trim;
+    }
+
+    private static VehicleColor parseColor(String value) {
+        VehicleColor color = VehicleColor.fromName(value);
+        if (color == null) {
+            throw new IllegalArgumentException("invalid color: " + value);
+        }
+        return color;
+    }
+
+    // a date or date-time as the index keys it; a bare end date reaches to the end of that day
+    private static long epochSecond(String value, boolean end) {
+        try {
+            if (value.length() == 10) {
+                LocalDate date = LocalDate.parse(value);
+                return (end ? date.plusDays(1) : date).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+            }
+            long epochSecond = LocalDateTime.parse(value).toEpochSecond(ZoneOffset.UTC);
+            return end ? epochSecond + 1 : epochSecond;
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("invalid date: " + value + " (yyyy-MM-dd or yyyy-MM-ddTHH:mm:ss)");
+        }
+    }
+
+    private static long cents(BigDecimal dollars) {
+        if (dollars.signum() < 0) {
+            throw new IllegalArgumentException("totals can't be negative");
+        }
+        try {
+            return dollars.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("total out of range: " + dollars);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.raion.controllers;
+
+import com.raion.services.OrderPipeline;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+// rest api controller for polling orders accepted with 202 (raion.async-orders.enabled=true)
+// shared by the servlet and reactive stacks - it only reads in-memory state
+@RestController
+@RequestMapping("/api/order")
+@CrossOrigin(origins = "*", allowedHeaders = "*")
+public class OrderStatusController {
+
+    private final OrderPipeline orderPipeline;
+
+    public OrderStatusController(OrderPipeline orderPipeline) {
+        this.orderPipeline = orderPipeline;
+    }
+
+    // get /api/order/{orderId}/status - accepted, processing, completed (with the confirmation) or failed
+    @GetMapping("/{orderId}/status")
+    public ResponseEntity<Map<String, Object>> getOrderStatus(@PathVariable String orderId) {
+        Map<String, Object> status = orderPipeline.getStatus(orderId);
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                    Map.of("error", "order not found: " + orderId)
+            );
+        }
+        return ResponseEntity.ok(status);
+    }
+}
@@ -0,0 +1,146 @@
+package com.raion.controllers;
+
+import com.raion.dto.BatchOrderRequest;
+import com.raion.dto.CustomOrderRequest;
+import com.raion.dto.OrderResponse;
+import com.raion.dto.SignatureOrderRequest;
+import com.raion.models.Order;
+import com.raion.repository.OrderRepository;
+import com.raion.services.BatchOrderProcessor;
+import com.raion.services.IdempotencyCache;
+import com.raion.services.OrderAssembler;
+import com.raion.services.OrderAssembler.AssembledOrder;
+import com.raion.services.OrderCodec;
+import com.raion.services.OrderPipeline;
+import com.raion.services.OrderRequestException;
+import com.raion.services.OrderResponseBuilder;
+import com.raion.services.ReceiptGenerator;
+import com.raion.services.SignatureTemplates;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * non-blocking order endpoints for the reactive (webflux / netty) deployment
+ * same paths, request bodies, responses and error messages as OrderController,
+ * but receipts are written through an asynchronous file channel so the event loop
+ * never waits on disk
+ *
+ * vehicle, signature and health controllers are shared as-is - they don't block
+ */
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(origins = "*", allowedHeaders = "*")
+@Profile("reactive")
+public class ReactiveOrderController {
+
+    private final IdempotencyCache idempotencyCache;
+    private final BatchOrderProcessor batchOrderProcessor;
+    private final OrderPipeline orderPipeline;
+    private final OrderRepository orderRepository;
+
+    public ReactiveOrderController(IdempotencyCache idempotencyCache, BatchOrderProcessor batchOrderProcessor,
+                                   OrderPipeline orderPipeline, OrderRepository orderRepository) {
+        this.idempotencyCache = idempotencyCache;
+        this.batchOrderProcessor = batchOrderProcessor;
+        this.orderPipeline = orderPipeline;
+        this.orderRepository = orderRepository;
+    }
+
+    // post /api/order - place a custom vehicle order (see OrderController for the body format)
+    @PostMapping("/order")
+    public Mono<ResponseEntity<?>> placeCustomOrder(
+            @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey,
+            @RequestBody CustomOrderRequest orderRequest) {
+        return Mono.fromFuture(() -> idempotencyCache.execute(idempotencyKey, orderRequest,
+                () -> Mono.fromCallable(() -> OrderAssembler.assembleCustomOrder(orderRequest))
+                        .flatMap(this::saveAndRespond)
+                        .onErrorResume(errorResponse("order", "failed to process order"))
+                        .toFuture()));
+    }
+
+    // post /api/order/signature - place a signature vehicle order
+    @PostMapping("/order/signature")
+    public Mono<ResponseEntity<?>> placeSignatureOrder(
+            @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey,
+            @RequestBody SignatureOrderRequest orderRequest) {
+        return Mono.fromFuture(() -> idempotencyCache.execute(idempotencyKey, orderRequest,
+                () -> Mono.fromCallable(() -> OrderAssembler.assembleSignatureOrder(orderRequest))
+                        .flatMap(this::saveAndRespond)
+                        .onErrorResume(errorResponse("signature order", "failed to process signature order"))
+                        .toFuture()));
+    }
+
+    // post /api/orders/batch - place many orders in one request
+    // the batch fans out over the cpu and writes its receipts in one blocking pass, so it
+    // runs on the bounded elastic scheduler instead of the event loop
+    @PostMapping("/orders/batch")
+    public Mono<ResponseEntity<?>> placeBatchOrder(
+            @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey,
+            @RequestBody BatchOrderRequest batchRequest) {
+        return Mono.fromFuture(() -> idempotencyCache.execute(idempotencyKey, batchRequest,
+                () -> Mono.fromCallable(() -> batchOrderProcessor.process(batchRequest))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .<ResponseEntity<?>>map(ResponseEntity::ok)
+                        .onErrorResume(errorResponse("batch order", "failed to process batch order"))
+                        .toFuture()));
+    }
+
+    // write the receipt asynchronously, then build the 201 response
+    // (or hand the order to the background pipeline and answer 202)
+    private Mono<ResponseEntity<?>> saveAndRespond(AssembledOrder assembled) {
+        if (orderPipeline.isEnabled()) {
+            return Mono.just(orderPipeline.accept(assembled));
+        }
+
+        Order order = assembled.order();
+        byte[] encoded = OrderCodec.encode(order);
+        return Mono.fromFuture(() -> ReceiptGenerator.saveReceiptAsync(order, encoded))
+                .map(receiptPath -> {
+                    orderRepository.save(order, encoded);
+                    System.out.println("✓ " + (assembled.isSignature() ? "signature " : "")
+                            + "order placed successfully: " + order.getOrderId());
+                    System.out.println("  receipt saved to: " + receiptPath);
+
+                    // a signature without extras is served from its pre-rendered response
+                    byte[] templated = assembled.isSignature() ? SignatureTemplates.renderResponse(order, receiptPath) : null;
+                    if (templated != null) {
+                        return ResponseEntity.status(HttpStatus.CREATED).contentType(MediaType.APPLICATION_JSON).body(templated);
+                    }
+
+                    OrderResponse response = OrderResponseBuilder.buildOrderResponse(
+                            order, receiptPath, assembled.isSignature(), assembled.signatureName());
+                    return ResponseEntity.status(HttpStatus.CREATED).body(response);
+                });
+    }
+
+    // map failures to the same status codes and bodies the servlet controller returns
+    private static Function<Throwable, Mono<ResponseEntity<?>>> errorResponse(String kind, String failureMessage) {
+        return error -> {
+            if (error instanceof OrderRequestException) {
+                return Mono.just(ResponseEntity.badRequest().body(Map.of("error", error.getMessage())));
+            }
+            if (error instanceof IllegalArgumentException) {
+                System.err.println("✗ " + kind + " validation failed: " + error.getMessage());
+                return Mono.just(ResponseEntity.badRequest().body(
+                        Map.of("error", "invalid " + kind + " data: " + error.getMessage())));
+            }
+
+            System.err.println("✗ " + kind + " processing failed: " + error.getMessage());
+            return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                    Map.of(
+                            "error", failureMessage,
+                            "details", String.valueOf(error.getMessage()),
+                            "type", error.getClass().getSimpleName()
+                    )
+            ));
+        };
+    }
+}
@@ -0,0 +1,119 @@
+package com.raion.controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raion.services.ReceiptDownloads;
+import com.raion.services.ReceiptDownloads.ByteRange;
+import com.raion.services.ReceiptDownloads.StoredReceipt;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * receipt downloads for the reactive (webflux / netty) deployment - same path, headers,
+ * status codes and error bodies as ReceiptController
+ *
+ * a loose receipt file goes out through netty's zero-copy file region (sendfile); a
+ * compacted receipt is inflated into an off-heap buffer that netty writes without
+ * copying. finding the receipt touches the disk, so it runs on the bounded elastic
+ * scheduler
+ */
+@RestController
+@RequestMapping("/api/order")
+@CrossOrigin(origins = "*", allowedHeaders = "*")
+@Profile("reactive")
+public class ReactiveReceiptController {
+
+    private static final int FALLBACK_BUFFER_SIZE = 8192;
+
+    private final ObjectMapper objectMapper;
+
+    public ReactiveReceiptController(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    // get /api/order/{orderId}/receipt - see ReceiptController
+    @GetMapping("/{orderId}/receipt")
+    public Mono<Void> downloadReceipt(@PathVariable String orderId, ServerWebExchange exchange) {
+        return Mono.fromCallable(() -> Optional.ofNullable(ReceiptDownloads.find(orderId)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(receipt -> receipt.isPresent()
+                        ? send(receipt.get(), exchange)
+                        : error(exchange.getResponse(), HttpStatus.NOT_FOUND, "receipt not found: " + orderId))
+                .onErrorResume(e -> {
+                    System.err.println("✗ failed to send receipt " + orderId + ": " + e.getMessage());
+                    return exchange.getResponse().isCommitted()
+                            ? Mono.error(e)
+                            : error(exchange.getResponse(), HttpStatus.INTERNAL_SERVER_ERROR, "failed to read receipt");
+                });
+    }
+
+    private Mono<Void> send(StoredReceipt receipt, ServerWebExchange exchange) {
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // sets the etag, and the 304 when if-none-match matches it
+        if (exchange.checkNotModified(receipt.etag())) {
+            return response.setComplete();
+        }
+
+        ByteRange range;
+        try {
+            range = ReceiptDownloads.requestedRange(exchange.getRequest().getHeaders().getFirst(HttpHeaders.RANGE),
+                    exchange.getRequest().getHeaders().getFirst(HttpHeaders.IF_RANGE), receipt);
+        } catch (IllegalArgumentException e) {
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + receipt.length());
+            return error(response, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, e.getMessage());
+        }
+
+        long start = range != null ? range.start() : 0;
+        long length = range != null ? range.length() : receipt.length();
+        if (range != null) {
+            response.setStatusCode(HttpStatus.PARTIAL_CONTENT);
+            headers.set(HttpHeaders.CONTENT_RANGE, range.contentRange(receipt.length()));
+        }
+        headers.setContentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8));
+        headers.setContentDisposition(ContentDisposition.inline().filename(receipt.orderId() + ".txt").build());
+        headers.setContentLength(length);
+
+        if (!receipt.isFile()) {
+            return response.writeWith(Mono.just(
+                    response.bufferFactory().wrap(receipt.content().slice((int) start, (int) length))));
+        }
+        if (response instanceof ZeroCopyHttpOutputMessage zeroCopy) {
+            return zeroCopy.writeWith(receipt.file(), start, length);
+        }
+        return response.writeWith(DataBufferUtils.takeUntilByteCount(
+                DataBufferUtils.readAsynchronousFileChannel(
+                        () -> AsynchronousFileChannel.open(receipt.file(), StandardOpenOption.READ),
+                        start, response.bufferFactory(), FALLBACK_BUFFER_SIZE),
+                length));
+    }
+
+    private Mono<Void> error(ServerHttpResponse response, HttpStatus status, String message) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(Map.of("error", message));
+            response.setStatusCode(status);
+            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            response.getHeaders().setContentLength(body.length);
+            return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+        } catch (JsonProcessingException e) {
+            return Mono.error(e);
+        }
+    }
+}
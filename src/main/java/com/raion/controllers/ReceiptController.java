@@ -0,0 +1,153 @@
+package com.raion.controllers;
+
+import com.raion.services.ReceiptDownloads;
+import com.raion.services.ReceiptDownloads.ByteRange;
+import com.raion.services.ReceiptDownloads.StoredReceipt;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.connector.CoyoteOutputStream;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * rest api controller for downloading stored receipts
+ *
+ * get /api/order/{orderId}/receipt - the receipt as text/plain, with etag / if-none-match
+ * (304) and single byte ranges (206, 416)
+ *
+ * a loose receipt file is handed to tomcat's sendfile support: the controller only sets
+ * the headers, and tomcat sends the file from the page cache once the request returns.
+ * without sendfile (a connector with it turned off, or tls) it is copied with
+ * FileChannel.transferTo into the response stream - that goes through a heap buffer, so
+ * only sendfile keeps a loose receipt off the heap. a compacted receipt is inflated into
+ * an off-heap buffer (see ReceiptDownloads) and written from there
+ *
+ * servlet stack only - the reactive profile serves this path from ReactiveReceiptController
+ */
+@RestController
+@RequestMapping("/api/order")
+@CrossOrigin(origins = "*", allowedHeaders = "*")
+@Profile("!reactive")
+public class ReceiptController {
+
+    // request attributes of tomcat's sendfile support (org.apache.catalina.Globals)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * get /api/order/{orderId}/receipt
+     *
+     * the body is written straight to the response, so a successful download returns null
+     * (the request is already handled); errors come back as the usual json bodies
+     */
+    @GetMapping("/{orderId}/receipt")
+    public ResponseEntity<Map<String, Object>> downloadReceipt(@PathVariable String orderId,
+                                                               HttpServletRequest request,
+                                                               HttpServletResponse response) {
+        try {
+            StoredReceipt receipt = ReceiptDownloads.find(orderId);
+            if (receipt == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                        Map.of("error", "receipt not found: " + orderId)
+                );
+            }
+
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            // sets the etag, and the 304 when if-none-match matches it
+            if (new ServletWebRequest(request, response).checkNotModified(receipt.etag())) {
+                return null;
+            }
+
+            ByteRange range;
+            try {
+                range = ReceiptDownloads.requestedRange(request.getHeader(HttpHeaders.RANGE),
+                        request.getHeader(HttpHeaders.IF_RANGE), receipt);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + receipt.length())
+                        .body(Map.of("error", e.getMessage()));
+            }
+
+            long start = range != null ? range.start() : 0;
+            long length = range != null ? range.length() : receipt.length();
+            if (range != null) {
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, range.contentRange(receipt.length()));
+            }
+            response.setContentType("text/plain;charset=UTF-8");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.inline().filename(orderId + ".txt").build().toString());
+            response.setContentLengthLong(length);
+
+            if (receipt.isFile()) {
+                sendFile(receipt, start, length, request, response);
+            } else {
+                writeBuffer(receipt.content().slice((int) start, (int) length), response.getOutputStream());
+            }
+            return null;
+        } catch (IOException e) {
+            System.err.println("✗ failed to send receipt " + orderId + ": " + e.getMessage());
+            if (response.isCommitted()) {
+                return null;
+            }
+            response.reset();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                    Map.of("error", "failed to read receipt")
+            );
+        }
+    }
+
+    // sendfile when tomcat offers it, else transferTo into the response stream - the
+    // stream's channel reads the file into a heap buffer and writes that (a copy, but
+    // a small one: receipts are a few kilobytes)
+    private void sendFile(StoredReceipt receipt, long start, long length,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, receipt.file().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + length);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(receipt.file(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long sent = 0;
+            while (sent < length) {
+                long transferred = channel.transferTo(start + sent, length - sent, out);
+                if (transferred <= 0) {
+                    throw new IOException("receipt shrank while sending: " + receipt.orderId());
+                }
+                sent += transferred;
+            }
+        }
+    }
+
+    // tomcat's output stream takes a buffer as-is, straight into its own output buffer;
+    // any other stream goes through a channel, which copies through a heap array
+    private void writeBuffer(ByteBuffer content, ServletOutputStream out) throws IOException {
+        if (out instanceof CoyoteOutputStream coyote) {
+            coyote.write(content);
+            return;
+        }
+        WritableByteChannel channel = Channels.newChannel(out);
+        while (content.hasRemaining()) {
+            channel.write(content);
+        }
+    }
+}
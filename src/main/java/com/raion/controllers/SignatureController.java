@@ -1,6 +1,7 @@
 package com.raion.controllers;
 
 import com.raion.models.signatures.*;
+import com.raion.services.CatalogCache;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -13,9 +14,37 @@ import java.util.*;
 @CrossOrigin(origins = "*", allowedHeaders = "*")
 public class SignatureController {
 
+    private static final Set<String> SIGNATURE_IDS =
+            Set.of("urban-commuter", "trail-titan", "track-beast", "executive");
+
+    private final CatalogCache catalogCache;
+
+    public SignatureController(CatalogCache catalogCache) {
+        this.catalogCache = catalogCache;
+    }
+
     // get /api/signatures - get information about all 4 signature vehicles
+    // built once and served from the catalog cache (concurrent cold requests share one build)
     @GetMapping
-    public ResponseEntity<Map<String, Object>> getAllSignatures() {
+    public ResponseEntity<byte[]> getAllSignatures() {
+        return catalogCache.respond("signatures", this::buildAllSignatures);
+    }
+
+    // get /api/signatures/{name} - get detailed info about a specific signature
+    @GetMapping("/{name}")
+    public ResponseEntity<?> getSignatureByName(@PathVariable String name) {
+        String id = name.toLowerCase().trim();
+        if (!SIGNATURE_IDS.contains(id)) {
+            return ResponseEntity.badRequest().body(
+                    Map.of("error", "invalid signature name. must be: urban-commuter, trail-titan, track-beast, or executive")
+            );
+        }
+
+        return catalogCache.respond("signature:" + id, () -> buildSignatureDetails(id));
+    }
+
+    // all 4 signature vehicles for the list view
+    private Map<String, Object> buildAllSignatures() {
         Map<String, Object> response = new HashMap<>();
 
         List<Map<String, Object>> signatures = new ArrayList<>();
@@ -82,17 +111,14 @@ public class SignatureController {
 
         response.put("signatures", signatures);
         response.put("count", signatures.size());
-        return ResponseEntity.ok(response);
+        return response;
     }
 
-    // get /api/signatures/{name} - get detailed info about a specific signature
-    @GetMapping("/{name}")
-    public ResponseEntity<?> getSignatureByName(@PathVariable String name) {
-        name = name.toLowerCase().trim();
+    // detailed info for one (valid) signature id
+    private Map<String, Object> buildSignatureDetails(String id) {
+        Map<String, Object> signatureDetails;
 
-        Map<String, Object> signatureDetails = new HashMap<>();
-
-        switch (name) {
+        switch (id) {
             case "urban-commuter":
                 UrbanCommuterSignature urbanCommuter = new UrbanCommuterSignature();
                 signatureDetails = createDetailedSignatureInfo(
@@ -162,12 +188,10 @@ public class SignatureController {
                 break;
 
             default:
-                return ResponseEntity.badRequest().body(
-                        Map.of("error", "invalid signature name. must be: urban-commuter, trail-titan, track-beast, or executive")
-                );
+                throw new IllegalArgumentException("unknown signature: " + id);
         }
 
-        return ResponseEntity.ok(signatureDetails);
+        return signatureDetails;
     }
 
     // helper method to create signature summary (for list view)
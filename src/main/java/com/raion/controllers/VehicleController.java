@@ -1,6 +1,7 @@
 package com.raion.controllers;
 
 import com.raion.models.*;
+import com.raion.services.CatalogCache;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -13,9 +14,34 @@ import java.util.*;
 @CrossOrigin(origins = "*", allowedHeaders = "*")
 public class VehicleController {
 
+    private final CatalogCache catalogCache;
+
+    public VehicleController(CatalogCache catalogCache) {
+        this.catalogCache = catalogCache;
+    }
+
     // get /api/vehicles - get information about all 4 vehicle models
+    // built once and served from the catalog cache (concurrent cold requests share one build)
     @GetMapping
-    public ResponseEntity<Map<String, Object>> getAllVehicles() {
+    public ResponseEntity<byte[]> getAllVehicles() {
+        return catalogCache.respond("vehicles", this::buildAllVehicles);
+    }
+
+    // get /api/vehicles/{level} - get complete vehicle configuration data
+    // this returns everything the frontend configurator needs: trims, colors, options, accessories, specs
+    @GetMapping("/{level}")
+    public ResponseEntity<?> getVehicleByLevel(@PathVariable int level) {
+        if (level < 1 || level > 4) {
+            return ResponseEntity.badRequest().body(
+                    Map.of("error", "Invalid level. Must be 1, 2, 3, or 4")
+            );
+        }
+
+        return catalogCache.respond("vehicle:" + level, () -> buildVehicleData(level));
+    }
+
+    // all 4 vehicle models for the list view
+    private Map<String, Object> buildAllVehicles() {
         Map<String, Object> response = new HashMap<>();
 
         List<Map<String, Object>> vehicles = new ArrayList<>();
@@ -67,19 +93,11 @@ public class VehicleController {
         vehicles.add(level4);
 
         response.put("vehicles", vehicles);
-        return ResponseEntity.ok(response);
+        return response;
     }
 
-    // get /api/vehicles/{level} - get complete vehicle configuration data
-    // this returns everything the frontend configurator needs: trims, colors, options, accessories, specs
-    @GetMapping("/{level}")
-    public ResponseEntity<?> getVehicleByLevel(@PathVariable int level) {
-        if (level < 1 || level > 4) {
-            return ResponseEntity.badRequest().body(
-                    Map.of("error", "Invalid level. Must be 1, 2, 3, or 4")
-            );
-        }
-
+    // complete configuration data for one (valid) level
+    private Map<String, Object> buildVehicleData(int level) {
         Map<String, Object> vehicleData = new HashMap<>();
         vehicleData.put("level", level);
 
@@ -133,7 +151,7 @@ public class VehicleController {
         // add available accessories with id, name, price (frontend needs id to track selections)
         vehicleData.put("accessories", getAccessoriesForLevel(level));
 
-        return ResponseEntity.ok(vehicleData);
+        return vehicleData;
     }
 
     // get available trims for a vehicle level with complete specs
@@ -0,0 +1,24 @@
+package com.raion.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.util.List;
+
+/**
+ * typed body of post /api/orders/batch
+ *
+ * {
+ *   "orders": [
+ *     { "level": 1, "trim": "Standard", "color": "white", ... },   // custom order
+ *     { "signatureName": "executive", "accessories": [...] },      // signature order
+ *     ...
+ *   ]
+ * }
+ *
+ * an element with a signatureName field is a signature order, any other object is a
+ * custom order. elements that aren't json objects are kept as null so the batch can
+ * report them by index; orders is null when the field is missing or not an array
+ */
+@JsonDeserialize(using = OrderRequestDeserializer.Batch.class)
+public record BatchOrderRequest(List<OrderRequest> orders) {
+}
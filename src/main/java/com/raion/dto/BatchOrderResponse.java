@@ -0,0 +1,34 @@
+package com.raion.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * body of a post /api/orders/batch response
+ * one result per submitted order, in submission order - a failed order doesn't stop
+ * the others, so clients check each result's status
+ */
+public record BatchOrderResponse(int total, int succeeded, int failed, List<Result> results) {
+
+    /**
+     * outcome of one order in the batch
+     * status is the code the single-order endpoint would have answered with (201, 400
+     * or 500); order is set on success, error (and details for 500s) on failure
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Result(int index, int status, OrderResponse order, String error, String details) {
+
+        public static Result placed(int index, OrderResponse order) {
+            return new Result(index, 201, order, null, null);
+        }
+
+        public static Result rejected(int index, String error) {
+            return new Result(index, 400, null, error, null);
+        }
+
+        public static Result failed(int index, String error, String details) {
+            return new Result(index, 500, null, error, details);
+        }
+    }
+}
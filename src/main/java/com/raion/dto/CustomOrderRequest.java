@@ -0,0 +1,54 @@
+package com.raion.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.util.List;
+
+/**
+ * typed body of post /api/order, decoded token by token by OrderRequestDeserializer
+ *
+ * the endpoint used to bind a Map and failed in specific ways on odd input (missing
+ * fields -> 400, a number where the trim should be -> 500), so next to the values we
+ * keep which fields were sent and which had the wrong json type - OrderAssembler uses
+ * both to keep answering malformed requests exactly as before
+ *
+ * list fields hold the valid prefix when a later element has the wrong type
+ */
+@JsonDeserialize(using = OrderRequestDeserializer.Custom.class)
+public record CustomOrderRequest(
+        int level,
+        String trim,
+        String color,
+        List<String> options,
+        List<String> servicePackages,
+        List<String> accessories,
+        int presentFields,
+        int malformedFields) implements OrderRequest {
+
+    // field bits for presentFields / malformedFields
+    public static final int LEVEL = 1;
+    public static final int TRIM = 1 << 1;
+    public static final int COLOR = 1 << 2;
+    public static final int OPTIONS = 1 << 3;
+    public static final int SERVICE_PACKAGES = 1 << 4;
+    public static final int ACCESSORIES = 1 << 5;
+
+    /**
+     * well-formed request with every field present (warm-up, benchmarks)
+     */
+    public static CustomOrderRequest of(int level, String trim, String color, List<String> options,
+                                        List<String> servicePackages, List<String> accessories) {
+        return new CustomOrderRequest(level, trim, color, options, servicePackages, accessories,
+                LEVEL | TRIM | COLOR | OPTIONS | SERVICE_PACKAGES | ACCESSORIES, 0);
+    }
+
+    // true if the field was in the json, even when its value was null
+    public boolean has(int field) {
+        return (presentFields & field) != 0;
+    }
+
+    // true if the field had a json type the endpoint never accepted
+    public boolean isMalformed(int field) {
+        return (malformedFields & field) != 0;
+    }
+}
@@ -0,0 +1,8 @@
+package com.raion.dto;
+
+/**
+ * a decoded order request - either a custom build or a signature vehicle
+ * lets a batch carry both kinds in one list
+ */
+public sealed interface OrderRequest permits CustomOrderRequest, SignatureOrderRequest {
+}
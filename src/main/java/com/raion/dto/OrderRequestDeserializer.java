@@ -0,0 +1,275 @@
+package com.raion.dto;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * streaming jackson decoders for the order request bodies
+ * reads the parser's tokens straight into the typed records - no intermediate Map,
+ * no boxed numbers, and unknown fields are skipped without being materialized
+ *
+ * wrong json types are recorded as malformed instead of failing the whole body, so the
+ * endpoints can answer them the same way they did when the body was bound to a Map;
+ * a body that isn't a json object is still rejected by jackson (400)
+ */
+public final class OrderRequestDeserializer {
+
+    // private constructor - only holds the nested deserializers
+    private OrderRequestDeserializer() {
+        throw new UnsupportedOperationException("utility class cannot be instantiated");
+    }
+
+    /**
+     * decodes post /api/order bodies
+     */
+    public static class Custom extends StdDeserializer<CustomOrderRequest> {
+
+        private static final long serialVersionUID = 1L;
+
+        public Custom() {
+            super(CustomOrderRequest.class);
+        }
+
+        @Override
+        public CustomOrderRequest deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            FieldReader reader = new FieldReader(parser);
+            int level = 0;
+            String trim = null;
+            String color = null;
+            List<String> options = null;
+            List<String> servicePackages = null;
+            List<String> accessories = null;
+
+            for (String name = firstFieldName(parser, context, CustomOrderRequest.class);
+                 name != null; name = parser.nextFieldName()) {
+                parser.nextToken();
+                switch (name) {
+                    case "level":
+                        level = reader.readLevel(CustomOrderRequest.LEVEL);
+                        break;
+                    case "trim":
+                        trim = reader.readText(CustomOrderRequest.TRIM);
+                        break;
+                    case "color":
+                        color = reader.readText(CustomOrderRequest.COLOR);
+                        break;
+                    case "options":
+                        options = reader.readTextList(CustomOrderRequest.OPTIONS);
+                        break;
+                    case "servicePackages":
+                        servicePackages = reader.readTextList(CustomOrderRequest.SERVICE_PACKAGES);
+                        break;
+                    case "accessories":
+                        accessories = reader.readTextList(CustomOrderRequest.ACCESSORIES);
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+
+            return new CustomOrderRequest(level, trim, color, options, servicePackages, accessories,
+                    reader.present, reader.malformed);
+        }
+    }
+
+    /**
+     * decodes post /api/order/signature bodies
+     */
+    public static class Signature extends StdDeserializer<SignatureOrderRequest> {
+
+        private static final long serialVersionUID = 1L;
+
+        public Signature() {
+            super(SignatureOrderRequest.class);
+        }
+
+        @Override
+        public SignatureOrderRequest deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            FieldReader reader = new FieldReader(parser);
+            String signatureName = null;
+            List<String> additionalOptions = null;
+            List<String> accessories = null;
+
+            for (String name = firstFieldName(parser, context, SignatureOrderRequest.class);
+                 name != null; name = parser.nextFieldName()) {
+                parser.nextToken();
+                switch (name) {
+                    case "signatureName":
+                        signatureName = reader.readText(SignatureOrderRequest.SIGNATURE_NAME);
+                        break;
+                    case "additionalOptions":
+                        additionalOptions = reader.readTextList(SignatureOrderRequest.ADDITIONAL_OPTIONS);
+                        break;
+                    case "accessories":
+                        accessories = reader.readTextList(SignatureOrderRequest.ACCESSORIES);
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+
+            return new SignatureOrderRequest(signatureName, additionalOptions, accessories,
+                    reader.present, reader.malformed);
+        }
+    }
+
+    /**
+     * decodes post /api/orders/batch bodies
+     * each element is read as a tree first, since only its fields tell which kind of
+     * order it is, then handed to the Custom or Signature decoder
+     */
+    public static class Batch extends StdDeserializer<BatchOrderRequest> {
+
+        private static final long serialVersionUID = 1L;
+
+        public Batch() {
+            super(BatchOrderRequest.class);
+        }
+
+        @Override
+        public BatchOrderRequest deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            List<OrderRequest> orders = null;
+
+            for (String name = firstFieldName(parser, context, BatchOrderRequest.class);
+                 name != null; name = parser.nextFieldName()) {
+                JsonToken token = parser.nextToken();
+                if (!name.equals("orders")) {
+                    parser.skipChildren();
+                    continue;
+                }
+                if (token != JsonToken.START_ARRAY) {
+                    // missing and malformed look the same to the endpoint
+                    orders = null;
+                    parser.skipChildren();
+                    continue;
+                }
+
+                orders = new ArrayList<>();
+                for (token = parser.nextToken(); token != null && token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                    orders.add(readOrder(parser, context));
+                }
+            }
+
+            return new BatchOrderRequest(orders);
+        }
+
+        // one array element; anything but a json object becomes null
+        private static OrderRequest readOrder(JsonParser parser, DeserializationContext context) throws IOException {
+            if (!parser.isExpectedStartObjectToken()) {
+                parser.skipChildren();
+                return null;
+            }
+
+            JsonNode node = context.readTree(parser);
+            if (node.has("signatureName")) {
+                return context.readTreeAsValue(node, SignatureOrderRequest.class);
+            }
+            return context.readTreeAsValue(node, CustomOrderRequest.class);
+        }
+    }
+
+    // position the parser on the first field name; anything but an object is a 400
+    private static String firstFieldName(JsonParser parser, DeserializationContext context, Class<?> type)
+            throws IOException {
+        if (parser.isExpectedStartObjectToken()) {
+            return parser.nextFieldName();
+        }
+        if (parser.hasToken(JsonToken.FIELD_NAME)) {
+            return parser.currentName();
+        }
+        context.handleUnexpectedToken(type, parser);
+        return null;
+    }
+
+    /**
+     * reads field values at the parser's current token and tracks the field bits
+     * a repeated field overwrites the earlier value, like the Map binding did
+     */
+    private static final class FieldReader {
+
+        private final JsonParser parser;
+        private int present;
+        private int malformed;
+
+        FieldReader(JsonParser parser) {
+            this.parser = parser;
+        }
+
+        // a json int or a numeric string, anything else is malformed
+        int readLevel(int field) throws IOException {
+            markPresent(field);
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() == JsonParser.NumberType.INT) {
+                return parser.getIntValue();
+            }
+            if (token == JsonToken.VALUE_STRING) {
+                try {
+                    return Integer.parseInt(parser.getText());
+                } catch (NumberFormatException e) {
+                    malformed |= field;
+                    return 0;
+                }
+            }
+            malformed |= field;
+            parser.skipChildren();
+            return 0;
+        }
+
+        // a json string or null, anything else is malformed
+        String readText(int field) throws IOException {
+            markPresent(field);
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_STRING) {
+                return parser.getText();
+            }
+            if (token != JsonToken.VALUE_NULL) {
+                malformed |= field;
+                parser.skipChildren();
+            }
+            return null;
+        }
+
+        // an array of strings (nulls allowed) or null; stops collecting at the first bad element
+        List<String> readTextList(int field) throws IOException {
+            markPresent(field);
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                malformed |= field;
+                parser.skipChildren();
+                return null;
+            }
+
+            List<String> values = new ArrayList<>();
+            for (token = parser.nextToken(); token != null && token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                if ((malformed & field) != 0) {
+                    parser.skipChildren();
+                } else if (token == JsonToken.VALUE_STRING) {
+                    values.add(parser.getText());
+                } else if (token == JsonToken.VALUE_NULL) {
+                    values.add(null);
+                } else {
+                    malformed |= field;
+                    parser.skipChildren();
+                }
+            }
+            return values;
+        }
+
+        private void markPresent(int field) {
+            present |= field;
+            malformed &= ~field;
+        }
+    }
+}
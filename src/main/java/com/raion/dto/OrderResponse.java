@@ -0,0 +1,18 @@
+package com.raion.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.raion.models.Order;
+
+/**
+ * order confirmation returned by the order endpoints
+ * holds the placed order as-is; OrderResponseSerializer writes the json sections
+ * straight from it, so nothing is copied into maps first
+ *
+ * @param order the placed order
+ * @param receiptFile where the receipt was saved
+ * @param isSignature true for signature vehicle orders
+ * @param signatureName display name like "Trail Titan" (null for custom orders)
+ */
+@JsonSerialize(using = OrderResponseSerializer.class)
+public record OrderResponse(Order order, String receiptFile, boolean isSignature, String signatureName) {
+}
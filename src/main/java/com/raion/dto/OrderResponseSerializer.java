@@ -0,0 +1,210 @@
+package com.raion.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.raion.models.Feature;
+import com.raion.models.Order;
+import com.raion.models.Vehicle;
+import com.raion.services.EnvironmentalCalculator;
+import com.raion.services.PriceCalculator;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * hand-written jackson serializer for OrderResponse
+ * writes every section directly to the generator in one pass - no intermediate maps
+ * and no reflection; the field names are pre-encoded once
+ *
+ * produces the same json fields, values and number types the frontend always got
+ */
+public class OrderResponseSerializer extends StdSerializer<OrderResponse> {
+
+    private static final long serialVersionUID = 1L;
+
+    // payment estimate terms shown with every order
+    private static final int LOAN_TERM_MONTHS = 60;
+    private static final int DOWN_PAYMENT = 10000;
+    private static final double APR = 5.9;
+
+    private static final SerializedString ORDER_ID = new SerializedString("orderId");
+    private static final SerializedString ORDER_DATE = new SerializedString("orderDate");
+    private static final SerializedString RECEIPT_FILE = new SerializedString("receiptFile");
+    private static final SerializedString IS_SIGNATURE = new SerializedString("isSignature");
+    private static final SerializedString SIGNATURE_NAME = new SerializedString("signatureName");
+
+    private static final SerializedString VEHICLE = new SerializedString("vehicle");
+    private static final SerializedString MODEL = new SerializedString("model");
+    private static final SerializedString TRIM = new SerializedString("trim");
+    private static final SerializedString COLOR = new SerializedString("color");
+    private static final SerializedString LEVEL = new SerializedString("level");
+
+    private static final SerializedString PRICING = new SerializedString("pricing");
+    private static final SerializedString BASE_PRICE = new SerializedString("basePrice");
+    private static final SerializedString FEATURES_TOTAL = new SerializedString("featuresTotal");
+    private static final SerializedString SUBTOTAL = new SerializedString("subtotal");
+    private static final SerializedString TAX = new SerializedString("tax");
+    private static final SerializedString TAX_RATE = new SerializedString("taxRate");
+    private static final SerializedString TOTAL = new SerializedString("total");
+
+    private static final SerializedString PAYMENT_ESTIMATE = new SerializedString("paymentEstimate");
+    private static final SerializedString MONTHLY_PAYMENT = new SerializedString("monthlyPayment");
+    private static final SerializedString LOAN_TERM = new SerializedString("loanTerm");
+    private static final SerializedString DOWN_PAYMENT_FIELD = new SerializedString("downPayment");
+    private static final SerializedString APR_FIELD = new SerializedString("apr");
+
+    private static final SerializedString SPECIFICATIONS = new SerializedString("specifications");
+    private static final SerializedString POWER = new SerializedString("power");
+    private static final SerializedString ACCELERATION = new SerializedString("acceleration");
+    private static final SerializedString TOP_SPEED = new SerializedString("topSpeed");
+    private static final SerializedString RANGE = new SerializedString("range");
+    private static final SerializedString BATTERY = new SerializedString("battery");
+    private static final SerializedString DRIVETRAIN = new SerializedString("drivetrain");
+
+    private static final SerializedString CHARGING = new SerializedString("charging");
+    private static final SerializedString HOME_CHARGING_TIME = new SerializedString("homeChargingTime");
+    private static final SerializedString FAST_CHARGING_TIME = new SerializedString("fastChargingTime");
+
+    private static final SerializedString ENVIRONMENTAL = new SerializedString("environmental");
+    private static final SerializedString CO2_SAVED = new SerializedString("co2Saved");
+    private static final SerializedString TREES_EQUIVALENT = new SerializedString("treesEquivalent");
+
+    private static final SerializedString FEATURES = new SerializedString("features");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString PRICE = new SerializedString("price");
+    private static final SerializedString CATEGORY = new SerializedString("category");
+
+    public OrderResponseSerializer() {
+        super(OrderResponse.class);
+    }
+
+    @Override
+    public void serialize(OrderResponse response, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        Order order = response.order();
+        Vehicle vehicle = order.getVehicle();
+
+        gen.writeStartObject();
+
+        // order details
+        gen.writeFieldName(ORDER_ID);
+        gen.writeString(order.getOrderId());
+        gen.writeFieldName(ORDER_DATE);
+        gen.writeString(order.getFormattedOrderDate());
+        gen.writeFieldName(RECEIPT_FILE);
+        gen.writeString(response.receiptFile());
+        gen.writeFieldName(IS_SIGNATURE);
+        gen.writeBoolean(response.isSignature());
+        if (response.isSignature() && response.signatureName() != null) {
+            gen.writeFieldName(SIGNATURE_NAME);
+            gen.writeString(response.signatureName());
+        }
+
+        // vehicle info
+        gen.writeFieldName(VEHICLE);
+        gen.writeStartObject();
+        gen.writeFieldName(MODEL);
+        gen.writeString(vehicle.getModelName());
+        gen.writeFieldName(TRIM);
+        gen.writeString(vehicle.getTrimLevel().getDisplayName());
+        gen.writeFieldName(COLOR);
+        gen.writeString(vehicle.getColor().getDisplayName());
+        gen.writeFieldName(LEVEL);
+        gen.writeNumber(vehicle.getLevel());
+        gen.writeEndObject();
+
+        // pricing breakdown - each total is computed once and reused
+        List<Feature> features = order.getFeatures();
+        double basePrice = order.getVehiclePrice();
+        double featuresTotal = PriceCalculator.calculateFeaturesTotal(features);
+        double subtotal = basePrice + featuresTotal;
+        double tax = PriceCalculator.calculateTax(subtotal);
+        double total = subtotal + tax;
+
+        gen.writeFieldName(PRICING);
+        gen.writeStartObject();
+        gen.writeFieldName(BASE_PRICE);
+        gen.writeNumber(basePrice);
+        gen.writeFieldName(FEATURES_TOTAL);
+        gen.writeNumber(featuresTotal);
+        gen.writeFieldName(SUBTOTAL);
+        gen.writeNumber(subtotal);
+        gen.writeFieldName(TAX);
+        gen.writeNumber(tax);
+        gen.writeFieldName(TAX_RATE);
+        gen.writeNumber(PriceCalculator.getTaxRatePercentage());
+        gen.writeFieldName(TOTAL);
+        gen.writeNumber(total);
+        gen.writeEndObject();
+
+        // payment estimate
+        gen.writeFieldName(PAYMENT_ESTIMATE);
+        gen.writeStartObject();
+        gen.writeFieldName(MONTHLY_PAYMENT);
+        gen.writeNumber(Math.round(PriceCalculator.calculateMonthlyPayment(
+                total, LOAN_TERM_MONTHS, DOWN_PAYMENT, APR) * 100.0) / 100.0);
+        gen.writeFieldName(LOAN_TERM);
+        gen.writeNumber(LOAN_TERM_MONTHS);
+        gen.writeFieldName(DOWN_PAYMENT_FIELD);
+        gen.writeNumber(DOWN_PAYMENT);
+        gen.writeFieldName(APR_FIELD);
+        gen.writeNumber(APR);
+        gen.writeEndObject();
+
+        // vehicle specifications
+        gen.writeFieldName(SPECIFICATIONS);
+        gen.writeStartObject();
+        gen.writeFieldName(POWER);
+        gen.writeNumber(vehicle.getPower());
+        gen.writeFieldName(ACCELERATION);
+        gen.writeNumber(vehicle.getAcceleration());
+        gen.writeFieldName(TOP_SPEED);
+        gen.writeNumber(vehicle.getTopSpeed());
+        gen.writeFieldName(RANGE);
+        gen.writeNumber(vehicle.getRange());
+        gen.writeFieldName(BATTERY);
+        gen.writeNumber(vehicle.getBatteryCapacity());
+        gen.writeFieldName(DRIVETRAIN);
+        gen.writeString(vehicle.getDrivetrain());
+        gen.writeEndObject();
+
+        // charging info
+        gen.writeFieldName(CHARGING);
+        gen.writeStartObject();
+        gen.writeFieldName(HOME_CHARGING_TIME);
+        gen.writeNumber(Math.round(vehicle.getHomeChargingTime() * 10.0) / 10.0);
+        gen.writeFieldName(FAST_CHARGING_TIME);
+        gen.writeNumber(Math.round(vehicle.getFastChargingTime()));
+        gen.writeEndObject();
+
+        // environmental impact
+        double co2Saved = EnvironmentalCalculator.calculateCO2Saved(vehicle);
+        gen.writeFieldName(ENVIRONMENTAL);
+        gen.writeStartObject();
+        gen.writeFieldName(CO2_SAVED);
+        gen.writeNumber(Math.round(co2Saved));
+        gen.writeFieldName(TREES_EQUIVALENT);
+        gen.writeNumber(EnvironmentalCalculator.calculateTreesEquivalent(co2Saved));
+        gen.writeEndObject();
+
+        // added features list, left out when there are none
+        if (!features.isEmpty()) {
+            gen.writeFieldName(FEATURES);
+            gen.writeStartArray();
+            for (Feature feature : features) {
+                gen.writeStartObject();
+                gen.writeFieldName(NAME);
+                gen.writeString(feature.getName());
+                gen.writeFieldName(PRICE);
+                gen.writeNumber(feature.getPrice());
+                gen.writeFieldName(CATEGORY);
+                gen.writeString(feature.getCategory());
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+
+        gen.writeEndObject();
+    }
+}
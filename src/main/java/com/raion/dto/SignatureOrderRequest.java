@@ -0,0 +1,42 @@
+package com.raion.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.util.List;
+
+/**
+ * typed body of post /api/order/signature, decoded token by token by OrderRequestDeserializer
+ * tracks present and malformed fields the same way as CustomOrderRequest
+ */
+@JsonDeserialize(using = OrderRequestDeserializer.Signature.class)
+public record SignatureOrderRequest(
+        String signatureName,
+        List<String> additionalOptions,
+        List<String> accessories,
+        int presentFields,
+        int malformedFields) implements OrderRequest {
+
+    // field bits for presentFields / malformedFields
+    public static final int SIGNATURE_NAME = 1;
+    public static final int ADDITIONAL_OPTIONS = 1 << 1;
+    public static final int ACCESSORIES = 1 << 2;
+
+    /**
+     * well-formed request with every field present (warm-up, benchmarks)
+     */
+    public static SignatureOrderRequest of(String signatureName, List<String> additionalOptions,
+                                           List<String> accessories) {
+        return new SignatureOrderRequest(signatureName, additionalOptions, accessories,
+                SIGNATURE_NAME | ADDITIONAL_OPTIONS | ACCESSORIES, 0);
+    }
+
+    // true if the field was in the json, even when its value was null
+    public boolean has(int field) {
+        return (presentFields & field) != 0;
+    }
+
+    // true if the field had a json type the endpoint never accepted
+    public boolean isMalformed(int field) {
+        return (malformedFields & field) != 0;
+    }
+}
@@ -0,0 +1,59 @@
+package com.raion.filters;
+
+import com.raion.services.AdmissionControl;
+import com.raion.services.AimdLimit;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * applies AdmissionControl on the servlet stack
+ * a request over its class limit is answered with 503 before it reaches a controller
+ */
+@Component
+@Profile("!reactive")
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private final AdmissionControl admissionControl;
+
+    public AdmissionFilter(AdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        AimdLimit limit = admissionControl.limitFor(request.getMethod(), request.getRequestURI());
+        if (limit == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        if (!limit.tryAcquire()) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, AdmissionControl.RETRY_AFTER_SECONDS);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setContentLength(AdmissionControl.REJECTED_BODY.length);
+            response.getOutputStream().write(AdmissionControl.REJECTED_BODY);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            limit.release(System.nanoTime() - start);
+        }
+    }
+}
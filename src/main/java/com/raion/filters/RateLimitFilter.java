@@ -0,0 +1,58 @@
+package com.raion.filters;
+
+import com.raion.services.EndpointClass;
+import com.raion.services.RateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * applies per-client RateLimiter limits on the servlet stack
+ * runs before admission control, so a client over its limit never takes a concurrency slot
+ */
+@Component
+@Profile("!reactive")
+@Order(Ordered.HIGHEST_PRECEDENCE + 5)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+
+    public RateLimitFilter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        EndpointClass endpointClass = EndpointClass.of(request.getMethod(), request.getRequestURI());
+        if (endpointClass == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String remoteAddress = request.getRemoteAddr();
+        String clientKey = rateLimiter.clientKey(request.getHeader(RateLimiter.API_KEY_HEADER), remoteAddress);
+
+        if (rateLimiter.tryAcquire(clientKey, remoteAddress, endpointClass)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Integer.toString(rateLimiter.retryAfterSeconds()));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(RateLimiter.REJECTED_BODY.length);
+        response.getOutputStream().write(RateLimiter.REJECTED_BODY);
+    }
+}
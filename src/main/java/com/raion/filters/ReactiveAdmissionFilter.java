@@ -0,0 +1,54 @@
+package com.raion.filters;
+
+import com.raion.services.AdmissionControl;
+import com.raion.services.AimdLimit;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * applies AdmissionControl on the reactive stack
+ * the slot is held until the response completes (or the client goes away)
+ */
+@Component
+@Profile("reactive")
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class ReactiveAdmissionFilter implements WebFilter {
+
+    private final AdmissionControl admissionControl;
+
+    public ReactiveAdmissionFilter(AdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        AimdLimit limit = admissionControl.limitFor(request.getMethod().name(), request.getPath().value());
+        if (limit == null) {
+            return chain.filter(exchange);
+        }
+
+        if (!limit.tryAcquire()) {
+            ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, AdmissionControl.RETRY_AFTER_SECONDS);
+            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            return response.writeWith(Mono.just(response.bufferFactory().wrap(AdmissionControl.REJECTED_BODY)));
+        }
+
+        long start = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(signal -> limit.release(System.nanoTime() - start));
+    }
+}
@@ -0,0 +1,58 @@
+package com.raion.filters;
+
+import com.raion.services.EndpointClass;
+import com.raion.services.RateLimiter;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+/**
+ * applies per-client RateLimiter limits on the reactive stack
+ * runs before admission control, so a client over its limit never takes a concurrency slot
+ */
+@Component
+@Profile("reactive")
+@Order(Ordered.HIGHEST_PRECEDENCE + 5)
+public class ReactiveRateLimitFilter implements WebFilter {
+
+    private final RateLimiter rateLimiter;
+
+    public ReactiveRateLimitFilter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        EndpointClass endpointClass = EndpointClass.of(request.getMethod().name(), request.getPath().value());
+        if (endpointClass == null) {
+            return chain.filter(exchange);
+        }
+
+        InetSocketAddress remote = request.getRemoteAddress();
+        String remoteAddress = remote != null && remote.getAddress() != null ? remote.getAddress().getHostAddress() : null;
+        String clientKey = rateLimiter.clientKey(request.getHeaders().getFirst(RateLimiter.API_KEY_HEADER), remoteAddress);
+
+        if (rateLimiter.tryAcquire(clientKey, remoteAddress, endpointClass)) {
+            return chain.filter(exchange);
+        }
+
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, Integer.toString(rateLimiter.retryAfterSeconds()));
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(RateLimiter.REJECTED_BODY)));
+    }
+}
@@ -13,25 +13,88 @@ public class Order {
     private final Vehicle vehicle;
     private final List<Feature> features;
     private final LocalDateTime orderDate;
+    // the vehicle's price when the order was placed - a saved order keeps it even if the
+    // model's price changes later
+    private final double vehiclePrice;
+    // formatted on first use - the receipt and the response both show it
+    private String formattedOrderDate;
 
     private static final double TAX_RATE = 0.085; // 8.5% sales tax
 
+    // formatters are immutable and thread-safe, so build them once
+    private static final DateTimeFormatter ORDER_ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final DateTimeFormatter DISPLAY_DATE_FORMAT = DateTimeFormatter.ofPattern("MMMM dd, yyyy HH:mm:ss");
+
+    // order ids handed out within the current second (ids double as receipt file names,
+    // so two orders placed in the same second must not share one)
+    private static final Object ORDER_ID_LOCK = new Object();
+    private static String currentIdSecond;
+    private static int ordersInCurrentSecond;
+
+    // an order date and the id stamped with it
+    private record Stamp(LocalDateTime orderDate, String orderId) {
+    }
+
     // create a new order with a vehicle
     public Order(Vehicle vehicle) {
+        this(vehicle, nextStamp());
+    }
+
+    // create an order placed at a given time (used to pre-render receipt and response templates)
+    public Order(Vehicle vehicle, LocalDateTime orderDate) {
+        this(vehicle, new Stamp(orderDate, orderDate == null ? null : orderDate.format(ORDER_ID_FORMAT)));
+    }
+
+    // re-create a saved order under its original id, priced at the vehicle's current price
+    public Order(String orderId, Vehicle vehicle, LocalDateTime orderDate) {
+        this(orderId, vehicle, orderDate, vehicle == null ? 0 : vehicle.calculatePrice());
+    }
+
+    // re-create a saved order under its original id at the vehicle price it was sold for
+    // (structured receipts, see OrderCodec)
+    public Order(String orderId, Vehicle vehicle, LocalDateTime orderDate, double vehiclePrice) {
+        this(vehicle, new Stamp(orderDate, orderId), vehiclePrice);
+        if (orderId == null || orderId.isEmpty()) {
+            throw new IllegalArgumentException("order id cannot be empty");
+        }
+    }
+
+    private Order(Vehicle vehicle, Stamp stamp) {
+        this(vehicle, stamp, vehicle == null ? 0 : vehicle.calculatePrice());
+    }
+
+    private Order(Vehicle vehicle, Stamp stamp, double vehiclePrice) {
         if (vehicle == null) {
             throw new IllegalArgumentException("vehicle cannot be null");
         }
+        if (stamp.orderDate() == null) {
+            throw new IllegalArgumentException("order date cannot be null");
+        }
+        if (vehiclePrice < 0) {
+            throw new IllegalArgumentException("vehicle price cannot be negative");
+        }
 
         this.vehicle = vehicle;
         this.features = new ArrayList<>();
-        this.orderDate = LocalDateTime.now();
-        this.orderId = generateOrderId();
+        this.orderDate = stamp.orderDate();
+        this.orderId = stamp.orderId();
+        this.vehiclePrice = vehiclePrice;
     }
 
     // generate order id from timestamp: yyyymmdd-hhmmss
-    private String generateOrderId() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
-        return orderDate.format(formatter);
+    // the first order in a second gets the plain id, later ones get -2, -3, ...
+    private static Stamp nextStamp() {
+        synchronized (ORDER_ID_LOCK) {
+            LocalDateTime now = LocalDateTime.now();
+            String second = now.format(ORDER_ID_FORMAT);
+            if (second.equals(currentIdSecond)) {
+                ordersInCurrentSecond++;
+                return new Stamp(now, second + "-" + ordersInCurrentSecond);
+            }
+            currentIdSecond = second;
+            ordersInCurrentSecond = 1;
+            return new Stamp(now, second);
+        }
     }
 
     // add a feature to the order (option, service package, or accessory)
@@ -60,6 +123,21 @@ public class Order {
         return new ArrayList<>(features); // return copy to protect internal list
     }
 
+    // check if any features were added (without copying the list)
+    public boolean hasFeatures() {
+        return !features.isEmpty();
+    }
+
+    // number of features added (without copying the list)
+    public int getFeatureCount() {
+        return features.size();
+    }
+
+    // feature at a position, in the order they were added (without copying the list)
+    public Feature getFeature(int index) {
+        return features.get(index);
+    }
+
     // calculate total price of all features
     public double calculateFeaturesTotal() {
         double total = 0;
@@ -71,7 +149,7 @@ public class Order {
 
     // calculate subtotal (vehicle + features, before tax)
     public double calculateSubtotal() {
-        return vehicle.calculatePrice() + calculateFeaturesTotal();
+        return vehiclePrice + calculateFeaturesTotal();
     }
 
     // calculate tax on subtotal
@@ -135,14 +213,25 @@ public class Order {
         return vehicle;
     }
 
+    // the vehicle's price as sold (use this, not vehicle.calculatePrice(), for anything
+    // that shows or adds up an order)
+    public double getVehiclePrice() {
+        return vehiclePrice;
+    }
+
     public LocalDateTime getOrderDate() {
         return orderDate;
     }
 
     // format order date for display
     public String getFormattedOrderDate() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMMM dd, yyyy HH:mm:ss");
-        return orderDate.format(formatter);
+        // a race only formats it twice - the string is the same
+        String formatted = formattedOrderDate;
+        if (formatted == null) {
+            formatted = orderDate.format(DISPLAY_DATE_FORMAT);
+            formattedOrderDate = formatted;
+        }
+        return formatted;
     }
 
     // generate a summary of the order
@@ -153,7 +242,7 @@ public class Order {
         summary.append("Date: ").append(getFormattedOrderDate()).append("\n\n");
 
         summary.append("Vehicle: ").append(vehicle.toString()).append("\n");
-        summary.append("Base Price: $").append(String.format("%,.2f", vehicle.calculatePrice())).append("\n\n");
+        summary.append("Base Price: $").append(String.format("%,.2f", vehiclePrice)).append("\n\n");
 
         if (!features.isEmpty()) {
             summary.append("Added Features:\n");
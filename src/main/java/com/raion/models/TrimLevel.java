@@ -1,5 +1,9 @@
 package com.raion.models;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 // all the trim levels we offer across our vehicle lineup
 // level 1 (compact sedan): standard, premium, performance
 // level 2 (full-size suv): standard, premium, off-road
@@ -26,6 +30,20 @@ public enum TrimLevel {
     // level 4 only
     FLAGSHIP("Flagship", "the pinnacle of luxury and innovation");
 
+    // every spelling the frontend is known to send, resolved without normalizing first
+    // built once so lookups are a single hash probe and never throw
+    private static final Map<String, TrimLevel> ALIASES = new HashMap<>();
+
+    static {
+        for (TrimLevel trim : values()) {
+            for (String alias : new String[]{trim.name(), trim.displayName}) {
+                ALIASES.put(alias, trim);
+                ALIASES.put(alias.toLowerCase(Locale.ROOT), trim);
+                ALIASES.put(alias.toUpperCase(Locale.ROOT), trim);
+            }
+        }
+    }
+
     private final String displayName;
     private final String description;
 
@@ -59,6 +77,27 @@ public enum TrimLevel {
         return this == FLAGSHIP;
     }
 
+    /**
+     * resolve a trim from its enum name or display name ("Off-Road", "offroad", "OFFROAD")
+     * case, hyphens and spaces don't matter
+     *
+     * @param alias trim name as sent by the client
+     * @return the matching trim, or null if there is none
+     */
+    public static TrimLevel fromAlias(String alias) {
+        if (alias == null) {
+            return null;
+        }
+
+        TrimLevel trim = ALIASES.get(alias);
+        if (trim != null) {
+            return trim;
+        }
+
+        // unusual spelling like "off road" - normalize the same way the names were
+        return ALIASES.get(alias.toUpperCase(Locale.ROOT).replace("-", "").replace(" ", ""));
+    }
+
     @Override
     public String toString() {
         return displayName + " (" + name() + ")";
@@ -1,5 +1,9 @@
 package com.raion.models;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 // all available colors for our vehicles
 // level 1 & 2: white, black, silver, blue
 // level 3: purple, burgundy, green (exclusive performance colors)
@@ -18,6 +22,19 @@ public enum VehicleColor {
     BURGUNDY("Deep Burgundy", "#800020"),
     GREEN("Racing Green", "#00563B");
 
+    // enum names in the casings clients send ("white", "White", "WHITE")
+    // built once so lookups are a single hash probe and never throw
+    private static final Map<String, VehicleColor> NAMES = new HashMap<>();
+
+    static {
+        for (VehicleColor color : values()) {
+            String lower = color.name().toLowerCase(Locale.ROOT);
+            NAMES.put(color.name(), color);
+            NAMES.put(lower, color);
+            NAMES.put(Character.toUpperCase(lower.charAt(0)) + lower.substring(1), color);
+        }
+    }
+
     private final String displayName;
     private final String hexCode;
 
@@ -55,6 +72,22 @@ public enum VehicleColor {
         return isLevel3Color();
     }
 
+    /**
+     * resolve a color from its enum name in any case ("white" -> WHITE)
+     * display names like "Pearl White" are not accepted
+     *
+     * @param name color name as sent by the client
+     * @return the matching color, or null if there is none
+     */
+    public static VehicleColor fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+
+        VehicleColor color = NAMES.get(name);
+        return color != null ? color : NAMES.get(name.toUpperCase(Locale.ROOT));
+    }
+
     @Override
     public String toString() {
         return displayName + " (" + hexCode + ")";
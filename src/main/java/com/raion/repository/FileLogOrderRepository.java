@@ -0,0 +1,385 @@
+package com.raion.repository;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * orders in one append-only log file, <folder>/orders.log (raion.orders.repository.type=log)
+ *
+ * record layout (big-endian):
+ *   int    payload length
+ *   byte   order id length, then the order id (ascii)
+ *   ...    structured order (OrderCodec), the rest of the payload
+ *   int    crc32 of the payload
+ *
+ * a batch of orders is one write at the end of the file (plus one force with
+ * raion.orders.repository.fsync=true). an order saved again is appended again and the
+ * newer record wins. the position of every order's latest record is kept in memory,
+ * so a read is one positional read; the index is rebuilt by scanning the log on open
+ * (about 30 bytes per order, so millions of orders take a second or two) - or, opened
+ * from an OrderSnapshot, taken from the snapshot and only the log after it is scanned
+ *
+ * a torn last record - cut short by a crash, or failing its checksum with nothing after
+ * it - is truncated on open. a damaged record further in is skipped (its order reads back
+ * as its previous save, or not at all) and the open reports it. damage the scan can't
+ * read past, an invalid record length, ends the log: unless the rest of the file is
+ * zeros it is copied aside to orders.log.<position>.damaged before it is truncated, so
+ * the orders after it can still be recovered by hand
+ */
+public class FileLogOrderRepository extends WriteBehindOrderRepository {
+
+    public static final String LOG_FILE = "orders.log";
+
+    // an order id is at most 255 bytes and a structured order a few hundred
+    private static final int MAX_PAYLOAD = 0xffff;
+    private static final int RECORD_OVERHEAD = Integer.BYTES * 2;
+
+    private final Path file;
+    private final boolean fsync;
+    private final FileChannel channel;
+
+    // order id -> payload position << 16 | payload length, of its latest record
+    private final Map<String, Long> index;
+    private volatile long end;
+    // end of the log once every save in it completed (see completedEnd)
+    private volatile long completedEnd;
+
+    /**
+     * open (or create) the log in a folder and index what it holds
+     *
+     * @throws IOException if the log can't be opened or read
+     */
+    public FileLogOrderRepository(Path folder, boolean fsync, int batchSize, int queueCapacity) throws IOException {
+        this(folder, fsync, batchSize, queueCapacity, null);
+    }
+
+    /**
+     * open the log in a folder, its index taken from a snapshot of it (see OrderSnapshot.read)
+     * and only the records after the snapshot scanned
+     *
+     * @param snapshot the folder's snapshot, or null to scan the whole log
+     * @throws IOException if the log can't be opened or read
+     */
+    public FileLogOrderRepository(Path folder, boolean fsync, int batchSize, int queueCapacity,
+                                  OrderSnapshot snapshot) throws IOException {
+        super("log", batchSize, queueCapacity);
+        Files.createDirectories(folder);
+        this.file = folder.resolve(LOG_FILE);
+        this.fsync = fsync;
+        this.index = snapshot != null ? snapshot.positions() : new ConcurrentHashMap<>();
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.end = load(snapshot != null ? snapshot.logEnd() : 0);
+            this.completedEnd = end;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        start();
+    }
+
+    /**
+     * how far the log is complete: every record before it is stored and its save completed,
+     * callbacks included. a snapshot taken at this position plus the records after it
+     * (forEach(from, action)) hold every stored order
+     */
+    public long completedEnd() {
+        return completedEnd;
+    }
+
+    /**
+     * write the position of every order whose latest record starts before a log position
+     * (see OrderSnapshot) - reads the index while batches are written, without stopping them
+     *
+     * layout, per order: short id length, the id (ascii), long position
+     *
+     * @param before completedEnd() as it was read before the call
+     * @return number of positions written
+     */
+    public int writePositions(DataOutputStream out, long before) throws IOException {
+        int count = 0;
+        for (Map.Entry<String, Long> entry : index.entrySet()) {
+            // an order saved again since points past before - the replay from there covers it
+            long location = entry.getValue();
+            if (location >>> 16 < before) {
+                byte[] id = entry.getKey().getBytes(StandardCharsets.US_ASCII);
+                out.writeShort(id.length);
+                out.write(id);
+                out.writeLong(location);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * read back count positions written by writePositions
+     *
+     * @param before the position they were written for - every record starts before it
+     * @throws IOException if they can't be read or one is past before
+     */
+    static Map<String, Long> readPositions(DataInputStream in, int count, long before) throws IOException {
+        Map<String, Long> positions = new ConcurrentHashMap<>(Math.max(16, count));
+        byte[] id = new byte[0xff];
+        for (int i = 0; i < count; i++) {
+            int length = in.readUnsignedShort();
+            if (length > id.length) {
+                throw new IOException("invalid order id length " + length);
+            }
+            in.readFully(id, 0, length);
+            long location = in.readLong();
+            if (location >>> 16 >= before) {
+                throw new IOException("order position past the end of the snapshot: " + (location >>> 16));
+            }
+            positions.put(new String(id, 0, length, StandardCharsets.US_ASCII), location);
+        }
+        return positions;
+    }
+
+    @Override
+    protected void writeBatch(List<StoredOrder> orders) throws IOException {
+        int size = 0;
+        for (StoredOrder order : orders) {
+            size += RECORD_OVERHEAD + payloadLength(order);
+        }
+
+        ByteBuffer records = ByteBuffer.allocate(size);
+        long[] locations = new long[orders.size()];
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < orders.size(); i++) {
+            StoredOrder order = orders.get(i);
+            byte[] id = order.orderId().getBytes(StandardCharsets.US_ASCII);
+            int length = payloadLength(order);
+            records.putInt(length);
+            int payloadStart = records.position();
+            records.put((byte) id.length).put(id).put(order.data());
+
+            crc.reset();
+            crc.update(records.array(), payloadStart, length);
+            records.putInt((int) crc.getValue());
+            locations[i] = (end + payloadStart) << 16 | length;
+        }
+
+        records.flip();
+        long position = end;
+        while (records.hasRemaining()) {
+            position += channel.write(records, position);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+
+        end = position;
+        for (int i = 0; i < orders.size(); i++) {
+            index.put(orders.get(i).orderId(), locations[i]);
+        }
+    }
+
+    @Override
+    protected byte[] read(String orderId) throws IOException {
+        Long location = index.get(orderId);
+        if (location == null) {
+            return null;
+        }
+
+        int length = (int) (location & 0xffff);
+        ByteBuffer record = ByteBuffer.allocate(length + Integer.BYTES);
+        long position = location >>> 16;
+        while (record.hasRemaining()) {
+            if (channel.read(record, position + record.position()) < 0) {
+                throw new EOFException("order log ends inside the record of " + orderId);
+            }
+        }
+
+        byte[] payload = record.array();
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, length);
+        if ((int) crc.getValue() != record.getInt(length)) {
+            throw new IOException("order log record of " + orderId + " fails its checksum");
+        }
+        return Arrays.copyOfRange(payload, 1 + (payload[0] & 0xff), length);
+    }
+
+    // one pass over the log, passing on only each order's latest record
+    @Override
+    public void forEach(Consumer<StoredOrder> action) throws IOException {
+        forEach(0, action);
+    }
+
+    /**
+     * like forEach, for the records from a log position on - the orders saved after a
+     * snapshot (see OrderSnapshot)
+     *
+     * @param from the start of a record, e.g. a snapshot's logEnd
+     */
+    public void forEach(long from, Consumer<StoredOrder> action) throws IOException {
+        long limit = end;
+        long position = from;
+        try (InputStream stream = Files.newInputStream(file)) {
+            stream.skipNBytes(from);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+            byte[] payload = new byte[MAX_PAYLOAD];
+            while (position < limit) {
+                int length = in.readInt();
+                in.readFully(payload, 0, length);
+                in.readInt();
+
+                int idLength = payload[0] & 0xff;
+                String orderId = new String(payload, 1, idLength, StandardCharsets.US_ASCII);
+                Long latest = index.get(orderId);
+                if (latest != null && latest == ((position + Integer.BYTES) << 16 | length)) {
+                    action.accept(StoredOrder.fromData(orderId, Arrays.copyOfRange(payload, 1 + idLength, length)));
+                }
+                position += RECORD_OVERHEAD + length;
+            }
+        }
+    }
+
+    @Override
+    protected void batchCompleted() {
+        completedEnd = end;
+    }
+
+    @Override
+    protected long storedCount() {
+        return index.size();
+    }
+
+    @Override
+    protected void closeStorage() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("✗ failed to close the order log: " + e.getMessage());
+        }
+    }
+
+    @Override
+    protected void addStats(Map<String, Object> stats) {
+        stats.put("file", file.toString());
+        stats.put("bytes", end);
+        stats.put("fsync", fsync);
+    }
+
+    private static int payloadLength(StoredOrder order) {
+        int length = 1 + order.orderId().length() + order.data().length;
+        if (order.orderId().length() > 0xff || length > MAX_PAYLOAD) {
+            throw new IllegalArgumentException("order too large for the order log: " + order.orderId());
+        }
+        return length;
+    }
+
+    // index every record from a position on, skip damaged records, truncate a torn tail,
+    // return where the next record goes
+    private long load(long from) throws IOException {
+        long size = channel.size();
+        long position = from;
+        String problem = null;
+        boolean unreadable = false;
+        List<Long> damaged = new ArrayList<>();
+
+        InputStream stream = Channels.newInputStream(channel.position(from));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+        CRC32 crc = new CRC32();
+        byte[] payload = new byte[MAX_PAYLOAD];
+        while (position < size) {
+            try {
+                int length = in.readInt();
+                if (length < 2 || length > MAX_PAYLOAD) {
+                    problem = "invalid record length " + length;
+                    unreadable = true;
+                    break;
+                }
+                in.readFully(payload, 0, length);
+                int expected = in.readInt();
+                long next = position + RECORD_OVERHEAD + length;
+
+                crc.reset();
+                crc.update(payload, 0, length);
+                int idLength = payload[0] & 0xff;
+                if ((int) crc.getValue() != expected || idLength + 1 > length) {
+                    if (next == size) {
+                        problem = "last record fails its checksum";
+                        break;
+                    }
+                    // the length still leads to the next record - leave this one out
+                    damaged.add(position);
+                    position = next;
+                    continue;
+                }
+
+                String orderId = new String(payload, 1, idLength, StandardCharsets.US_ASCII);
+                index.put(orderId, (position + Integer.BYTES) << 16 | length);
+                position = next;
+            } catch (EOFException e) {
+                problem = "last record is incomplete";
+                break;
+            }
+        }
+
+        if (!damaged.isEmpty()) {
+            System.err.println("✗ order log " + file + ": skipped " + damaged.size()
+                    + (damaged.size() == 1 ? " record that fails" : " records that fail")
+                    + " their checksum, the first at byte " + damaged.get(0)
+                    + " - their orders read back as saved before, or not at all");
+        }
+        if (problem != null) {
+            String dropped = "dropped the last " + (size - position) + " bytes";
+            if (unreadable && !isZeros(position, size)) {
+                Path aside = file.resolveSibling(LOG_FILE + "." + position + ".damaged");
+                copy(position, size, aside);
+                dropped = "moved the last " + (size - position) + " bytes to " + aside;
+            }
+            System.err.println("✗ order log " + file + ": " + problem + " at byte " + position + " - " + dropped);
+            channel.truncate(position);
+        }
+        return position;
+    }
+
+    // true if the log holds only zero bytes from a position on (space a crash left unwritten)
+    private boolean isZeros(long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        for (long position = from; position < to; ) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), to - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) != 0) {
+                    return false;
+                }
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    private void copy(long from, long to, Path target) throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (long position = from; position < to; ) {
+                position += channel.transferTo(position, to - position, out);
+            }
+            out.force(true);
+        }
+    }
+}
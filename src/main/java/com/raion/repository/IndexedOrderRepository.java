@@ -0,0 +1,196 @@
+package com.raion.repository;
+
+import com.raion.models.Order;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * an order repository with an OrderIndex kept next to it - what OrderRepositoryConfiguration
+ * hands out
+ *
+ * every save is indexed before the repository gets it, so a placed order shows up in
+ * get /api/orders right away, like it does for findById. an order that can't be indexed
+ * isn't stored at all (the save fails), and one the repository fails to store is dropped
+ * from the index again - so every stored order is listed, and rebuild refuses to start
+ * with one it can't index rather than leave it out
+ *
+ * findById re-hydrates the order from its off-heap record (see OffHeapOrderStore) and
+ * only asks the backend for orders the index can't rebuild. everything else goes straight
+ * to the backend
+ *
+ * saves count themselves in and out of an epoch (two counters, by the epoch's parity),
+ * so awaitSaves can wait for the saves already under way without stopping new ones -
+ * what OrderSnapshot needs to know every order stored so far is marked stored in the index
+ */
+public class IndexedOrderRepository implements OrderRepository {
+
+    private static final long AWAIT_PARK_NANOS = 50_000;
+
+    /**
+     * where rebuild reads stored orders from
+     */
+    public interface Source {
+        void forEach(Consumer<StoredOrder> action) throws IOException;
+    }
+
+    private final OrderRepository backend;
+    private final OrderIndex index;
+
+    // saves in progress, by epoch parity
+    private final AtomicIntegerArray saving = new AtomicIntegerArray(2);
+    private volatile int epoch;
+    private final ReentrantLock epochLock = new ReentrantLock();
+
+    public IndexedOrderRepository(OrderRepository backend) {
+        this(backend, new OrderIndex());
+    }
+
+    /**
+     * @param index the backend's orders indexed so far, e.g. from an OrderSnapshot
+     */
+    public IndexedOrderRepository(OrderRepository backend, OrderIndex index) {
+        this.backend = backend;
+        this.index = index;
+    }
+
+    /**
+     * index every order the backend holds - once, before the first save
+     *
+     * @throws IOException if the backend can't be read, or holds an order that can't be indexed
+     */
+    public void rebuild() throws IOException {
+        rebuild(backend::forEach);
+    }
+
+    /**
+     * index the orders a source passes on - the orders the index is missing, e.g. the log
+     * after a snapshot
+     *
+     * @throws IOException if the source can't be read, or passes on an order that can't be
+     *                     indexed - it would be missing from get /api/orders, so this stops
+     *                     rather than skip it
+     */
+    public void rebuild(Source source) throws IOException {
+        try {
+            source.forEach(stored -> {
+                try {
+                    index.add(stored);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(new IOException(
+                            "stored order can't be indexed: " + stored.orderId() + " - " + e.getMessage(), e));
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public OrderIndex getIndex() {
+        return index;
+    }
+
+    public OrderRepository getBackend() {
+        return backend;
+    }
+
+    /**
+     * wait until every save that was under way when this was called has indexed its order
+     * and, if the backend had already stored it, marked it stored. saves started after
+     * the call don't hold it up
+     */
+    public void awaitSaves() {
+        epochLock.lock();
+        try {
+            int parity = epoch & 1;
+            epoch++;
+            while (saving.get(parity) != 0) {
+                LockSupport.parkNanos(AWAIT_PARK_NANOS);
+            }
+        } finally {
+            epochLock.unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> save(StoredOrder order) {
+        int parity = enterSave();
+        try {
+            // indexed first: an order that would be stored but never listed isn't stored
+            int row;
+            try {
+                row = index.addPending(order);
+            } catch (IOException e) {
+                System.err.println("✗ order not stored: " + order.orderId() + " can't be indexed - " + e.getMessage());
+                return CompletableFuture.failedFuture(new IllegalArgumentException(e.getMessage(), e));
+            }
+
+            CompletableFuture<Void> stored = backend.save(order);
+            stored.whenComplete((ignored, failure) -> {
+                if (failure != null) {
+                    index.remove(order.orderId(), row);
+                } else {
+                    index.stored(row);
+                }
+            });
+            return stored;
+        } finally {
+            saving.decrementAndGet(parity);
+        }
+    }
+
+    // count a save into the current epoch - checked again after counting, so a save that
+    // raced awaitSaves' switch is counted in the epoch it actually runs in
+    private int enterSave() {
+        while (true) {
+            int parity = epoch & 1;
+            saving.incrementAndGet(parity);
+            if ((epoch & 1) == parity) {
+                return parity;
+            }
+            saving.decrementAndGet(parity);
+        }
+    }
+
+    @Override
+    public Order findById(String orderId) throws IOException {
+        if (orderId == null) {
+            return null;
+        }
+        Order resident = index.findOrder(orderId);
+        return resident != null ? resident : backend.findById(orderId);
+    }
+
+    @Override
+    public void forEach(Consumer<StoredOrder> action) throws IOException {
+        backend.forEach(action);
+    }
+
+    @Override
+    public long count() {
+        return backend.count();
+    }
+
+    @Override
+    public void flush() throws InterruptedException {
+        backend.flush();
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = backend.getStats();
+        stats.put("index", index.getStats());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        backend.close();
+    }
+}
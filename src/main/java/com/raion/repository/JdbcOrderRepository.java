@@ -0,0 +1,206 @@
+package com.raion.repository;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * orders in an sql table (raion.orders.repository.type=jdbc), by default in an embedded
+ * h2 database file under the orders folder - raion.orders.repository.jdbc-url points it
+ * elsewhere
+ *
+ *   orders(order_id primary key, order_date, total_cents, data)
+ *
+ * data is the structured order (OrderCodec); date and total are columns of their own so
+ * the table can be queried with plain sql. plain jdbc with two connections: the writer
+ * thread owns one and stores each batch as one prepared MERGE batch and one commit, and
+ * reads share the other through a prepared SELECT
+ */
+public class JdbcOrderRepository extends WriteBehindOrderRepository {
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS orders ("
+            + "order_id VARCHAR(255) PRIMARY KEY, "
+            + "order_date TIMESTAMP NOT NULL, "
+            + "total_cents BIGINT NOT NULL, "
+            + "data VARBINARY(1024) NOT NULL)";
+    private static final String UPSERT = "MERGE INTO orders (order_id, order_date, total_cents, data) "
+            + "KEY (order_id) VALUES (?, ?, ?, ?)";
+    private static final String SELECT = "SELECT data FROM orders WHERE order_id = ?";
+    private static final String COUNT = "SELECT COUNT(*) FROM orders";
+    private static final String SELECT_ALL = "SELECT order_id, order_date, total_cents, data FROM orders";
+
+    // the url reduced to driver and database name, for logs and stats
+    private final String database;
+
+    // writer thread only
+    private final Connection writeConnection;
+    private final PreparedStatement upsert;
+
+    // shared by readers - a jdbc connection isn't meant for concurrent statements
+    private final ReentrantLock readLock = new ReentrantLock();
+    private final Connection readConnection;
+    private final PreparedStatement select;
+    private final PreparedStatement count;
+
+    /**
+     * connect, create the table if needed and start the writer
+     *
+     * @throws IOException if the database can't be opened
+     */
+    public JdbcOrderRepository(String url, int batchSize, int queueCapacity) throws IOException {
+        super("jdbc", batchSize, queueCapacity);
+        this.database = describe(url);
+
+        Connection writer = null;
+        Connection reader = null;
+        try {
+            writer = DriverManager.getConnection(url);
+            try (Statement statement = writer.createStatement()) {
+                statement.execute(CREATE_TABLE);
+            }
+            writer.setAutoCommit(false);
+            reader = DriverManager.getConnection(url);
+
+            this.writeConnection = writer;
+            this.upsert = writer.prepareStatement(UPSERT);
+            this.readConnection = reader;
+            this.select = reader.prepareStatement(SELECT);
+            this.count = reader.prepareStatement(COUNT);
+        } catch (SQLException e) {
+            closeQuietly(reader);
+            closeQuietly(writer);
+            throw new IOException("could not open the order database " + database + ": " + e.getMessage(), e);
+        }
+        start();
+    }
+
+    @Override
+    protected void writeBatch(List<StoredOrder> orders) throws IOException {
+        try {
+            for (StoredOrder order : orders) {
+                upsert.setString(1, order.orderId());
+                upsert.setTimestamp(2, Timestamp.valueOf(order.orderDate()));
+                upsert.setLong(3, order.totalCents());
+                upsert.setBytes(4, order.data());
+                upsert.addBatch();
+            }
+            upsert.executeBatch();
+            writeConnection.commit();
+        } catch (SQLException e) {
+            try {
+                upsert.clearBatch();
+                writeConnection.rollback();
+            } catch (SQLException rollback) {
+                e.addSuppressed(rollback);
+            }
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected byte[] read(String orderId) throws IOException {
+        readLock.lock();
+        try {
+            select.setString(1, orderId);
+            try (ResultSet result = select.executeQuery()) {
+                return result.next() ? result.getBytes(1) : null;
+            }
+        } catch (SQLException e) {
+            throw new IOException("could not read order " + orderId + ": " + e.getMessage(), e);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<StoredOrder> action) throws IOException {
+        readLock.lock();
+        try (Statement statement = readConnection.createStatement();
+             ResultSet result = statement.executeQuery(SELECT_ALL)) {
+            while (result.next()) {
+                action.accept(new StoredOrder(result.getString(1), result.getTimestamp(2).toLocalDateTime(),
+                        result.getLong(3), result.getBytes(4)));
+            }
+        } catch (SQLException e) {
+            throw new IOException("could not read the stored orders: " + e.getMessage(), e);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    protected long storedCount() {
+        readLock.lock();
+        try (ResultSet result = count.executeQuery()) {
+            return result.next() ? result.getLong(1) : 0;
+        } catch (SQLException e) {
+            System.err.println("✗ could not count orders: " + e.getMessage());
+            return 0;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    protected void closeStorage() {
+        closeQuietly(readConnection);
+        closeQuietly(writeConnection);
+    }
+
+    @Override
+    protected void addStats(Map<String, Object> stats) {
+        stats.put("database", database);
+    }
+
+    /**
+     * a jdbc url without what it may carry besides the database - host, port, file path,
+     * user and password - e.g. jdbc:postgresql://app:secret@db:5432/orders -> jdbc:postgresql:orders
+     *
+     * @param url jdbc url
+     * @return jdbc:<driver>:<database name>, or just jdbc:<driver> if there is no name
+     */
+    static String describe(String url) {
+        if (url == null || !url.startsWith("jdbc:")) {
+            return "jdbc";
+        }
+        String rest = url.substring("jdbc:".length());
+        int driverEnd = rest.indexOf(':');
+        if (driverEnd <= 0) {
+            return "jdbc";
+        }
+        String driver = rest.substring(0, driverEnd);
+
+        // the name is the last path or colon separated part before any parameters
+        String location = rest.substring(driverEnd + 1);
+        for (char separator : new char[]{';', '?'}) {
+            int parameters = location.indexOf(separator);
+            if (parameters >= 0) {
+                location = location.substring(0, parameters);
+            }
+        }
+        int nameStart = Math.max(Math.max(location.lastIndexOf('/'), location.lastIndexOf('\\')),
+                Math.max(location.lastIndexOf(':'), location.lastIndexOf('@'))) + 1;
+        String name = location.substring(nameStart);
+        return name.isEmpty() ? "jdbc:" + driver : "jdbc:" + driver + ":" + name;
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("✗ failed to close the order database: " + e.getMessage());
+        }
+    }
+}
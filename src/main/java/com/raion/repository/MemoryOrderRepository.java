@@ -0,0 +1,64 @@
+package com.raion.repository;
+
+import com.raion.models.Order;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * orders in a map - nothing survives a restart (raion.orders.repository.type=memory)
+ *
+ * for tests and benchmarks; saving is a map put, so there is nothing to queue
+ */
+public class MemoryOrderRepository implements OrderRepository {
+
+    private final Map<String, StoredOrder> orders = new ConcurrentHashMap<>();
+    private final AtomicLong saved = new AtomicLong();
+
+    @Override
+    public CompletableFuture<Void> save(StoredOrder order) {
+        orders.put(order.orderId(), order);
+        saved.incrementAndGet();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public Order findById(String orderId) throws IOException {
+        StoredOrder stored = orderId != null ? orders.get(orderId) : null;
+        return stored != null ? stored.toOrder() : null;
+    }
+
+    @Override
+    public void forEach(Consumer<StoredOrder> action) {
+        orders.values().forEach(action);
+    }
+
+    @Override
+    public long count() {
+        return orders.size();
+    }
+
+    @Override
+    public void flush() {
+        // every save is stored before it returns
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("type", "memory");
+        stats.put("orders", orders.size());
+        stats.put("saved", saved.get());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        orders.clear();
+    }
+}
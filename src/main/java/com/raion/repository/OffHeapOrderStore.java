@@ -0,0 +1,472 @@
+package com.raion.repository;
+
+import com.raion.models.Order;
+import com.raion.services.OrderCodec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * resident orders outside the java heap - the record store behind OrderIndex
+ *
+ * every order is one fixed 64-byte record in direct buffers allocated a megabyte
+ * (CHUNK_RECORDS records) at a time, addressed by row:
+ *    0  long      order date, seconds since the epoch (local time, read as utc)
+ *    8  int       order total in cents
+ *   12  int       vehicle price in cents, or -1 for a version 1 structured order
+ *   16  byte x 4  config code: signature code (0 for custom), level, trim code, color code
+ *   20  byte      feature count, or NOT_RESIDENT if the order has more than MAX_FEATURES
+ *   21  byte      order id length
+ *   22  byte x 15 feature codes (FeatureCatalog)
+ *   37  byte x 27 order id (ascii)
+ *
+ * order ids map to rows through an open-addressing hash table (linear probing) that
+ * is off-heap as well: one long per slot, the id's hash in the high half and row + 1 in
+ * the low half. so however many orders are resident, the heap holds a handful of buffer
+ * objects and nothing for the garbage collector to trace
+ *
+ * the accessors read one field of one row straight from the buffers and allocate
+ * nothing; toOrder re-hydrates the full Order on demand, through OrderCodec, from the
+ * same fields the structured order held - so it is priced and checked exactly like an
+ * order read from the repository
+ *
+ * rows are only appended and a written record never changes, so a snapshot (see
+ * OrderSnapshot) copies the records below rows() as they are, and loading one puts them
+ * back byte for byte and re-points their ids. a re-saved id leaves its old record behind
+ * until the index is rebuilt (see OrderIndex for the memory that adds up to). not
+ * thread-safe - OrderIndex guards it
+ */
+public class OffHeapOrderStore {
+
+    public static final int RECORD_SIZE = 64;
+    public static final int MAX_ORDER_ID_LENGTH = 27;
+    public static final int MAX_FEATURES = 15;
+
+    private static final int CHUNK_SHIFT = 14;
+    private static final int CHUNK_RECORDS = 1 << CHUNK_SHIFT;
+    private static final int NOT_RESIDENT = 0xff;
+
+    private static final int DATE = 0;
+    private static final int TOTAL = 8;
+    private static final int VEHICLE = 12;
+    private static final int SIGNATURE = 16;
+    private static final int LEVEL = 17;
+    private static final int TRIM = 18;
+    private static final int COLOR = 19;
+    private static final int FEATURE_COUNT = 20;
+    private static final int ID_LENGTH = 21;
+    private static final int FEATURES = 22;
+    private static final int ID = FEATURES + MAX_FEATURES;
+
+    private ByteBuffer[] chunks = new ByteBuffer[16];
+    private int rows;
+
+    private ByteBuffer table;
+    private int tableMask;
+    private int mapped;
+
+    public OffHeapOrderStore() {
+        this.table = allocate(Long.BYTES << 16);
+        this.tableMask = (1 << 16) - 1;
+    }
+
+    /**
+     * write a new record
+     *
+     * @param encoded the structured order the header was read from (feature codes are its last bytes)
+     * @param level   vehicle level - for a signature, the signature vehicle's
+     * @param trim    trim code - likewise
+     * @param color   color code - likewise
+     * @return the record's row
+     * @throws IllegalArgumentException if the order id is longer than MAX_ORDER_ID_LENGTH or not ascii
+     */
+    public int append(String orderId, OrderCodec.Header header, int level, int trim, int color, byte[] encoded) {
+        if (orderId.length() > MAX_ORDER_ID_LENGTH) {
+            throw new IllegalArgumentException("order id longer than " + MAX_ORDER_ID_LENGTH + " characters: " + orderId);
+        }
+
+        int row = rows;
+        int chunk = row >>> CHUNK_SHIFT;
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        if (chunks[chunk] == null) {
+            chunks[chunk] = allocate(CHUNK_RECORDS * RECORD_SIZE);
+        }
+
+        ByteBuffer records = chunks[chunk];
+        int base = offset(row);
+        for (int i = 0; i < orderId.length(); i++) {
+            char c = orderId.charAt(i);
+            if (c > 0x7f) {
+                throw new IllegalArgumentException("order id is not ascii: " + orderId);
+            }
+            records.put(base + ID + i, (byte) c);
+        }
+        records.putLong(base + DATE, header.orderEpochSecond());
+        records.putInt(base + TOTAL, header.totalCents());
+        records.putInt(base + VEHICLE, header.vehicleCents());
+        records.put(base + SIGNATURE, (byte) header.signature());
+        records.put(base + LEVEL, (byte) level);
+        records.put(base + TRIM, (byte) trim);
+        records.put(base + COLOR, (byte) color);
+        records.put(base + ID_LENGTH, (byte) orderId.length());
+
+        int features = header.featureCount();
+        if (features <= MAX_FEATURES) {
+            records.put(base + FEATURE_COUNT, (byte) features);
+            records.put(base + FEATURES, encoded, encoded.length - features, features);
+        } else {
+            records.put(base + FEATURE_COUNT, (byte) NOT_RESIDENT);
+        }
+
+        rows++;
+        return row;
+    }
+
+    /**
+     * point an order id at a row
+     *
+     * @return the row it pointed at before, or -1
+     */
+    public int put(String orderId, int row) {
+        if ((mapped + 1) * 2 > tableMask + 1) {
+            resize();
+        }
+
+        int hash = hash(orderId);
+        for (int slot = hash & tableMask; ; slot = (slot + 1) & tableMask) {
+            long entry = table.getLong(slot * Long.BYTES);
+            if (entry == 0) {
+                table.putLong(slot * Long.BYTES, entry(hash, row));
+                mapped++;
+                return -1;
+            }
+            int current = (int) entry - 1;
+            if ((int) (entry >>> 32) == hash && idEquals(current, orderId)) {
+                table.putLong(slot * Long.BYTES, entry(hash, row));
+                return current;
+            }
+        }
+    }
+
+    /**
+     * point a record's own order id at it - put(orderId(row), row) without the string
+     *
+     * @return the row it pointed at before, or -1
+     */
+    public int put(int row) {
+        if ((mapped + 1) * 2 > tableMask + 1) {
+            resize();
+        }
+
+        int hash = hash(row);
+        for (int slot = hash & tableMask; ; slot = (slot + 1) & tableMask) {
+            long entry = table.getLong(slot * Long.BYTES);
+            if (entry == 0) {
+                table.putLong(slot * Long.BYTES, entry(hash, row));
+                mapped++;
+                return -1;
+            }
+            int current = (int) entry - 1;
+            if ((int) (entry >>> 32) == hash && idEquals(current, row)) {
+                table.putLong(slot * Long.BYTES, entry(hash, row));
+                return current;
+            }
+        }
+    }
+
+    /**
+     * the row an order id points at, or -1
+     */
+    public int find(String orderId) {
+        int hash = hash(orderId);
+        for (int slot = hash & tableMask; ; slot = (slot + 1) & tableMask) {
+            long entry = table.getLong(slot * Long.BYTES);
+            if (entry == 0) {
+                return -1;
+            }
+            int row = (int) entry - 1;
+            if ((int) (entry >>> 32) == hash && idEquals(row, orderId)) {
+                return row;
+            }
+        }
+    }
+
+    /**
+     * forget an order id, if it still points at the row
+     *
+     * @return true if it did
+     */
+    public boolean remove(String orderId, int row) {
+        int hash = hash(orderId);
+        int slot = hash & tableMask;
+        while (true) {
+            long entry = table.getLong(slot * Long.BYTES);
+            if (entry == 0) {
+                return false;
+            }
+            if ((int) (entry >>> 32) == hash && idEquals((int) entry - 1, orderId)) {
+                if ((int) entry - 1 != row) {
+                    return false;
+                }
+                break;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+
+        // backward shift: move later entries of the probe run into the gap so lookups still find them
+        int gap = slot;
+        for (int next = (gap + 1) & tableMask; ; next = (next + 1) & tableMask) {
+            long entry = table.getLong(next * Long.BYTES);
+            if (entry == 0) {
+                break;
+            }
+            int home = (int) (entry >>> 32) & tableMask;
+            boolean movable = gap <= next ? (home <= gap || home > next) : (home <= gap && home > next);
+            if (movable) {
+                table.putLong(gap * Long.BYTES, entry);
+                gap = next;
+            }
+        }
+        table.putLong(gap * Long.BYTES, 0);
+        mapped--;
+        return true;
+    }
+
+    /**
+     * number of records written (including replaced ones)
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * direct memory held by records and the id table
+     */
+    public long offHeapBytes() {
+        long bytes = table.capacity();
+        for (ByteBuffer chunk : chunks) {
+            bytes += chunk != null ? chunk.capacity() : 0;
+        }
+        return bytes;
+    }
+
+    /**
+     * the record buffers as they are now - with rows() read at the same time, what a
+     * snapshot copies (writeRows) once the lock is released: later appends only write
+     * past those rows
+     */
+    ByteBuffer[] chunks() {
+        return chunks.clone();
+    }
+
+    /**
+     * copy the first rows records of chunks() out, as they are
+     */
+    static void writeRows(DataOutputStream out, ByteBuffer[] chunks, int rows) throws IOException {
+        byte[] buffer = new byte[CHUNK_RECORDS * RECORD_SIZE];
+        for (int chunk = 0; chunk << CHUNK_SHIFT < rows; chunk++) {
+            int bytes = Math.min(rows - (chunk << CHUNK_SHIFT), CHUNK_RECORDS) * RECORD_SIZE;
+            chunks[chunk].get(0, buffer, 0, bytes);
+            out.write(buffer, 0, bytes);
+        }
+    }
+
+    /**
+     * fill an empty store with rows records written by writeRows. ids aren't mapped - put(row)
+     * the rows that should be found (the id table is sized for all of them)
+     */
+    void readRows(DataInputStream in, int rows) throws IOException {
+        if (this.rows != 0) {
+            throw new IllegalStateException("records can only be read into an empty store");
+        }
+
+        byte[] buffer = new byte[CHUNK_RECORDS * RECORD_SIZE];
+        for (int chunk = 0; chunk << CHUNK_SHIFT < rows; chunk++) {
+            if (chunk == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunks.length * 2);
+            }
+            int bytes = Math.min(rows - (chunk << CHUNK_SHIFT), CHUNK_RECORDS) * RECORD_SIZE;
+            in.readFully(buffer, 0, bytes);
+            chunks[chunk] = allocate(CHUNK_RECORDS * RECORD_SIZE);
+            chunks[chunk].put(0, buffer, 0, bytes);
+        }
+        this.rows = rows;
+
+        // room for every row's id up front, rather than doubling the table along the way
+        int slots = tableMask + 1;
+        while (rows * 2L > slots) {
+            slots *= 2;
+        }
+        if (slots > tableMask + 1) {
+            table = allocate(Long.BYTES * slots);
+            tableMask = slots - 1;
+        }
+    }
+
+    public long epochSecond(int row) {
+        return chunk(row).getLong(offset(row) + DATE);
+    }
+
+    public int totalCents(int row) {
+        return chunk(row).getInt(offset(row) + TOTAL);
+    }
+
+    /**
+     * signature code, level, trim code and color code packed into one int, in that order
+     */
+    public int configCode(int row) {
+        return signature(row) << 24 | level(row) << 16 | trim(row) << 8 | color(row);
+    }
+
+    public int signature(int row) {
+        return chunk(row).get(offset(row) + SIGNATURE) & 0xff;
+    }
+
+    public int level(int row) {
+        return chunk(row).get(offset(row) + LEVEL);
+    }
+
+    public int trim(int row) {
+        return chunk(row).get(offset(row) + TRIM) & 0xff;
+    }
+
+    public int color(int row) {
+        return chunk(row).get(offset(row) + COLOR) & 0xff;
+    }
+
+    public String orderId(int row) {
+        ByteBuffer records = chunk(row);
+        int base = offset(row);
+        byte[] id = new byte[records.get(base + ID_LENGTH)];
+        records.get(base + ID, id);
+        return new String(id, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * true if the record holds the order's features, so toOrder can rebuild it
+     */
+    public boolean isResident(int row) {
+        return (chunk(row).get(offset(row) + FEATURE_COUNT) & 0xff) != NOT_RESIDENT;
+    }
+
+    /**
+     * the structured order of a record (see OrderCodec), or null if it isn't resident
+     */
+    public byte[] encode(int row) {
+        ByteBuffer records = chunk(row);
+        int base = offset(row);
+        int features = records.get(base + FEATURE_COUNT) & 0xff;
+        if (features == NOT_RESIDENT) {
+            return null;
+        }
+
+        byte[] codes = new byte[features];
+        records.get(base + FEATURES, codes);
+        return OrderCodec.encode(new OrderCodec.Header(signature(row), level(row), trim(row), color(row),
+                epochSecond(row), records.getInt(base + VEHICLE), totalCents(row), features), codes);
+    }
+
+    /**
+     * re-hydrate the order of a record
+     *
+     * @return the order, or null if the record doesn't hold its features
+     * @throws IOException if it no longer decodes (see OrderCodec.decode)
+     */
+    public Order toOrder(int row) throws IOException {
+        byte[] encoded = encode(row);
+        return encoded != null ? OrderCodec.decode(orderId(row), encoded) : null;
+    }
+
+    private boolean idEquals(int row, String orderId) {
+        ByteBuffer records = chunk(row);
+        int base = offset(row);
+        if (records.get(base + ID_LENGTH) != orderId.length()) {
+            return false;
+        }
+        for (int i = 0; i < orderId.length(); i++) {
+            if (records.get(base + ID + i) != (byte) orderId.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean idEquals(int row, int other) {
+        ByteBuffer records = chunk(row);
+        ByteBuffer otherRecords = chunk(other);
+        int base = offset(row);
+        int otherBase = offset(other);
+        int length = records.get(base + ID_LENGTH);
+        if (otherRecords.get(otherBase + ID_LENGTH) != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (records.get(base + ID + i) != otherRecords.get(otherBase + ID + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // twice the slots, every entry re-inserted at its new home
+    private void resize() {
+        ByteBuffer old = table;
+        int oldSlots = tableMask + 1;
+        table = allocate(Long.BYTES * oldSlots * 2);
+        tableMask = oldSlots * 2 - 1;
+        for (int i = 0; i < oldSlots; i++) {
+            long entry = old.getLong(i * Long.BYTES);
+            if (entry != 0) {
+                int slot = (int) (entry >>> 32) & tableMask;
+                while (table.getLong(slot * Long.BYTES) != 0) {
+                    slot = (slot + 1) & tableMask;
+                }
+                table.putLong(slot * Long.BYTES, entry);
+            }
+        }
+    }
+
+    private ByteBuffer chunk(int row) {
+        return chunks[row >>> CHUNK_SHIFT];
+    }
+
+    private static int offset(int row) {
+        return (row & (CHUNK_RECORDS - 1)) * RECORD_SIZE;
+    }
+
+    private static long entry(int hash, int row) {
+        return (long) hash << 32 | (row + 1L);
+    }
+
+    // string hashes of similar ids differ only in their low bits - spread them over the table
+    private static int hash(String orderId) {
+        return spread(orderId.hashCode());
+    }
+
+    // the same hash, from the ascii id in a record (String.hashCode, byte by byte)
+    private int hash(int row) {
+        ByteBuffer records = chunk(row);
+        int base = offset(row);
+        int h = 0;
+        for (int i = 0, length = records.get(base + ID_LENGTH); i < length; i++) {
+            h = 31 * h + records.get(base + ID + i);
+        }
+        return spread(h);
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,662 @@
+package com.raion.repository;
+
+import com.raion.models.Order;
+import com.raion.models.TrimLevel;
+import com.raion.models.Vehicle;
+import com.raion.models.VehicleColor;
+import com.raion.services.FeatureCatalog;
+import com.raion.services.OrderCodec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * secondary indexes over the stored orders, for listing them by date, vehicle and total
+ * without reading the repository (see IndexedOrderRepository, get /api/orders)
+ *
+ * every indexed order gets a row number and a fixed-size record in an OffHeapOrderStore,
+ * outside the java heap - so millions of resident orders add nothing for the garbage
+ * collector to trace, and recent orders can be read back without the repository. on top
+ * of the records, on the heap but made of primitive arrays:
+ * - order date and total: SortedKeys, sorted (key, row) arrays for range lookups
+ * - level, trim, color and signature: one BitSet of rows per value
+ *
+ * a query starts from whichever index narrows it down most - a date range walked newest
+ * first until the page is full, the rows in a total range, or the AND of the value
+ * bitmaps - and checks the remaining conditions against the columns. results come
+ * newest first; the cursor of a page is the position of its last order, so paging stays
+ * stable while orders are added
+ *
+ * the index is kept up to date on every save and rebuilt from the repository at startup.
+ * saving an order id again gives it a new row; the old row stays in the range indexes
+ * but is no longer live, so queries skip it
+ *
+ * rows are never reclaimed while running - other rows, pages' cursors and saves under way
+ * hold row numbers - so memory grows with every save, re-saves included: 64 bytes of
+ * direct memory per row plus 16 to 32 per order in the id table, and about 25 bytes per
+ * row of heap in the range indexes and bitmaps. a full rebuild only indexes each order's
+ * latest save, and a snapshot with more dead rows than orders isn't loaded (see
+ * OrderSnapshot.read), so a restart brings it back to about one row per order. getStats
+ * reports rows, deadRows and offHeapBytes
+ *
+ * writeSnapshot writes the records and range indexes out for OrderSnapshot without holding
+ * up saves: under the lock it only takes rows(), the buffers and a copy of the live rows,
+ * since nothing below rows() is ever written again (see OffHeapOrderStore, SortedKeys).
+ * orders still being saved (addPending, until stored) are left out - the repository may
+ * yet fail to store them. readSnapshot loads it back and rebuilds the bitmaps and the id
+ * table from the records
+ */
+public class OrderIndex {
+
+    public static final int MAX_LEVEL = 4;
+
+    // signature bitmap slot for custom vehicles
+    private static final int CUSTOM = 0;
+
+    /**
+     * what to list - every bound is optional
+     *
+     * @param fromEpochSecond first order date included (local time, read as utc), or Long.MIN_VALUE
+     * @param toEpochSecond   first order date excluded, or Long.MAX_VALUE
+     * @param level           vehicle level, or 0 for any
+     * @param trim            trim, or null for any
+     * @param color           color, or null for any
+     * @param signature       signature id, "none" for custom vehicles only, or null for any
+     * @param minTotalCents   smallest total included, or 0
+     * @param maxTotalCents   largest total included, or Long.MAX_VALUE
+     */
+    public record Query(long fromEpochSecond, long toEpochSecond, int level, TrimLevel trim, VehicleColor color,
+                        String signature, long minTotalCents, long maxTotalCents) {
+
+        public static final Query ALL = new Query(Long.MIN_VALUE, Long.MAX_VALUE, 0, null, null, null,
+                0, Long.MAX_VALUE);
+    }
+
+    /**
+     * one listed order
+     *
+     * @param signature signature id, or null for a custom vehicle
+     */
+    public record Entry(String orderId, LocalDateTime orderDate, int level, TrimLevel trim, VehicleColor color,
+                        String signature, long totalCents) {
+    }
+
+    /**
+     * one page of results, newest first
+     *
+     * @param nextCursor cursor for the next page, or null if this is the last one
+     */
+    public record Page(List<Entry> orders, String nextCursor) {
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final OffHeapOrderStore records = new OffHeapOrderStore();
+    private final BitSet live = new BitSet();
+    private int liveCount;
+    // rows of orders the repository hasn't confirmed yet (addPending)
+    private final BitSet pending = new BitSet();
+
+    private final SortedKeys byDate = new SortedKeys();
+    private final SortedKeys byTotal = new SortedKeys();
+    private final BitSet[] byLevel = bitmaps(MAX_LEVEL);
+    private final BitSet[] byTrim = bitmaps(FeatureCatalog.trimCount());
+    private final BitSet[] byColor = bitmaps(FeatureCatalog.colorCount());
+    private final BitSet[] bySignature = bitmaps(FeatureCatalog.signatureCount());
+
+    // level, trim code and color code of each signature vehicle, by signature code
+    private final byte[][] signatureVehicles = new byte[FeatureCatalog.signatureCount() + 1][];
+
+    public OrderIndex() {
+        for (int code = 1; code < signatureVehicles.length; code++) {
+            Vehicle vehicle = FeatureCatalog.createSignature(code);
+            signatureVehicles[code] = new byte[]{(byte) vehicle.getLevel(),
+                    (byte) FeatureCatalog.trimCode(vehicle.getTrimLevel()),
+                    (byte) FeatureCatalog.colorCode(vehicle.getColor())};
+        }
+    }
+
+    /**
+     * index an order the repository holds, as it is read back at startup - reads only the
+     * structured order's header and feature codes
+     *
+     * @return the order's row, for remove(orderId, row)
+     * @throws IOException if the structured order can't be read or its order id is too long
+     *                     for the store (OffHeapOrderStore.MAX_ORDER_ID_LENGTH)
+     */
+    public int add(StoredOrder stored) throws IOException {
+        return add(stored, false);
+    }
+
+    /**
+     * index an order as it is saved, before the repository stored it: it is listed right
+     * away but left out of snapshots until stored(row), or remove(orderId, row) if the
+     * repository fails to store it
+     *
+     * @return the order's row
+     * @throws IOException as for add
+     */
+    public int addPending(StoredOrder stored) throws IOException {
+        return add(stored, true);
+    }
+
+    /**
+     * the repository stored the order of a row added with addPending
+     */
+    public void stored(int row) {
+        lock.writeLock().lock();
+        try {
+            pending.clear(row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int add(StoredOrder stored, boolean pendingRow) throws IOException {
+        OrderCodec.Header header = OrderCodec.readHeader(stored.data());
+        int level = header.level();
+        int trim = header.trim();
+        int color = header.color();
+        if (header.signature() != 0) {
+            byte[] vehicle = header.signature() < signatureVehicles.length ? signatureVehicles[header.signature()] : null;
+            if (vehicle == null) {
+                throw new IOException("stored order has an unknown signature: " + stored.orderId());
+            }
+            level = vehicle[0];
+            trim = vehicle[1];
+            color = vehicle[2];
+        }
+        try {
+            return add(stored.orderId(), header, level, trim, color, stored.data(), pendingRow);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * drop an order from the index, if its current row is still the given one
+     * (a save that failed after a newer save of the same id leaves the newer one)
+     */
+    public void remove(String orderId, int row) {
+        lock.writeLock().lock();
+        try {
+            pending.clear(row);
+            if (records.remove(orderId, row)) {
+                retire(row);
+                liveCount--;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * number of orders indexed
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * number of rows no longer live - the earlier saves of re-saved or removed orders
+     */
+    public int deadRows() {
+        lock.readLock().lock();
+        try {
+            return records.rows() - liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * the order saved under an id, re-hydrated from its record
+     *
+     * @return the order, or null if it isn't indexed or has more features than a record holds
+     * @throws IOException if it no longer decodes (see OrderCodec.decode)
+     */
+    public Order findOrder(String orderId) throws IOException {
+        byte[] encoded;
+        lock.readLock().lock();
+        try {
+            int row = records.find(orderId);
+            encoded = row >= 0 ? records.encode(row) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+        return encoded != null ? OrderCodec.decode(orderId, encoded) : null;
+    }
+
+    /**
+     * one page of the orders matching a query, newest first
+     *
+     * @param cursor nextCursor of the previous page, or null for the first page
+     * @param limit  page size
+     * @throws IllegalArgumentException for an unknown signature or a malformed cursor
+     */
+    public Page query(Query query, String cursor, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        int signature = signatureSlot(query.signature());
+        long[] after = cursor != null ? decodeCursor(cursor) : null;
+        long beforeKey = after != null ? after[0] : query.toEpochSecond();
+        int beforeRow = after != null ? (int) after[1] : 0;
+        if (after != null && beforeKey >= query.toEpochSecond()) {
+            beforeKey = query.toEpochSecond();
+            beforeRow = 0;
+        }
+        long maxTotalExclusive = query.maxTotalCents() == Long.MAX_VALUE ? Long.MAX_VALUE : query.maxTotalCents() + 1;
+
+        lock.readLock().lock();
+        try {
+            // the value conditions as one bitmap of live rows
+            BitSet matching = live;
+            boolean byValue = query.level() != 0 || query.trim() != null || query.color() != null || signature >= 0;
+            if (byValue) {
+                matching = (BitSet) live.clone();
+                and(matching, byLevel, query.level() != 0 ? query.level() : -1);
+                and(matching, byTrim, query.trim() != null ? FeatureCatalog.trimCode(query.trim()) : -1);
+                and(matching, byColor, query.color() != null ? FeatureCatalog.colorCode(query.color()) : -1);
+                and(matching, bySignature, signature);
+            }
+
+            // plan: walking the date range costs about as many rows as it takes to fill the
+            // page; collecting from the total range or the bitmap costs every row in it
+            boolean byTotalRange = query.minTotalCents() > 0 || maxTotalExclusive != Long.MAX_VALUE;
+            long driver = liveCount;
+            if (byValue) {
+                driver = matching.cardinality();
+            }
+            long totalCount = byTotalRange ? byTotal.count(query.minTotalCents(), maxTotalExclusive) : liveCount;
+            driver = Math.min(driver, totalCount);
+            long dateCount = byDate.count(query.fromEpochSecond(), beforeKey);
+            long walk = Math.min(dateCount, (limit + 1L) * liveCount / Math.max(driver, 1));
+
+            int[] found = new int[limit + 1];
+            int count;
+            if (walk <= driver) {
+                count = walkDates(query, matching, maxTotalExclusive, beforeKey, beforeRow, found);
+            } else {
+                count = collect(query, matching, byTotalRange && totalCount <= driver, maxTotalExclusive,
+                        beforeKey, beforeRow, found);
+            }
+
+            int pageSize = Math.min(count, limit);
+            List<Entry> page = new ArrayList<>(pageSize);
+            for (int i = 0; i < pageSize; i++) {
+                page.add(entry(found[i]));
+            }
+            String next = count > limit ? encodeCursor(records.epochSecond(found[limit - 1]), found[limit - 1]) : null;
+            return new Page(page, next);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * write the index as it is now, but for pending orders (see the class comment)
+     *
+     * layout: byte order of the records (1 big-endian, 0 little-endian), int rows, int
+     * orders, the records, the orders' rows as a bitmap (int words, then the words), the
+     * date index, the total index
+     *
+     * @return number of orders written
+     */
+    public int writeSnapshot(DataOutputStream out) throws IOException {
+        int rows;
+        ByteBuffer[] chunks;
+        BitSet included;
+        SortedKeys.View dates;
+        SortedKeys.View totals;
+        lock.readLock().lock();
+        try {
+            rows = records.rows();
+            chunks = records.chunks();
+            included = (BitSet) live.clone();
+            included.andNot(pending);
+            dates = byDate.view();
+            totals = byTotal.view();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        int orders = included.cardinality();
+        out.writeByte(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 1 : 0);
+        out.writeInt(rows);
+        out.writeInt(orders);
+        OffHeapOrderStore.writeRows(out, chunks, rows);
+        long[] words = included.toLongArray();
+        out.writeInt(words.length);
+        OrderSnapshot.writeLongs(out, words, words.length);
+        SortedKeys.write(out, dates);
+        SortedKeys.write(out, totals);
+        return orders;
+    }
+
+    /**
+     * an index loaded from what writeSnapshot wrote
+     *
+     * @throws IOException if it can't be read, was written with the other byte order, or
+     *                     doesn't hold together
+     */
+    public static OrderIndex readSnapshot(DataInputStream in) throws IOException {
+        boolean bigEndian = in.readByte() == 1;
+        if (bigEndian != (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN)) {
+            throw new IOException("order index snapshot has records of the other byte order");
+        }
+        int rows = in.readInt();
+        int orders = in.readInt();
+        if (rows < 0 || orders < 0 || orders > rows) {
+            throw new IOException("invalid order index snapshot: " + orders + " orders in " + rows + " rows");
+        }
+
+        OrderIndex index = new OrderIndex();
+        index.records.readRows(in, rows);
+        int wordCount = in.readInt();
+        if (wordCount < 0 || wordCount > (rows + 63) / 64) {
+            throw new IOException("invalid order index snapshot: " + wordCount + " bitmap words for " + rows + " rows");
+        }
+        long[] words = new long[wordCount];
+        OrderSnapshot.readLongs(in, words, wordCount);
+        index.byDate.read(in, rows);
+        index.byTotal.read(in, rows);
+
+        BitSet included = BitSet.valueOf(words);
+        for (int row = included.nextSetBit(0); row >= 0; row = included.nextSetBit(row + 1)) {
+            index.restore(row);
+        }
+        if (index.liveCount != orders) {
+            throw new IOException("invalid order index snapshot: " + index.liveCount + " orders, expected " + orders);
+        }
+        return index;
+    }
+
+    // a row read from a snapshot becomes live again - its id mapped, its bitmaps set
+    private void restore(int row) throws IOException {
+        int level = records.level(row);
+        int trim = records.trim(row);
+        int color = records.color(row);
+        int signature = records.signature(row);
+        if (level < 1 || level > MAX_LEVEL || trim <= 0 || trim >= byTrim.length || color <= 0
+                || color >= byColor.length || signature >= bySignature.length) {
+            throw new IOException("invalid order index snapshot: row " + row + " can't be indexed");
+        }
+        if (records.put(row) >= 0) {
+            throw new IOException("invalid order index snapshot: order id of row " + row + " appears twice");
+        }
+        live.set(row);
+        liveCount++;
+        byLevel[level].set(row);
+        byTrim[trim].set(row);
+        byColor[color].set(row);
+        bySignature[signature].set(row);
+    }
+
+    /**
+     * counters for the health endpoint
+     */
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("orders", liveCount);
+            stats.put("rows", records.rows());
+            stats.put("deadRows", records.rows() - liveCount);
+            stats.put("offHeapBytes", records.offHeapBytes());
+            Map<String, Object> levelCounts = new LinkedHashMap<>();
+            for (int level = 1; level <= MAX_LEVEL; level++) {
+                levelCounts.put(String.valueOf(level), byLevel[level].cardinality());
+            }
+            stats.put("byLevel", levelCounts);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int add(String orderId, OrderCodec.Header header, int level, int trim, int color, byte[] encoded,
+                    boolean pendingRow) {
+        int signature = header.signature();
+        if (level < 1 || level > MAX_LEVEL || trim <= 0 || trim >= byTrim.length || color <= 0
+                || color >= byColor.length || signature >= bySignature.length || header.totalCents() < 0) {
+            throw new IllegalArgumentException("order can't be indexed: " + orderId);
+        }
+
+        lock.writeLock().lock();
+        try {
+            int row = records.append(orderId, header, level, trim, color, encoded);
+            int previous = records.put(orderId, row);
+            if (previous >= 0) {
+                retire(previous);
+            } else {
+                liveCount++;
+            }
+            live.set(row);
+            if (pendingRow) {
+                pending.set(row);
+            }
+            byLevel[level].set(row);
+            byTrim[trim].set(row);
+            byColor[color].set(row);
+            bySignature[signature].set(row);
+            byDate.add(header.orderEpochSecond(), row);
+            byTotal.add(header.totalCents(), row);
+            return row;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // the row no longer counts; its range index entries stay and are skipped
+    private void retire(int row) {
+        live.clear(row);
+        byLevel[records.level(row)].clear(row);
+        byTrim[records.trim(row)].clear(row);
+        byColor[records.color(row)].clear(row);
+        bySignature[records.signature(row)].clear(row);
+    }
+
+    // newest first through the date index, until the page (plus one, to know there's more) is full
+    private int walkDates(Query query, BitSet matching, long maxTotalExclusive, long beforeKey, int beforeRow,
+                          int[] found) {
+        int[] count = {0};
+        byDate.descending(query.fromEpochSecond(), beforeKey, beforeRow, row -> {
+            if (matching.get(row) && inTotalRange(row, query, maxTotalExclusive)) {
+                found[count[0]++] = row;
+            }
+            return count[0] < found.length;
+        });
+        return count[0];
+    }
+
+    // every candidate from the total range or the bitmap, keeping the newest found.length
+    private int collect(Query query, BitSet matching, boolean fromTotals, long maxTotalExclusive,
+                        long beforeKey, int beforeRow, int[] found) {
+        NewestRows newest = new NewestRows(found.length);
+        if (fromTotals) {
+            byTotal.forEachInRange(query.minTotalCents(), maxTotalExclusive, row -> {
+                if (matching.get(row)) {
+                    newest.offer(row, query, beforeKey, beforeRow);
+                }
+            });
+        } else {
+            for (int row = matching.nextSetBit(0); row >= 0; row = matching.nextSetBit(row + 1)) {
+                if (inTotalRange(row, query, maxTotalExclusive)) {
+                    newest.offer(row, query, beforeKey, beforeRow);
+                }
+            }
+        }
+        return newest.drain(found);
+    }
+
+    // the newest n rows offered, in a min-heap ordered by (date, row)
+    private final class NewestRows {
+
+        private final int[] heap;
+        private int size;
+
+        NewestRows(int capacity) {
+            this.heap = new int[capacity];
+        }
+
+        void offer(int row, Query query, long beforeKey, int beforeRow) {
+            long date = records.epochSecond(row);
+            if (date < query.fromEpochSecond() || compare(date, row, beforeKey, beforeRow) >= 0) {
+                return;
+            }
+            if (size < heap.length) {
+                heap[size] = row;
+                siftUp(size++);
+            } else if (compare(date, row, records.epochSecond(heap[0]), heap[0]) > 0) {
+                heap[0] = row;
+                siftDown(0, size);
+            }
+        }
+
+        // newest first into found; returns how many
+        int drain(int[] found) {
+            int count = size;
+            while (size > 0) {
+                found[size - 1] = heap[0];
+                heap[0] = heap[--size];
+                siftDown(0, size);
+            }
+            return count;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (older(heap[i], heap[parent])) {
+                    swap(i, parent);
+                    i = parent;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private void siftDown(int i, int end) {
+            while (true) {
+                int oldest = i;
+                int left = 2 * i + 1;
+                if (left < end && older(heap[left], heap[oldest])) {
+                    oldest = left;
+                }
+                if (left + 1 < end && older(heap[left + 1], heap[oldest])) {
+                    oldest = left + 1;
+                }
+                if (oldest == i) {
+                    return;
+                }
+                swap(i, oldest);
+                i = oldest;
+            }
+        }
+
+        private boolean older(int row, int other) {
+            return compare(records.epochSecond(row), row, records.epochSecond(other), other) < 0;
+        }
+
+        private void swap(int i, int j) {
+            int row = heap[i];
+            heap[i] = heap[j];
+            heap[j] = row;
+        }
+    }
+
+    private boolean inTotalRange(int row, Query query, long maxTotalExclusive) {
+        int total = records.totalCents(row);
+        return total >= query.minTotalCents() && total < maxTotalExclusive;
+    }
+
+    private Entry entry(int row) {
+        int signature = records.signature(row);
+        return new Entry(records.orderId(row), LocalDateTime.ofEpochSecond(records.epochSecond(row), 0, ZoneOffset.UTC),
+                records.level(row), FeatureCatalog.trim(records.trim(row)), FeatureCatalog.color(records.color(row)),
+                signature == CUSTOM ? null : FeatureCatalog.signatureId(signature), records.totalCents(row));
+    }
+
+    // -1 for any, 0 for custom vehicles, else the signature code
+    private static int signatureSlot(String signature) {
+        if (signature == null) {
+            return -1;
+        }
+        if (signature.equals("none")) {
+            return CUSTOM;
+        }
+        int code = FeatureCatalog.signatureCode(signature);
+        if (code == 0) {
+            throw new IllegalArgumentException("unknown signature: " + signature);
+        }
+        return code;
+    }
+
+    // keep only the rows in the bitmap of a value (-1: any value; a value outside the table matches nothing)
+    private static void and(BitSet matching, BitSet[] bitmaps, int value) {
+        if (value < 0) {
+            return;
+        }
+        if (value >= bitmaps.length) {
+            matching.clear();
+        } else {
+            matching.and(bitmaps[value]);
+        }
+    }
+
+    private static BitSet[] bitmaps(int maxValue) {
+        BitSet[] bitmaps = new BitSet[maxValue + 1];
+        for (int value = 0; value <= maxValue; value++) {
+            bitmaps[value] = new BitSet();
+        }
+        return bitmaps;
+    }
+
+    private static String encodeCursor(long epochSecond, int row) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((epochSecond + ":" + row).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // (epoch second, row) of the last order of the previous page
+    private static long[] decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int separator = position.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("invalid cursor");
+            }
+            long epochSecond = Long.parseLong(position.substring(0, separator));
+            int row = Integer.parseInt(position.substring(separator + 1));
+            if (row < 0) {
+                throw new IllegalArgumentException("invalid cursor");
+            }
+            return new long[]{epochSecond, row};
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor: " + cursor);
+        }
+    }
+
+    private static int compare(long key, int row, long otherKey, int otherRow) {
+        int byKey = Long.compare(key, otherKey);
+        return byKey != 0 ? byKey : Integer.compare(row, otherRow);
+    }
+}
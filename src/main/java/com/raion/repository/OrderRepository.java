@@ -0,0 +1,106 @@
+package com.raion.repository;
+
+import com.raion.models.Order;
+import com.raion.services.OrderCodec;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * where placed orders are kept once their receipt is saved
+ * (raion.orders.repository.type - see OrderRepositoryConfiguration)
+ *
+ * implementations:
+ * - MemoryOrderRepository   a map, gone on restart - for tests and benchmarks
+ * - FileLogOrderRepository  one append-only log file, indexed in memory (the default)
+ * - JdbcOrderRepository     a table in an embedded h2 database
+ *
+ * the configured one is wrapped in an IndexedOrderRepository, which keeps the OrderIndex
+ * behind get /api/orders
+ *
+ * orders are stored in their structured form (OrderCodec): frozen feature codes plus the
+ * vehicle price, so an order read back is priced exactly as when it was placed however
+ * the models change since (orders from the codec's first version excepted - see OrderCodec)
+ *
+ * saving never waits for the disk: the order is queued and written by a background
+ * writer in batches (see WriteBehindOrderRepository). an order is readable by id as soon
+ * as save returns
+ */
+public interface OrderRepository extends AutoCloseable {
+
+    /**
+     * store an order (saving an order id again replaces it)
+     *
+     * @param order placed order
+     * @return completes once the order is stored, or exceptionally if it couldn't be -
+     *         IllegalArgumentException for an order OrderCodec can't express or the
+     *         index can't hold (see IndexedOrderRepository)
+     */
+    default CompletableFuture<Void> save(Order order) {
+        return save(order, OrderCodec.encode(order));
+    }
+
+    /**
+     * the same, for an order the caller already encoded (to save its structured receipt)
+     *
+     * @param encoded what OrderCodec.encode returned for the order
+     */
+    default CompletableFuture<Void> save(Order order, byte[] encoded) {
+        StoredOrder stored;
+        try {
+            stored = StoredOrder.of(order, encoded);
+        } catch (IllegalArgumentException e) {
+            System.err.println("✗ order not stored: " + e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+        return save(stored);
+    }
+
+    /**
+     * store an order already in its stored form
+     *
+     * @return completes once the order is stored, or exceptionally if it couldn't be
+     */
+    CompletableFuture<Void> save(StoredOrder order);
+
+    /**
+     * the order saved under an id
+     *
+     * @return the order, or null if there is none
+     * @throws IOException if it can't be read or decoded
+     */
+    Order findById(String orderId) throws IOException;
+
+    /**
+     * every stored order, in no particular order (orders still queued aren't stored yet) -
+     * rebuilds OrderIndex at startup
+     *
+     * @throws IOException if the storage can't be read
+     */
+    void forEach(Consumer<StoredOrder> action) throws IOException;
+
+    /**
+     * number of orders stored (orders still queued aren't counted yet)
+     */
+    long count();
+
+    /**
+     * wait until every order saved so far is stored
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void flush() throws InterruptedException;
+
+    /**
+     * counters for the health endpoint and the benchmarks
+     */
+    Map<String, Object> getStats();
+
+    /**
+     * store what is queued and release files and connections
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,94 @@
+package com.raion.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * picks the order repository (raion.orders.repository.type):
+ * - log (default)  FileLogOrderRepository in raion.orders.repository.folder
+ * - jdbc           JdbcOrderRepository at raion.orders.repository.jdbc-url, by default
+ *                  an embedded h2 database in the same folder
+ * - memory         MemoryOrderRepository - orders are gone on restart
+ *
+ * whichever it is comes wrapped in an IndexedOrderRepository, its OrderIndex rebuilt from
+ * the stored orders before the application takes requests. a log repository starts from
+ * its OrderSnapshot if there is a usable one (raion.orders.snapshot.enabled) and replays
+ * only the log after it
+ */
+@Configuration
+public class OrderRepositoryConfiguration {
+
+    /**
+     * the order repository the order endpoints store placed orders in
+     *
+     * @throws IOException if the log or database can't be opened or read
+     */
+    @Bean(destroyMethod = "close")
+    public IndexedOrderRepository orderRepository(@Value("${raion.orders.repository.type:log}") String type,
+                                           @Value("${raion.orders.repository.folder:orders}") String folder,
+                                           @Value("${raion.orders.repository.jdbc-url:}") String jdbcUrl,
+                                           @Value("${raion.orders.repository.fsync:false}") boolean fsync,
+                                           @Value("${raion.orders.repository.batch-size:256}") int batchSize,
+                                           @Value("${raion.orders.repository.queue-capacity:10000}") int queueCapacity,
+                                           @Value("${raion.orders.snapshot.enabled:true}") boolean snapshots)
+            throws IOException {
+        Path path = Paths.get(folder);
+        long start = System.nanoTime();
+        OrderSnapshot snapshot = type.equals("log") && snapshots ? OrderSnapshot.read(path) : null;
+        OrderRepository backend = switch (type) {
+            case "log" -> new FileLogOrderRepository(path, fsync, batchSize, queueCapacity, snapshot);
+            case "jdbc" -> new JdbcOrderRepository(jdbcUrl.isEmpty() ? embeddedUrl(path) : jdbcUrl,
+                    batchSize, queueCapacity);
+            case "memory" -> new MemoryOrderRepository();
+            default -> throw new IllegalArgumentException(
+                    "unknown order repository type: " + type + " (log, jdbc or memory)");
+        };
+
+        System.out.println("✓ order repository: " + type + " (" + backend.count() + " orders stored)");
+
+        IndexedOrderRepository repository = snapshot != null
+                ? new IndexedOrderRepository(backend, snapshot.index())
+                : new IndexedOrderRepository(backend);
+        try {
+            String from;
+            if (snapshot != null) {
+                FileLogOrderRepository log = (FileLogOrderRepository) backend;
+                int[] replayed = {0};
+                repository.rebuild(action -> log.forEach(snapshot.logEnd(), stored -> {
+                    replayed[0]++;
+                    action.accept(stored);
+                }));
+                from = " (snapshot at byte " + snapshot.logEnd() + " + " + replayed[0] + " orders replayed)";
+            } else {
+                repository.rebuild();
+                from = "";
+            }
+            System.out.println("✓ order index: " + repository.getIndex().size() + " orders in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms" + from);
+        } catch (IOException e) {
+            repository.close();
+            throw e;
+        }
+        return repository;
+    }
+
+    /**
+     * the secondary indexes over the stored orders (get /api/orders)
+     */
+    @Bean
+    public OrderIndex orderIndex(IndexedOrderRepository orderRepository) {
+        return orderRepository.getIndex();
+    }
+
+    /**
+     * the embedded h2 database in an orders folder
+     */
+    public static String embeddedUrl(Path folder) {
+        return "jdbc:h2:file:" + folder.toAbsolutePath().resolve("orders");
+    }
+}
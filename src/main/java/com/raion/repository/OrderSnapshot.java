@@ -0,0 +1,244 @@
+package com.raion.repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * the in-memory state of a log repository as of one log position, <folder>/orders.snapshot -
+ * so a restart loads it and replays only the log after that position instead of the
+ * whole history
+ *
+ * layout (big-endian):
+ *   int    MAGIC, byte VERSION
+ *   long   log position the snapshot covers (logEnd)
+ *   int    crc field of the last record before it, to recognise the log it was taken of
+ *   int    number of order positions
+ *   long   body length, int crc32 of the body
+ *   body:  order positions in the log (FileLogOrderRepository.writePositions), then the
+ *          order index (OrderIndex.writeSnapshot)
+ *
+ * write takes it while orders are being saved. the cut is the log's completedEnd: every
+ * record before it is stored and its save completed. awaitSaves then waits out the saves
+ * that were already under way, so each of those orders is marked stored in the index
+ * (or dropped from it, if storing failed) before the index is copied. what the copy holds
+ * beyond the cut is replayed again on restart, which is harmless - an order re-indexed
+ * replaces itself. neither the log writer nor the request threads wait for the snapshot:
+ * the log and the index are read under their own short locks (see OrderIndex)
+ *
+ * the log itself isn't cut back - it is also where findById reads orders the index can't
+ * rebuild. the file is written next to itself and renamed into place, so a crash leaves
+ * the previous snapshot; one that doesn't read back, or doesn't match the log, is ignored
+ * and the whole log replayed. so is one whose index holds more dead rows than orders:
+ * the replay indexes only each order's latest record, which is how the rows re-saves
+ * leave behind are given back (see OrderIndex)
+ */
+public record OrderSnapshot(long logEnd, Map<String, Long> positions, OrderIndex index) {
+
+    public static final String SNAPSHOT_FILE = "orders.snapshot";
+
+    private static final int MAGIC = 0x52534e50;
+    // 2: off-heap records carry the vehicle price (OffHeapOrderStore)
+    private static final byte VERSION = 2;
+    private static final int HEADER_BYTES = 33;
+    // values per bulk write or read
+    private static final int BULK_VALUES = 8192;
+
+    // one snapshot written at a time
+    private static final ReentrantLock WRITING = new ReentrantLock();
+
+    /**
+     * one snapshot written
+     *
+     * @param logEnd    log position it covers
+     * @param orders    orders in its index
+     * @param positions order positions in the log
+     * @param bytes     file size
+     */
+    public record Written(long logEnd, int orders, int positions, long bytes) {
+    }
+
+    /**
+     * snapshot a log repository and its index into the log's folder, replacing the last one
+     *
+     * @param log the repository's backend
+     * @throws IOException if the snapshot can't be written - the previous one stays
+     */
+    public static Written write(Path folder, FileLogOrderRepository log, IndexedOrderRepository repository)
+            throws IOException {
+        WRITING.lock();
+        try {
+            long logEnd = log.completedEnd();
+            repository.awaitSaves();
+            int lastCrc = lastCrc(folder.resolve(FileLogOrderRepository.LOG_FILE), logEnd);
+
+            Path file = folder.resolve(SNAPSHOT_FILE);
+            Path temp = folder.resolve(SNAPSHOT_FILE + ".tmp");
+            int positions;
+            int orders;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                // the body first, then the header in front of it once its length and crc are known
+                CheckedOutputStream checked = new CheckedOutputStream(
+                        Channels.newOutputStream(channel.position(HEADER_BYTES)), new CRC32());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16));
+                positions = log.writePositions(out, logEnd);
+                orders = repository.getIndex().writeSnapshot(out);
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).put(VERSION).putLong(logEnd)
+                        .putInt(lastCrc).putInt(positions).putLong(channel.size() - HEADER_BYTES)
+                        .putInt((int) checked.getChecksum().getValue()).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(false);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return new Written(logEnd, orders, positions, Files.size(file));
+        } finally {
+            WRITING.unlock();
+        }
+    }
+
+    /**
+     * the snapshot in a folder, if there is one and it matches the folder's log
+     *
+     * @return the snapshot, or null if there is none or it can't be used (which is logged)
+     */
+    public static OrderSnapshot read(Path folder) {
+        Path file = folder.resolve(SNAPSHOT_FILE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("too short for an order snapshot");
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.get() != VERSION) {
+                throw new IOException("not an order snapshot (version " + VERSION + ")");
+            }
+            long logEnd = header.getLong();
+            int lastCrc = header.getInt();
+            int positionCount = header.getInt();
+            long bodyBytes = header.getLong();
+            int bodyCrc = header.getInt();
+            if (channel.size() != HEADER_BYTES + bodyBytes || positionCount < 0) {
+                throw new IOException("incomplete");
+            }
+            Path log = folder.resolve(FileLogOrderRepository.LOG_FILE);
+            if (logEnd < 0 || logEnd > (Files.exists(log) ? Files.size(log) : 0) || lastCrc(log, logEnd) != lastCrc) {
+                throw new IOException("taken of another order log");
+            }
+
+            CheckedInputStream checked = new CheckedInputStream(
+                    Channels.newInputStream(channel.position(HEADER_BYTES)), new CRC32());
+            DataInputStream in = new DataInputStream(new BufferedInputStream(checked, 1 << 16));
+            Map<String, Long> positions = FileLogOrderRepository.readPositions(in, positionCount, logEnd);
+            OrderIndex index = OrderIndex.readSnapshot(in);
+            if (in.read() >= 0) {
+                throw new IOException("longer than what it holds");
+            }
+            if ((int) checked.getChecksum().getValue() != bodyCrc) {
+                throw new IOException("fails its checksum");
+            }
+            if (index.deadRows() > index.size()) {
+                throw new IOException(index.deadRows() + " of its " + (index.deadRows() + index.size())
+                        + " index rows are replaced orders");
+            }
+            return new OrderSnapshot(logEnd, positions, index);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("✗ order snapshot " + file + " not used: " + e.getMessage()
+                    + " - replaying the whole order log");
+            return null;
+        }
+    }
+
+    /**
+     * write the first count values of an array in bulk (DataOutputStream writes a long a
+     * byte at a time)
+     */
+    static void writeLongs(DataOutputStream out, long[] values, int count) throws IOException {
+        byte[] buffer = new byte[Math.min(count, BULK_VALUES) * Long.BYTES];
+        LongBuffer view = ByteBuffer.wrap(buffer).asLongBuffer();
+        for (int done = 0; done < count; ) {
+            int n = Math.min(count - done, BULK_VALUES);
+            view.clear();
+            view.put(values, done, n);
+            out.write(buffer, 0, n * Long.BYTES);
+            done += n;
+        }
+    }
+
+    static void readLongs(DataInputStream in, long[] values, int count) throws IOException {
+        byte[] buffer = new byte[Math.min(count, BULK_VALUES) * Long.BYTES];
+        LongBuffer view = ByteBuffer.wrap(buffer).asLongBuffer();
+        for (int done = 0; done < count; ) {
+            int n = Math.min(count - done, BULK_VALUES);
+            in.readFully(buffer, 0, n * Long.BYTES);
+            view.clear();
+            view.get(values, done, n);
+            done += n;
+        }
+    }
+
+    static void writeInts(DataOutputStream out, int[] values, int count) throws IOException {
+        byte[] buffer = new byte[Math.min(count, BULK_VALUES) * Integer.BYTES];
+        IntBuffer view = ByteBuffer.wrap(buffer).asIntBuffer();
+        for (int done = 0; done < count; ) {
+            int n = Math.min(count - done, BULK_VALUES);
+            view.clear();
+            view.put(values, done, n);
+            out.write(buffer, 0, n * Integer.BYTES);
+            done += n;
+        }
+    }
+
+    static void readInts(DataInputStream in, int[] values, int count) throws IOException {
+        byte[] buffer = new byte[Math.min(count, BULK_VALUES) * Integer.BYTES];
+        IntBuffer view = ByteBuffer.wrap(buffer).asIntBuffer();
+        for (int done = 0; done < count; ) {
+            int n = Math.min(count - done, BULK_VALUES);
+            in.readFully(buffer, 0, n * Integer.BYTES);
+            view.clear();
+            view.get(values, done, n);
+            done += n;
+        }
+    }
+
+    // the crc field that ends the record before a log position, 0 at the start of the log
+    private static int lastCrc(Path log, long end) throws IOException {
+        if (end == 0) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            ByteBuffer crc = ByteBuffer.allocate(Integer.BYTES);
+            while (crc.hasRemaining()) {
+                if (channel.read(crc, end - Integer.BYTES + crc.position()) < 0) {
+                    throw new IOException("order log ends before byte " + end);
+                }
+            }
+            return crc.getInt(0);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.raion.repository;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * a range index: long keys kept sorted together with the row each belongs to
+ * (OrderIndex keeps one for order dates and one for totals)
+ *
+ * entries live in two parallel primitive arrays ordered by (key, row). rows only grow, so
+ * an entry whose key is at or past the last key is simply appended - the usual case for
+ * order dates, which arrive in order. any other entry goes to a small unsorted buffer that
+ * is merged in once it holds MERGE_THRESHOLD entries, so an insert never shifts the whole
+ * array. lookups binary search the sorted part and scan the buffer
+ *
+ * entries are never removed; OrderIndex skips rows that were replaced. not thread-safe -
+ * OrderIndex guards it
+ *
+ * the sorted part is copy-on-write as far as a snapshot is concerned: an append writes
+ * past size and a merge builds new arrays, so the first size entries of the arrays seen
+ * at any moment never change. view() takes them as they are (copying only the buffer)
+ * for OrderSnapshot to write out while inserts carry on
+ */
+final class SortedKeys {
+
+    // 2^12, so a buffered entry's position fits in the low bits of its sort key
+    static final int MERGE_THRESHOLD = 1 << 12;
+    private static final int POSITION_BITS = 12;
+
+    private long[] keys = new long[1024];
+    private int[] rows = new int[1024];
+    private int size;
+
+    // the entries at one moment: the sorted arrays themselves, the buffer copied
+    record View(long[] keys, int[] rows, int size, long[] pendingKeys, int[] pendingRows) {
+    }
+
+    private final long[] pendingKeys = new long[MERGE_THRESHOLD];
+    private final int[] pendingRows = new int[MERGE_THRESHOLD];
+    private int pendingSize;
+
+    void add(long key, int row) {
+        if (pendingSize == 0 && (size == 0 || key >= keys[size - 1])) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            keys[size] = key;
+            rows[size] = row;
+            size++;
+            return;
+        }
+
+        pendingKeys[pendingSize] = key;
+        pendingRows[pendingSize] = row;
+        pendingSize++;
+        if (pendingSize == MERGE_THRESHOLD) {
+            merge();
+        }
+    }
+
+    /**
+     * number of entries (current or replaced) with from <= key < to
+     */
+    int count(long from, long to) {
+        int count = Math.max(0, lowerBound(to, 0) - lowerBound(from, 0));
+        for (int i = 0; i < pendingSize; i++) {
+            if (pendingKeys[i] >= from && pendingKeys[i] < to) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * every row with from <= key < to, in no particular order
+     */
+    void forEachInRange(long from, long to, IntConsumer action) {
+        for (int i = lowerBound(from, 0), end = lowerBound(to, 0); i < end; i++) {
+            action.accept(rows[i]);
+        }
+        for (int i = 0; i < pendingSize; i++) {
+            if (pendingKeys[i] >= from && pendingKeys[i] < to) {
+                action.accept(pendingRows[i]);
+            }
+        }
+    }
+
+    /**
+     * rows with key >= from and (key, row) before (beforeKey, beforeRow), newest (highest
+     * key, then highest row) first, until the visitor returns false
+     */
+    void descending(long from, long beforeKey, int beforeRow, IntPredicate visitor) {
+        // the buffer's matches, sorted by (key, position) - positions follow row order
+        long[] buffered = new long[pendingSize];
+        int bufferedCount = 0;
+        for (int i = 0; i < pendingSize; i++) {
+            if (pendingKeys[i] >= from && compare(pendingKeys[i], pendingRows[i], beforeKey, beforeRow) < 0) {
+                buffered[bufferedCount++] = pendingKeys[i] << POSITION_BITS | i;
+            }
+        }
+        Arrays.sort(buffered, 0, bufferedCount);
+
+        int next = lowerBound(beforeKey, beforeRow) - 1;
+        int nextBuffered = bufferedCount - 1;
+        while (true) {
+            boolean haveSorted = next >= 0 && keys[next] >= from;
+            boolean haveBuffered = nextBuffered >= 0;
+            if (!haveSorted && !haveBuffered) {
+                return;
+            }
+
+            int row;
+            if (haveBuffered) {
+                int position = (int) (buffered[nextBuffered] & (MERGE_THRESHOLD - 1));
+                if (!haveSorted || compare(pendingKeys[position], pendingRows[position], keys[next], rows[next]) > 0) {
+                    row = pendingRows[position];
+                    nextBuffered--;
+                } else {
+                    row = rows[next--];
+                }
+            } else {
+                row = rows[next--];
+            }
+            if (!visitor.test(row)) {
+                return;
+            }
+        }
+    }
+
+    View view() {
+        return new View(keys, rows, size, Arrays.copyOf(pendingKeys, pendingSize),
+                Arrays.copyOf(pendingRows, pendingSize));
+    }
+
+    // layout: int size, the keys, the rows, int buffered, their keys, their rows
+    static void write(DataOutputStream out, View view) throws IOException {
+        out.writeInt(view.size());
+        OrderSnapshot.writeLongs(out, view.keys(), view.size());
+        OrderSnapshot.writeInts(out, view.rows(), view.size());
+        out.writeInt(view.pendingKeys().length);
+        OrderSnapshot.writeLongs(out, view.pendingKeys(), view.pendingKeys().length);
+        OrderSnapshot.writeInts(out, view.pendingRows(), view.pendingRows().length);
+    }
+
+    /**
+     * fill an empty instance with the entries write wrote
+     *
+     * @param rowCount rows there are - every entry's row is below it
+     * @throws IOException if they can't be read, aren't in order or point past rowCount
+     */
+    void read(DataInputStream in, int rowCount) throws IOException {
+        if (size != 0 || pendingSize != 0) {
+            throw new IllegalStateException("entries can only be read into an empty index");
+        }
+
+        int sorted = in.readInt();
+        if (sorted < 0) {
+            throw new IOException("invalid entry count " + sorted);
+        }
+        keys = new long[Math.max(keys.length, Integer.highestOneBit(Math.max(sorted, 1)) * 2)];
+        rows = new int[keys.length];
+        OrderSnapshot.readLongs(in, keys, sorted);
+        OrderSnapshot.readInts(in, rows, sorted);
+        for (int i = 0; i < sorted; i++) {
+            if (rows[i] < 0 || rows[i] >= rowCount || i > 0 && compare(keys[i - 1], rows[i - 1], keys[i], rows[i]) >= 0) {
+                throw new IOException("invalid entry at " + i);
+            }
+        }
+        size = sorted;
+
+        int pending = in.readInt();
+        if (pending < 0 || pending >= MERGE_THRESHOLD) {
+            throw new IOException("invalid buffered entry count " + pending);
+        }
+        OrderSnapshot.readLongs(in, pendingKeys, pending);
+        OrderSnapshot.readInts(in, pendingRows, pending);
+        for (int i = 0; i < pending; i++) {
+            if (pendingRows[i] < 0 || pendingRows[i] >= rowCount) {
+                throw new IOException("invalid buffered entry at " + i);
+            }
+        }
+        pendingSize = pending;
+    }
+
+    // first position in the sorted part at or after (key, row)
+    private int lowerBound(long key, int row) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(keys[middle], rows[middle], key, row) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // sort the buffer and merge it into the sorted part in one pass
+    private void merge() {
+        long[] order = new long[pendingSize];
+        for (int i = 0; i < pendingSize; i++) {
+            order[i] = pendingKeys[i] << POSITION_BITS | i;
+        }
+        Arrays.sort(order);
+
+        int total = size + pendingSize;
+        long[] mergedKeys = new long[Math.max(keys.length, Integer.highestOneBit(total) * 2)];
+        int[] mergedRows = new int[mergedKeys.length];
+        int sorted = 0;
+        int buffered = 0;
+        for (int out = 0; out < total; out++) {
+            int position = buffered < pendingSize ? (int) (order[buffered] & (MERGE_THRESHOLD - 1)) : -1;
+            if (position >= 0 && (sorted == size
+                    || compare(pendingKeys[position], pendingRows[position], keys[sorted], rows[sorted]) < 0)) {
+                mergedKeys[out] = pendingKeys[position];
+                mergedRows[out] = pendingRows[position];
+                buffered++;
+            } else {
+                mergedKeys[out] = keys[sorted];
+                mergedRows[out] = rows[sorted];
+                sorted++;
+            }
+        }
+
+        keys = mergedKeys;
+        rows = mergedRows;
+        size = total;
+        pendingSize = 0;
+    }
+
+    private static int compare(long key, int row, long otherKey, int otherRow) {
+        int byKey = Long.compare(key, otherKey);
+        return byKey != 0 ? byKey : Integer.compare(row, otherRow);
+    }
+}
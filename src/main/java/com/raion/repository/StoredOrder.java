@@ -0,0 +1,62 @@
+package com.raion.repository;
+
+import com.raion.models.Order;
+import com.raion.services.OrderCodec;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * an order as the repositories store it: its id, the fields worth a column of their own,
+ * and the structured order (OrderCodec) everything else is rebuilt from
+ *
+ * @param orderId    order id
+ * @param orderDate  when the order was placed
+ * @param totalCents order total in cents
+ * @param data       structured order
+ */
+public record StoredOrder(String orderId, LocalDateTime orderDate, long totalCents, byte[] data) {
+
+    /**
+     * the stored form of an order
+     *
+     * @throws IllegalArgumentException if OrderCodec can't express the order
+     */
+    public static StoredOrder of(Order order) {
+        return of(order, OrderCodec.encode(order));
+    }
+
+    /**
+     * the stored form of an order already encoded by OrderCodec
+     *
+     * @param data what OrderCodec.encode returned for the order (null if it couldn't)
+     * @throws IllegalArgumentException if data is null
+     */
+    public static StoredOrder of(Order order, byte[] data) {
+        if (data == null) {
+            throw new IllegalArgumentException("order can't be stored in structured form: " + order.getOrderId());
+        }
+        return new StoredOrder(order.getOrderId(), order.getOrderDate(), Math.round(order.calculateTotal() * 100), data);
+    }
+
+    /**
+     * a stored order read back by id, with date and total taken from the structured order
+     *
+     * @throws IOException if the data isn't a structured order
+     */
+    public static StoredOrder fromData(String orderId, byte[] data) throws IOException {
+        OrderCodec.Header header = OrderCodec.readHeader(data);
+        return new StoredOrder(orderId, LocalDateTime.ofEpochSecond(header.orderEpochSecond(), 0, ZoneOffset.UTC),
+                header.totalCents(), data);
+    }
+
+    /**
+     * rebuild the order
+     *
+     * @throws IOException if the data is corrupt or no longer adds up (see OrderCodec.decode)
+     */
+    public Order toOrder() throws IOException {
+        return OrderCodec.decode(orderId, data);
+    }
+}
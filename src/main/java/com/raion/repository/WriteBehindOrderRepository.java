@@ -0,0 +1,317 @@
+package com.raion.repository;
+
+import com.raion.models.Order;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * the write path shared by the repositories that store on disk
+ *
+ * save encodes the order on the caller's thread (a few bytes, see StoredOrder) and puts
+ * it on a bounded queue; one writer thread takes everything queued, up to batch-size
+ * orders, and stores it with one writeBatch call - one file write or one sql batch and
+ * commit for the lot. under load batches fill up by themselves, when idle every order is
+ * written on its own right away, so there's no timer to tune
+ *
+ * until its batch is stored a queued order is served from memory, so findById sees an
+ * order as soon as save returns. a full queue makes save wait for room rather than drop
+ * orders; with the default capacity that only happens if the disk stalls
+ *
+ * once the writer stops - closed, or killed by an error - every save and flush still
+ * queued or arriving later fails instead of waiting for a writer that is gone
+ *
+ * subclasses open their storage in the constructor and then call start()
+ */
+public abstract class WriteBehindOrderRepository implements OrderRepository {
+
+    private static final long CLOSE_WAIT_SECONDS = 30;
+    private static final long FLUSH_WAIT_SECONDS = 30;
+    // how often a caller waiting for room in the queue checks that the writer still runs
+    private static final long ENQUEUE_POLL_MILLIS = 100;
+
+    // one queued save, or a flush marker (no order) completed once everything before it is stored
+    private record Write(StoredOrder stored, CompletableFuture<Void> done) {
+    }
+
+    private static final Write STOP = new Write(null, null);
+
+    private final String type;
+    private final int batchSize;
+    private final BlockingQueue<Write> queue;
+    private final Map<String, StoredOrder> queued = new ConcurrentHashMap<>();
+    private final Thread writer;
+    private volatile boolean closed;
+    // set by the writer as it exits, before it fails what is left in the queue
+    private volatile boolean stopped;
+
+    // written by the writer thread, read by getStats
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batchNanos = new AtomicLong();
+    private volatile int largestBatch;
+
+    protected WriteBehindOrderRepository(String type, int batchSize, int queueCapacity) {
+        if (batchSize <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("order repository batch size and queue capacity must be positive");
+        }
+
+        this.type = type;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(this::drain, "order-repository-writer");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * store a batch of orders, in the order they were saved (a later save of the same id wins)
+     *
+     * @throws IOException if the batch couldn't be stored - none of it counts as stored
+     */
+    protected abstract void writeBatch(List<StoredOrder> orders) throws IOException;
+
+    /**
+     * the structured order stored under an id, or null
+     */
+    protected abstract byte[] read(String orderId) throws IOException;
+
+    /**
+     * number of orders stored
+     */
+    protected abstract long storedCount();
+
+    /**
+     * release the storage - called once, after the last batch
+     */
+    protected abstract void closeStorage();
+
+    /**
+     * backend specific counters for getStats
+     */
+    protected void addStats(Map<String, Object> stats) {
+    }
+
+    /**
+     * called on the writer thread once a batch is stored and every save in it completed
+     * (callbacks on their futures included)
+     */
+    protected void batchCompleted() {
+    }
+
+    // start the writer once the subclass has opened its storage
+    protected final void start() {
+        writer.start();
+    }
+
+    @Override
+    public CompletableFuture<Void> save(StoredOrder stored) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("order repository is closed"));
+        }
+
+        Write write = new Write(stored, new CompletableFuture<>());
+        queued.put(stored.orderId(), stored);
+        try {
+            enqueue(write);
+        } catch (InterruptedException e) {
+            queued.remove(stored.orderId(), stored);
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        return write.done();
+    }
+
+    @Override
+    public Order findById(String orderId) throws IOException {
+        if (orderId == null) {
+            return null;
+        }
+
+        StoredOrder pending = queued.get(orderId);
+        if (pending != null) {
+            return pending.toOrder();
+        }
+        byte[] data = read(orderId);
+        return data != null ? new StoredOrder(orderId, null, 0, data).toOrder() : null;
+    }
+
+    @Override
+    public long count() {
+        return storedCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if the writer stopped without being closed, or didn't get
+     *                               to the orders within FLUSH_WAIT_SECONDS
+     */
+    @Override
+    public void flush() throws InterruptedException {
+        if (closed) {
+            return;
+        }
+
+        Write marker = new Write(null, new CompletableFuture<>());
+        enqueue(marker);
+        try {
+            marker.done().get(FLUSH_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            // failed by a writer on its way out - close stores everything queued before it
+            if (!closed) {
+                throw new IllegalStateException("order repository writer stopped", e.getCause());
+            }
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("order repository did not flush within " + FLUSH_WAIT_SECONDS + "s");
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long batchCount = batches.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("type", type);
+        stats.put("orders", storedCount());
+        stats.put("queued", queue.size());
+        stats.put("written", written.get());
+        stats.put("failed", failed.get());
+        stats.put("batches", batchCount);
+        stats.put("averageBatch", batchCount == 0 ? 0.0 : Math.round(10.0 * written.get() / batchCount) / 10.0);
+        stats.put("largestBatch", largestBatch);
+        stats.put("averageBatchMicros", batchCount == 0 ? 0 : batchNanos.get() / batchCount / 1000);
+        addStats(stats);
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            // a writer that already stopped (or stops while the queue is full) takes no marker
+            while (!stopped && !queue.offer(STOP, ENQUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                // wait for room
+            }
+            writer.join(TimeUnit.SECONDS.toMillis(CLOSE_WAIT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            System.err.println("✗ order repository writer did not finish within " + CLOSE_WAIT_SECONDS
+                    + "s - " + queue.size() + " orders not stored");
+            writer.interrupt();
+        }
+        closeStorage();
+    }
+
+    // queue a write; fails it right away if the writer has stopped, before or after it got in
+    private void enqueue(Write write) throws InterruptedException {
+        while (!queue.offer(write, ENQUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (stopped) {
+                fail(write);
+                return;
+            }
+        }
+        // the writer sets stopped before its last look at the queue: either that look
+        // found this write, or this check sees stopped and takes it back
+        if (stopped && queue.remove(write)) {
+            fail(write);
+        }
+    }
+
+    // the writer thread: take what's queued, store it as one batch, repeat until stopped
+    private void drain() {
+        List<Write> batch = new ArrayList<>(batchSize);
+        List<StoredOrder> orders = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                batch.clear();
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                if (store(batch, orders)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // saves that raced close, or were queued when an error killed the writer
+            stopped = true;
+            queue.drainTo(batch);
+            for (Write write : batch) {
+                fail(write);
+            }
+        }
+    }
+
+    // complete a write nobody will store (no-op for one already completed)
+    private void fail(Write write) {
+        if (write == STOP || write.done().isDone()) {
+            return;
+        }
+        if (write.stored() != null) {
+            queued.remove(write.stored().orderId(), write.stored());
+        }
+        write.done().completeExceptionally(new IllegalStateException("order repository is closed"));
+    }
+
+    // true once the stop marker was seen (everything queued before it is stored)
+    private boolean store(List<Write> batch, List<StoredOrder> orders) {
+        orders.clear();
+        boolean stop = false;
+        for (Write write : batch) {
+            if (write == STOP) {
+                stop = true;
+            } else if (write.stored() != null) {
+                orders.add(write.stored());
+            }
+        }
+
+        Exception failure = null;
+        if (!orders.isEmpty()) {
+            long start = System.nanoTime();
+            try {
+                writeBatch(orders);
+                written.addAndGet(orders.size());
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+                failed.addAndGet(orders.size());
+                System.err.println("✗ order repository failed to store " + orders.size() + " orders: " + e.getMessage());
+            }
+            batchNanos.addAndGet(System.nanoTime() - start);
+            batches.incrementAndGet();
+            largestBatch = Math.max(largestBatch, orders.size());
+        }
+
+        for (Write write : batch) {
+            if (write == STOP) {
+                continue;
+            }
+            if (write.stored() != null) {
+                queued.remove(write.stored().orderId(), write.stored());
+            }
+            if (failure != null && write.stored() != null) {
+                write.done().completeExceptionally(failure);
+            } else {
+                write.done().complete(null);
+            }
+        }
+        batchCompleted();
+        return stop;
+    }
+}
@@ -0,0 +1,82 @@
+package com.raion.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * admission control for the api, with a separate bulkhead per endpoint class
+ * (read and order - see EndpointClass)
+ *
+ * each class has its own AimdLimit, so a spike of slow order writes can only use up
+ * the order limit - catalog reads keep their own slots and stay fast. once a class is
+ * at its limit, further requests of that class get an immediate 503 with Retry-After
+ * instead of queueing behind work the server can't finish in time
+ *
+ * health checks, static files and cors preflights are never limited.
+ * applied by AdmissionFilter (servlet) and ReactiveAdmissionFilter (webflux)
+ */
+@Component
+public class AdmissionControl {
+
+    public static final String RETRY_AFTER_SECONDS = "1";
+    public static final byte[] REJECTED_BODY =
+            "{\"error\":\"server is busy. please retry shortly\"}".getBytes(StandardCharsets.UTF_8);
+
+    private static final int MIN_LIMIT = 2;
+
+    private final boolean enabled;
+    private final AimdLimit reads;
+    private final AimdLimit orders;
+
+    public AdmissionControl(@Value("${raion.admission.enabled:false}") boolean enabled,
+                            @Value("${raion.admission.read.initial-limit:64}") int readInitialLimit,
+                            @Value("${raion.admission.read.max-limit:256}") int readMaxLimit,
+                            @Value("${raion.admission.read.latency-target-ms:100}") long readLatencyTargetMillis,
+                            @Value("${raion.admission.order.initial-limit:8}") int orderInitialLimit,
+                            @Value("${raion.admission.order.max-limit:64}") int orderMaxLimit,
+                            @Value("${raion.admission.order.latency-target-ms:500}") long orderLatencyTargetMillis) {
+        this.enabled = enabled;
+        this.reads = new AimdLimit(EndpointClass.READ.getLabel(), readInitialLimit, MIN_LIMIT, readMaxLimit,
+                readLatencyTargetMillis);
+        this.orders = new AimdLimit(EndpointClass.ORDER.getLabel(), orderInitialLimit, MIN_LIMIT, orderMaxLimit,
+                orderLatencyTargetMillis);
+        if (enabled) {
+            System.out.println("admission control enabled (read limit " + readInitialLimit + ", order limit "
+                    + orderInitialLimit + ")");
+        }
+    }
+
+    /**
+     * the bulkhead a request belongs to
+     *
+     * @param method http method
+     * @param path request path without the query string
+     * @return the limit to acquire, or null if the request isn't limited (or admission control is off)
+     */
+    public AimdLimit limitFor(String method, String path) {
+        EndpointClass endpointClass = enabled ? EndpointClass.of(method, path) : null;
+        if (endpointClass == null) {
+            return null;
+        }
+        return endpointClass == EndpointClass.READ ? reads : orders;
+    }
+
+    /**
+     * current limit, in-flight count and rejections per endpoint class
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        for (AimdLimit limit : new AimdLimit[]{reads, orders}) {
+            stats.put(limit.getName(), Map.of(
+                    "limit", limit.getLimit(),
+                    "inFlight", limit.getInFlight(),
+                    "rejected", limit.getRejectedCount()));
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,114 @@
+package com.raion.services;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * concurrency limit that adapts to measured latency (additive increase, multiplicative decrease)
+ *
+ * every finished request reports how long it took:
+ * - slower than the latency target -> the server is queueing, so the limit is cut by
+ *   the backoff ratio (at most once per latency-target window, so one burst of slow
+ *   responses doesn't collapse the limit)
+ * - within the target while the limit was actually in use -> the limit grows by
+ *   1/limit, i.e. about one extra request per round of limit requests
+ *
+ * requests over the limit are refused right away instead of waiting, so the server
+ * only works on as much as it can finish within the target
+ *
+ * tryAcquire is a single compare-and-set; the limit update on release takes a short lock
+ */
+public final class AimdLimit {
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile double limit;
+    private long lastDecreaseNanos;
+
+    /**
+     * @param name endpoint class name, for logs and stats
+     * @param initialLimit starting number of concurrent requests
+     * @param minLimit the limit never drops below this
+     * @param maxLimit the limit never grows above this
+     * @param latencyTargetMillis responses slower than this shrink the limit
+     * @throws IllegalArgumentException if the bounds don't make sense
+     */
+    public AimdLimit(String name, int initialLimit, int minLimit, int maxLimit, long latencyTargetMillis) {
+        if (minLimit <= 0 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("invalid " + name + " limit: need 0 < min <= initial <= max");
+        }
+        if (latencyTargetMillis <= 0) {
+            throw new IllegalArgumentException(name + " latency target must be positive");
+        }
+
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTargetNanos = latencyTargetMillis * 1_000_000L;
+        this.limit = initialLimit;
+        this.lastDecreaseNanos = System.nanoTime();
+    }
+
+    /**
+     * take a slot if the class is under its limit
+     *
+     * @return true if the request may run (call release when it's done), false to refuse it
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * give the slot back and adjust the limit to the request's latency
+     *
+     * @param latencyNanos how long the request took to serve
+     */
+    public void release(long latencyNanos) {
+        // in flight before this request finished - tells whether the limit was the bottleneck
+        int concurrency = inFlight.getAndDecrement();
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (latencyNanos > latencyTargetNanos) {
+                if (now - lastDecreaseNanos >= latencyTargetNanos) {
+                    limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                    lastDecreaseNanos = now;
+                }
+            } else if (concurrency * 2 >= (int) limit) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+}
@@ -0,0 +1,151 @@
+package com.raion.services;
+
+import com.raion.dto.BatchOrderRequest;
+import com.raion.dto.BatchOrderResponse;
+import com.raion.dto.BatchOrderResponse.Result;
+import com.raion.dto.CustomOrderRequest;
+import com.raion.dto.OrderRequest;
+import com.raion.dto.SignatureOrderRequest;
+import com.raion.models.Order;
+import com.raion.repository.OrderRepository;
+import com.raion.services.OrderAssembler.AssembledOrder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * places every order of a post /api/orders/batch request
+ * shared by the servlet and reactive controllers
+ *
+ * 1. all orders are validated, built and priced in parallel through OrderAssembler -
+ *    the same rules and error messages as the single-order endpoints
+ * 2. the receipts of the orders that passed are saved in one grouped pass
+ *    (ReceiptGenerator.saveReceipts)
+ * 3. each order with a saved receipt is stored in the order repository (its writer
+ *    stores the batch's orders together)
+ * 4. each order gets its own result, so one bad order doesn't fail the batch
+ *
+ * only problems with the batch itself (no orders, too many orders) reject the request
+ */
+@Component
+public class BatchOrderProcessor {
+
+    private final int maxOrders;
+    private final OrderRepository orderRepository;
+
+    // outcome of building one order: the order, or the result to report instead
+    private record Attempt(AssembledOrder assembled, Result failure) {
+    }
+
+    public BatchOrderProcessor(@Value("${raion.batch.max-orders:500}") int maxOrders,
+                               OrderRepository orderRepository) {
+        if (maxOrders <= 0) {
+            throw new IllegalArgumentException("batch max orders must be positive");
+        }
+        this.maxOrders = maxOrders;
+        this.orderRepository = orderRepository;
+    }
+
+    /**
+     * place all orders of a batch
+     *
+     * @param request decoded batch body
+     * @return one result per order, in submission order
+     * @throws OrderRequestException if the batch has no orders or more than the configured maximum
+     */
+    public BatchOrderResponse process(BatchOrderRequest request) {
+        List<OrderRequest> orders = request.orders();
+        if (orders == null || orders.isEmpty()) {
+            throw new OrderRequestException("orders must be a non-empty array");
+        }
+        if (orders.size() > maxOrders) {
+            throw new OrderRequestException("too many orders in batch. max is " + maxOrders);
+        }
+
+        // validate, build and price every order in parallel
+        Attempt[] attempts = IntStream.range(0, orders.size()).parallel()
+                .mapToObj(index -> assemble(index, orders.get(index)))
+                .toArray(Attempt[]::new);
+
+        List<Order> placed = new ArrayList<>();
+        for (Attempt attempt : attempts) {
+            if (attempt.assembled() != null) {
+                placed.add(attempt.assembled().order());
+            }
+        }
+
+        // one grouped receipt pass for everything that passed validation
+        List<String> receiptPaths = null;
+        String receiptFailure = null;
+        if (!placed.isEmpty()) {
+            try {
+                receiptPaths = ReceiptGenerator.saveReceipts(placed);
+            } catch (IOException e) {
+                receiptFailure = "failed to save receipt: " + e.getMessage();
+                System.err.println("✗ batch receipts failed: " + e.getMessage());
+            }
+        }
+
+        List<Result> results = new ArrayList<>(attempts.length);
+        int succeeded = 0;
+        int next = 0;
+        for (int index = 0; index < attempts.length; index++) {
+            Attempt attempt = attempts[index];
+            if (attempt.assembled() == null) {
+                results.add(attempt.failure());
+                continue;
+            }
+
+            AssembledOrder assembled = attempt.assembled();
+            String receiptPath = receiptPaths != null ? receiptPaths.get(next) : null;
+            next++;
+            if (receiptPath == null) {
+                String details = receiptFailure != null ? receiptFailure
+                        : "failed to save receipt: could not write receipt file for order " + assembled.order().getOrderId();
+                results.add(Result.failed(index, failureMessage(assembled.isSignature()), details));
+                continue;
+            }
+
+            orderRepository.save(assembled.order());
+            results.add(Result.placed(index, OrderResponseBuilder.buildOrderResponse(
+                    assembled.order(), receiptPath, assembled.isSignature(), assembled.signatureName())));
+            succeeded++;
+        }
+
+        int failed = attempts.length - succeeded;
+        System.out.println("✓ batch placed: " + succeeded + " of " + attempts.length + " orders"
+                + (failed > 0 ? " (" + failed + " failed)" : ""));
+
+        return new BatchOrderResponse(attempts.length, succeeded, failed, results);
+    }
+
+    // build one order, turning its errors into the result the single endpoint would return
+    private static Attempt assemble(int index, OrderRequest request) {
+        if (request == null) {
+            return new Attempt(null, Result.rejected(index, "each order must be a json object"));
+        }
+
+        boolean isSignature = request instanceof SignatureOrderRequest;
+        try {
+            AssembledOrder assembled = isSignature
+                    ? OrderAssembler.assembleSignatureOrder((SignatureOrderRequest) request)
+                    : OrderAssembler.assembleCustomOrder((CustomOrderRequest) request);
+            return new Attempt(assembled, null);
+        } catch (OrderRequestException e) {
+            return new Attempt(null, Result.rejected(index, e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return new Attempt(null, Result.rejected(index,
+                    "invalid " + (isSignature ? "signature order" : "order") + " data: " + e.getMessage()));
+        } catch (Exception e) {
+            return new Attempt(null, Result.failed(index, failureMessage(isSignature), String.valueOf(e.getMessage())));
+        }
+    }
+
+    private static String failureMessage(boolean isSignature) {
+        return isSignature ? "failed to process signature order" : "failed to process order";
+    }
+}
@@ -0,0 +1,95 @@
+package com.raion.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * a pre-rendered document with a few slots that change per request
+ * the fixed parts are kept as byte arrays, so rendering is one exact-size allocation
+ * and a handful of array copies - no formatting, no string building, no encoding
+ *
+ * built from a sample rendered with marker values in the slots; each marker must
+ * occur exactly once and in slot order
+ */
+final class ByteTemplate {
+
+    private final byte[][] segments;
+    private final int fixedLength;
+
+    private ByteTemplate(byte[][] segments) {
+        this.segments = segments;
+        int length = 0;
+        for (byte[] segment : segments) {
+            length += segment.length;
+        }
+        this.fixedLength = length;
+    }
+
+    /**
+     * split a rendered sample around its slot markers
+     *
+     * @param rendered sample output containing every marker once
+     * @param markers the sample's slot values, in the order they appear
+     * @return the compiled template
+     * @throws IllegalStateException if a marker is missing, repeated or out of order
+     */
+    static ByteTemplate compile(byte[] rendered, String... markers) {
+        List<byte[]> segments = new ArrayList<>();
+        int from = 0;
+        for (String marker : markers) {
+            byte[] markerBytes = marker.getBytes(StandardCharsets.UTF_8);
+            int at = indexOf(rendered, markerBytes, from);
+            if (at < 0 || indexOf(rendered, markerBytes, at + 1) >= 0) {
+                throw new IllegalStateException("template marker must appear exactly once, in order: " + marker);
+            }
+            segments.add(Arrays.copyOfRange(rendered, from, at));
+            from = at + markerBytes.length;
+        }
+        segments.add(Arrays.copyOfRange(rendered, from, rendered.length));
+        return new ByteTemplate(segments.toArray(new byte[0][]));
+    }
+
+    /**
+     * fill the slots
+     *
+     * @param values already-encoded slot values, one per marker
+     * @return the rendered bytes
+     */
+    byte[] render(byte[]... values) {
+        if (values.length != segments.length - 1) {
+            throw new IllegalArgumentException("expected " + (segments.length - 1) + " values, got " + values.length);
+        }
+
+        int length = fixedLength;
+        for (byte[] value : values) {
+            length += value.length;
+        }
+
+        byte[] out = new byte[length];
+        int position = 0;
+        for (int i = 0; i < values.length; i++) {
+            System.arraycopy(segments[i], 0, out, position, segments[i].length);
+            position += segments[i].length;
+            System.arraycopy(values[i], 0, out, position, values[i].length);
+            position += values[i].length;
+        }
+        byte[] last = segments[segments.length - 1];
+        System.arraycopy(last, 0, out, position, last.length);
+        return out;
+    }
+
+    private static int indexOf(byte[] haystack, byte[] needle, int from) {
+        outer:
+        for (int i = from; i <= haystack.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,171 @@
+package com.raion.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * serialized-response cache with request coalescing for the catalog reads
+ * (get /api/vehicles, /api/vehicles/{level}, /api/signatures, /api/signatures/{name})
+ *
+ * catalog data never changes while the app runs, so each response is built and
+ * serialized to json once and the bytes are handed to every later request until the
+ * ttl runs out. requests for the same key that arrive while it is being built (a cold
+ * start, or right after the ttl expired) don't build it again - they wait for the one
+ * computation already in flight and share its bytes (single-flight). a campaign link
+ * hitting thousands of browsers at once therefore costs one map build and one
+ * serialization per key, not one per request
+ *
+ * - ttl-seconds=0 keeps only the coalescing: concurrent requests still share one
+ *   computation, but nothing is kept once it's done
+ * - a failed computation is handed to the requests waiting on it and then forgotten,
+ *   so the next request tries again
+ * - keys come from validated paths only, so the cache holds a handful of entries
+ *
+ * lock-free on the hot path: one ConcurrentHashMap get per cached request
+ */
+@Component
+public class CatalogCache {
+
+    // one cached response: its bytes (or the computation producing them) and when it goes stale
+    private record Entry(CompletableFuture<byte[]> body, long expiresAtNanos) {
+
+        boolean isFresh(long now) {
+            return !body.isDone() || now - expiresAtNanos < 0;
+        }
+    }
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder computed = new LongAdder();
+
+    public CatalogCache(ObjectMapper objectMapper,
+                        @Value("${raion.catalog-cache.enabled:true}") boolean enabled,
+                        @Value("${raion.catalog-cache.ttl-seconds:300}") long ttlSeconds) {
+        if (ttlSeconds < 0) {
+            throw new IllegalArgumentException("catalog cache ttl must not be negative");
+        }
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /**
+     * 200 response with the serialized catalog data for a key
+     *
+     * @param key identifies the response (e.g. "vehicle:2"); must come from a validated request
+     * @param loader builds the response body; only called when no fresh or in-flight copy exists
+     * @return json response sharing its bytes with every other request for the key
+     */
+    public ResponseEntity<byte[]> respond(String key, Supplier<Object> loader) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(enabled ? get(key, loader) : serialize(loader.get()));
+    }
+
+    /**
+     * hits, coalesced waits and computations since startup
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ttlSeconds", TimeUnit.NANOSECONDS.toSeconds(ttlNanos));
+        stats.put("entries", entries.size());
+        stats.put("hits", hits.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("computed", computed.sum());
+        return stats;
+    }
+
+    /**
+     * drop every cached response - the next request per key computes it again
+     */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    private byte[] get(String key, Supplier<Object> loader) {
+        long now = System.nanoTime();
+        Entry created = null;
+
+        while (true) {
+            Entry existing = entries.get(key);
+            if (existing != null && existing.isFresh(now)) {
+                if (existing.body().isDone()) {
+                    hits.increment();
+                } else {
+                    coalesced.increment();
+                }
+                return await(existing.body());
+            }
+
+            // missing or stale - try to become the one request that builds it
+            if (created == null) {
+                created = new Entry(new CompletableFuture<>(), now + ttlNanos);
+            }
+            boolean claimed = existing == null
+                    ? entries.putIfAbsent(key, created) == null
+                    : entries.replace(key, existing, created);
+            if (claimed) {
+                break;
+            }
+        }
+
+        computed.increment();
+        byte[] body;
+        try {
+            body = serialize(loader.get());
+        } catch (RuntimeException | Error e) {
+            // an Error too (StackOverflowError, OutOfMemoryError) - left incomplete, the
+            // future would keep every later request for this key waiting forever
+            entries.remove(key, created);
+            created.body().completeExceptionally(e);
+            throw e;
+        }
+        created.body().complete(body);
+        if (ttlNanos == 0) {
+            entries.remove(key, created);
+        }
+        return body;
+    }
+
+    // waits for the computation in flight (microseconds - it is pure in-memory work)
+    private static byte[] await(CompletableFuture<byte[]> body) {
+        try {
+            return body.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("failed to serialize catalog response", e);
+        }
+    }
+}
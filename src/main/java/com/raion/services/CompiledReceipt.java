@@ -0,0 +1,438 @@
+package com.raion.services;
+
+import com.raion.models.Accessory;
+import com.raion.models.Feature;
+import com.raion.models.Level1;
+import com.raion.models.Level2;
+import com.raion.models.Level3;
+import com.raion.models.Level4;
+import com.raion.models.Option;
+import com.raion.models.Order;
+import com.raion.models.ServicePackage;
+import com.raion.models.TrimLevel;
+import com.raion.models.Vehicle;
+import com.raion.models.VehicleColor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * the receipt layout of ReceiptGenerator.generateReceipt, compiled once into constant
+ * utf-8 chunks and typed slots
+ *
+ * rendering walks the chunks and writes each slot straight into a pooled byte buffer:
+ * strings are encoded char by char, money, counts and the order date are written as
+ * digits - no StringBuilder, no String.format, no intermediate strings. the only
+ * allocation is the exact-size copy handed back
+ *
+ * generateReceipt stays the reference. at startup the compiled layout renders a spread
+ * of sample orders and must match it byte for byte (this also covers the default
+ * locale's month names and number separators); if it doesn't, render returns null and
+ * callers use generateReceipt. values the digit writers can't print exactly - a money
+ * amount within a hair of half a cent, say - are formatted the slow way instead
+ */
+public final class CompiledReceipt {
+
+    private static final String LINE_SEPARATOR = "=".repeat(60);
+
+    // what goes between the constant chunks
+    private enum Slot {
+        ORDER_ID, ORDER_DATE, MODEL, TRIM, COLOR, DRIVETRAIN, RANGE, BASE_PRICE, FEATURES,
+        SUBTOTAL, TAX, TOTAL, MONTHLY_PAYMENT, POWER, ACCELERATION, TOP_SPEED, BATTERY, CO2_SAVED, TREES
+    }
+
+    // generateReceipt's layout: text, slot, text, slot, ..., text
+    private static final Object[] LAYOUT = {
+            LINE_SEPARATOR + "\nRAION MOTORS\nElectric Vehicle Order Receipt\n" + LINE_SEPARATOR + "\nOrder ID: ",
+            Slot.ORDER_ID,
+            "\nDate: ", Slot.ORDER_DATE,
+            "\n\nVEHICLE CONFIGURATION\n" + LINE_SEPARATOR + "\nModel: ", Slot.MODEL,
+            "\nTrim: ", Slot.TRIM,
+            "\nColor: ", Slot.COLOR,
+            "\nDrivetrain: ", Slot.DRIVETRAIN,
+            "\nRange: ", Slot.RANGE,
+            " miles\nBase Price: ", Slot.BASE_PRICE,
+            "\n", Slot.FEATURES,
+            "\nSUMMARY\n" + LINE_SEPARATOR + "\nSubtotal: ", Slot.SUBTOTAL,
+            "\nTax (" + PriceCalculator.getTaxRatePercentage() + "%): ", Slot.TAX,
+            "\n" + LINE_SEPARATOR + "\nTOTAL: ", Slot.TOTAL,
+            "\n\nESTIMATED MONTHLY PAYMENT: ", Slot.MONTHLY_PAYMENT,
+            "\n(Based on: 60 months, $10,000 down, 5.9% APR)\n\nVEHICLE SPECIFICATIONS\n" + LINE_SEPARATOR
+                    + "\nPower: ", Slot.POWER,
+            " hp\n0-60 mph: ", Slot.ACCELERATION,
+            " seconds\nTop Speed: ", Slot.TOP_SPEED,
+            " mph\nRange: ", Slot.RANGE,
+            " miles\nBattery: ", Slot.BATTERY,
+            " kWh\n\nENVIRONMENTAL IMPACT\n" + LINE_SEPARATOR + "\nEstimated CO2 Saved (5 years): ", Slot.CO2_SAVED,
+            " tons\nEquivalent to planting: ", Slot.TREES,
+            " trees\n\nThank you for choosing Raion Motors!\nwww.raionmotors.com | support@raionmotors.com\n"
+                    + LINE_SEPARATOR + "\n"
+    };
+
+    // the features section, present only when features were added
+    private static final byte[] FEATURES_HEADER = utf8("\nADDED FEATURES\n" + LINE_SEPARATOR + "\n");
+    private static final byte[] FEATURE_PRICE = utf8(": ");
+
+    // chunk i comes before slot i; the last chunk ends the receipt
+    private static final byte[][] CHUNKS;
+    private static final Slot[] SLOTS;
+
+    // the default locale's month names and separators, as Order and PriceCalculator format them
+    private static final byte[][] MONTHS = new byte[12][];
+    private static final byte[] GROUPING_SEPARATOR;
+    private static final byte[] DECIMAL_SEPARATOR;
+
+    // money above this, or too close to half a cent, goes through PriceCalculator.formatPrice
+    private static final double MAX_FAST_AMOUNT = 1e9;
+    private static final double HALF_TOLERANCE = 1e-3;
+
+    // buffers are reused across renders; a thread takes the one in its slot or makes a new one
+    private static final int POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private static final int INITIAL_CAPACITY = 2048;
+    private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+    private static final AtomicReferenceArray<ReceiptBuffer> POOL = new AtomicReferenceArray<>(POOL_SIZE);
+
+    private static final boolean AVAILABLE;
+
+    static {
+        List<byte[]> chunks = new ArrayList<>();
+        List<Slot> slots = new ArrayList<>();
+        for (Object part : LAYOUT) {
+            if (part instanceof Slot slot) {
+                slots.add(slot);
+            } else {
+                chunks.add(utf8((String) part));
+            }
+        }
+        CHUNKS = chunks.toArray(new byte[0][]);
+        SLOTS = slots.toArray(new Slot[0]);
+
+        DateTimeFormatter monthFormat = DateTimeFormatter.ofPattern("MMMM");
+        for (Month month : Month.values()) {
+            MONTHS[month.ordinal()] = utf8(monthFormat.format(month));
+        }
+
+        // "$1,234,567.50" in the locale String.format uses
+        String sample = PriceCalculator.formatPrice(1234567.5);
+        boolean separatorsFound = sample.length() == 13 && sample.startsWith("$1")
+                && sample.startsWith("234", 3) && sample.startsWith("567", 7) && sample.endsWith("50")
+                && sample.charAt(2) == sample.charAt(6) && !Character.isDigit(sample.charAt(2))
+                && !Character.isDigit(sample.charAt(10));
+        GROUPING_SEPARATOR = separatorsFound ? utf8(sample.substring(2, 3)) : null;
+        DECIMAL_SEPARATOR = separatorsFound ? utf8(sample.substring(10, 11)) : null;
+        if (!separatorsFound) {
+            System.err.println("✗ compiled receipt can't write this locale's numbers (" + sample + ") - not used");
+        }
+
+        AVAILABLE = separatorsFound && matchesGenerateReceipt();
+    }
+
+    // private constructor - utility class with only static methods
+    private CompiledReceipt() {
+        throw new UnsupportedOperationException("utility class cannot be instantiated");
+    }
+
+    /**
+     * render an order's receipt
+     *
+     * @param order the order
+     * @return utf-8 receipt bytes, the same as generateReceipt gives, or null if the
+     *         compiled layout is off (it didn't match generateReceipt at startup)
+     */
+    public static byte[] render(Order order) {
+        if (!AVAILABLE || order == null) {
+            return null;
+        }
+
+        ReceiptBuffer buffer = acquire();
+        try {
+            write(order, buffer);
+            return Arrays.copyOf(buffer.bytes, buffer.length);
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * true if render is in use (the compiled layout matched generateReceipt at startup)
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    private static void write(Order order, ReceiptBuffer out) {
+        Vehicle vehicle = order.getVehicle();
+        out.length = 0;
+        for (int i = 0; i < SLOTS.length; i++) {
+            out.put(CHUNKS[i]);
+            switch (SLOTS[i]) {
+                case ORDER_ID -> out.putString(order.getOrderId());
+                case ORDER_DATE -> out.putDate(order);
+                case MODEL -> out.putString(vehicle.getModelName());
+                case TRIM -> out.putString(vehicle.getTrimLevel().getDisplayName());
+                case COLOR -> out.putString(vehicle.getColor().getDisplayName());
+                case DRIVETRAIN -> out.putString(vehicle.getDrivetrain());
+                case RANGE -> out.putLong(vehicle.getRange());
+                case BASE_PRICE -> out.putMoney(order.getVehiclePrice());
+                case FEATURES -> writeFeatures(order, out);
+                case SUBTOTAL -> out.putMoney(order.calculateSubtotal());
+                case TAX -> out.putMoney(order.calculateTax());
+                case TOTAL -> out.putMoney(order.calculateTotal());
+                case MONTHLY_PAYMENT -> out.putMoney(order.calculateMonthlyPayment());
+                case POWER -> out.putLong(vehicle.getPower());
+                case ACCELERATION -> out.putDouble(vehicle.getAcceleration());
+                case TOP_SPEED -> out.putLong(vehicle.getTopSpeed());
+                case BATTERY -> out.putLong(vehicle.getBatteryCapacity());
+                case CO2_SAVED -> out.putWhole(EnvironmentalCalculator.calculateCO2Saved(vehicle));
+                case TREES -> out.putLong(EnvironmentalCalculator.calculateTreesEquivalent(
+                        EnvironmentalCalculator.calculateCO2Saved(vehicle)));
+            }
+        }
+        out.put(CHUNKS[SLOTS.length]);
+    }
+
+    private static void writeFeatures(Order order, ReceiptBuffer out) {
+        int count = order.getFeatureCount();
+        if (count == 0) {
+            return;
+        }
+        out.put(FEATURES_HEADER);
+        for (int i = 0; i < count; i++) {
+            Feature feature = order.getFeature(i);
+            out.putString(feature.getName());
+            out.put(FEATURE_PRICE);
+            out.putMoney(feature.getPrice());
+            out.putByte('\n');
+        }
+    }
+
+    private static ReceiptBuffer acquire() {
+        ReceiptBuffer buffer = POOL.getAndSet(poolSlot(), null);
+        return buffer != null ? buffer : new ReceiptBuffer();
+    }
+
+    private static void release(ReceiptBuffer buffer) {
+        if (buffer.bytes.length <= MAX_POOLED_CAPACITY) {
+            POOL.compareAndSet(poolSlot(), null, buffer);
+        }
+    }
+
+    private static int poolSlot() {
+        return Math.floorMod(System.identityHashCode(Thread.currentThread()), POOL_SIZE);
+    }
+
+    // every level, a few trims, all signatures, with and without features, at two dates
+    // whose month names and digits differ in length
+    private static boolean matchesGenerateReceipt() {
+        try {
+            LocalDateTime first = LocalDateTime.of(2000, 1, 1, 0, 0, 0);
+            LocalDateTime second = LocalDateTime.of(2031, 9, 30, 23, 59, 59);
+
+            List<Order> samples = new ArrayList<>();
+            samples.add(new Order(new Level1(TrimLevel.STANDARD, VehicleColor.WHITE), first));
+            samples.add(new Order(new Level1(TrimLevel.PREMIUM, VehicleColor.BLUE), second));
+            samples.add(new Order(new Level2(TrimLevel.OFFROAD, VehicleColor.SILVER), first));
+            samples.add(new Order(new Level3(TrimLevel.ULTRA, VehicleColor.GREEN), second));
+            samples.add(new Order(new Level4(VehicleColor.BLACK), first));
+            for (String signatureId : new String[]{"urban-commuter", "trail-titan", "track-beast", "executive"}) {
+                samples.add(new Order(OrderAssembler.createSignatureVehicle(signatureId), second));
+            }
+            samples.get(1).addFeature(Option.createEnhancedAutopilot());
+            samples.get(2).addFeature(Option.createMassageSeats());
+            samples.get(2).addFeature(ServicePackage.createExtendedWarranty8Year());
+            samples.get(2).addFeature(Accessory.createPremiumFloorMats());
+            samples.get(3).addFeature(Option.createTrackPackage());
+            samples.get(4).addFeature(Accessory.createHomeCharger());
+
+            ReceiptBuffer buffer = new ReceiptBuffer();
+            for (Order sample : samples) {
+                write(sample, buffer);
+                byte[] expected = ReceiptGenerator.generateReceipt(sample).getBytes(StandardCharsets.UTF_8);
+                if (!Arrays.equals(expected, Arrays.copyOf(buffer.bytes, buffer.length))) {
+                    System.err.println("✗ compiled receipt doesn't match generateReceipt for "
+                            + sample.getVehicle().getModelName() + " - not used");
+                    return false;
+                }
+            }
+            return true;
+        } catch (RuntimeException e) {
+            System.err.println("✗ could not check the compiled receipt: " + e.getMessage() + " - not used");
+            return false;
+        }
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // a growable byte array with writers for each slot type; not thread-safe - one per render
+    private static final class ReceiptBuffer {
+
+        private byte[] bytes = new byte[INITIAL_CAPACITY];
+        private int length;
+        private final byte[] digits = new byte[20];
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+
+        private void put(byte[] chunk) {
+            ensure(chunk.length);
+            System.arraycopy(chunk, 0, bytes, length, chunk.length);
+            length += chunk.length;
+        }
+
+        private void putByte(int value) {
+            ensure(1);
+            bytes[length++] = (byte) value;
+        }
+
+        // utf-8, the same bytes String.getBytes gives (an unpaired surrogate becomes '?')
+        private void putString(String value) {
+            ensure(value.length() * 3);
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    bytes[length++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[length++] = (byte) (0xc0 | c >> 6);
+                    bytes[length++] = (byte) (0x80 | c & 0x3f);
+                } else if (!Character.isSurrogate(c)) {
+                    bytes[length++] = (byte) (0xe0 | c >> 12);
+                    bytes[length++] = (byte) (0x80 | c >> 6 & 0x3f);
+                    bytes[length++] = (byte) (0x80 | c & 0x3f);
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    bytes[length++] = (byte) (0xf0 | codePoint >> 18);
+                    bytes[length++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                    bytes[length++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                    bytes[length++] = (byte) (0x80 | codePoint & 0x3f);
+                } else {
+                    bytes[length++] = '?';
+                }
+            }
+        }
+
+        private void putLong(long value) {
+            putDigits(value, false);
+        }
+
+        // optionally with the locale's grouping separator every three digits
+        private void putDigits(long value, boolean grouped) {
+            if (value < 0) {
+                putString(Long.toString(value));
+                return;
+            }
+            int count = 0;
+            do {
+                digits[count++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            ensure(count * (1 + GROUPING_SEPARATOR.length));
+            for (int i = count - 1; i >= 0; i--) {
+                bytes[length++] = digits[i];
+                if (grouped && i > 0 && i % 3 == 0) {
+                    put(GROUPING_SEPARATOR);
+                }
+            }
+        }
+
+        // digits of value, left-padded with zeros to width
+        private void putPadded(long value, int width) {
+            ensure(width);
+            for (int i = width - 1; i >= 0; i--) {
+                bytes[length + i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            length += width;
+        }
+
+        // as PriceCalculator.formatPrice prints it: "$" and %,.2f
+        private void putMoney(double amount) {
+            long cents = rounded(amount, 100);
+            if (cents < 0) {
+                putString(PriceCalculator.formatPrice(amount));
+                return;
+            }
+            putByte('$');
+            putDigits(cents / 100, true);
+            put(DECIMAL_SEPARATOR);
+            putPadded(cents % 100, 2);
+        }
+
+        // as String.format("%.0f") prints it
+        private void putWhole(double value) {
+            long whole = rounded(value, 1);
+            if (whole < 0) {
+                putString(String.format("%.0f", value));
+                return;
+            }
+            putDigits(whole, false);
+        }
+
+        // as StringBuilder.append(double) prints it, for plain values with up to three decimals
+        private void putDouble(double value) {
+            // Double.toString switches to exponent notation outside [1e-3, 1e7)
+            if (value >= 1e-3 && value < 1e7) {
+                long scale = 10;
+                for (int decimals = 1; decimals <= 3; decimals++, scale *= 10) {
+                    long scaled = Math.round(value * scale);
+                    if (scaled / (double) scale == value) {
+                        putDigits(scaled / scale, false);
+                        putByte('.');
+                        putPadded(scaled % scale, decimals);
+                        return;
+                    }
+                }
+            }
+            putString(Double.toString(value));
+        }
+
+        // "MMMM dd, yyyy HH:mm:ss", as Order.getFormattedOrderDate prints it
+        private void putDate(Order order) {
+            LocalDateTime date = order.getOrderDate();
+            if (date.getYear() < 1 || date.getYear() > 9999) {
+                putString(order.getFormattedOrderDate());
+                return;
+            }
+            put(MONTHS[date.getMonthValue() - 1]);
+            putByte(' ');
+            putPadded(date.getDayOfMonth(), 2);
+            putByte(',');
+            putByte(' ');
+            putPadded(date.getYear(), 4);
+            putByte(' ');
+            putPadded(date.getHour(), 2);
+            putByte(':');
+            putPadded(date.getMinute(), 2);
+            putByte(':');
+            putPadded(date.getSecond(), 2);
+        }
+
+        /**
+         * value * scale rounded half up, the way Formatter rounds - or -1 when the value
+         * is negative or huge, or so close to a half that the double's shortest decimal
+         * form decides which way it rounds (the caller formats those the slow way)
+         */
+        private static long rounded(double value, int scale) {
+            if (!(value >= 0 && value < MAX_FAST_AMOUNT)) {
+                return -1;
+            }
+            double scaled = value * scale;
+            double fraction = scaled - Math.floor(scaled);
+            if (Math.abs(fraction - 0.5) < HALF_TOLERANCE) {
+                return -1;
+            }
+            return Math.round(scaled);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.raion.services;
+
+/**
+ * groups api requests by cost for admission control and rate limiting
+ *
+ * - READ: catalog gets (vehicles, signatures), order listing, order status polling and
+ *   receipt downloads
+ * - ORDER: post /api/order, /api/order/signature and /api/orders/batch
+ *
+ * health checks, static files and cors preflights belong to no class and are never limited
+ */
+public enum EndpointClass {
+    READ("read"),
+    ORDER("order");
+
+    private final String label;
+
+    EndpointClass(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * the class of a request
+     *
+     * @param method http method
+     * @param path request path without the query string
+     * @return the class, or null if the request is never limited
+     */
+    public static EndpointClass of(String method, String path) {
+        if (path == null || !path.startsWith("/api/")) {
+            return null;
+        }
+
+        if ("GET".equals(method)) {
+            if (path.startsWith("/api/vehicles") || path.startsWith("/api/signatures")
+                    || path.equals("/api/orders")
+                    || (path.startsWith("/api/order/") && (path.endsWith("/status") || path.endsWith("/receipt")))) {
+                return READ;
+            }
+            return null;
+        }
+        // /api/order, /api/order/signature and /api/orders/batch
+        if ("POST".equals(method) && path.startsWith("/api/order")) {
+            return ORDER;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,193 @@
+package com.raion.services;
+
+import com.raion.models.Accessory;
+import com.raion.models.Feature;
+import com.raion.models.Option;
+import com.raion.models.ServicePackage;
+import com.raion.models.TrimLevel;
+import com.raion.models.Vehicle;
+import com.raion.models.VehicleColor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * one-byte codes for everything a structured order refers to (see OrderCodec):
+ * features, trims, colors and signature vehicles
+ *
+ * codes are stored in saved orders, so the tables are append-only: a code never changes
+ * meaning and is never reused. feature entries are literal copies of what was sold, not
+ * calls to the factory methods - editing Option.createEnhancedAutopilot doesn't touch the
+ * entry, so an order saved before the change still renders with the old name and price
+ * (the vehicle's base price is stored in the order itself, see OrderCodec). a changed
+ * feature matches no entry until one is appended for it, and until then orders using it
+ * are saved as rendered text. enum ordinals are deliberately not used - reordering an
+ * enum must not rewrite history
+ *
+ * code 0 is never assigned (it reads as "unknown")
+ */
+public final class FeatureCatalog {
+
+    // index = code; a feature is matched against these by type, name and price.
+    // features are immutable, so the entries themselves are handed out
+    private static final Feature[] FEATURES = {
+            null,
+            new Option("Enhanced Autopilot", 6000.00,                                                   // 1
+                    "navigate on autopilot, auto lane change, autopark, summon, smart summon", "Autopilot"),
+            new Option("Full Self-Driving Capability", 8000.00,                                         // 2
+                    "all enhanced autopilot features plus traffic light and stop sign control, autosteer on city streets",
+                    "Autopilot"),
+            new Option("Massage Seats (Front & Rear)", 3000.00,                                         // 3
+                    "multi-point massage functionality for front and rear seats", "Comfort"),
+            new Option("Massage Seats (Front & Rear)", 5000.00,                                         // 4
+                    "18-point massage functionality for front and rear executive seats", "Comfort", 4),
+            new Option("Custom Paint Color", 2000.00,                                                   // 5
+                    "exclusive custom paint finish beyond standard color options", "Exterior"),
+            new Option("Track Package", 10000.00,                                                       // 6
+                    "carbon ceramic brakes, track telemetry system, lap timer with gps, performance data recorder",
+                    "Performance", 3),
+            new ServicePackage("Basic Warranty", 0.00,                                                  // 7
+                    "4 years / 50,000 miles comprehensive warranty. 8 years / 100,000 miles battery warranty", 4),
+            new ServicePackage("Extended Warranty - 8 Years", 5000.00,                                  // 8
+                    "extends comprehensive warranty to 8 years / 100,000 miles. covers all vehicle components", 8),
+            new ServicePackage("Premium Maintenance Package - 5 Years", 3500.00,                        // 9
+                    "all scheduled maintenance included for 5 years. tire rotations, brake inspections, software updates",
+                    5),
+            new ServicePackage("Premium Roadside Assistance", 500.00,                                   // 10
+                    "24/7 roadside support, towing, mobile service, loaner vehicle", 1, true),
+            new Accessory("Premium Floor Mats", 400.00,                                                 // 11
+                    "all-weather floor mats with raion logo for all rows", false),
+            new Accessory("Home EV Charger (Level 2, 240V)", 800.00,                                    // 12
+                    "wall-mounted level 2 charger with 25-foot cable. includes installation kit", false),
+            new Accessory("Paint Protection Film (Full Front)", 2000.00,                                // 13
+                    "clear protective film for front bumper, hood, fenders, and mirrors. professional installation included",
+                    true),
+            new Accessory("Ceramic Coating (Full Vehicle)", 1500.00,                                    // 14
+                    "professional-grade ceramic coating for entire vehicle. provides long-lasting protection and shine",
+                    true)
+    };
+
+    private static final TrimLevel[] TRIMS = {
+            null,
+            TrimLevel.STANDARD, TrimLevel.PREMIUM, TrimLevel.PERFORMANCE, TrimLevel.OFFROAD,
+            TrimLevel.PRO, TrimLevel.MAX, TrimLevel.ULTRA, TrimLevel.FLAGSHIP
+    };
+
+    private static final VehicleColor[] COLORS = {
+            null,
+            VehicleColor.WHITE, VehicleColor.BLACK, VehicleColor.SILVER, VehicleColor.BLUE,
+            VehicleColor.PURPLE, VehicleColor.BURGUNDY, VehicleColor.GREEN
+    };
+
+    // signature ids as accepted by OrderAssembler.createSignatureVehicle
+    private static final String[] SIGNATURES = {
+            null, "urban-commuter", "trail-titan", "track-beast", "executive"
+    };
+
+    // vehicle class of each signature, in code order from code 1 (each signature has its own class)
+    private static final List<Class<? extends Vehicle>> SIGNATURE_CLASSES = Arrays.stream(SIGNATURES)
+            .filter(Objects::nonNull)
+            .<Class<? extends Vehicle>>map(id -> OrderAssembler.createSignatureVehicle(id).getClass())
+            .toList();
+
+    // private constructor - utility class with only static methods
+    private FeatureCatalog() {
+        throw new UnsupportedOperationException("utility class cannot be instantiated");
+    }
+
+    /**
+     * @return the feature's code, or 0 if the catalog has no feature of that type, name and price
+     */
+    public static int featureCode(Feature feature) {
+        for (int code = 1; code < FEATURES.length; code++) {
+            Feature entry = FEATURES[code];
+            if (entry.getClass() == feature.getClass() && entry.getPrice() == feature.getPrice()
+                    && entry.getName().equals(feature.getName())) {
+                return code;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the feature with this code as it was when the code was assigned, or null for
+     *         an unknown code
+     */
+    public static Feature createFeature(int code) {
+        return code > 0 && code < FEATURES.length ? FEATURES[code] : null;
+    }
+
+    public static int trimCode(TrimLevel trim) {
+        return indexOf(TRIMS, trim);
+    }
+
+    public static TrimLevel trim(int code) {
+        return code > 0 && code < TRIMS.length ? TRIMS[code] : null;
+    }
+
+    public static int colorCode(VehicleColor color) {
+        return indexOf(COLORS, color);
+    }
+
+    public static VehicleColor color(int code) {
+        return code > 0 && code < COLORS.length ? COLORS[code] : null;
+    }
+
+    /**
+     * @return the signature code of a signature vehicle, or 0 for any other vehicle
+     */
+    public static int signatureCode(Vehicle vehicle) {
+        return SIGNATURE_CLASSES.indexOf(vehicle.getClass()) + 1;
+    }
+
+    /**
+     * @return a new signature vehicle for the code, or null for an unknown code
+     */
+    public static Vehicle createSignature(int code) {
+        return code > 0 && code < SIGNATURES.length ? OrderAssembler.createSignatureVehicle(SIGNATURES[code]) : null;
+    }
+
+    /**
+     * @return the signature id (as accepted by signature orders) for the code, or null
+     */
+    public static String signatureId(int code) {
+        return code > 0 && code < SIGNATURES.length ? SIGNATURES[code] : null;
+    }
+
+    /**
+     * @return the code of a signature id ("trail-titan"), or 0 if there is no such signature
+     */
+    public static int signatureCode(String id) {
+        for (int code = 1; code < SIGNATURES.length; code++) {
+            if (SIGNATURES[code].equals(id)) {
+                return code;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * number of signature codes assigned so far (codes run from 1 to this)
+     */
+    public static int signatureCount() {
+        return SIGNATURES.length - 1;
+    }
+
+    public static int trimCount() {
+        return TRIMS.length - 1;
+    }
+
+    public static int colorCount() {
+        return COLORS.length - 1;
+    }
+
+    private static int indexOf(Object[] table, Object value) {
+        for (int code = 1; code < table.length; code++) {
+            if (table[code] == value) {
+                return code;
+            }
+        }
+        return 0;
+    }
+}
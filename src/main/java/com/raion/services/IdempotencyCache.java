@@ -0,0 +1,173 @@
+package com.raion.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * remembers the response to each Idempotency-Key so client retries don't place the
+ * same order twice
+ *
+ * the first request with a key runs the order and stores its response future; any
+ * request with the same key - concurrent or later - gets that same response instead of
+ * running again, so a retry never writes a second receipt. keys live for a fixed ttl
+ * and the cache holds at most max-entries keys (oldest dropped first)
+ *
+ * - a key reused with a different request body or endpoint gets 422
+ * - 5xx responses are handed to requests already waiting but not kept, so a later
+ *   retry runs again
+ * - replayed responses carry an Idempotent-Replayed: true header
+ *
+ * lock-free on the hot path: one ConcurrentHashMap putIfAbsent per keyed request
+ */
+@Component
+public class IdempotencyCache {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    // one stored request: what it was for and the response it produced (or will produce)
+    private record Entry(String key, Object fingerprint, CompletableFuture<ResponseEntity<?>> response,
+                         long expiresAtNanos) {
+
+        boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // insertion order = expiry order, since every key gets the same ttl, except for keys
+    // still in flight that eviction moved to the back
+    // (may still hold entries already dropped from the map - they count toward the bound)
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    public IdempotencyCache(@Value("${raion.idempotency.ttl-seconds:86400}") long ttlSeconds,
+                            @Value("${raion.idempotency.max-entries:10000}") int maxEntries) {
+        if (ttlSeconds <= 0 || maxEntries <= 0) {
+            throw new IllegalArgumentException("idempotency ttl and max entries must be positive");
+        }
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * run an order request at most once per idempotency key
+     *
+     * @param key the Idempotency-Key header, or null to just run the action
+     * @param fingerprint identifies the request (endpoint plus decoded body); a key reused
+     *                    with a different fingerprint is rejected
+     * @param action places the order; must not complete exceptionally for client errors
+     * @return the response of the first request with this key
+     */
+    public CompletableFuture<ResponseEntity<?>> execute(String key, Object fingerprint,
+                                                        Supplier<CompletableFuture<ResponseEntity<?>>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(
+                    Map.of("error", "invalid " + HEADER + " header. must be 1 to " + MAX_KEY_LENGTH + " characters")));
+        }
+
+        long now = System.nanoTime();
+        Entry created = new Entry(key, fingerprint, new CompletableFuture<>(), now + ttlNanos);
+
+        while (true) {
+            Entry existing = entries.putIfAbsent(key, created);
+            if (existing == null) {
+                break;
+            }
+            if (existing.isExpired(now)) {
+                // stale key - drop it and try to claim the key again
+                entries.remove(key, existing);
+                continue;
+            }
+            if (!existing.fingerprint().equals(fingerprint)) {
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(
+                        Map.of("error", HEADER + " was already used for a different request")));
+            }
+            // same request - wait for (or reuse) the first response instead of running again
+            return existing.response().thenApply(IdempotencyCache::markReplayed);
+        }
+
+        queued.incrementAndGet();
+        insertionOrder.add(created);
+        evict(now);
+
+        CompletableFuture<ResponseEntity<?>> result;
+        try {
+            result = action.get();
+        } catch (RuntimeException | Error e) {
+            // an Error too - left incomplete, the response would keep every retry with this
+            // key waiting forever
+            forget(created);
+            created.response().completeExceptionally(e);
+            throw e;
+        }
+
+        result.whenComplete((response, error) -> {
+            // server errors aren't final - let the next retry run again
+            if (error != null || response.getStatusCode().is5xxServerError()) {
+                forget(created);
+            }
+            if (error != null) {
+                created.response().completeExceptionally(error);
+            } else {
+                created.response().complete(response);
+            }
+        });
+        return created.response();
+    }
+
+    /**
+     * number of keys currently remembered
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    // drop expired keys from the front, then the oldest keys while over capacity. a key
+    // whose request is still running goes to the back instead - dropped, its retry would
+    // run the order a second time. one pass at most, so a cache full of running requests
+    // stays over capacity for a while rather than spinning
+    private void evict(long now) {
+        int remaining = queued.get();
+        Entry oldest;
+        while (remaining-- > 0 && (oldest = insertionOrder.peek()) != null
+                && (oldest.isExpired(now) || queued.get() > maxEntries)) {
+            if (!insertionOrder.remove(oldest)) {
+                continue;
+            }
+            if (!oldest.response().isDone()) {
+                insertionOrder.add(oldest);
+                continue;
+            }
+            queued.decrementAndGet();
+            forget(oldest);
+        }
+    }
+
+    private void forget(Entry entry) {
+        entries.remove(entry.key(), entry);
+    }
+
+    private static ResponseEntity<?> markReplayed(ResponseEntity<?> response) {
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .header(REPLAYED_HEADER, "true")
+                .body(response.getBody());
+    }
+}
@@ -0,0 +1,340 @@
+package com.raion.services;
+
+import com.raion.dto.CustomOrderRequest;
+import com.raion.dto.SignatureOrderRequest;
+import com.raion.models.*;
+import com.raion.models.signatures.*;
+
+import java.util.List;
+
+/**
+ * turns order requests from the frontend into Order objects
+ * shared by the servlet and reactive order endpoints so both stacks validate,
+ * build and price orders exactly the same way
+ *
+ * request problems the client can fix throw OrderRequestException with the message
+ * to return; domain rule violations (like an option that isn't available for the
+ * chosen level) surface as the IllegalArgumentException thrown by the models
+ */
+public class OrderAssembler {
+
+    // an assembled order plus the normalized signature id (null for custom orders)
+    public record AssembledOrder(Order order, String signatureName) {
+
+        public boolean isSignature() {
+            return signatureName != null;
+        }
+    }
+
+    // private constructor - utility class with only static methods
+    private OrderAssembler() {
+        throw new UnsupportedOperationException("utility class cannot be instantiated");
+    }
+
+    /**
+     * build a custom order from the post /api/order request body
+     *
+     * @param request decoded request with level, trim, color and optional feature id lists
+     * @return the assembled order
+     * @throws OrderRequestException if required fields are missing or invalid
+     */
+    public static AssembledOrder assembleCustomOrder(CustomOrderRequest request) {
+        // validate required fields - frontend sends 'level' not 'model'
+        if (!request.has(CustomOrderRequest.LEVEL) || !request.has(CustomOrderRequest.TRIM)
+                || !request.has(CustomOrderRequest.COLOR)) {
+            throw new OrderRequestException("missing required fields: level, trim, color");
+        }
+
+        // level arrives as a number or a numeric string
+        if (request.isMalformed(CustomOrderRequest.LEVEL)) {
+            throw new OrderRequestException("invalid level format");
+        }
+
+        int level = request.level();
+        if (level < 1 || level > 4) {
+            throw new OrderRequestException("invalid level. must be 1, 2, 3, or 4");
+        }
+
+        // extract trim and color strings
+        String trimStr = requireText(request.trim(), request.isMalformed(CustomOrderRequest.TRIM), "trim").trim();
+        String colorStr = requireText(request.color(), request.isMalformed(CustomOrderRequest.COLOR), "color").trim();
+
+        // convert trim name to enum (handle display names like "Off-Road" -> OFFROAD)
+        TrimLevel trim = parseTrimLevel(trimStr);
+        if (trim == null) {
+            throw new OrderRequestException("invalid trim: " + trimStr);
+        }
+
+        // convert color name to enum (handle lowercase like "white" -> WHITE)
+        VehicleColor color = parseColor(colorStr);
+        if (color == null) {
+            throw new OrderRequestException("invalid color: " + colorStr);
+        }
+
+        // create the vehicle based on level
+        Vehicle vehicle = createVehicle(level, trim, color);
+        if (vehicle == null) {
+            throw new OrderRequestException("invalid trim/color combination for this vehicle level");
+        }
+
+        Order order = new Order(vehicle);
+
+        // add options if provided (frontend sends option ids)
+        for (String optionId : featureIds(request.options(), request.has(CustomOrderRequest.OPTIONS),
+                request.isMalformed(CustomOrderRequest.OPTIONS), "options")) {
+            addOption(order, optionId, level);
+        }
+        failIfMalformed(request.isMalformed(CustomOrderRequest.OPTIONS), "options");
+
+        // add service packages if provided
+        for (String packageId : featureIds(request.servicePackages(), request.has(CustomOrderRequest.SERVICE_PACKAGES),
+                request.isMalformed(CustomOrderRequest.SERVICE_PACKAGES), "servicePackages")) {
+            if (packageId != null && !packageId.trim().isEmpty()) {
+                ServicePackage servicePackage = createServicePackageById(packageId);
+                if (servicePackage != null) {
+                    order.addFeature(servicePackage);
+                }
+            }
+        }
+        failIfMalformed(request.isMalformed(CustomOrderRequest.SERVICE_PACKAGES), "servicePackages");
+
+        // add accessories if provided (frontend sends accessory ids)
+        for (String accessoryId : featureIds(request.accessories(), request.has(CustomOrderRequest.ACCESSORIES),
+                request.isMalformed(CustomOrderRequest.ACCESSORIES), "accessories")) {
+            addAccessory(order, accessoryId);
+        }
+        failIfMalformed(request.isMalformed(CustomOrderRequest.ACCESSORIES), "accessories");
+
+        return new AssembledOrder(order, null);
+    }
+
+    /**
+     * build a signature order from the post /api/order/signature request body
+     *
+     * @param request decoded request with signatureName and optional feature id lists
+     * @return the assembled order with its normalized signature id
+     * @throws OrderRequestException if the signature name is missing or unknown
+     */
+    public static AssembledOrder assembleSignatureOrder(SignatureOrderRequest request) {
+        if (!request.has(SignatureOrderRequest.SIGNATURE_NAME)) {
+            throw new OrderRequestException("missing required field: signatureName");
+        }
+
+        String signatureName = requireText(request.signatureName(),
+                request.isMalformed(SignatureOrderRequest.SIGNATURE_NAME), "signatureName").toLowerCase().trim();
+
+        Vehicle vehicle = createSignatureVehicle(signatureName);
+        if (vehicle == null) {
+            throw new OrderRequestException(
+                    "invalid signature name. must be: urban-commuter, trail-titan, track-beast, or executive");
+        }
+
+        Order order = new Order(vehicle);
+
+        // customer can still customize a signature with extra options and accessories
+        for (String optionId : featureIds(request.additionalOptions(),
+                request.has(SignatureOrderRequest.ADDITIONAL_OPTIONS),
+                request.isMalformed(SignatureOrderRequest.ADDITIONAL_OPTIONS), "additionalOptions")) {
+            addOption(order, optionId, vehicle.getLevel());
+        }
+        failIfMalformed(request.isMalformed(SignatureOrderRequest.ADDITIONAL_OPTIONS), "additionalOptions");
+
+        for (String accessoryId : featureIds(request.accessories(), request.has(SignatureOrderRequest.ACCESSORIES),
+                request.isMalformed(SignatureOrderRequest.ACCESSORIES), "accessories")) {
+            addAccessory(order, accessoryId);
+        }
+        failIfMalformed(request.isMalformed(SignatureOrderRequest.ACCESSORIES), "accessories");
+
+        return new AssembledOrder(order, signatureName);
+    }
+
+    // the endpoints used to cast these fields straight to String, so a null or a
+    // non-string value ended up as a 500 - keep failing the same way
+    private static String requireText(String value, boolean malformed, String field) {
+        if (malformed) {
+            throw new ClassCastException(field + " must be a string");
+        }
+        if (value == null) {
+            throw new NullPointerException(field + " is null");
+        }
+        return value;
+    }
+
+    // ids to add for an optional list field; a null list fails like the old cast did
+    private static List<String> featureIds(List<String> ids, boolean present, boolean malformed, String field) {
+        if (!present) {
+            return List.of();
+        }
+        if (ids == null) {
+            if (malformed) {
+                throw new ClassCastException(field + " must be an array of strings");
+            }
+            throw new NullPointerException(field + " is null");
+        }
+        return ids;
+    }
+
+    // a list with a bad element keeps its valid prefix - fail once that prefix is applied
+    private static void failIfMalformed(boolean malformed, String field) {
+        if (malformed) {
+            throw new ClassCastException(field + " must be an array of strings");
+        }
+    }
+
+    private static void addOption(Order order, String optionId, int level) {
+        if (optionId != null && !optionId.trim().isEmpty()) {
+            Option option = createOptionById(optionId, level);
+            if (option != null) {
+                order.addFeature(option);
+            }
+        }
+    }
+
+    private static void addAccessory(Order order, String accessoryId) {
+        if (accessoryId != null && !accessoryId.trim().isEmpty()) {
+            Accessory accessory = createAccessoryById(accessoryId);
+            if (accessory != null) {
+                order.addFeature(accessory);
+            }
+        }
+    }
+
+    /**
+     * parse trim level from display name
+     * handles names like "Standard", "Off-Road", etc.
+     */
+    public static TrimLevel parseTrimLevel(String trimStr) {
+        return TrimLevel.fromAlias(trimStr);
+    }
+
+    /**
+     * parse color from name (handles lowercase like "white" -> WHITE)
+     */
+    public static VehicleColor parseColor(String colorStr) {
+        return VehicleColor.fromName(colorStr);
+    }
+
+    /**
+     * create vehicle based on level, trim, and color
+     * returns null when the trim or color isn't offered on that level
+     */
+    public static Vehicle createVehicle(int level, TrimLevel trim, VehicleColor color) {
+        try {
+            switch (level) {
+                case 1:
+                    return new Level1(trim, color);
+                case 2:
+                    return new Level2(trim, color);
+                case 3:
+                    return new Level3(trim, color);
+                case 4:
+                    return new Level4(color);
+                default:
+                    return null;
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("failed to create vehicle: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * create signature vehicle by name
+     */
+    public static Vehicle createSignatureVehicle(String name) {
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+
+        switch (name) {
+            case "urban-commuter":
+                return new UrbanCommuterSignature();
+            case "trail-titan":
+                return new TrailTitanSignature();
+            case "track-beast":
+                return new TrackBeastSignature();
+            case "executive":
+                return new ExecutiveSignature();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * create option by id (matches frontend ids like "enhanced-autopilot")
+     */
+    public static Option createOptionById(String id, int level) {
+        if (id == null || id.isEmpty()) {
+            return null;
+        }
+
+        id = id.toLowerCase().trim();
+
+        switch (id) {
+            case "enhanced-autopilot":
+                return Option.createEnhancedAutopilot();
+            case "full-self-driving":
+            case "fsd":
+                return Option.createFullSelfDriving();
+            case "massage-seats":
+                return (level == 4) ? Option.createMassageSeatsLevel4() : Option.createMassageSeats();
+            case "custom-paint":
+                return Option.createCustomPaint();
+            case "track-package":
+                return Option.createTrackPackage();
+            default:
+                System.err.println("unknown option id: " + id);
+                return null;
+        }
+    }
+
+    /**
+     * create service package by id
+     */
+    public static ServicePackage createServicePackageById(String id) {
+        if (id == null || id.isEmpty()) {
+            return null;
+        }
+
+        id = id.toLowerCase().trim();
+
+        switch (id) {
+            case "warranty-8yr":
+            case "extended-warranty":
+                return ServicePackage.createExtendedWarranty8Year();
+            case "maintenance-5yr":
+            case "premium-maintenance":
+                return ServicePackage.createPremiumMaintenance5Year();
+            case "roadside-assistance":
+                return ServicePackage.createPremiumRoadsideAssistance();
+            default:
+                System.err.println("unknown service package id: " + id);
+                return null;
+        }
+    }
+
+    /**
+     * create accessory by id (matches frontend ids like "floor-mats")
+     */
+    public static Accessory createAccessoryById(String id) {
+        if (id == null || id.isEmpty()) {
+            return null;
+        }
+
+        id = id.toLowerCase().trim();
+
+        switch (id) {
+            case "floor-mats":
+                return Accessory.createPremiumFloorMats();
+            case "home-charger":
+                return Accessory.createHomeCharger();
+            case "paint-protection":
+                return Accessory.createPaintProtectionFilm();
+            case "ceramic-coating":
+                return Accessory.createCeramicCoating();
+            default:
+                System.err.println("unknown accessory id: " + id);
+                return null;
+        }
+    }
+}
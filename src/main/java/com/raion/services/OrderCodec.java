@@ -0,0 +1,278 @@
+package com.raion.services;
+
+import com.raion.models.Feature;
+import com.raion.models.Level1;
+import com.raion.models.Level2;
+import com.raion.models.Level3;
+import com.raion.models.Level4;
+import com.raion.models.Order;
+import com.raion.models.TrimLevel;
+import com.raion.models.Vehicle;
+import com.raion.models.VehicleColor;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * structured orders - the compact binary form an order is saved in when receipts are
+ * rendered on demand (-Draion.receipts.storage=structured, see ReceiptGenerator)
+ *
+ * layout (big-endian), about 20-30 bytes instead of a ~1.2 KB receipt:
+ *   byte   format version (VERSION - never '=', the first byte of every text receipt)
+ *   byte   signature code, or 0 for a custom vehicle followed by
+ *          byte level, byte trim code, byte color code
+ *   long   order date, seconds since the epoch (local time, read as utc)
+ *   int    vehicle price in cents (not in version 1)
+ *   int    order total in cents - checked when decoding
+ *   byte   feature count, then one feature code each
+ *
+ * codes come from FeatureCatalog, whose feature entries are frozen, and the vehicle's price
+ * is stored, so an order decodes to the prices it was sold at however the models change.
+ * the order id isn't stored: it is the file name (or the segment record key) the order is
+ * saved under. version 1 orders (no vehicle price) are still read, priced at the model's
+ * current price - one whose vehicle price changed since fails the total check and decode
+ * throws instead of rendering different numbers
+ */
+public final class OrderCodec {
+
+    public static final byte VERSION = 2;
+    // before the vehicle price was stored
+    private static final byte VERSION_1 = 1;
+
+    /**
+     * the fixed fields of a structured order, read without building any models
+     *
+     * @param signature        signature code, or 0 for a custom vehicle
+     * @param level            vehicle level (0 for a signature - see FeatureCatalog.createSignature)
+     * @param trim             trim code (0 for a signature)
+     * @param color            color code (0 for a signature)
+     * @param orderEpochSecond order date, seconds since the epoch (local time, read as utc)
+     * @param vehicleCents     vehicle price in cents, or -1 for a version 1 order (not stored)
+     * @param totalCents       order total in cents
+     * @param featureCount     number of feature codes - the last featureCount bytes of the order
+     */
+    public record Header(int signature, int level, int trim, int color, long orderEpochSecond, int vehicleCents,
+                         int totalCents, int featureCount) {
+    }
+
+    private static final int MAX_FEATURES = 255;
+
+    // private constructor - utility class with only static methods
+    private OrderCodec() {
+        throw new UnsupportedOperationException("utility class cannot be instantiated");
+    }
+
+    /**
+     * encode an order
+     *
+     * @return the structured order, or null if it uses something FeatureCatalog has no code
+     *         for (the caller saves the rendered receipt instead)
+     */
+    public static byte[] encode(Order order) {
+        Vehicle vehicle = order.getVehicle();
+        List<Feature> features = order.getFeatures();
+        long vehicleCents = Math.round(order.getVehiclePrice() * 100);
+        long totalCents = Math.round(order.calculateTotal() * 100);
+        if (features.size() > MAX_FEATURES || totalCents > Integer.MAX_VALUE
+                || vehicleCents / 100.0 != order.getVehiclePrice()) {
+            return null;
+        }
+
+        int signature = FeatureCatalog.signatureCode(vehicle);
+        int trim = FeatureCatalog.trimCode(vehicle.getTrimLevel());
+        int color = FeatureCatalog.colorCode(vehicle.getColor());
+        if (signature == 0 && (vehicle.getClass() != levelClass(vehicle.getLevel()) || trim == 0 || color == 0)) {
+            return null;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(2 + (signature == 0 ? 3 : 0) + Long.BYTES + 2 * Integer.BYTES
+                + 1 + features.size());
+        out.put(VERSION);
+        out.put((byte) signature);
+        if (signature == 0) {
+            out.put((byte) vehicle.getLevel());
+            out.put((byte) trim);
+            out.put((byte) color);
+        }
+        out.putLong(order.getOrderDate().toEpochSecond(ZoneOffset.UTC));
+        out.putInt((int) vehicleCents);
+        out.putInt((int) totalCents);
+        out.put((byte) features.size());
+        for (Feature feature : features) {
+            int code = FeatureCatalog.featureCode(feature);
+            if (code == 0) {
+                return null;
+            }
+            out.put((byte) code);
+        }
+        return out.array();
+    }
+
+    /**
+     * encode an order from its header fields and feature codes (the inverse of readHeader)
+     *
+     * @param header       header - level, trim and color are ignored for a signature; a
+     *                     negative vehicle price writes a version 1 order
+     * @param featureCodes header.featureCount() feature codes
+     */
+    public static byte[] encode(Header header, byte[] featureCodes) {
+        boolean custom = header.signature() == 0;
+        boolean version1 = header.vehicleCents() < 0;
+        ByteBuffer out = ByteBuffer.allocate(2 + (custom ? 3 : 0) + Long.BYTES + (version1 ? 1 : 2) * Integer.BYTES
+                + 1 + header.featureCount());
+        out.put(version1 ? VERSION_1 : VERSION);
+        out.put((byte) header.signature());
+        if (custom) {
+            out.put((byte) header.level());
+            out.put((byte) header.trim());
+            out.put((byte) header.color());
+        }
+        out.putLong(header.orderEpochSecond());
+        if (!version1) {
+            out.putInt(header.vehicleCents());
+        }
+        out.putInt(header.totalCents());
+        out.put((byte) header.featureCount());
+        out.put(featureCodes, 0, header.featureCount());
+        return out.array();
+    }
+
+    /**
+     * true if the content is a structured order rather than receipt text
+     */
+    public static boolean isEncoded(byte[] content) {
+        return content.length > 0 && isVersion(content[0]);
+    }
+
+    public static boolean isEncoded(ByteBuffer content) {
+        return content.hasRemaining() && isVersion(content.get(content.position()));
+    }
+
+    /**
+     * true if the content is a whole structured order - its length matches what its header
+     * says (a cheap check for torn files; decode still validates the codes and the total)
+     */
+    public static boolean isComplete(byte[] content) {
+        if (!isEncoded(content) || content.length < 2) {
+            return false;
+        }
+        int featureCount = 2 + (content[1] == 0 ? 3 : 0) + Long.BYTES
+                + (content[0] == VERSION_1 ? 1 : 2) * Integer.BYTES;
+        return content.length > featureCount && content.length == featureCount + 1 + (content[featureCount] & 0xff);
+    }
+
+    /**
+     * read the fixed fields of a structured order (indexing stored orders needs nothing more)
+     *
+     * @throws IOException if the data isn't a structured order or is cut short
+     */
+    public static Header readHeader(byte[] encoded) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(encoded);
+        try {
+            byte version = in.get();
+            if (!isVersion(version)) {
+                throw new IOException("not a structured order");
+            }
+            int signature = in.get() & 0xff;
+            int level = 0;
+            int trim = 0;
+            int color = 0;
+            if (signature == 0) {
+                level = in.get();
+                trim = in.get() & 0xff;
+                color = in.get() & 0xff;
+            }
+            long orderEpochSecond = in.getLong();
+            int vehicleCents = version == VERSION_1 ? -1 : in.getInt();
+            int totalCents = in.getInt();
+            int featureCount = in.get() & 0xff;
+            if (in.remaining() != featureCount) {
+                throw new IOException("structured order has " + in.remaining() + " feature codes, expected "
+                        + featureCount);
+            }
+            if (version != VERSION_1 && vehicleCents < 0) {
+                throw new IOException("structured order has a negative vehicle price");
+            }
+            return new Header(signature, level, trim, color, orderEpochSecond, vehicleCents, totalCents,
+                    featureCount);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("structured order is cut short", e);
+        }
+    }
+
+    /**
+     * rebuild the order saved under an id
+     *
+     * @param orderId the id the order was saved under
+     * @param encoded structured order from encode
+     * @return the order, priced exactly as when it was saved
+     * @throws IOException if the data is corrupt, uses an unknown code, or doesn't add up
+     *                     to the stored total (a version 1 order whose vehicle price changed)
+     */
+    public static Order decode(String orderId, byte[] encoded) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(encoded);
+        try {
+            byte version = in.get();
+            if (!isVersion(version)) {
+                throw new IOException("not a structured order: " + orderId);
+            }
+
+            Vehicle vehicle;
+            int signature = in.get() & 0xff;
+            if (signature != 0) {
+                vehicle = FeatureCatalog.createSignature(signature);
+            } else {
+                int level = in.get();
+                TrimLevel trim = FeatureCatalog.trim(in.get() & 0xff);
+                VehicleColor color = FeatureCatalog.color(in.get() & 0xff);
+                vehicle = trim != null && color != null ? OrderAssembler.createVehicle(level, trim, color) : null;
+            }
+            if (vehicle == null) {
+                throw new IOException("structured order has an unknown vehicle: " + orderId);
+            }
+
+            LocalDateTime orderDate = LocalDateTime.ofEpochSecond(in.getLong(), 0, ZoneOffset.UTC);
+            Order order = version == VERSION_1
+                    ? new Order(orderId, vehicle, orderDate)
+                    : new Order(orderId, vehicle, orderDate, in.getInt() / 100.0);
+            int totalCents = in.getInt();
+            int features = in.get() & 0xff;
+            for (int i = 0; i < features; i++) {
+                Feature feature = FeatureCatalog.createFeature(in.get() & 0xff);
+                if (feature == null) {
+                    throw new IOException("structured order has an unknown feature: " + orderId);
+                }
+                order.addFeature(feature);
+            }
+            if (in.hasRemaining()) {
+                throw new IOException("structured order has trailing bytes: " + orderId);
+            }
+            if (Math.round(order.calculateTotal() * 100) != totalCents) {
+                throw new IOException("structured order no longer adds up to its saved total: " + orderId);
+            }
+            return order;
+        } catch (BufferUnderflowException | IllegalArgumentException | DateTimeException e) {
+            throw new IOException("corrupt structured order: " + orderId, e);
+        }
+    }
+
+    private static boolean isVersion(byte first) {
+        return first == VERSION || first == VERSION_1;
+    }
+
+    // the plain vehicle class of a level - subclasses (signatures) are encoded by their own code
+    private static Class<? extends Vehicle> levelClass(int level) {
+        return switch (level) {
+            case 1 -> Level1.class;
+            case 2 -> Level2.class;
+            case 3 -> Level3.class;
+            case 4 -> Level4.class;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,250 @@
+package com.raion.services;
+
+import com.raion.dto.OrderResponse;
+import com.raion.models.Order;
+import com.raion.repository.OrderRepository;
+import com.raion.services.OrderAssembler.AssembledOrder;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * asynchronous order acceptance (raion.async-orders.enabled=true)
+ *
+ * the order endpoints still validate, build and price every order on the request
+ * thread, so bad requests get their 400 right away. a valid order is then handed to a
+ * bounded background pipeline and the client gets 202 with a status url; saving the
+ * receipt and building the confirmation happen on the pipeline's worker threads.
+ * get /api/order/{id}/status reports accepted -> processing -> completed (with the
+ * confirmation) or failed
+ *
+ * the pipeline never grows without bound: a fixed number of workers drain a fixed-size
+ * queue, and when the queue is full the order is refused with 503 and Retry-After
+ * instead of piling up. request threads therefore never wait on disk, which keeps the
+ * order endpoints' tail latency flat during bursts
+ *
+ * statuses live in memory for the most recent max-tracked orders; on shutdown the
+ * queue is drained before the application exits
+ */
+@Component
+public class OrderPipeline {
+
+    private static final long SHUTDOWN_WAIT_SECONDS = 30;
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    // where an accepted order is in the pipeline
+    public enum Stage {
+        ACCEPTED("accepted"),
+        PROCESSING("processing"),
+        COMPLETED("completed"),
+        FAILED("failed");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    // status of one accepted order - written by one worker, read by status requests
+    private static final class TrackedOrder {
+
+        private final String orderId;
+        private volatile Stage stage = Stage.ACCEPTED;
+        private volatile OrderResponse confirmation;
+        private volatile String error;
+        private volatile String details;
+
+        TrackedOrder(String orderId) {
+            this.orderId = orderId;
+        }
+    }
+
+    private final boolean enabled;
+    private final int maxTracked;
+    private final OrderRepository orderRepository;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, TrackedOrder> tracked = new ConcurrentHashMap<>();
+    private final Queue<String> trackingOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger trackedCount = new AtomicInteger();
+
+    public OrderPipeline(@Value("${raion.async-orders.enabled:false}") boolean enabled,
+                         @Value("${raion.async-orders.workers:2}") int workers,
+                         @Value("${raion.async-orders.queue-capacity:1000}") int queueCapacity,
+                         @Value("${raion.async-orders.max-tracked:10000}") int maxTracked,
+                         OrderRepository orderRepository) {
+        if (workers <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("order pipeline workers and queue capacity must be positive");
+        }
+        // every order still in the pipeline must keep its status
+        if (maxTracked < workers + queueCapacity) {
+            throw new IllegalArgumentException("order pipeline max tracked must be at least workers + queue capacity");
+        }
+
+        this.enabled = enabled;
+        this.maxTracked = maxTracked;
+        this.orderRepository = orderRepository;
+        this.executor = enabled ? createExecutor(workers, queueCapacity) : null;
+        if (enabled) {
+            System.out.println("asynchronous order acceptance enabled (" + workers + " workers, queue of "
+                    + queueCapacity + ")");
+        }
+    }
+
+    /**
+     * true if the order endpoints should answer 202 and leave the rest to the pipeline
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * queue a validated order for receipt generation and confirmation
+     *
+     * @param assembled order built and priced on the request thread
+     * @return 202 with the status url, or 503 with Retry-After if the pipeline is full
+     * @throws IllegalStateException if asynchronous acceptance is disabled
+     */
+    public ResponseEntity<?> accept(AssembledOrder assembled) {
+        if (!enabled) {
+            throw new IllegalStateException("asynchronous order acceptance is disabled");
+        }
+
+        Order order = assembled.order();
+        TrackedOrder status = new TrackedOrder(order.getOrderId());
+
+        try {
+            executor.execute(() -> process(assembled, status));
+        } catch (RejectedExecutionException e) {
+            System.err.println("✗ order pipeline full, refused order: " + order.getOrderId());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .body(Map.of("error", "order pipeline is full. please retry shortly"));
+        }
+        // tracked only once queued: a refused order must not take a place in trackingOrder,
+        // where it would push out the status of an accepted one. the worker may already be
+        // running - it updates the same TrackedOrder, and the client can't ask before the 202
+        track(status);
+
+        String statusUrl = statusUrl(order.getOrderId());
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("orderId", order.getOrderId());
+        body.put("status", Stage.ACCEPTED.getLabel());
+        body.put("statusUrl", statusUrl);
+        body.put("total", order.calculateTotal());
+        return ResponseEntity.accepted().location(URI.create(statusUrl)).body(body);
+    }
+
+    /**
+     * current status of an order accepted through the pipeline
+     *
+     * @param orderId the order id from the 202 response
+     * @return status body, or null if the order isn't (or no longer) tracked
+     */
+    public Map<String, Object> getStatus(String orderId) {
+        TrackedOrder status = orderId != null ? tracked.get(orderId) : null;
+        if (status == null) {
+            return null;
+        }
+
+        // read the stage first - the worker sets the result fields before it
+        Stage stage = status.stage;
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("orderId", status.orderId);
+        body.put("status", stage.getLabel());
+        if (stage == Stage.COMPLETED) {
+            body.put("order", status.confirmation);
+        } else if (stage == Stage.FAILED) {
+            body.put("error", status.error);
+            body.put("details", status.details);
+        }
+        return body;
+    }
+
+    // finish what was already accepted before the application exits
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (executor == null) {
+            return;
+        }
+
+        executor.shutdown();
+        if (!executor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+            System.err.println("order pipeline did not drain within " + SHUTDOWN_WAIT_SECONDS
+                    + "s - " + executor.getQueue().size() + " orders not processed");
+            executor.shutdownNow();
+        }
+    }
+
+    private static String statusUrl(String orderId) {
+        return "/api/order/" + orderId + "/status";
+    }
+
+    // save the receipt, store the order and build the confirmation, same as the synchronous endpoints
+    private void process(AssembledOrder assembled, TrackedOrder status) {
+        status.stage = Stage.PROCESSING;
+        Order order = assembled.order();
+
+        try {
+            byte[] encoded = OrderCodec.encode(order);
+            String receiptPath = ReceiptGenerator.generateAndSaveReceipt(order, encoded);
+            orderRepository.save(order, encoded);
+            status.confirmation = OrderResponseBuilder.buildOrderResponse(
+                    order, receiptPath, assembled.isSignature(), assembled.signatureName());
+            status.stage = Stage.COMPLETED;
+
+            System.out.println("✓ " + (assembled.isSignature() ? "signature " : "")
+                    + "order placed successfully: " + order.getOrderId());
+            System.out.println("  receipt saved to: " + receiptPath);
+        } catch (Exception e) {
+            status.error = assembled.isSignature() ? "failed to process signature order" : "failed to process order";
+            status.details = String.valueOf(e.getMessage());
+            status.stage = Stage.FAILED;
+
+            System.err.println("✗ order processing failed: " + order.getOrderId() + " - " + e.getMessage());
+        }
+    }
+
+    // remember the status, dropping the oldest statuses once over the limit
+    private void track(TrackedOrder status) {
+        tracked.put(status.orderId, status);
+        trackingOrder.add(status.orderId);
+        if (trackedCount.incrementAndGet() > maxTracked) {
+            String oldest = trackingOrder.poll();
+            if (oldest != null) {
+                trackedCount.decrementAndGet();
+                tracked.remove(oldest);
+            }
+        }
+    }
+
+    private static ThreadPoolExecutor createExecutor(int workers, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "order-pipeline-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+}
@@ -0,0 +1,14 @@
+package com.raion.services;
+
+/**
+ * thrown when an order request is missing fields or has values we can't map to a vehicle
+ * the message is sent back to the client as-is, so keep it user facing
+ */
+public class OrderRequestException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    public OrderRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,53 @@
+package com.raion.services;
+
+import com.raion.dto.OrderResponse;
+import com.raion.models.Order;
+
+/**
+ * builds the order confirmation response sent back to the frontend
+ * shared by the order endpoints and the startup warm-up
+ */
+public class OrderResponseBuilder {
+
+    // private constructor - utility class with only static methods
+    private OrderResponseBuilder() {
+        throw new UnsupportedOperationException("utility class cannot be instantiated");
+    }
+
+    /**
+     * build the response body for a placed order
+     * the json is written by OrderResponseSerializer when the response is sent
+     *
+     * @param order the placed order
+     * @param receiptPath where the receipt was saved
+     * @param isSignature true for signature vehicle orders
+     * @param signatureName signature id like "trail-titan" (ignored for custom orders)
+     * @return the response in the shape the frontend expects
+     */
+    public static OrderResponse buildOrderResponse(Order order, String receiptPath, boolean isSignature, String signatureName) {
+        String displayName = (isSignature && signatureName != null) ? formatSignatureName(signatureName) : null;
+        return new OrderResponse(order, receiptPath, isSignature, displayName);
+    }
+
+    /**
+     * format signature id for display ("trail-titan" -> "Trail Titan")
+     */
+    public static String formatSignatureName(String name) {
+        if (name == null || name.isEmpty()) {
+            return "";
+        }
+
+        switch (name) {
+            case "urban-commuter":
+                return "Urban Commuter";
+            case "trail-titan":
+                return "Trail Titan";
+            case "track-beast":
+                return "Track Beast";
+            case "executive":
+                return "Executive";
+            default:
+                return name;
+        }
+    }
+}
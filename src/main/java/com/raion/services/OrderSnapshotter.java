@@ -0,0 +1,145 @@
+package com.raion.services;
+
+import com.raion.repository.FileLogOrderRepository;
+import com.raion.repository.IndexedOrderRepository;
+import com.raion.repository.OrderSnapshot;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * periodic snapshots of the order log repository (raion.orders.snapshot.enabled, on by default)
+ *
+ * every interval-minutes the order positions and the order index are written to
+ * orders/orders.snapshot (see OrderSnapshot) while orders keep being placed, and once
+ * more on shutdown, after the last queued orders are stored - so a restart loads the
+ * snapshot and replays only the orders logged since, however long the log has grown.
+ * an interval with no new orders writes nothing
+ *
+ * only the log repository is snapshotted: the jdbc one keeps its own state, the memory
+ * one has nothing to restart from
+ */
+@Component
+public class OrderSnapshotter {
+
+    private final IndexedOrderRepository repository;
+    private final FileLogOrderRepository log;
+    private final Path folder;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile OrderSnapshot.Written last;
+    private volatile long lastMillis;
+
+    public OrderSnapshotter(IndexedOrderRepository repository,
+                            @Value("${raion.orders.snapshot.enabled:true}") boolean enabled,
+                            @Value("${raion.orders.snapshot.interval-minutes:5}") long intervalMinutes,
+                            @Value("${raion.orders.repository.folder:orders}") String folder) {
+        if (intervalMinutes <= 0) {
+            throw new IllegalArgumentException("order snapshot interval must be positive");
+        }
+
+        this.repository = repository;
+        this.log = enabled && repository.getBackend() instanceof FileLogOrderRepository fileLog ? fileLog : null;
+        this.folder = Paths.get(folder);
+
+        if (log != null) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "order-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::runScheduled, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+            System.out.println("order snapshots enabled (every " + intervalMinutes + " min and on shutdown)");
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * snapshot the log repository now, unless nothing was logged since the last snapshot
+     *
+     * @return the snapshot written, or null if there was nothing new (or snapshots are off)
+     * @throws IOException if it can't be written - the previous snapshot stays
+     */
+    public OrderSnapshot.Written snapshot() throws IOException {
+        if (log == null) {
+            return null;
+        }
+        OrderSnapshot.Written previous = last;
+        if (previous != null && previous.logEnd() == log.completedEnd()) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+        OrderSnapshot.Written written;
+        try {
+            written = OrderSnapshot.write(folder, log, repository);
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            throw e;
+        }
+        lastMillis = (System.nanoTime() - start) / 1_000_000;
+        last = written;
+        snapshots.incrementAndGet();
+        System.out.println("✓ order snapshot: " + written.orders() + " orders, " + (written.bytes() >> 10)
+                + " KiB at log byte " + written.logEnd() + " in " + lastMillis + " ms");
+        return written;
+    }
+
+    /**
+     * snapshots written since startup and the last one, for the health endpoint
+     */
+    public Map<String, Object> getStats() {
+        OrderSnapshot.Written written = last;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", log != null);
+        stats.put("snapshots", snapshots.get());
+        stats.put("failures", failures.get());
+        if (written != null) {
+            stats.put("lastLogEnd", written.logEnd());
+            stats.put("lastOrders", written.orders());
+            stats.put("lastBytes", written.bytes());
+            stats.put("lastMillis", lastMillis);
+        }
+        return stats;
+    }
+
+    // runs before the repository closes (this bean depends on it), so the last batch is in
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            repository.flush();
+            snapshot();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("✗ order snapshot on shutdown failed: " + e.getMessage());
+        }
+    }
+
+    private void runScheduled() {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            // keep the schedule alive - the next run retries
+            System.err.println("✗ order snapshot failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.raion.services;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * per-client rate limits (client = a configured partner X-API-Key, else the remote ip)
+ *
+ * the api key header is only trusted when it matches one of raion.rate-limit.api-keys -
+ * any other value is ignored and the request is limited by its address, so a client
+ * can't mint a fresh budget (and a fresh table slot) per request by sending random keys
+ *
+ * each client gets a sliding-window counter per endpoint class: requests in the current
+ * fixed window plus the previous window's count weighted by how much of it still
+ * overlaps the sliding window. a client over its class limit is refused with 429
+ *
+ * the counters live in a fixed-size open-addressing table split into stripes of
+ * primitive long arrays - two longs per slot:
+ *   [0] 64-bit fingerprint of client + endpoint class (0 = free)
+ *   [1] window tag (24 bits) | previous window count (20 bits) | current window count (20 bits)
+ * a decision hashes the key, probes at most MAX_PROBES neighbouring slots and updates
+ * the state with one compare-and-set - no locks, no allocation. memory is fixed at
+ * 16 bytes per slot no matter how many clients show up. when every probed slot
+ * belongs to a live client the request is counted against a small direct-mapped
+ * overflow table keyed by remote address instead: addresses that hash to the same
+ * bucket share one budget, which is stricter than a slot of their own but never lets
+ * a request through uncounted
+ *
+ * a background sweep frees one stripe at a time: slots not touched for two windows
+ * have no effect on any decision and are handed back. counts are approximate by
+ * design - a fingerprint collision or a slot reused during a concurrent update can
+ * misattribute a few requests, which is fine for abuse protection
+ */
+@Component
+public class RateLimiter {
+
+    public static final String API_KEY_HEADER = "X-API-Key";
+    public static final byte[] REJECTED_BODY =
+            "{\"error\":\"rate limit exceeded. please slow down\"}".getBytes(StandardCharsets.UTF_8);
+    private static final int MAX_API_KEY_LENGTH = 128;
+
+    private static final int STRIPES = 64;
+    private static final int STRIPE_SHIFT = 64 - Integer.numberOfTrailingZeros(STRIPES);
+    private static final int MAX_PROBES = 16;
+    private static final int OVERFLOW_BUCKETS = 1 << 16;
+
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final int TAG_SHIFT = 2 * COUNT_BITS;
+    private static final long TAG_MASK = (1L << (64 - TAG_SHIFT)) - 1;
+
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int[] maxRequests = new int[EndpointClass.values().length];
+    private final Set<String> partnerKeys;
+    private final AtomicLongArray[] stripes;
+    // one state long per bucket, same layout as a slot's [1]
+    private final AtomicLongArray overflow;
+    private final int slotMask;
+    private final long startNanos = System.nanoTime();
+
+    private final LongAdder tracked = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+    private final ScheduledExecutorService sweeper;
+    private int nextStripeToSweep;
+
+    public RateLimiter(@Value("${raion.rate-limit.enabled:false}") boolean enabled,
+                       @Value("${raion.rate-limit.window-seconds:60}") int windowSeconds,
+                       @Value("${raion.rate-limit.read.max-requests:600}") int readMaxRequests,
+                       @Value("${raion.rate-limit.order.max-requests:60}") int orderMaxRequests,
+                       @Value("${raion.rate-limit.max-clients:1000000}") int maxClients,
+                       @Value("${raion.rate-limit.api-keys:}") String apiKeys) {
+        if (windowSeconds <= 0 || maxClients <= 0) {
+            throw new IllegalArgumentException("rate limit window and max clients must be positive");
+        }
+        if (readMaxRequests <= 0 || orderMaxRequests <= 0
+                || readMaxRequests > COUNT_MASK || orderMaxRequests > COUNT_MASK) {
+            throw new IllegalArgumentException("rate limit max requests must be between 1 and " + COUNT_MASK);
+        }
+
+        this.enabled = enabled;
+        this.windowNanos = TimeUnit.SECONDS.toNanos(windowSeconds);
+        this.maxRequests[EndpointClass.READ.ordinal()] = readMaxRequests;
+        this.maxRequests[EndpointClass.ORDER.ordinal()] = orderMaxRequests;
+        this.partnerKeys = Arrays.stream(apiKeys.split(","))
+                .map(String::trim)
+                .filter(key -> !key.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        if (partnerKeys.stream().anyMatch(key -> key.length() > MAX_API_KEY_LENGTH)) {
+            throw new IllegalArgumentException("rate limit api keys must be at most " + MAX_API_KEY_LENGTH + " chars");
+        }
+
+        // one slot per client and class, at a load factor of at most 1/2
+        int slotsPerStripe = enabled ? tableSizeFor(2L * maxClients * EndpointClass.values().length / STRIPES) : 1;
+        this.slotMask = slotsPerStripe - 1;
+        this.stripes = new AtomicLongArray[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new AtomicLongArray(enabled ? slotsPerStripe * 2 : 0);
+        }
+        this.overflow = new AtomicLongArray(enabled ? OVERFLOW_BUCKETS : 0);
+
+        if (enabled) {
+            this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "rate-limit-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // every stripe is swept once per window
+            long sweepIntervalNanos = Math.max(1, windowNanos / STRIPES);
+            sweeper.scheduleAtFixedRate(this::sweepNextStripe, sweepIntervalNanos, sweepIntervalNanos,
+                    TimeUnit.NANOSECONDS);
+            System.out.println("rate limiting enabled (" + readMaxRequests + " reads and " + orderMaxRequests
+                    + " orders per " + windowSeconds + "s per client, " + partnerKeys.size()
+                    + " partner keys, table of " + (getTableBytes() >> 20) + " MiB)");
+        } else {
+            this.sweeper = null;
+        }
+    }
+
+    /**
+     * count a request against its client's limit
+     *
+     * @param clientKey key from {@link #clientKey}
+     * @param remoteAddress the client's ip address - picks the overflow bucket when the table is full
+     * @param endpointClass class of the request, or null for requests that aren't limited
+     * @return true if the request may proceed, false if the client is over its limit
+     */
+    public boolean tryAcquire(String clientKey, String remoteAddress, EndpointClass endpointClass) {
+        if (!enabled || endpointClass == null || clientKey == null) {
+            return true;
+        }
+        int limit = maxRequests[endpointClass.ordinal()];
+        long now = System.nanoTime() - startNanos;
+        long tag = windowTag(now);
+        long fingerprint = fingerprint(clientKey, endpointClass);
+        AtomicLongArray stripe = stripes[(int) (fingerprint >>> STRIPE_SHIFT)];
+        int stateIndex = findSlot(stripe, fingerprint, tag);
+        if (stateIndex >= 0) {
+            return update(stripe, stateIndex, tag, limit, now);
+        }
+
+        // every nearby slot is busy with a live client - count the request against the shared
+        // bucket of its address
+        overflowed.increment();
+        long bucket = fingerprint(remoteAddress != null ? remoteAddress : clientKey, endpointClass);
+        return update(overflow, (int) bucket & (OVERFLOW_BUCKETS - 1), tag, limit, now);
+    }
+
+    /**
+     * the key a request is limited by: its api key if that is a configured partner key, else its address
+     *
+     * @param apiKey value of the X-API-Key header (may be null)
+     * @param remoteAddress the client's ip address
+     */
+    public String clientKey(String apiKey, String remoteAddress) {
+        if (apiKey != null && apiKey.length() <= MAX_API_KEY_LENGTH && partnerKeys.contains(apiKey)) {
+            return "key:" + apiKey;
+        }
+        return remoteAddress;
+    }
+
+    /**
+     * seconds until the current window ends - after that the client's count starts to decay
+     */
+    public int retryAfterSeconds() {
+        long elapsed = (System.nanoTime() - startNanos) % windowNanos;
+        return (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(windowNanos - elapsed + 999_999_999L));
+    }
+
+    /**
+     * counters for the health endpoint and benchmarks
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("windowSeconds", TimeUnit.NANOSECONDS.toSeconds(windowNanos));
+        stats.put("trackedCounters", tracked.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("overflowed", overflowed.sum());
+        stats.put("tableBytes", getTableBytes());
+        return stats;
+    }
+
+    public long getTableBytes() {
+        return ((long) STRIPES * stripes[0].length() + overflow.length()) * Long.BYTES;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * free the slots of one stripe that haven't been used for two windows
+     * runs on the sweeper thread; public so benchmarks can time it
+     */
+    public synchronized void sweepNextStripe() {
+        AtomicLongArray stripe = stripes[nextStripeToSweep];
+        nextStripeToSweep = (nextStripeToSweep + 1) % STRIPES;
+
+        long currentTag = windowTag(System.nanoTime() - startNanos);
+        for (int keyIndex = 0; keyIndex < stripe.length(); keyIndex += 2) {
+            long key = stripe.get(keyIndex);
+            if (key != 0 && isStale(stripe.get(keyIndex + 1), currentTag)
+                    && stripe.compareAndSet(keyIndex, key, 0)) {
+                tracked.decrement();
+            }
+        }
+    }
+
+    // index of the client's state long in the stripe, claiming a free slot for a new client;
+    // -1 when every probed slot belongs to a live client
+    private int findSlot(AtomicLongArray stripe, long fingerprint, long tag) {
+        int home = (int) fingerprint & slotMask;
+
+        // look for the client first, remembering the first slot it could move into
+        int freeSlot = -1;
+        long freeSlotKey = 0;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int keyIndex = ((home + probe) & slotMask) << 1;
+            long key = stripe.get(keyIndex);
+            if (key == fingerprint) {
+                return keyIndex + 1;
+            }
+            if (freeSlot < 0 && (key == 0 || isStale(stripe.get(keyIndex + 1), tag))) {
+                freeSlot = keyIndex;
+                freeSlotKey = key;
+            }
+        }
+
+        // new client (or one swept away) - claim the free slot
+        if (freeSlot >= 0 && stripe.compareAndSet(freeSlot, freeSlotKey, fingerprint)) {
+            if (freeSlotKey == 0) {
+                tracked.increment();
+            }
+            return freeSlot + 1;
+        }
+        return -1;
+    }
+
+    // roll the state forward to the current window, then count the request if the sliding
+    // estimate stays within the limit
+    private boolean update(AtomicLongArray stripe, int stateIndex, long tag, int limit, long now) {
+        double previousWeight = 1.0 - (double) (now % windowNanos) / windowNanos;
+        while (true) {
+            long state = stripe.get(stateIndex);
+            long age = (tag - (state >>> TAG_SHIFT)) & TAG_MASK;
+            long previous;
+            long current;
+            if (age == 0) {
+                previous = (state >>> COUNT_BITS) & COUNT_MASK;
+                current = state & COUNT_MASK;
+            } else if (age == 1) {
+                previous = state & COUNT_MASK;
+                current = 0;
+            } else {
+                previous = 0;
+                current = 0;
+            }
+
+            if (previous * previousWeight + current + 1 > limit) {
+                rejected.increment();
+                return false;
+            }
+
+            long next = (tag << TAG_SHIFT) | (previous << COUNT_BITS) | (current + 1);
+            if (stripe.compareAndSet(stateIndex, state, next)) {
+                return true;
+            }
+        }
+    }
+
+    private long windowTag(long now) {
+        return (now / windowNanos) & TAG_MASK;
+    }
+
+    // two windows old: neither the current nor the previous count is left
+    private static boolean isStale(long state, long currentTag) {
+        return ((currentTag - (state >>> TAG_SHIFT)) & TAG_MASK) >= 2;
+    }
+
+    // fnv-1a over the chars, salted with the class, then the murmur3 finalizer so every bit
+    // of the result depends on every char (the top bits pick the stripe)
+    private static long fingerprint(String clientKey, EndpointClass endpointClass) {
+        long hash = 0xcbf29ce484222325L ^ (endpointClass.ordinal() + 1);
+        for (int i = 0; i < clientKey.length(); i++) {
+            hash ^= clientKey.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash != 0 ? hash : 1;
+    }
+
+    private static int tableSizeFor(long slots) {
+        long size = Long.highestOneBit(Math.max(MAX_PROBES, slots - 1)) << 1;
+        if (size > (1 << 29)) {
+            throw new IllegalArgumentException("rate limit max clients is too large");
+        }
+        return (int) size;
+    }
+}
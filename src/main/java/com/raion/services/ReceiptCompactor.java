@@ -0,0 +1,346 @@
+package com.raion.services;
+
+import com.raion.services.ReceiptSegments.Record;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * background compaction of old receipts (raion.receipts.compaction.enabled=true)
+ *
+ * every interval, each day directory older than older-than-days (yyyy/MM/dd, see
+ * ReceiptStore) is rolled into one compressed segment file next to it (yyyy/MM/dd.seg,
+ * see ReceiptSegments) and its loose files and bucket directories are deleted - a day of
+ * thousands of tiny files becomes a single file, which frees inodes and makes backups
+ * stream one big file instead of walking the tree
+ *
+ * safe to run while the server takes orders:
+ * - only days the order path no longer writes to are touched
+ * - the segment is written to a temp file, synced and renamed into place before any
+ *   loose file is deleted, and ReceiptGenerator.readReceipt looks at the loose file
+ *   first, so every receipt stays readable throughout
+ * - a day that already has a segment (late receipts, or a run interrupted after the
+ *   rename) is merged: loose files replace segment records with the same order id
+ * - structured orders (.ord, see OrderCodec) go into the segment as they are and are
+ *   rendered when read; where an order has both files the receipt wins, as it does
+ *   for readers, and the other file is dropped
+ *
+ * throttled so it never competes with the order path: it runs on one minimum-priority
+ * thread and paces its reads and writes to max-bytes-per-second
+ */
+@Component
+public class ReceiptCompactor {
+
+    // what one pass compacted
+    public record Result(int days, long receipts, long bytesBefore, long bytesAfter) {
+    }
+
+    private final boolean enabled;
+    private final int olderThanDays;
+    private final long maxBytesPerSecond;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong daysCompacted = new AtomicLong();
+    private final AtomicLong receiptsCompacted = new AtomicLong();
+    private final AtomicLong bytesBefore = new AtomicLong();
+    private final AtomicLong bytesAfter = new AtomicLong();
+
+    public ReceiptCompactor(@Value("${raion.receipts.compaction.enabled:false}") boolean enabled,
+                            @Value("${raion.receipts.compaction.older-than-days:7}") int olderThanDays,
+                            @Value("${raion.receipts.compaction.interval-minutes:60}") long intervalMinutes,
+                            @Value("${raion.receipts.compaction.max-bytes-per-second:4194304}") long maxBytesPerSecond) {
+        if (olderThanDays < 1 || intervalMinutes <= 0 || maxBytesPerSecond <= 0) {
+            throw new IllegalArgumentException(
+                    "receipt compaction needs older-than-days >= 1 and a positive interval and rate");
+        }
+
+        this.enabled = enabled;
+        this.olderThanDays = olderThanDays;
+        this.maxBytesPerSecond = maxBytesPerSecond;
+
+        if (enabled) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "receipt-compactor");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+            // first pass a minute after startup, out of the way of warm-up
+            scheduler.scheduleWithFixedDelay(this::runScheduled, Math.min(1, intervalMinutes), intervalMinutes,
+                    TimeUnit.MINUTES);
+            System.out.println("receipt compaction enabled (days older than " + olderThanDays + ", every "
+                    + intervalMinutes + " min, max " + (maxBytesPerSecond >> 10) + " KiB/s)");
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * compact every day directory older than the cutoff, oldest first
+     *
+     * @param cutoff days before this date are compacted
+     * @return totals for the pass
+     * @throws IOException if a day can't be compacted (days before it stay compacted)
+     * @throws InterruptedException if the thread is interrupted (shutdown) mid-pass
+     */
+    public synchronized Result compactBefore(LocalDate cutoff) throws IOException, InterruptedException {
+        Throttle throttle = new Throttle(maxBytesPerSecond);
+        int days = 0;
+        long receipts = 0;
+        long before = 0;
+        long after = 0;
+
+        for (LocalDate day : findDays(cutoff)) {
+            Result result = compactDay(day, throttle);
+            if (result.receipts() > 0) {
+                days++;
+                receipts += result.receipts();
+                before += result.bytesBefore();
+                after += result.bytesAfter();
+                daysCompacted.incrementAndGet();
+                receiptsCompacted.addAndGet(result.receipts());
+                bytesBefore.addAndGet(result.bytesBefore());
+                bytesAfter.addAndGet(result.bytesAfter());
+                System.out.println("✓ compacted receipts for " + day + ": " + result.receipts() + " receipts, "
+                        + (result.bytesBefore() >> 10) + " KiB -> " + (result.bytesAfter() >> 10) + " KiB");
+            }
+        }
+        return new Result(days, receipts, before, after);
+    }
+
+    /**
+     * totals since startup (bytes after = growth of the segments), for the health endpoint
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("olderThanDays", olderThanDays);
+        stats.put("daysCompacted", daysCompacted.get());
+        stats.put("receiptsCompacted", receiptsCompacted.get());
+        stats.put("bytesBefore", bytesBefore.get());
+        stats.put("bytesAfter", bytesAfter.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            // interrupts a pass in progress - the day being written is left as it was
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void runScheduled() {
+        try {
+            compactBefore(LocalDate.now().minusDays(olderThanDays));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // keep the schedule alive - the next pass retries
+            System.err.println("✗ receipt compaction failed: " + e.getMessage());
+        }
+    }
+
+    // roll one day's loose receipts (and its existing segment, if any) into a new segment
+    private Result compactDay(LocalDate day, Throttle throttle) throws IOException, InterruptedException {
+        Path dayDirectory = ReceiptStore.dayDirectory(day);
+        Path segment = ReceiptStore.segmentPath(day);
+        Path temp = segment.resolveSibling(segment.getFileName() + ".tmp");
+
+        List<Path> shadowed = new ArrayList<>();
+        TreeMap<String, Path> loose = listLooseReceipts(dayDirectory, shadowed);
+        if (loose.isEmpty()) {
+            deleteEmptyDirectories(dayDirectory);
+            return new Result(0, 0, 0, 0);
+        }
+
+        long before = 0;
+        long previousSegmentBytes = Files.exists(segment) ? Files.size(segment) : 0;
+        List<Path> compacted = new ArrayList<>(loose.size());
+        try (ReceiptSegments.Writer writer = new ReceiptSegments.Writer(temp);
+             ReceiptSegments.Reader existing = previousSegmentBytes > 0 ? new ReceiptSegments.Reader(segment) : null) {
+            Record kept = existing != null && existing.hasNext() ? existing.next() : null;
+
+            for (Map.Entry<String, Path> entry : loose.entrySet()) {
+                // segment records before this receipt go over unchanged (no inflate/deflate)
+                while (kept != null && kept.orderId().compareTo(entry.getKey()) < 0) {
+                    throttle.pace(writer.add(kept));
+                    kept = existing.hasNext() ? existing.next() : null;
+                }
+                // the loose file replaces a segment record with the same id
+                if (kept != null && kept.orderId().equals(entry.getKey())) {
+                    kept = existing.hasNext() ? existing.next() : null;
+                }
+
+                byte[] content;
+                try {
+                    content = Files.readAllBytes(entry.getValue());
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                before += content.length;
+                throttle.pace(content.length + writer.add(ReceiptSegments.compress(entry.getKey(), content)));
+                compacted.add(entry.getValue());
+            }
+            while (kept != null) {
+                throttle.pace(writer.add(kept));
+                kept = existing.hasNext() ? existing.next() : null;
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        // on disk before it becomes visible, then replace the old segment in one step
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, segment, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        ReceiptSegments.invalidate(segment);
+
+        for (Path path : compacted) {
+            Files.deleteIfExists(path);
+        }
+        for (Path path : shadowed) {
+            Files.deleteIfExists(path);
+        }
+        deleteEmptyDirectories(dayDirectory);
+
+        long after = Files.size(segment) - previousSegmentBytes;
+        return new Result(1, compacted.size(), before, after);
+    }
+
+    // order id -> file for every receipt (or structured order) in the day's bucket
+    // directories; a structured order next to a receipt of the same id goes to shadowed
+    private static TreeMap<String, Path> listLooseReceipts(Path dayDirectory, List<Path> shadowed) throws IOException {
+        TreeMap<String, Path> receipts = new TreeMap<>();
+        if (!Files.isDirectory(dayDirectory)) {
+            return receipts;
+        }
+        try (DirectoryStream<Path> buckets = Files.newDirectoryStream(dayDirectory, Files::isDirectory)) {
+            for (Path bucket : buckets) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(bucket,
+                        "*{" + ReceiptStore.RECEIPT_SUFFIX + "," + ReceiptStore.ORDER_SUFFIX + "}")) {
+                    for (Path file : files) {
+                        String filename = file.getFileName().toString();
+                        boolean receipt = filename.endsWith(ReceiptStore.RECEIPT_SUFFIX);
+                        String orderId = filename.substring(0, filename.length() - (receipt
+                                ? ReceiptStore.RECEIPT_SUFFIX.length() : ReceiptStore.ORDER_SUFFIX.length()));
+                        Path other = receipts.get(orderId);
+                        if (other == null) {
+                            receipts.put(orderId, file);
+                        } else if (receipt) {
+                            shadowed.add(other);
+                            receipts.put(orderId, file);
+                        } else {
+                            shadowed.add(file);
+                        }
+                    }
+                }
+            }
+        }
+        return receipts;
+    }
+
+    // bucket directories, then the day directory - anything still holding files stays
+    private static void deleteEmptyDirectories(Path dayDirectory) throws IOException {
+        if (!Files.isDirectory(dayDirectory)) {
+            return;
+        }
+        try (DirectoryStream<Path> buckets = Files.newDirectoryStream(dayDirectory, Files::isDirectory)) {
+            for (Path bucket : buckets) {
+                deleteIfEmpty(bucket);
+            }
+        }
+        deleteIfEmpty(dayDirectory);
+    }
+
+    private static void deleteIfEmpty(Path directory) throws IOException {
+        try {
+            Files.deleteIfExists(directory);
+        } catch (DirectoryNotEmptyException e) {
+            // a receipt arrived after the listing - it goes into the next pass
+        }
+    }
+
+    // yyyy/MM/dd directories before the cutoff, oldest first - only a few directory levels
+    // are listed, never the receipts themselves
+    private static List<LocalDate> findDays(LocalDate cutoff) throws IOException {
+        TreeMap<LocalDate, Boolean> days = new TreeMap<>();
+        Path root = ReceiptStore.root();
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        try (DirectoryStream<Path> years = Files.newDirectoryStream(root, "[0-9][0-9][0-9][0-9]")) {
+            for (Path year : years) {
+                try (DirectoryStream<Path> months = Files.newDirectoryStream(year, "[0-9][0-9]")) {
+                    for (Path month : months) {
+                        try (DirectoryStream<Path> dayDirectories = Files.newDirectoryStream(month, "[0-9][0-9]")) {
+                            for (Path dayDirectory : dayDirectories) {
+                                LocalDate day = parseDay(year, month, dayDirectory);
+                                if (day != null && day.isBefore(cutoff) && Files.isDirectory(dayDirectory)) {
+                                    days.put(day, true);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(days.keySet());
+    }
+
+    private static LocalDate parseDay(Path year, Path month, Path day) {
+        try {
+            return LocalDate.of(Integer.parseInt(year.getFileName().toString()),
+                    Integer.parseInt(month.getFileName().toString()),
+                    Integer.parseInt(day.getFileName().toString()));
+        } catch (DateTimeException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // keeps the average rate of a pass at or below maxBytesPerSecond by sleeping
+    private static final class Throttle {
+
+        private final long maxBytesPerSecond;
+        private final long startNanos = System.nanoTime();
+        private long bytes;
+
+        Throttle(long maxBytesPerSecond) {
+            this.maxBytesPerSecond = maxBytesPerSecond;
+        }
+
+        void pace(long processed) throws InterruptedException {
+            bytes += processed;
+            long dueNanos = (long) (bytes * 1e9 / maxBytesPerSecond);
+            long aheadNanos = dueNanos - (System.nanoTime() - startNanos);
+            if (aheadNanos > 1_000_000) {
+                TimeUnit.NANOSECONDS.sleep(aheadNanos);
+            } else if (Thread.interrupted()) {
+                throw new InterruptedException("receipt compaction interrupted");
+            }
+        }
+    }
+}
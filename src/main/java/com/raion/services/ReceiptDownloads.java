@@ -0,0 +1,151 @@
+package com.raion.services;
+
+import org.springframework.http.HttpRange;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * finds a stored receipt for GET /api/order/{orderId}/receipt and works out which bytes
+ * of it a request asks for - shared by ReceiptController (servlet) and
+ * ReactiveReceiptController
+ *
+ * a receipt is either a loose file, which the controllers hand to the server to send
+ * straight from the page cache (sendfile), or a record in a compacted segment, which is
+ * inflated out of the mapped segment into an off-heap buffer. neither way copies the
+ * receipt onto the java heap (but for the servlet stack's fallback when sendfile is off,
+ * see ReceiptController). a structured order (see OrderCodec) is sent from its
+ * rendered receipt in ReceiptRenderCache
+ *
+ * etags: size and modification time for a loose file, size and crc32 of the content
+ * otherwise - so a receipt file gets a new etag once when its day is compacted
+ */
+public final class ReceiptDownloads {
+
+    // a receipt ready to send: exactly one of file and content is set
+    public record StoredReceipt(String orderId, Path file, ByteBuffer content, long length, String etag) {
+
+        public boolean isFile() {
+            return file != null;
+        }
+    }
+
+    // a byte range of a receipt, end exclusive
+    public record ByteRange(long start, long end) {
+
+        public long length() {
+            return end - start;
+        }
+
+        // content-range value, e.g. "bytes 0-99/1234"
+        public String contentRange(long total) {
+            return "bytes " + start + "-" + (end - 1) + "/" + total;
+        }
+    }
+
+    // private constructor - utility class with only static methods
+    private ReceiptDownloads() {
+        throw new UnsupportedOperationException("utility class cannot be instantiated");
+    }
+
+    /**
+     * find the stored receipt of an order - the loose file if there is one, else the
+     * structured order, else its compacted record (the same precedence as
+     * ReceiptGenerator.readReceipt)
+     *
+     * @param orderId order id from the request
+     * @return the receipt, or null if the order id is invalid or no receipt is stored for it
+     * @throws IOException if the receipt exists but can't be read
+     */
+    public static StoredReceipt find(String orderId) throws IOException {
+        Path file;
+        try {
+            file = ReceiptStore.pathFor(orderId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            long size = attributes.size();
+            String etag = "\"" + Long.toHexString(size) + "-"
+                    + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "\"";
+            return new StoredReceipt(orderId, file, null, size, etag);
+        } catch (NoSuchFileException e) {
+            // saved structured, compacted, or never saved
+        }
+        try {
+            byte[] encoded = Files.readAllBytes(ReceiptStore.orderPathFor(orderId));
+            return inMemory(orderId, ByteBuffer.wrap(ReceiptGenerator.renderStoredOrder(orderId, encoded)));
+        } catch (NoSuchFileException e) {
+            // compacted, or never saved
+        }
+
+        Path segment = ReceiptStore.segmentPathFor(orderId);
+        ByteBuffer content = segment != null ? ReceiptSegments.readDirect(segment, orderId) : null;
+        if (content == null) {
+            return null;
+        }
+        if (OrderCodec.isEncoded(content)) {
+            byte[] encoded = new byte[content.remaining()];
+            content.get(encoded);
+            content = ByteBuffer.wrap(ReceiptGenerator.renderStoredOrder(orderId, encoded));
+        }
+        return inMemory(orderId, content);
+    }
+
+    // a receipt that isn't a file, with an etag from its content
+    private static StoredReceipt inMemory(String orderId, ByteBuffer content) {
+        CRC32 crc = new CRC32();
+        crc.update(content.duplicate());
+        String etag = "\"" + Integer.toHexString(content.remaining()) + "-z" + Long.toHexString(crc.getValue()) + "\"";
+        return new StoredReceipt(orderId, null, content, content.remaining(), etag);
+    }
+
+    /**
+     * the part of a receipt a request asks for
+     *
+     * a single byte range is honoured; no range, a multi-range request, or an if-range
+     * that doesn't match the current etag gets the whole receipt
+     *
+     * @param range Range header, may be null
+     * @param ifRange If-Range header, may be null
+     * @param receipt the receipt being sent
+     * @return the range to send, or null for the whole receipt - also for a malformed
+     *         Range header, which rfc 9110 says to ignore
+     * @throws IllegalArgumentException if the range starts past the end (416)
+     */
+    public static ByteRange requestedRange(String range, String ifRange, StoredReceipt receipt) {
+        if (range == null || range.isBlank()) {
+            return null;
+        }
+        if (ifRange != null && !ifRange.equals(receipt.etag())) {
+            return null;
+        }
+
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (ranges.size() != 1) {
+            return null;
+        }
+        long start = ranges.get(0).getRangeStart(receipt.length());
+        long end = ranges.get(0).getRangeEnd(receipt.length()) + 1;
+        if (start >= receipt.length() || start >= end) {
+            throw new IllegalArgumentException("range not satisfiable: " + range);
+        }
+        if (start == 0 && end == receipt.length()) {
+            return null;
+        }
+        return new ByteRange(start, end);
+    }
+}
@@ -4,26 +4,47 @@ import com.raion.models.Feature;
 import com.raion.models.Order;
 import com.raion.models.Vehicle;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * generates professional receipts for vehicle orders
- * saves receipts to text files in the receipts folder
+ * saves receipts to text files in the receipts folder, sharded by date (see ReceiptStore)
+ *
+ * with -Draion.receipts.storage=structured the order itself is saved instead, as a
+ * structured order of a few dozen bytes (see OrderCodec), and its receipt is rendered the
+ * first time it is read and kept in ReceiptRenderCache. orders OrderCodec can't encode
+ * still get a rendered receipt
  *
  * receipt folder location: ./receipts (relative to application root)
+ * override with -Draion.receipts.folder=<path> (the perf tools point it at a temp dir)
  */
 public class ReceiptGenerator {
 
-    // receipts folder path (relative to where spring boot runs)
-    private static final String RECEIPTS_FOLDER = "receipts";
     private static final String LINE_SEPARATOR = "=".repeat(60);
 
+    private static final String STORAGE = System.getProperty("raion.receipts.storage", "text");
+    private static final boolean STRUCTURED = "structured".equals(STORAGE);
+
+    // what goes on disk for one order: its structured form, or the rendered receipt
+    private record StoredForm(byte[] content, boolean structured) {
+    }
+
+    static {
+        if (!STRUCTURED && !"text".equals(STORAGE)) {
+            System.err.println("✗ unknown raion.receipts.storage '" + STORAGE + "' - saving text receipts");
+        }
+    }
+
     /**
      * generate receipt text from an order
      *
@@ -57,7 +78,7 @@ public class ReceiptGenerator {
         receipt.append("Color: ").append(vehicle.getColor().getDisplayName()).append("\n");
         receipt.append("Drivetrain: ").append(vehicle.getDrivetrain()).append("\n");
         receipt.append("Range: ").append(vehicle.getRange()).append(" miles\n");
-        receipt.append("Base Price: ").append(PriceCalculator.formatPrice(vehicle.calculatePrice())).append("\n");
+        receipt.append("Base Price: ").append(PriceCalculator.formatPrice(order.getVehiclePrice())).append("\n");
 
         // features if any were added
         if (!order.getFeatures().isEmpty()) {
@@ -109,6 +130,64 @@ public class ReceiptGenerator {
         return receipt.toString();
     }
 
+    /**
+     * receipt file content as utf-8
+     * plain signature orders are patched into a pre-rendered template, everything else
+     * goes through the compiled layout (see CompiledReceipt) - the same bytes either way
+     */
+    private static byte[] renderReceiptBytes(Order order) {
+        byte[] templated = SignatureTemplates.renderReceipt(order);
+        if (templated != null) {
+            return templated;
+        }
+        byte[] compiled = CompiledReceipt.render(order);
+        return compiled != null ? compiled : generateReceipt(order).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * the structured order when that storage is on and the order can be encoded,
+     * otherwise the rendered receipt
+     */
+    private static StoredForm storedForm(Order order) {
+        return storedForm(order, encodeIfStructured(order));
+    }
+
+    private static StoredForm storedForm(Order order, byte[] encoded) {
+        if (STRUCTURED && encoded != null) {
+            return new StoredForm(encoded, true);
+        }
+        return new StoredForm(renderReceiptBytes(order), false);
+    }
+
+    // only encoded when it is what gets saved
+    private static byte[] encodeIfStructured(Order order) {
+        return STRUCTURED && order != null ? OrderCodec.encode(order) : null;
+    }
+
+    /**
+     * the receipt of a saved structured order - rendered on first read, then cached
+     *
+     * @param orderId the order id it was saved under
+     * @param encoded the structured order (see OrderCodec)
+     * @return receipt content as utf-8 (shared with the cache - don't modify it)
+     * @throws IOException if the structured order can't be decoded
+     */
+    public static byte[] renderStoredOrder(String orderId, byte[] encoded) throws IOException {
+        byte[] receipt = ReceiptRenderCache.get(orderId);
+        if (receipt == null) {
+            receipt = renderReceiptBytes(OrderCodec.decode(orderId, encoded));
+            ReceiptRenderCache.put(orderId, receipt);
+        }
+        return receipt;
+    }
+
+    /**
+     * true when orders are saved structured (-Draion.receipts.storage=structured)
+     */
+    public static boolean isStructuredStorage() {
+        return STRUCTURED;
+    }
+
     /**
      * create receipts directory if it doesn't exist
      *
@@ -116,7 +195,7 @@ public class ReceiptGenerator {
      * @throws IOException if directory cannot be created
      */
     private static Path ensureReceiptsFolderExists() throws IOException {
-        Path receiptsPath = Paths.get(RECEIPTS_FOLDER);
+        Path receiptsPath = ReceiptStore.root();
 
         if (!Files.exists(receiptsPath)) {
             try {
@@ -142,7 +221,7 @@ public class ReceiptGenerator {
     }
 
     /**
-     * save receipt to a file in the receipts folder
+     * save receipt to a file in its shard of the receipts folder
      *
      * @param order the order to save a receipt for
      * @return path to the saved receipt file
@@ -150,25 +229,40 @@ public class ReceiptGenerator {
      * @throws IllegalArgumentException if order is null
      */
     public static String saveReceiptToFile(Order order) throws IOException {
+        return saveReceiptToFile(order, encodeIfStructured(order));
+    }
+
+    /**
+     * the same, reusing the order's structured form when the caller already encoded it
+     * (for the order repository) - it is only saved in place of the receipt with
+     * -Draion.receipts.storage=structured
+     *
+     * @param encoded the order as OrderCodec.encode returned it (null renders the receipt)
+     */
+    public static String saveReceiptToFile(Order order, byte[] encoded) throws IOException {
         if (order == null) {
             throw new IllegalArgumentException("order cannot be null");
         }
 
         // ensure receipts folder exists
-        Path receiptsPath = ensureReceiptsFolderExists();
+        ensureReceiptsFolderExists();
 
-        // generate filename from order id
-        String filename = order.getOrderId() + ".txt";
-        Path filepath = receiptsPath.resolve(filename);
+        // generate receipt content (or take the encoded order)
+        StoredForm form = storedForm(order, encoded);
 
-        // generate receipt content
-        String receiptContent = generateReceipt(order);
-
-        // write to file
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filepath.toFile()))) {
-            writer.write(receiptContent);
-            writer.flush();
+        // write to file in a single call
+        String orderId = order.getOrderId();
+        Path filepath;
+        try {
+            filepath = form.structured()
+                    ? ReceiptStore.writeOrder(orderId, form.content()).path()
+                    : ReceiptStore.write(orderId, form.content()).path();
+            if (form.structured()) {
+                ReceiptRenderCache.invalidate(orderId);
+            }
         } catch (IOException e) {
+            // the path is only worked out again for the message
+            filepath = form.structured() ? ReceiptStore.orderPathFor(orderId) : ReceiptStore.pathFor(orderId);
             System.err.println("failed to write receipt file: " + filepath.toAbsolutePath());
             throw new IOException("could not write receipt file: " + filepath.toAbsolutePath(), e);
         }
@@ -190,8 +284,15 @@ public class ReceiptGenerator {
      * @throws RuntimeException if receipt cannot be saved
      */
     public static String generateAndSaveReceipt(Order order) {
+        return generateAndSaveReceipt(order, encodeIfStructured(order));
+    }
+
+    /**
+     * the same, reusing the order's structured form (see saveReceiptToFile(Order, byte[]))
+     */
+    public static String generateAndSaveReceipt(Order order, byte[] encoded) {
         try {
-            String filepath = saveReceiptToFile(order);
+            String filepath = saveReceiptToFile(order, encoded);
             System.out.println("receipt saved successfully: " + filepath);
             return filepath;
         } catch (IOException e) {
@@ -208,6 +309,169 @@ public class ReceiptGenerator {
         }
     }
 
+    /**
+     * save the receipts of a whole batch in one grouped pass (used by post /api/orders/batch)
+     * the folder is checked once, all receipts are rendered in parallel, then written one
+     * after another and counted with a single manifest write - instead of a folder check,
+     * render, write and manifest append per order
+     *
+     * a failed write doesn't stop the pass; that order's path comes back as null
+     *
+     * @param orders the orders to save receipts for
+     * @return path to each saved receipt file, in the same order (null where the write failed)
+     * @throws IOException if the receipts folder can't be used
+     * @throws IllegalArgumentException if orders is null or contains null
+     */
+    public static List<String> saveReceipts(List<Order> orders) throws IOException {
+        if (orders == null || orders.contains(null)) {
+            throw new IllegalArgumentException("orders cannot be null");
+        }
+
+        ensureReceiptsFolderExists();
+        List<StoredForm> forms = orders.parallelStream().map(ReceiptGenerator::storedForm).toList();
+
+        List<String> paths = new ArrayList<>(orders.size());
+        List<String> created = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            String orderId = orders.get(i).getOrderId();
+            StoredForm form = forms.get(i);
+            Path filepath = form.structured() ? ReceiptStore.orderPathFor(orderId) : ReceiptStore.pathFor(orderId);
+            try {
+                ReceiptStore.Saved saved = form.structured()
+                        ? ReceiptStore.writeOrderFile(orderId, form.content())
+                        : ReceiptStore.writeFile(orderId, form.content());
+                if (saved.created()) {
+                    created.add(orderId);
+                }
+                if (form.structured()) {
+                    ReceiptRenderCache.invalidate(orderId);
+                }
+                paths.add(filepath.toString());
+            } catch (IOException e) {
+                System.err.println("failed to write receipt file: " + filepath.toAbsolutePath() + " - " + e.getMessage());
+                paths.add(null);
+            }
+        }
+        ReceiptStore.recordSaved(created);
+        return paths;
+    }
+
+    /**
+     * save receipt without blocking the calling thread (used by the reactive stack)
+     * the receipt is written through an AsynchronousFileChannel and the returned
+     * future completes with the file path once every byte is on disk
+     *
+     * @param order the order to save a receipt for
+     * @return future completing with the path to the saved receipt file
+     * @throws IllegalArgumentException if order is null
+     */
+    public static CompletableFuture<String> saveReceiptAsync(Order order) {
+        return saveReceiptAsync(order, encodeIfStructured(order));
+    }
+
+    /**
+     * the same, reusing the order's structured form (see saveReceiptToFile(Order, byte[]))
+     */
+    public static CompletableFuture<String> saveReceiptAsync(Order order, byte[] encoded) {
+        if (order == null) {
+            throw new IllegalArgumentException("order cannot be null");
+        }
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        StoredForm form = storedForm(order, encoded);
+        ReceiptStore.AsyncTarget target;
+        try {
+            ensureReceiptsFolderExists();
+            target = form.structured()
+                    ? ReceiptStore.openAsyncOrder(order.getOrderId())
+                    : ReceiptStore.openAsync(order.getOrderId());
+        } catch (IOException e) {
+            result.completeExceptionally(new IOException("could not open receipt file for order " + order.getOrderId(), e));
+            return result;
+        }
+
+        ByteBuffer content = ByteBuffer.wrap(form.content());
+        writeFully(target, content, form.structured(), result);
+        return result;
+    }
+
+    // keep writing until the buffer is drained - a single write may be partial - then
+    // rename the temp file into place (see ReceiptStore)
+    private static void writeFully(ReceiptStore.AsyncTarget target, ByteBuffer content, boolean structured,
+                                   CompletableFuture<String> result) {
+        AsynchronousFileChannel channel = target.channel();
+        Path filepath = target.path();
+        channel.write(content, content.position(), null, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer written, Void attachment) {
+                if (content.hasRemaining()) {
+                    writeFully(target, content, structured, result);
+                    return;
+                }
+                ReceiptStore.Saved saved;
+                try {
+                    saved = ReceiptStore.commit(target);
+                } catch (IOException e) {
+                    failed(e, null);
+                    return;
+                }
+                if (structured) {
+                    ReceiptRenderCache.invalidate(target.orderId());
+                }
+                if (saved.created()) {
+                    recordSavedQuietly(target.orderId(), filepath);
+                }
+                result.complete(filepath.toString());
+            }
+
+            @Override
+            public void failed(Throwable error, Void attachment) {
+                ReceiptStore.discard(target);
+                System.err.println("failed to write receipt file: " + filepath.toAbsolutePath());
+                result.completeExceptionally(
+                        new IOException("could not write receipt file: " + filepath.toAbsolutePath(), error));
+            }
+        });
+    }
+
+    // the receipt itself is on disk, so a manifest failure only costs the count
+    private static void recordSavedQuietly(String orderId, Path filepath) {
+        try {
+            ReceiptStore.recordSaved(List.of(orderId));
+        } catch (IOException e) {
+            System.err.println("failed to record receipt in manifest: " + filepath + " - " + e.getMessage());
+        }
+    }
+
+    /**
+     * read a saved receipt back, from its file or from the day's compacted segment
+     * (see ReceiptCompactor), rendering it if the order was saved structured - callers
+     * don't need to know which
+     *
+     * @param orderId the order the receipt belongs to
+     * @return receipt content, or null if no receipt was saved for the order (a rendered
+     *         receipt is shared with ReceiptRenderCache - don't modify it)
+     * @throws IOException if the receipt exists but can't be read
+     * @throws IllegalArgumentException if the order id isn't a valid receipt id
+     */
+    public static byte[] readReceipt(String orderId) throws IOException {
+        // a loose file wins: it is either not compacted yet or newer than the segment
+        try {
+            return Files.readAllBytes(ReceiptStore.pathFor(orderId));
+        } catch (NoSuchFileException e) {
+            // saved structured, compacted, or never saved
+        }
+        try {
+            return renderStoredOrder(orderId, Files.readAllBytes(ReceiptStore.orderPathFor(orderId)));
+        } catch (NoSuchFileException e) {
+            // compacted, or never saved
+        }
+
+        Path segment = ReceiptStore.segmentPathFor(orderId);
+        byte[] content = segment != null ? ReceiptSegments.read(segment, orderId) : null;
+        return content != null && OrderCodec.isEncoded(content) ? renderStoredOrder(orderId, content) : content;
+    }
+
     /**
      * check if receipts folder exists and is writable
      *
@@ -215,7 +479,7 @@ public class ReceiptGenerator {
      */
     public static boolean receiptsFolderExists() {
         try {
-            Path receiptsPath = Paths.get(RECEIPTS_FOLDER);
+            Path receiptsPath = ReceiptStore.root();
             return Files.exists(receiptsPath) &&
                     Files.isDirectory(receiptsPath) &&
                     Files.isWritable(receiptsPath);
@@ -231,30 +495,20 @@ public class ReceiptGenerator {
      */
     public static String getReceiptsFolderPath() {
         try {
-            return Paths.get(RECEIPTS_FOLDER).toAbsolutePath().toString();
+            return ReceiptStore.root().toAbsolutePath().toString();
         } catch (Exception e) {
-            return RECEIPTS_FOLDER;
+            return ReceiptStore.root().toString();
         }
     }
 
     /**
      * get the number of receipts currently saved
+     * comes from ReceiptStore's maintained count - the folder is never listed
      *
-     * @return number of receipt files in the receipts folder
+     * @return number of receipts saved in the receipts folder
      */
     public static int getReceiptCount() {
-        try {
-            Path receiptsPath = Paths.get(RECEIPTS_FOLDER);
-            if (!Files.exists(receiptsPath)) {
-                return 0;
-            }
-
-            return (int) Files.list(receiptsPath)
-                    .filter(path -> path.toString().endsWith(".txt"))
-                    .count();
-        } catch (Exception e) {
-            return 0;
-        }
+        return (int) Math.min(Integer.MAX_VALUE, ReceiptStore.count());
     }
 
     /**
@@ -267,6 +521,11 @@ public class ReceiptGenerator {
         System.out.println("Receipts Folder: " + getReceiptsFolderPath());
         System.out.println("Folder Exists: " + receiptsFolderExists());
         System.out.println("Receipt Count: " + getReceiptCount());
+        System.out.println("Receipt Storage: " + (STRUCTURED ? "structured (rendered on first read)" : "text"));
+        if (ReceiptStore.hasFlatReceipts()) {
+            System.out.println("✗ receipts found in the old flat layout - they are not counted until moved with");
+            System.out.println("  com.raion.tools.ReceiptLayoutMigration (see README)");
+        }
         System.out.println("==========================================\n");
     }
 }
\ No newline at end of file
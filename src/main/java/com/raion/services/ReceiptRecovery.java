@@ -0,0 +1,301 @@
+package com.raion.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * startup pass over the receipts folder that cleans up after a crash
+ * (raion.receipts.recovery.enabled, on by default)
+ *
+ * receipts are written to a temp file and renamed into place (see ReceiptStore), so a
+ * crash leaves orphaned temp files rather than torn receipts. this pass deletes those,
+ * and also checks every receipt it visits is whole - a text receipt must end with the
+ * closing separator line, a structured order must be as long as its header says - so
+ * receipts torn by power loss without -Draion.receipts.fsync, or by versions that wrote
+ * in place, don't go unnoticed. an incomplete one is renamed to <file>.incomplete (no
+ * longer read or compacted) and logged
+ *
+ * fast on big folders:
+ * - only shard (bucket) directories changed since the last count checkpoint, less a
+ *   safety margin, are opened; anything older was settled before a clean checkpoint.
+ *   every write creates or renames a file in its bucket, which updates the bucket's
+ *   modification time, so one stat per bucket decides. a folder without a checkpoint,
+ *   or raion.receipts.recovery.full=true, checks everything
+ * - buckets are scanned in parallel on raion.receipts.recovery.threads threads
+ *   (default twice the cores - the work is mostly waiting on the file system)
+ *
+ * runs in the background after startup, next to the order path: temp files of this run
+ * are never touched, and a receipt is only replaced by a whole new one. once done the
+ * checkpoint is rewritten, so the next startup only looks at what changed after it
+ */
+@Component
+public class ReceiptRecovery implements ApplicationRunner {
+
+    // what one pass found
+    public record Result(int directories, int directoriesSkipped, long files, int orphansDeleted,
+                         int incomplete, long millis) {
+    }
+
+    public static final String INCOMPLETE_SUFFIX = ".incomplete";
+
+    // writes in flight while the checkpoint was written finish within this
+    private static final long MARGIN_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    // every receipt ends with the separator line (see ReceiptGenerator.generateReceipt)
+    private static final byte[] RECEIPT_END = ("\n" + "=".repeat(60) + "\n").getBytes(StandardCharsets.UTF_8);
+
+    // per bucket counts, added up across the pool
+    private record Totals(int directories, int skipped, long files, int orphans, int incomplete) {
+
+        static final Totals NONE = new Totals(0, 0, 0, 0, 0);
+
+        Totals plus(Totals other) {
+            return new Totals(directories + other.directories, skipped + other.skipped, files + other.files,
+                    orphans + other.orphans, incomplete + other.incomplete);
+        }
+    }
+
+    private final boolean enabled;
+    private final boolean full;
+    private final int threads;
+
+    private volatile boolean running;
+    private volatile Result lastResult;
+
+    public ReceiptRecovery(@Value("${raion.receipts.recovery.enabled:true}") boolean enabled,
+                           @Value("${raion.receipts.recovery.full:false}") boolean full,
+                           @Value("${raion.receipts.recovery.threads:0}") int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("receipt recovery threads must be 0 (automatic) or more");
+        }
+
+        this.enabled = enabled;
+        this.full = full;
+        this.threads = threads > 0 ? threads : Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+
+        // off the startup path - readiness doesn't wait for it
+        Thread thread = new Thread(this::runInBackground, "receipt-recovery");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * check the receipts folder (see the class comment)
+     *
+     * @param full check every bucket, not just those changed since the last checkpoint
+     * @return totals for the pass
+     * @throws IOException if the folder can't be walked
+     * @throws InterruptedException if the thread is interrupted while the pool works
+     */
+    public Result recover(boolean full) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Path root = ReceiptStore.root();
+        if (!Files.isDirectory(root)) {
+            return new Result(0, 0, 0, 0, 0, 0);
+        }
+
+        long changedSince = full ? Long.MIN_VALUE : lastCheckpointMillis(root) - MARGIN_MILLIS;
+        List<Path> shards = listShards(root);
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Totals totals;
+        try {
+            // shard = one day (or the undated shard): its buckets are listed in parallel,
+            // then every bucket is a task of its own, so one big day doesn't serialize the pass
+            totals = pool.submit(() -> shards.parallelStream()
+                    .flatMap(shard -> listBuckets(shard).stream())
+                    .map(bucket -> scanBucket(bucket, changedSince))
+                    .reduce(Totals.NONE, Totals::plus)).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IOException("receipt recovery failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // everything before now is settled - the next startup starts from here
+        ReceiptStore.count();
+        ReceiptStore.checkpoint();
+
+        return new Result(totals.directories(), totals.skipped(), totals.files(), totals.orphans(),
+                totals.incomplete(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    public Map<String, Object> getStats() {
+        Result result = lastResult;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("full", full);
+        stats.put("threads", threads);
+        stats.put("running", running);
+        if (result != null) {
+            stats.put("directoriesScanned", result.directories());
+            stats.put("directoriesSkipped", result.directoriesSkipped());
+            stats.put("filesChecked", result.files());
+            stats.put("orphansDeleted", result.orphansDeleted());
+            stats.put("incomplete", result.incomplete());
+            stats.put("millis", result.millis());
+        }
+        return stats;
+    }
+
+    private void runInBackground() {
+        running = true;
+        try {
+            Result result = recover(full);
+            lastResult = result;
+            System.out.println("✓ receipt recovery: checked " + result.files() + " files in "
+                    + result.directories() + " shard directories (" + result.directoriesSkipped()
+                    + " unchanged since the last checkpoint), deleted " + result.orphansDeleted()
+                    + " orphaned temp files, found " + result.incomplete() + " incomplete receipts in "
+                    + result.millis() + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("✗ receipt recovery failed: " + e.getMessage());
+        } finally {
+            running = false;
+        }
+    }
+
+    // when the count checkpoint was last written, or the beginning of time without one
+    private static long lastCheckpointMillis(Path root) throws IOException {
+        try {
+            return Files.getLastModifiedTime(root.resolve(ReceiptStore.CHECKPOINT_FILE)).toMillis();
+        } catch (NoSuchFileException e) {
+            return Long.MIN_VALUE + MARGIN_MILLIS;
+        }
+    }
+
+    // day directories (yyyy/MM/dd) plus the undated shard - the parents of the buckets
+    private static List<Path> listShards(Path root) throws IOException {
+        List<Path> shards = new ArrayList<>();
+        Path undated = root.resolve(ReceiptStore.UNDATED_SHARD);
+        if (Files.isDirectory(undated)) {
+            shards.add(undated);
+        }
+        for (Path year : directories(root, "[0-9][0-9][0-9][0-9]")) {
+            for (Path month : directories(year, "[0-9][0-9]")) {
+                shards.addAll(directories(month, "[0-9][0-9]"));
+            }
+        }
+        return shards;
+    }
+
+    private static List<Path> listBuckets(Path shard) {
+        try {
+            return directories(shard, "[0-9a-f][0-9a-f]");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<Path> directories(Path parent, String glob) throws IOException {
+        List<Path> directories = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(parent, glob)) {
+            for (Path entry : entries) {
+                if (Files.isDirectory(entry)) {
+                    directories.add(entry);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // compacted away meanwhile
+        }
+        return directories;
+    }
+
+    private static Totals scanBucket(Path bucket, long changedSince) {
+        try {
+            if (Files.getLastModifiedTime(bucket).toMillis() < changedSince) {
+                return new Totals(0, 1, 0, 0, 0);
+            }
+
+            long files = 0;
+            int orphans = 0;
+            int incomplete = 0;
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(bucket)) {
+                for (Path entry : entries) {
+                    String name = entry.getFileName().toString();
+                    if (ReceiptStore.isOrphanedTemp(name)) {
+                        if (Files.deleteIfExists(entry)) {
+                            orphans++;
+                        }
+                    } else if (name.endsWith(ReceiptStore.RECEIPT_SUFFIX) || name.endsWith(ReceiptStore.ORDER_SUFFIX)) {
+                        files++;
+                        if (!isComplete(entry, name) && quarantine(entry, name)) {
+                            incomplete++;
+                        }
+                    }
+                }
+            }
+            return new Totals(1, 0, files, orphans, incomplete);
+        } catch (NoSuchFileException e) {
+            // compacted away meanwhile
+            return Totals.NONE;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // the tail of a text receipt, or the whole of a (tiny) structured order
+    private static boolean isComplete(Path file, String name) throws IOException {
+        if (name.endsWith(ReceiptStore.ORDER_SUFFIX)) {
+            return OrderCodec.isComplete(Files.readAllBytes(file));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < RECEIPT_END.length) {
+                return false;
+            }
+            ByteBuffer tail = ByteBuffer.allocate(RECEIPT_END.length);
+            while (tail.hasRemaining() && channel.read(tail, size - tail.remaining()) > 0) {
+                // positional reads until the tail is full
+            }
+            return Arrays.equals(tail.array(), RECEIPT_END);
+        }
+    }
+
+    private static boolean quarantine(Path file, String name) {
+        try {
+            Files.move(file, file.resolveSibling(name + INCOMPLETE_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+            System.err.println("✗ incomplete receipt moved aside: " + file + INCOMPLETE_SUFFIX);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            System.err.println("✗ incomplete receipt could not be moved aside: " + file + " - " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.raion.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * receipt text rendered from structured orders (see OrderCodec), most recently read first
+ *
+ * bounded to -Draion.receipts.render-cache-size receipts (default 1000, about 1.2 MB);
+ * the least recently read one is dropped first. rendering is cheap and deterministic, so
+ * two threads missing the same order at once both render it and the second put wins
+ *
+ * cached arrays are shared - callers must not modify them
+ */
+public final class ReceiptRenderCache {
+
+    private static final int CAPACITY = Integer.getInteger("raion.receipts.render-cache-size", 1000);
+
+    private static final ReentrantLock LOCK = new ReentrantLock();
+    private static final Map<String, byte[]> RECEIPTS = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    // private constructor - utility class with only static methods
+    private ReceiptRenderCache() {
+        throw new UnsupportedOperationException("utility class cannot be instantiated");
+    }
+
+    /**
+     * @return the cached receipt for an order, or null (counted as a miss)
+     */
+    public static byte[] get(String orderId) {
+        byte[] receipt;
+        LOCK.lock();
+        try {
+            receipt = RECEIPTS.get(orderId);
+        } finally {
+            LOCK.unlock();
+        }
+        (receipt != null ? HITS : MISSES).incrementAndGet();
+        return receipt;
+    }
+
+    public static void put(String orderId, byte[] receipt) {
+        if (CAPACITY <= 0) {
+            return;
+        }
+        LOCK.lock();
+        try {
+            RECEIPTS.put(orderId, receipt);
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    /**
+     * forget an order's receipt (its structured order was saved again)
+     */
+    public static void invalidate(String orderId) {
+        LOCK.lock();
+        try {
+            RECEIPTS.remove(orderId);
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    public static Map<String, Object> getStats() {
+        int size;
+        LOCK.lock();
+        try {
+            size = RECEIPTS.size();
+        } finally {
+            LOCK.unlock();
+        }
+        return Map.of(
+                "capacity", CAPACITY,
+                "entries", size,
+                "hits", HITS.get(),
+                "misses", MISSES.get()
+        );
+    }
+}
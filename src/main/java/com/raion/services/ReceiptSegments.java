@@ -0,0 +1,486 @@
+package com.raion.services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * compressed receipt segments - one file per day of compacted receipts (see ReceiptCompactor)
+ *
+ * file layout (big-endian, as written by DataOutputStream):
+ *   header   int magic "RSG1"
+ *   records  short id length, id (ascii), int raw length, int compressed length,
+ *            zlib-compressed receipt - sorted by order id
+ *   index    int entries, then per entry: short id length, id, long record offset
+ *            (every INDEX_INTERVAL-th record - a sparse index)
+ *   footer   long index offset, int record count, int magic "RSGE"
+ *
+ * records and index live in one file, so a single atomic rename publishes both.
+ * every record is compressed on its own against a preset dictionary of receipt
+ * boilerplate, so one receipt can be read without inflating its neighbours
+ *
+ * a lookup binary-searches the sparse index for the last entry at or before the order
+ * id and scans at most INDEX_INTERVAL record headers in the memory-mapped records.
+ * open segments (mapping plus index) are cached. a reader already holding a mapping keeps
+ * reading the file it mapped after the compactor replaces it, but a mapping made before
+ * an invalidate is never left in the cache (see open)
+ */
+public final class ReceiptSegments {
+
+    public static final String SEGMENT_SUFFIX = ".seg";
+    static final int INDEX_INTERVAL = 32;
+
+    private static final int MAGIC = 0x52534731;      // RSG1
+    private static final int FOOTER_MAGIC = 0x52534745; // RSGE
+    private static final int FOOTER_BYTES = Long.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final int MAX_CACHED_SEGMENTS = 64;
+
+    // receipt boilerplate every record is compressed against - changing it makes existing
+    // segments unreadable, so it is frozen (a different receipt format only compresses worse)
+    private static final byte[] DICTIONARY = (
+            "ADDED FEATURES\n"
+                    + "Enhanced Autopilot: $6,000.00\n"
+                    + "Full Self-Driving Capability: $8,000.00\n"
+                    + "Massage Seats (Front & Rear): $3,000.00\n"
+                    + "Premium Floor Mats: $400.00\n"
+                    + "Home EV Charger (Level 2, 240V): $800.00\n"
+                    + "Extended Warranty (8 years / 120,000 miles): $\n"
+                    + "Paint Protection Film (Full Front): $2,000.00\n"
+                    + "Ceramic Coating (Full Vehicle): $1,500.00\n"
+                    + "============================================================\n"
+                    + "RAION MOTORS\n"
+                    + "Electric Vehicle Order Receipt\n"
+                    + "============================================================\n"
+                    + "Order ID: 2026\n"
+                    + "Date: October 18, 2026 \n"
+                    + "\nVEHICLE CONFIGURATION\n"
+                    + "============================================================\n"
+                    + "Model: Raion Level 2\n"
+                    + "Trim: Off-Road\n"
+                    + "Color: Obsidian Black\n"
+                    + "Drivetrain: AWD (Tri-Motor)\n"
+                    + "Range: 450 miles\n"
+                    + "Base Price: $95,000.00\n"
+                    + "\nSUMMARY\n"
+                    + "============================================================\n"
+                    + "Subtotal: $101,800.00\n"
+                    + "Tax (8.5%): $8,653.00\n"
+                    + "============================================================\n"
+                    + "TOTAL: $110,453.00\n"
+                    + "\nESTIMATED MONTHLY PAYMENT: $1,937.37\n"
+                    + "(Based on: 60 months, $10,000 down, 5.9% APR)\n"
+                    + "\nVEHICLE SPECIFICATIONS\n"
+                    + "============================================================\n"
+                    + "Power: 670 hp\n"
+                    + "0-60 mph: 6.0 seconds\n"
+                    + "Top Speed: 130 mph\n"
+                    + "Range: 450 miles\n"
+                    + "Battery: 100 kWh\n"
+                    + "\nENVIRONMENTAL IMPACT\n"
+                    + "============================================================\n"
+                    + "Estimated CO2 Saved (5 years): 23 tons\n"
+                    + "Equivalent to planting: 1150 trees\n"
+                    + "\nThank you for choosing Raion Motors!\n"
+                    + "www.raionmotors.com | support@raionmotors.com\n"
+                    + "============================================================\n"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    // one receipt as stored: order id plus its compressed bytes
+    public record Record(String orderId, int rawLength, byte[] compressed) {
+    }
+
+    // an open segment: its records mapped read-only, and its sparse index
+    private record OpenSegment(ByteBuffer records, String[] ids, long[] offsets) {
+    }
+
+    // where a receipt sits in a mapped segment: a view of its compressed bytes
+    private record Located(String orderId, int rawLength, ByteBuffer compressed) {
+    }
+
+    private static final Map<Path, OpenSegment> OPEN = new ConcurrentHashMap<>();
+    // bumped by every invalidate, so open can tell it raced with a segment being replaced
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    // private constructor - utility class with only static methods
+    private ReceiptSegments() {
+        throw new UnsupportedOperationException("utility class cannot be instantiated");
+    }
+
+    /**
+     * read one receipt from the segment that would hold it
+     *
+     * @param segment segment file (see ReceiptStore.segmentPathFor)
+     * @param orderId order id to look up
+     * @return the receipt content, or null if the segment doesn't exist or doesn't hold the order
+     * @throws IOException if the segment can't be read or is corrupt
+     */
+    public static byte[] read(Path segment, String orderId) throws IOException {
+        Located located = locate(segment, orderId);
+        if (located == null) {
+            return null;
+        }
+        byte[] content = new byte[located.rawLength()];
+        inflate(located, ByteBuffer.wrap(content));
+        return content;
+    }
+
+    /**
+     * read one receipt into an off-heap buffer - inflated straight out of the mapped
+     * segment, so the receipt never passes through the java heap (receipt downloads)
+     *
+     * @return a direct buffer holding the receipt content, or null if the segment doesn't
+     *         exist or doesn't hold the order
+     * @throws IOException if the segment can't be read or is corrupt
+     */
+    public static ByteBuffer readDirect(Path segment, String orderId) throws IOException {
+        Located located = locate(segment, orderId);
+        if (located == null) {
+            return null;
+        }
+        ByteBuffer content = ByteBuffer.allocateDirect(located.rawLength());
+        inflate(located, content);
+        return content.flip();
+    }
+
+    /**
+     * forget the cached channel and index of a segment (call after replacing the file)
+     */
+    public static void invalidate(Path segment) {
+        // bump before removing: a reader that caches after the remove sees the new generation.
+        // the mapping is released once the last reader drops it
+        GENERATION.incrementAndGet();
+        OPEN.remove(segment);
+    }
+
+    /**
+     * compress one receipt into a record
+     */
+    public static Record compress(String orderId, byte[] content) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(content);
+            deflater.finish();
+            byte[] buffer = new byte[content.length + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            return new Record(orderId, content.length, Arrays.copyOf(buffer, length));
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * writes a new segment; records must be added in ascending order id order
+     */
+    public static final class Writer implements Closeable {
+
+        private final DataOutputStream out;
+        private final List<String> indexIds = new ArrayList<>();
+        private final List<Long> indexOffsets = new ArrayList<>();
+        private long offset;
+        private int records;
+        private String lastOrderId;
+
+        public Writer(Path file) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE),
+                    64 * 1024));
+            out.writeInt(MAGIC);
+            offset = Integer.BYTES;
+        }
+
+        /**
+         * @return bytes written for the record
+         * @throws IllegalArgumentException if the order id isn't after the previous one
+         */
+        public int add(Record record) throws IOException {
+            if (lastOrderId != null && record.orderId().compareTo(lastOrderId) <= 0) {
+                throw new IllegalArgumentException("segment records must be in ascending order id order: "
+                        + record.orderId() + " after " + lastOrderId);
+            }
+            if (records % INDEX_INTERVAL == 0) {
+                indexIds.add(record.orderId());
+                indexOffsets.add(offset);
+            }
+
+            byte[] id = record.orderId().getBytes(StandardCharsets.US_ASCII);
+            out.writeShort(id.length);
+            out.write(id);
+            out.writeInt(record.rawLength());
+            out.writeInt(record.compressed().length);
+            out.write(record.compressed());
+
+            int written = Short.BYTES + id.length + 2 * Integer.BYTES + record.compressed().length;
+            offset += written;
+            records++;
+            lastOrderId = record.orderId();
+            return written;
+        }
+
+        public int getRecordCount() {
+            return records;
+        }
+
+        /**
+         * append the index and footer and close the file
+         */
+        @Override
+        public void close() throws IOException {
+            long indexOffset = offset;
+            out.writeInt(indexIds.size());
+            for (int i = 0; i < indexIds.size(); i++) {
+                byte[] id = indexIds.get(i).getBytes(StandardCharsets.US_ASCII);
+                out.writeShort(id.length);
+                out.write(id);
+                out.writeLong(indexOffsets.get(i));
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(records);
+            out.writeInt(FOOTER_MAGIC);
+            out.close();
+        }
+    }
+
+    /**
+     * reads every record of a segment in order (used when merging and rebuilding)
+     */
+    public static final class Reader implements Iterator<Record>, Closeable {
+
+        private final DataInputStream in;
+        private final int total;
+        private int read;
+
+        public Reader(Path file) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                this.total = readFooter(channel).getInt(Long.BYTES);
+                channel.position(0);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024));
+            if (in.readInt() != MAGIC) {
+                in.close();
+                throw new IOException("not a receipt segment: " + file);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return read < total;
+        }
+
+        @Override
+        public Record next() {
+            try {
+                byte[] id = new byte[in.readUnsignedShort()];
+                in.readFully(id);
+                int rawLength = in.readInt();
+                byte[] compressed = new byte[in.readInt()];
+                in.readFully(compressed);
+                read++;
+                return new Record(new String(id, StandardCharsets.US_ASCII), rawLength, compressed);
+            } catch (IOException e) {
+                throw new IllegalStateException("failed to read receipt segment record", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * inflate a record back into the receipt content
+     *
+     * @throws IOException if the record is corrupt
+     */
+    public static byte[] decompress(Record record) throws IOException {
+        byte[] content = new byte[record.rawLength()];
+        inflate(new Located(record.orderId(), record.rawLength(), ByteBuffer.wrap(record.compressed())),
+                ByteBuffer.wrap(content));
+        return content;
+    }
+
+    // inflate a record into the space left in content (exactly its raw length)
+    private static void inflate(Located record, ByteBuffer content) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(record.compressed());
+            while (content.hasRemaining()) {
+                int inflated = inflater.inflate(content);
+                if (inflated == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY);
+                    } else if (inflater.finished() || inflater.needsInput()) {
+                        throw new IOException("truncated receipt record: " + record.orderId());
+                    }
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt receipt record: " + record.orderId(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static OpenSegment open(Path segment) throws IOException {
+        while (true) {
+            OpenSegment open = OPEN.get(segment);
+            if (open != null) {
+                return open;
+            }
+
+            long generation = GENERATION.get();
+            open = map(segment);
+
+            // a small cache - past the limit everything is dropped and remapped on demand
+            if (OPEN.size() >= MAX_CACHED_SEGMENTS) {
+                OPEN.clear();
+            }
+            OpenSegment raced = OPEN.putIfAbsent(segment, open);
+            if (raced != null) {
+                return raced;
+            }
+            // the file may have been replaced after we mapped it and invalidated before we
+            // cached it - drop our mapping and map the file that is there now
+            if (GENERATION.get() == generation) {
+                return open;
+            }
+            OPEN.remove(segment, open);
+        }
+    }
+
+    private static OpenSegment map(Path segment) throws IOException {
+        // the mapping outlives the channel, so the file is only open while we map it
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer footer = readFooter(channel);
+            long indexOffset = footer.getLong(0);
+            if (indexOffset > Integer.MAX_VALUE) {
+                throw new IOException("receipt segment too large to map: " + segment);
+            }
+            ByteBuffer index = ByteBuffer.allocate((int) (channel.size() - FOOTER_BYTES - indexOffset));
+            readFully(channel, index, indexOffset);
+            index.flip();
+
+            int entries = index.getInt();
+            String[] ids = new String[entries];
+            long[] offsets = new long[entries];
+            for (int i = 0; i < entries; i++) {
+                byte[] id = new byte[index.getShort() & 0xffff];
+                index.get(id);
+                ids[i] = new String(id, StandardCharsets.US_ASCII);
+                offsets[i] = index.getLong();
+            }
+            return new OpenSegment(channel.map(FileChannel.MapMode.READ_ONLY, 0, indexOffset), ids, offsets);
+        } catch (RuntimeException e) {
+            throw new IOException("corrupt receipt segment: " + segment, e);
+        }
+    }
+
+    private static Located locate(Path segment, String orderId) throws IOException {
+        OpenSegment open;
+        try {
+            open = open(segment);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        int entry = Arrays.binarySearch(open.ids(), orderId);
+        if (entry < 0) {
+            entry = -entry - 2;
+            if (entry < 0) {
+                return null; // before the first record
+            }
+        }
+
+        // absolute reads only - the mapping is shared by every reader
+        ByteBuffer records = open.records();
+        int position = (int) open.offsets()[entry];
+        int end = entry + 1 < open.offsets().length ? (int) open.offsets()[entry + 1] : records.limit();
+        try {
+            while (position < end) {
+                int idLength = records.getShort(position) & 0xffff;
+                int idStart = position + Short.BYTES;
+                int rawLength = records.getInt(idStart + idLength);
+                int compressedLength = records.getInt(idStart + idLength + Integer.BYTES);
+                int dataStart = idStart + idLength + 2 * Integer.BYTES;
+                int compare = compareId(records, idStart, idLength, orderId);
+                if (compare == 0) {
+                    return new Located(orderId, rawLength, records.slice(dataStart, compressedLength));
+                }
+                if (compare > 0) {
+                    return null; // records are sorted - it isn't here
+                }
+                position = dataStart + compressedLength;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("corrupt receipt segment: " + segment, e);
+        }
+        return null;
+    }
+
+    // compares a stored ascii id with an order id the way String.compareTo would
+    private static int compareId(ByteBuffer records, int idStart, int idLength, String orderId) {
+        int common = Math.min(idLength, orderId.length());
+        for (int i = 0; i < common; i++) {
+            int difference = (records.get(idStart + i) & 0xff) - orderId.charAt(i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return idLength - orderId.length();
+    }
+
+    private static ByteBuffer readFooter(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < Integer.BYTES + FOOTER_BYTES) {
+            throw new IOException("receipt segment too short");
+        }
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES);
+        readFully(channel, footer, size - FOOTER_BYTES);
+        if (footer.getInt(Long.BYTES + Integer.BYTES) != FOOTER_MAGIC) {
+            throw new IOException("receipt segment has no footer (incomplete write?)");
+        }
+        return footer;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("unexpected end of receipt segment");
+            }
+        }
+    }
+}
@@ -0,0 +1,633 @@
+package com.raion.services;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * where receipt files live on disk, plus a running count of them
+ *
+ * layout (all under the receipts folder):
+ *   yyyy/MM/dd/xx/<order id>.txt   one receipt, sharded by the order date (taken from the
+ *                                  order id) and xx = two hex digits of the id's hash, so a
+ *                                  directory holds at most one day's share of 1/256 of orders
+ *   yyyy/MM/dd/xx/<order id>.ord   or the structured order its receipt is rendered from
+ *                                  (-Draion.receipts.storage=structured, see OrderCodec)
+ *   manifest.log                   one "<order id>\t<relative path>" line per saved receipt
+ *                                  (always the .txt path)
+ *   receipt-count.properties       checkpoint: receipt count and the manifest length it covers
+ *
+ * the receipt count is kept in memory. on first use it is loaded from the checkpoint plus
+ * the manifest lines written after it (at most CHECKPOINT_INTERVAL of them), so counting
+ * never lists a directory. the checkpoint is rewritten every CHECKPOINT_INTERVAL receipts
+ * and on shutdown
+ *
+ * a receipt's path is derived from its order id alone, so reading one back needs no index.
+ * saving the same order id again overwrites the file without counting it twice (unless its
+ * day was compacted in between - checking the segments would cost every save a lookup)
+ *
+ * every file is written to a temp file next to it (<file>.<session>-<n>.tmp) and renamed
+ * into place, so a receipt is either the old content or the whole new one - a crash
+ * mid-write leaves an orphaned temp file, never a truncated receipt. ReceiptRecovery
+ * deletes temp files from earlier sessions at startup. with -Draion.receipts.fsync=true
+ * the data and the rename are also forced to disk before a save returns, which keeps
+ * receipts whole across power loss too, at the cost of two syncs per save
+ *
+ * once a day is old enough, ReceiptCompactor rolls its directory into one compressed
+ * segment next to it (yyyy/MM/dd.seg, see ReceiptSegments) - the count doesn't change
+ *
+ * receipts folders from before sharding (flat *.txt files) are moved over by
+ * com.raion.tools.ReceiptLayoutMigration
+ *
+ * folder location: ./receipts, override with -Draion.receipts.folder=<path>
+ */
+public final class ReceiptStore {
+
+    public static final String MANIFEST_FILE = "manifest.log";
+    public static final String CHECKPOINT_FILE = "receipt-count.properties";
+    public static final String RECEIPT_SUFFIX = ".txt";
+    public static final String ORDER_SUFFIX = ".ord";
+    public static final String TEMP_SUFFIX = ".tmp";
+    static final int CHECKPOINT_INTERVAL = 10_000;
+
+    static final String UNDATED_SHARD = "undated";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final Path ROOT = Paths.get(System.getProperty("raion.receipts.folder", "receipts"));
+    private static final boolean FSYNC = Boolean.getBoolean("raion.receipts.fsync");
+
+    // temp files are tagged with this run's session, so recovery can tell orphans of an
+    // earlier run from writes in progress
+    private static final String SESSION_TAG = "." + Long.toHexString(new SecureRandom().nextLong() >>> 1) + "-";
+    private static final AtomicLong TEMP_COUNTER = new AtomicLong();
+
+    // guards the manifest channel, the count and the checkpoint; a lock rather than a
+    // monitor, since a virtual thread blocked in synchronized pins its carrier
+    private static final ReentrantLock LOCK = new ReentrantLock();
+    private static FileChannel manifest;
+    // manifest lines are encoded here under LOCK, so appending a receipt's line allocates nothing
+    private static final ByteBuffer MANIFEST_BUFFER = ByteBuffer.allocateDirect(8192);
+    private static long count = -1;
+    private static long sinceCheckpoint;
+
+    // receipt file plus whether it was new (only new receipts are counted)
+    public record Saved(Path path, boolean created) {
+    }
+
+    // temp file opened for an asynchronous write of an order's receipt (or structured order)
+    public record AsyncTarget(String orderId, Path path, Path temp, AsynchronousFileChannel channel) {
+    }
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(ReceiptStore::close, "receipt-store-checkpoint"));
+    }
+
+    // private constructor - utility class with only static methods
+    private ReceiptStore() {
+        throw new UnsupportedOperationException("utility class cannot be instantiated");
+    }
+
+    /**
+     * the receipts folder
+     */
+    public static Path root() {
+        return ROOT;
+    }
+
+    /**
+     * where the receipt for an order id lives, relative to the receipts folder
+     *
+     * @param orderId order id (yyyyMMdd-HHmmss, optionally with a -n suffix)
+     * @return yyyy/MM/dd/xx/<order id>.txt, or undated/xx/<order id>.txt for other ids
+     * @throws IllegalArgumentException if the order id is empty or could escape the folder
+     */
+    public static String relativePathFor(String orderId) {
+        return relativePathFor(orderId, RECEIPT_SUFFIX);
+    }
+
+    /**
+     * the same, with another file suffix (ORDER_SUFFIX for a structured order)
+     */
+    public static String relativePathFor(String orderId, String suffix) {
+        checkOrderId(orderId);
+        int hash = shardHash(orderId);
+
+        // built as one string so resolving it parses a single path
+        StringBuilder path = new StringBuilder(orderId.length() + 20);
+        if (isDated(orderId)) {
+            path.append(orderId, 0, 4).append('/')
+                    .append(orderId, 4, 6).append('/')
+                    .append(orderId, 6, 8).append('/');
+        } else {
+            path.append(UNDATED_SHARD).append('/');
+        }
+        return path.append(HEX[(hash >>> 4) & 0xf]).append(HEX[hash & 0xf]).append('/')
+                .append(orderId).append(suffix)
+                .toString();
+    }
+
+    /**
+     * path (under the configured folder) of the receipt for an order id
+     */
+    public static Path pathFor(String orderId) {
+        return ROOT.resolve(relativePathFor(orderId));
+    }
+
+    /**
+     * path of the structured order for an order id (next to where its receipt would be)
+     */
+    public static Path orderPathFor(String orderId) {
+        return ROOT.resolve(relativePathFor(orderId, ORDER_SUFFIX));
+    }
+
+    /**
+     * the compacted segment that would hold an order's receipt
+     *
+     * @return yyyy/MM/dd.seg under the receipts folder, or null for undated order ids
+     * @throws IllegalArgumentException if the order id isn't a valid receipt id
+     */
+    public static Path segmentPathFor(String orderId) {
+        relativePathFor(orderId);
+        if (!isDated(orderId)) {
+            return null;
+        }
+        return ROOT.resolve(orderId.substring(0, 4)).resolve(orderId.substring(4, 6))
+                .resolve(orderId.substring(6, 8) + ReceiptSegments.SEGMENT_SUFFIX);
+    }
+
+    /**
+     * directory holding one day's receipts (in hash buckets)
+     */
+    public static Path dayDirectory(LocalDate day) {
+        return ROOT.resolve(String.format("%04d/%02d/%02d", day.getYear(), day.getMonthValue(), day.getDayOfMonth()));
+    }
+
+    /**
+     * segment file holding one day's compacted receipts
+     */
+    public static Path segmentPath(LocalDate day) {
+        Path dayDirectory = dayDirectory(day);
+        return dayDirectory.resolveSibling(dayDirectory.getFileName() + ReceiptSegments.SEGMENT_SUFFIX);
+    }
+
+    /**
+     * write a receipt, creating its shard directory on first use, and count it if it is new
+     *
+     * @param orderId order the receipt belongs to
+     * @param content receipt file content
+     * @return where it was written and whether it was new
+     * @throws IOException if the file can't be written
+     */
+    public static Saved write(String orderId, byte[] content) throws IOException {
+        Saved saved = writeFile(orderId, content);
+        if (saved.created()) {
+            recordSaved(List.of(orderId));
+        }
+        return saved;
+    }
+
+    /**
+     * write a structured order instead of its receipt, and count it if it is new
+     *
+     * @param orderId order id
+     * @param encoded the order as encoded by OrderCodec
+     * @return where it was written and whether it was new
+     * @throws IOException if the file can't be written
+     */
+    public static Saved writeOrder(String orderId, byte[] encoded) throws IOException {
+        Saved saved = writeOrderFile(orderId, encoded);
+        if (saved.created()) {
+            recordSaved(List.of(orderId));
+        }
+        return saved;
+    }
+
+    /**
+     * write the file only - callers saving many receipts count them with one recordSaved call
+     */
+    static Saved writeFile(String orderId, byte[] content) throws IOException {
+        return writeFile(pathFor(orderId), content);
+    }
+
+    static Saved writeOrderFile(String orderId, byte[] encoded) throws IOException {
+        return writeFile(orderPathFor(orderId), encoded);
+    }
+
+    private static Saved writeFile(Path path, byte[] content) throws IOException {
+        Path temp = tempPathFor(path);
+        // creating the temp file is the only extra syscall; the directory only when missing
+        try {
+            writeTemp(temp, content);
+        } catch (NoSuchFileException e) {
+            Files.createDirectories(path.getParent());
+            writeTemp(temp, content);
+        }
+        return new Saved(path, moveIntoPlace(temp, path));
+    }
+
+    private static void writeTemp(Path temp, byte[] content) throws IOException {
+        if (!FSYNC) {
+            Files.write(temp, content, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * rename a fully written temp file over its receipt (or structured order)
+     *
+     * @return true if there was no file there before, i.e. the receipt is new and must be
+     *         counted (two saves of one order id racing here may both count it - order ids
+     *         are unique per placed order, so only a client retrying with the same id could)
+     */
+    private static boolean moveIntoPlace(Path temp, Path path) throws IOException {
+        // File.exists rather than Files.notExists, which throws (and catches) a
+        // NoSuchFileException for every new receipt
+        boolean created = !path.toFile().exists();
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+        if (FSYNC) {
+            // the rename is only durable once the directory entry is
+            try (FileChannel directory = FileChannel.open(path.getParent(), StandardOpenOption.READ)) {
+                directory.force(true);
+            }
+        }
+        return created;
+    }
+
+    // <file name>.<session>-<n>.tmp in the same directory, so the rename never crosses file systems
+    // (appended to the whole path, whose string the caller reuses, rather than split and resolved)
+    private static Path tempPathFor(Path path) {
+        return path.getFileSystem().getPath(path + SESSION_TAG + TEMP_COUNTER.incrementAndGet() + TEMP_SUFFIX);
+    }
+
+    /**
+     * true for a temp file of a write that never finished in an earlier run - a crash
+     * between writing and renaming it (see ReceiptRecovery); temp files of this run may
+     * still be in progress
+     */
+    public static boolean isOrphanedTemp(String fileName) {
+        return fileName.endsWith(TEMP_SUFFIX) && !fileName.contains(SESSION_TAG);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("failed to delete temp receipt file " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * open a temp file for an asynchronous write of an order's receipt
+     * once every byte is written call commit, then recordSaved if the receipt was new;
+     * after a failed write call discard
+     *
+     * @throws IOException if the file can't be opened
+     */
+    public static AsyncTarget openAsync(String orderId) throws IOException {
+        return openAsync(orderId, pathFor(orderId));
+    }
+
+    /**
+     * the same for the structured order of an order id
+     */
+    public static AsyncTarget openAsyncOrder(String orderId) throws IOException {
+        return openAsync(orderId, orderPathFor(orderId));
+    }
+
+    private static AsyncTarget openAsync(String orderId, Path path) throws IOException {
+        Path temp = tempPathFor(path);
+        try {
+            return new AsyncTarget(orderId, path, temp, AsynchronousFileChannel.open(temp,
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW));
+        } catch (NoSuchFileException e) {
+            Files.createDirectories(path.getParent());
+            return new AsyncTarget(orderId, path, temp, AsynchronousFileChannel.open(temp,
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW));
+        }
+    }
+
+    /**
+     * close a fully written asynchronous target and move it into place
+     *
+     * @return where it was written and whether it was new
+     * @throws IOException if the file can't be synced or renamed (the temp file is deleted)
+     */
+    public static Saved commit(AsyncTarget target) throws IOException {
+        try (AsynchronousFileChannel channel = target.channel()) {
+            if (FSYNC) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            deleteQuietly(target.temp());
+            throw e;
+        }
+        return new Saved(target.path(), moveIntoPlace(target.temp(), target.path()));
+    }
+
+    /**
+     * close and delete the temp file of an asynchronous write that failed
+     */
+    public static void discard(AsyncTarget target) {
+        try {
+            target.channel().close();
+        } catch (IOException e) {
+            System.err.println("failed to close receipt file: " + e.getMessage());
+        }
+        deleteQuietly(target.temp());
+    }
+
+    /**
+     * append newly created receipts to the manifest and the count (one write for the lot)
+     *
+     * @param orderIds orders whose receipt files were just created
+     * @throws IOException if the manifest can't be written
+     */
+    public static void recordSaved(List<String> orderIds) throws IOException {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+
+        for (String orderId : orderIds) {
+            checkOrderId(orderId);
+        }
+
+        LOCK.lock();
+        try {
+            ensureLoaded();
+            if (manifest == null) {
+                manifest = FileChannel.open(ROOT.resolve(MANIFEST_FILE),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            MANIFEST_BUFFER.clear();
+            for (String orderId : orderIds) {
+                if (putManifestLine(MANIFEST_BUFFER, orderId)) {
+                    continue;
+                }
+                writeManifest(MANIFEST_BUFFER.flip());
+                MANIFEST_BUFFER.clear();
+                if (!putManifestLine(MANIFEST_BUFFER, orderId)) {
+                    // not ascii, or longer than the buffer
+                    String line = orderId + '\t' + relativePathFor(orderId) + '\n';
+                    writeManifest(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+                }
+            }
+            writeManifest(MANIFEST_BUFFER.flip());
+            count += orderIds.size();
+            sinceCheckpoint += orderIds.size();
+            if (sinceCheckpoint >= CHECKPOINT_INTERVAL) {
+                writeCheckpoint();
+            }
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    /**
+     * number of receipts saved - no directory listing, see the class comment
+     */
+    public static long count() {
+        LOCK.lock();
+        try {
+            ensureLoaded();
+            return count;
+        } catch (IOException e) {
+            System.err.println("failed to load receipt count: " + e.getMessage());
+            return 0;
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    /**
+     * rewrite the checkpoint now (used on shutdown and by the migration tool)
+     *
+     * @throws IOException if the checkpoint can't be written
+     */
+    public static void checkpoint() throws IOException {
+        LOCK.lock();
+        try {
+            if (count >= 0) {
+                writeCheckpoint();
+            }
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    /**
+     * true if the folder still has receipts in the flat pre-sharding layout
+     * stops at the first one, so this stays cheap even on a huge folder
+     */
+    public static boolean hasFlatReceipts() {
+        if (!Files.isDirectory(ROOT)) {
+            return false;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(ROOT, "*.txt")) {
+            return entries.iterator().hasNext();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // write the last checkpoint and release the manifest
+    private static void close() {
+        LOCK.lock();
+        try {
+            // a folder deleted while running (temp folders of the perf tools) isn't recreated
+            if (count >= 0 && sinceCheckpoint > 0 && Files.isDirectory(ROOT)) {
+                writeCheckpoint();
+            }
+            if (manifest != null) {
+                manifest.close();
+                manifest = null;
+            }
+        } catch (IOException e) {
+            System.err.println("failed to checkpoint receipt count: " + e.getMessage());
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    // checkpoint + manifest lines written after it; caller holds LOCK
+    private static void ensureLoaded() throws IOException {
+        if (count >= 0) {
+            return;
+        }
+
+        long checkpointCount = 0;
+        long checkpointOffset = 0;
+        Path checkpointFile = ROOT.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpointFile)) {
+            Properties checkpoint = new Properties();
+            try (Reader reader = Files.newBufferedReader(checkpointFile, StandardCharsets.UTF_8)) {
+                checkpoint.load(reader);
+            }
+            checkpointCount = Long.parseLong(checkpoint.getProperty("count", "0").trim());
+            checkpointOffset = Long.parseLong(checkpoint.getProperty("manifestBytes", "0").trim());
+        }
+
+        long tailLines = 0;
+        Path manifestFile = ROOT.resolve(MANIFEST_FILE);
+        if (Files.exists(manifestFile)) {
+            try (FileChannel channel = FileChannel.open(manifestFile, StandardOpenOption.READ)) {
+                if (checkpointOffset > channel.size()) {
+                    // manifest replaced or truncated behind the checkpoint's back - recount it all
+                    checkpointCount = 0;
+                    checkpointOffset = 0;
+                }
+                channel.position(checkpointOffset);
+                tailLines = countLines(Channels.newInputStream(channel));
+            }
+        }
+
+        count = checkpointCount + tailLines;
+        sinceCheckpoint = tailLines;
+    }
+
+    private static long countLines(InputStream input) throws IOException {
+        long lines = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new BufferedInputStream(input)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+            }
+        }
+        return lines;
+    }
+
+    // count plus the manifest length it covers, replaced atomically; caller holds LOCK
+    private static void writeCheckpoint() throws IOException {
+        Path manifestFile = ROOT.resolve(MANIFEST_FILE);
+        long manifestBytes = manifest != null ? manifest.size()
+                : Files.exists(manifestFile) ? Files.size(manifestFile) : 0;
+
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("count", Long.toString(count));
+        checkpoint.setProperty("manifestBytes", Long.toString(manifestBytes));
+
+        Files.createDirectories(ROOT);
+        Path temp = ROOT.resolve(CHECKPOINT_FILE + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            checkpoint.store(writer, "receipt count checkpoint - see ReceiptStore");
+        }
+        Files.move(temp, ROOT.resolve(CHECKPOINT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        sinceCheckpoint = 0;
+    }
+
+    // caller holds LOCK
+    private static void writeManifest(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            manifest.write(buffer);
+        }
+    }
+
+    // <order id>\t<relativePathFor(order id)>\n, or false (buffer untouched) when the id
+    // isn't ascii or the line doesn't fit
+    private static boolean putManifestLine(ByteBuffer buffer, String orderId) {
+        int length = orderId.length();
+        boolean dated = isDated(orderId);
+        int shard = dated ? 11 : UNDATED_SHARD.length() + 1;
+        if (buffer.remaining() < length + 1 + shard + 3 + length + RECEIPT_SUFFIX.length() + 1) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (orderId.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+
+        int hash = shardHash(orderId);
+        putAscii(buffer, orderId, 0, length);
+        buffer.put((byte) '\t');
+        if (dated) {
+            putAscii(buffer, orderId, 0, 4);
+            buffer.put((byte) '/');
+            putAscii(buffer, orderId, 4, 6);
+            buffer.put((byte) '/');
+            putAscii(buffer, orderId, 6, 8);
+        } else {
+            putAscii(buffer, UNDATED_SHARD, 0, UNDATED_SHARD.length());
+        }
+        buffer.put((byte) '/')
+                .put((byte) HEX[(hash >>> 4) & 0xf]).put((byte) HEX[hash & 0xf])
+                .put((byte) '/');
+        putAscii(buffer, orderId, 0, length);
+        putAscii(buffer, RECEIPT_SUFFIX, 0, RECEIPT_SUFFIX.length());
+        buffer.put((byte) '\n');
+        return true;
+    }
+
+    private static void putAscii(ByteBuffer buffer, String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    private static void checkOrderId(String orderId) {
+        if (orderId == null || orderId.isEmpty() || orderId.contains("/") || orderId.contains("\\")
+                || orderId.startsWith(".")) {
+            throw new IllegalArgumentException("invalid order id for a receipt: " + orderId);
+        }
+    }
+
+    // picks one of the 256 buckets of a day (or of the undated shard)
+    private static int shardHash(String orderId) {
+        int hash = orderId.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    // order ids start with the order date: yyyyMMdd-
+    private static boolean isDated(String orderId) {
+        if (orderId.length() < 9 || orderId.charAt(8) != '-') {
+            return false;
+        }
+        for (int i = 0; i < 8; i++) {
+            char c = orderId.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,141 @@
+package com.raion.services;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raion.models.Order;
+import com.raion.models.Vehicle;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * pre-rendered order responses and receipts for signature orders without extras
+ *
+ * a signature vehicle always has the same configuration and price, so everything in
+ * its response and receipt except the order id, order date and receipt file is fixed.
+ * both documents are rendered once per signature through the normal code path and
+ * kept as byte templates; placing such an order only patches the three values in
+ *
+ * orders with added options or accessories go through the normal path
+ */
+public final class SignatureTemplates {
+
+    private static final String[] SIGNATURE_IDS = {"urban-commuter", "trail-titan", "track-beast", "executive"};
+
+    // the templates are rendered at SAMPLE_DATE, then checked against a fresh render at CHECK_DATE
+    // (different digits and month-name length, so a misplaced slot can't go unnoticed)
+    private static final LocalDateTime SAMPLE_DATE = LocalDateTime.of(2000, 1, 1, 0, 0, 0);
+    private static final LocalDateTime CHECK_DATE = LocalDateTime.of(2031, 12, 31, 23, 59, 59);
+    private static final String RECEIPT_FILE_MARKER = "@@receipt-file@@";
+    private static final String CHECK_RECEIPT_FILE = "receipts/check \"1\".txt";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final JsonStringEncoder JSON_ENCODER = JsonStringEncoder.getInstance();
+
+    // response and receipt template for one signature
+    // vehiclePrice: the price baked into the templates - a saved order sold at another price
+    // is rendered normally
+    private record Templates(ByteTemplate response, ByteTemplate receipt, double vehiclePrice) {
+    }
+
+    // keyed by signature vehicle class - each signature has its own class
+    private static final Map<Class<? extends Vehicle>, Templates> TEMPLATES = buildTemplates();
+
+    // private constructor - utility class with only static methods
+    private SignatureTemplates() {
+        throw new UnsupportedOperationException("utility class cannot be instantiated");
+    }
+
+    /**
+     * render the order confirmation json for a plain signature order
+     *
+     * @param order the placed order
+     * @param receiptPath where the receipt was saved
+     * @return utf-8 json bytes, or null if the order has extras or isn't a signature order
+     */
+    public static byte[] renderResponse(Order order, String receiptPath) {
+        Templates templates = templatesFor(order);
+        if (templates == null || receiptPath == null) {
+            return null;
+        }
+
+        return templates.response().render(
+                JSON_ENCODER.quoteAsUTF8(order.getOrderId()),
+                JSON_ENCODER.quoteAsUTF8(order.getFormattedOrderDate()),
+                JSON_ENCODER.quoteAsUTF8(receiptPath));
+    }
+
+    /**
+     * render the receipt text for a plain signature order
+     *
+     * @param order the placed order
+     * @return utf-8 receipt bytes, or null if the order has extras or isn't a signature order
+     */
+    public static byte[] renderReceipt(Order order) {
+        Templates templates = templatesFor(order);
+        if (templates == null) {
+            return null;
+        }
+
+        return templates.receipt().render(
+                order.getOrderId().getBytes(StandardCharsets.UTF_8),
+                order.getFormattedOrderDate().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Templates templatesFor(Order order) {
+        if (order == null || order.hasFeatures()) {
+            return null;
+        }
+        Templates templates = TEMPLATES.get(order.getVehicle().getClass());
+        return templates != null && templates.vehiclePrice() == order.getVehiclePrice() ? templates : null;
+    }
+
+    private static Map<Class<? extends Vehicle>, Templates> buildTemplates() {
+        Map<Class<? extends Vehicle>, Templates> templates = new HashMap<>();
+
+        for (String signatureId : SIGNATURE_IDS) {
+            try {
+                Order sample = new Order(OrderAssembler.createSignatureVehicle(signatureId), SAMPLE_DATE);
+                byte[] sampleResponse = renderResponseDirectly(sample, RECEIPT_FILE_MARKER, signatureId);
+                byte[] sampleReceipt = ReceiptGenerator.generateReceipt(sample).getBytes(StandardCharsets.UTF_8);
+
+                Templates compiled = new Templates(
+                        ByteTemplate.compile(sampleResponse,
+                                sample.getOrderId(), sample.getFormattedOrderDate(), RECEIPT_FILE_MARKER),
+                        ByteTemplate.compile(sampleReceipt,
+                                sample.getOrderId(), sample.getFormattedOrderDate()),
+                        sample.getVehiclePrice());
+
+                // the template must reproduce the normal render byte for byte
+                Order check = new Order(OrderAssembler.createSignatureVehicle(signatureId), CHECK_DATE);
+                byte[] expectedResponse = renderResponseDirectly(check, CHECK_RECEIPT_FILE, signatureId);
+                byte[] expectedReceipt = ReceiptGenerator.generateReceipt(check).getBytes(StandardCharsets.UTF_8);
+                byte[] actualResponse = compiled.response().render(
+                        JSON_ENCODER.quoteAsUTF8(check.getOrderId()),
+                        JSON_ENCODER.quoteAsUTF8(check.getFormattedOrderDate()),
+                        JSON_ENCODER.quoteAsUTF8(CHECK_RECEIPT_FILE));
+                byte[] actualReceipt = compiled.receipt().render(
+                        check.getOrderId().getBytes(StandardCharsets.UTF_8),
+                        check.getFormattedOrderDate().getBytes(StandardCharsets.UTF_8));
+
+                if (!Arrays.equals(expectedResponse, actualResponse) || !Arrays.equals(expectedReceipt, actualReceipt)) {
+                    System.err.println("signature template for " + signatureId + " doesn't match the normal render - not used");
+                    continue;
+                }
+
+                templates.put(sample.getVehicle().getClass(), compiled);
+            } catch (Exception e) {
+                System.err.println("could not build signature template for " + signatureId + ": " + e.getMessage());
+            }
+        }
+
+        return templates;
+    }
+
+    private static byte[] renderResponseDirectly(Order order, String receiptPath, String signatureId) throws Exception {
+        return OBJECT_MAPPER.writeValueAsBytes(OrderResponseBuilder.buildOrderResponse(order, receiptPath, true, signatureId));
+    }
+}
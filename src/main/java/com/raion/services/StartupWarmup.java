@@ -0,0 +1,175 @@
+package com.raion.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raion.dto.CustomOrderRequest;
+import com.raion.dto.OrderResponse;
+import com.raion.dto.SignatureOrderRequest;
+import com.raion.models.Order;
+import com.raion.services.OrderAssembler.AssembledOrder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * jit warm-up stage that runs before the instance reports ready
+ *
+ * spring boot only flips readiness to ACCEPTING_TRAFFIC after every ApplicationRunner
+ * has finished, so running the warm-up here keeps new instances out of the load balancer
+ * (see HealthController) until the order path has been compiled. every pass takes a
+ * request body through what post /api/order and /api/order/signature do with it -
+ * jackson, OrderAssembler (a fresh order, so its id and formatted date are built too),
+ * OrderCodec.encode, the templated or built response and the receipt render - but
+ * nothing is saved: no receipt file, no stored order.
+ *
+ * the warm-up stops once the jit has gone quiet (compilation time barely moves between
+ * batches) or when the time limit is hit, whichever comes first
+ */
+@Component
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final int BATCH_SIZE = 200;
+    private static final int QUIET_BATCHES_REQUIRED = 3;
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final long maxMillis;
+    private final long quietCompileMillis;
+
+    // a request body and the endpoint it goes to
+    record SyntheticRequest(byte[] body, boolean signature) {
+    }
+
+    private volatile boolean completed;
+
+    public StartupWarmup(ObjectMapper objectMapper,
+                         @Value("${raion.warmup.enabled:false}") boolean enabled,
+                         @Value("${raion.warmup.max-seconds:30}") long maxSeconds,
+                         @Value("${raion.warmup.quiet-compile-millis:5}") long quietCompileMillis) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxMillis = maxSeconds * 1000;
+        this.quietCompileMillis = quietCompileMillis;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!enabled) {
+            completed = true;
+            return;
+        }
+
+        System.out.println("jit warm-up started (max " + (maxMillis / 1000) + "s)");
+
+        List<SyntheticRequest> requests = buildSyntheticRequests();
+
+        CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+        boolean canMonitorCompiler = compiler != null && compiler.isCompilationTimeMonitoringSupported();
+
+        long start = System.currentTimeMillis();
+        long lastCompileTime = canMonitorCompiler ? compiler.getTotalCompilationTime() : 0;
+        int quietBatches = 0;
+        long iterations = 0;
+
+        while (System.currentTimeMillis() - start < maxMillis) {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                exercise(requests.get((int) (iterations++ % requests.size())));
+            }
+
+            if (!canMonitorCompiler) {
+                continue;
+            }
+            long compileTime = compiler.getTotalCompilationTime();
+            quietBatches = (compileTime - lastCompileTime <= quietCompileMillis) ? quietBatches + 1 : 0;
+            lastCompileTime = compileTime;
+            if (quietBatches >= QUIET_BATCHES_REQUIRED) {
+                break;
+            }
+        }
+
+        completed = true;
+        System.out.println("jit warm-up finished: " + iterations + " synthetic orders in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * true once the warm-up has run (or was disabled)
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * one pass over the order path for a request body, minus the receipt file write and
+     * the repository save (see OrderController)
+     *
+     * @return the response body as it would be sent
+     */
+    byte[] exercise(SyntheticRequest request) throws Exception {
+        AssembledOrder assembled = request.signature()
+                ? OrderAssembler.assembleSignatureOrder(objectMapper.readValue(request.body(), SignatureOrderRequest.class))
+                : OrderAssembler.assembleCustomOrder(objectMapper.readValue(request.body(), CustomOrderRequest.class));
+        Order order = assembled.order();
+        OrderCodec.encode(order);
+        String receiptPath = "receipts/" + order.getOrderId() + ".txt";
+
+        // the receipt as the order path renders it (see ReceiptGenerator.renderReceiptBytes)
+        if (SignatureTemplates.renderReceipt(order) == null && CompiledReceipt.render(order) == null) {
+            ReceiptGenerator.generateReceipt(order);
+        }
+
+        byte[] templated = assembled.isSignature() ? SignatureTemplates.renderResponse(order, receiptPath) : null;
+        if (templated != null) {
+            return templated;
+        }
+        OrderResponse response = OrderResponseBuilder.buildOrderResponse(
+                order, receiptPath, assembled.isSignature(), assembled.signatureName());
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    // every level, trim and signature with a spread of features - plain signatures take
+    // the templated response, the rest the built one
+    List<SyntheticRequest> buildSyntheticRequests() throws Exception {
+        List<SyntheticRequest> requests = new ArrayList<>();
+        List<String> options = List.of("enhanced-autopilot");
+        List<String> servicePackages = List.of("warranty-8yr");
+        List<String> accessories = List.of("floor-mats", "home-charger");
+
+        for (String trim : new String[]{"Standard", "Premium", "Performance"}) {
+            requests.add(custom(1, trim, "white", options, servicePackages, accessories));
+        }
+        for (String trim : new String[]{"Standard", "Premium", "Off-Road"}) {
+            requests.add(custom(2, trim, "silver", options, servicePackages, accessories));
+        }
+        for (String trim : new String[]{"Pro", "Max", "Ultra"}) {
+            requests.add(custom(3, trim, "green", List.of("enhanced-autopilot", "track-package"),
+                    servicePackages, accessories));
+        }
+        requests.add(custom(4, "Flagship", "black", options, servicePackages, accessories));
+
+        for (String signatureName : new String[]{"urban-commuter", "trail-titan", "track-beast", "executive"}) {
+            requests.add(signature(signatureName, List.of()));
+        }
+        requests.add(signature("executive", List.of("home-charger")));
+
+        return requests;
+    }
+
+    private SyntheticRequest custom(int level, String trim, String color, List<String> options,
+                                    List<String> servicePackages, List<String> accessories) throws Exception {
+        return new SyntheticRequest(objectMapper.writeValueAsBytes(Map.of(
+                "level", level, "trim", trim, "color", color, "options", options,
+                "servicePackages", servicePackages, "accessories", accessories)), false);
+    }
+
+    private SyntheticRequest signature(String signatureName, List<String> accessories) throws Exception {
+        return new SyntheticRequest(objectMapper.writeValueAsBytes(Map.of(
+                "signatureName", signatureName, "additionalOptions", List.of(), "accessories", accessories)), true);
+    }
+}
@@ -0,0 +1,209 @@
+package com.raion.tools;
+
+import com.raion.services.ReceiptSegments;
+import com.raion.services.ReceiptStore;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * moves a receipts folder from the old flat layout (receipts/<order id>.txt) into the
+ * sharded layout (receipts/yyyy/MM/dd/xx/<order id>.txt, see ReceiptStore) and records
+ * every moved receipt in the manifest so the receipt count stays right
+ *
+ * - files are moved with an atomic rename, one directory entry at a time, so the run can
+ *   be stopped and restarted: whatever is still flat is picked up by the next run
+ * - a receipt that already exists in the sharded layout is left where it is and reported
+ * - --rebuild-manifest rewrites manifest.log and the count checkpoint from the sharded
+ *   tree (receipts and structured orders) and the compacted segments (for a folder whose
+ *   manifest was lost or edited by hand)
+ *
+ * run it while the server is stopped - the server keeps its own manifest handle and count
+ *
+ * usage:
+ *   mvn -q compile exec:java -Dexec.mainClass=com.raion.tools.ReceiptLayoutMigration \
+ *       -Dexec.args="--folder=receipts"
+ *
+ * options:
+ *   --folder=receipts      receipts folder to migrate
+ *   --dry-run              only report what would be moved
+ *   --rebuild-manifest     rebuild the manifest and count instead of migrating
+ */
+public class ReceiptLayoutMigration {
+
+    private static final int RECORD_BATCH = 1000;
+    private static final int PROGRESS_INTERVAL = 100_000;
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseArgs(args);
+        // ReceiptStore reads the folder once, so set it before the first use
+        System.setProperty("raion.receipts.folder", options.getOrDefault("folder", "receipts"));
+        Path root = ReceiptStore.root();
+
+        if (!Files.isDirectory(root)) {
+            System.err.println("✗ receipts folder not found: " + root.toAbsolutePath());
+            System.exit(1);
+        }
+
+        if (options.containsKey("rebuild-manifest")) {
+            rebuildManifest(root);
+        } else {
+            migrate(root, options.containsKey("dry-run"));
+        }
+    }
+
+    // move every flat receipt into its shard, recording moved receipts in batches
+    private static void migrate(Path root, boolean dryRun) throws IOException {
+        System.out.println((dryRun ? "checking " : "migrating ") + root.toAbsolutePath());
+        long start = System.currentTimeMillis();
+        long moved = 0;
+        long conflicts = 0;
+        List<String> pending = new ArrayList<>(RECORD_BATCH);
+        Path lastDirectory = null;
+
+        try (DirectoryStream<Path> flat = Files.newDirectoryStream(root, "*.txt")) {
+            for (Path source : flat) {
+                if (!Files.isRegularFile(source)) {
+                    continue;
+                }
+                String filename = source.getFileName().toString();
+                String orderId = filename.substring(0, filename.length() - ".txt".length());
+                Path target;
+                try {
+                    target = ReceiptStore.pathFor(orderId);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("✗ skipped " + filename + ": " + e.getMessage());
+                    conflicts++;
+                    continue;
+                }
+
+                if (Files.exists(target)) {
+                    System.err.println("✗ skipped " + filename + ": already exists at " + target);
+                    conflicts++;
+                    continue;
+                }
+                if (dryRun) {
+                    moved++;
+                    continue;
+                }
+
+                // receipts come in directory order, which mostly keeps the same day together
+                if (!target.getParent().equals(lastDirectory)) {
+                    Files.createDirectories(target.getParent());
+                    lastDirectory = target.getParent();
+                }
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+                pending.add(orderId);
+                moved++;
+
+                if (pending.size() == RECORD_BATCH) {
+                    ReceiptStore.recordSaved(pending);
+                    pending.clear();
+                }
+                if (moved % PROGRESS_INTERVAL == 0) {
+                    System.out.println("  " + moved + " receipts moved");
+                }
+            }
+        }
+
+        if (!dryRun) {
+            ReceiptStore.recordSaved(pending);
+            ReceiptStore.checkpoint();
+        }
+
+        System.out.println((dryRun ? "✓ would move " : "✓ moved ") + moved + " receipts in "
+                + (System.currentTimeMillis() - start) + " ms (" + conflicts + " skipped)");
+        if (!dryRun) {
+            System.out.println("  receipt count: " + ReceiptStore.count());
+        }
+    }
+
+    // write a fresh manifest from the sharded tree and the segments, then let ReceiptStore recount it
+    private static void rebuildManifest(Path root) throws IOException {
+        System.out.println("rebuilding manifest for " + root.toAbsolutePath());
+        Path manifest = root.resolve(ReceiptStore.MANIFEST_FILE);
+        Path temp = root.resolve(ReceiptStore.MANIFEST_FILE + ".tmp");
+        long receipts = 0;
+
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8);
+             Stream<Path> tree = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) tree::iterator) {
+                String filename = path.getFileName().toString();
+                if (filename.endsWith(ReceiptSegments.SEGMENT_SUFFIX) && Files.isRegularFile(path)) {
+                    receipts += writeSegmentEntries(writer, path);
+                    continue;
+                }
+                // flat receipts sit directly in the root and aren't part of the sharded layout
+                boolean receipt = filename.endsWith(ReceiptStore.RECEIPT_SUFFIX);
+                if (!(receipt || filename.endsWith(ReceiptStore.ORDER_SUFFIX)) || path.getParent().equals(root)
+                        || !Files.isRegularFile(path)) {
+                    continue;
+                }
+                String orderId = filename.substring(0, filename.length() - (receipt
+                        ? ReceiptStore.RECEIPT_SUFFIX.length() : ReceiptStore.ORDER_SUFFIX.length()));
+                // an order saved both ways is counted once, by its receipt
+                if (!receipt && Files.exists(ReceiptStore.pathFor(orderId))) {
+                    continue;
+                }
+                writer.write(orderId);
+                writer.write('\t');
+                writer.write(root.relativize(path).toString().replace('\\', '/'));
+                writer.write('\n');
+                receipts++;
+            }
+        }
+
+        Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(root.resolve(ReceiptStore.CHECKPOINT_FILE));
+        long counted = ReceiptStore.count();
+        ReceiptStore.checkpoint();
+        System.out.println("✓ manifest rebuilt with " + receipts + " receipts (count " + counted + ")");
+    }
+
+    // one line per compacted receipt that doesn't also still have its loose file
+    // (a compaction interrupted before it deleted them)
+    private static long writeSegmentEntries(BufferedWriter writer, Path segment) throws IOException {
+        long receipts = 0;
+        try (ReceiptSegments.Reader reader = new ReceiptSegments.Reader(segment)) {
+            while (reader.hasNext()) {
+                String orderId = reader.next().orderId();
+                if (Files.exists(ReceiptStore.pathFor(orderId)) || Files.exists(ReceiptStore.orderPathFor(orderId))) {
+                    continue;
+                }
+                writer.write(orderId);
+                writer.write('\t');
+                writer.write(ReceiptStore.relativePathFor(orderId));
+                writer.write('\n');
+                receipts++;
+            }
+        }
+        return receipts;
+    }
+
+    // --name=value and bare --flag arguments
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("unexpected argument: " + arg);
+            }
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, equals), arg.substring(equals + 1));
+            }
+        }
+        return options;
+    }
+}
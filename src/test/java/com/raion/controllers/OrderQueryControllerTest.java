@@ -0,0 +1,129 @@
+package com.raion.controllers;
+
+import com.raion.models.Level2;
+import com.raion.models.Order;
+import com.raion.models.TrimLevel;
+import com.raion.models.VehicleColor;
+import com.raion.models.signatures.ExecutiveSignature;
+import com.raion.repository.OrderIndex;
+import com.raion.repository.StoredOrder;
+import com.raion.services.EndpointClass;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * GET /api/orders pages through the index newest first by nextCursor, and answers bad
+ * parameters with 400 instead of an error page
+ */
+class OrderQueryControllerTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 5, 1, 8, 0);
+    private static final int ORDERS = 30;
+
+    @Test
+    void cursorsListEveryMatchingOrderOnce() throws IOException {
+        OrderQueryController controller = new OrderQueryController(indexOf(ORDERS));
+
+        // every third order is a signature, the rest silver off-road level 2s
+        assertEquals(ids(ORDERS, i -> i % 3 != 0), pageThrough(controller, "Off-Road", 7));
+        assertEquals(ids(ORDERS, i -> true), pageThrough(controller, null, 4));
+
+        // a bare "to" date takes in that whole day
+        Map<String, Object> body = listOrders(controller, "2024-05-01", "2024-05-01", null, null, null, null, null)
+                .getBody();
+        assertNotNull(body);
+        assertEquals(ORDERS, body.get("count"));
+        assertNull(body.get("nextCursor"));
+        assertEquals(0, listOrders(controller, "2024-05-02", null, null, null, null, null, null).getBody().get("count"));
+    }
+
+    @Test
+    void badParametersGet400() throws IOException {
+        OrderQueryController controller = new OrderQueryController(indexOf(3));
+        assertBadRequest(listOrders(controller, null, null, null, null, null, 0, null));
+        assertBadRequest(listOrders(controller, null, null, null, null, null, 501, null));
+        assertBadRequest(listOrders(controller, null, null, 5, null, null, null, null));
+        assertBadRequest(listOrders(controller, null, null, null, "sport-ish", null, null, null));
+        assertBadRequest(listOrders(controller, "2024-13-01", null, null, null, null, null, null));
+        assertBadRequest(listOrders(controller, null, "yesterday", null, null, null, null, null));
+        assertBadRequest(listOrders(controller, null, null, null, null, null, null, "not a cursor"));
+        assertBadRequest(controller.listOrders(null, null, null, null, "plaid", null, null, null, null, null));
+        assertBadRequest(controller.listOrders(null, null, null, null, null, "no-such-signature",
+                null, null, null, null));
+        assertBadRequest(controller.listOrders(null, null, null, null, null, null,
+                new BigDecimal("-1"), null, null, null));
+        assertBadRequest(controller.listOrders(null, null, null, null, null, null,
+                null, new BigDecimal("1e30"), null, null));
+    }
+
+    @Test
+    void listingIsAReadForRateLimitsAndAdmission() {
+        assertEquals(EndpointClass.READ, EndpointClass.of("GET", "/api/orders"));
+        assertEquals(EndpointClass.ORDER, EndpointClass.of("POST", "/api/orders/batch"));
+    }
+
+    private static OrderIndex indexOf(int orders) throws IOException {
+        OrderIndex index = new OrderIndex();
+        for (int i = 0; i < orders; i++) {
+            Order order = i % 3 == 0
+                    ? new Order("L" + i, new ExecutiveSignature(), START.plusMinutes(i))
+                    : new Order("L" + i, new Level2(TrimLevel.OFFROAD, VehicleColor.SILVER), START.plusMinutes(i));
+            index.add(StoredOrder.of(order));
+        }
+        return index;
+    }
+
+    // the ids of the orders that match, newest first
+    private static List<String> ids(int orders, IntPredicate matches) {
+        List<String> ids = new ArrayList<>();
+        for (int i = orders - 1; i >= 0; i--) {
+            if (matches.test(i)) {
+                ids.add("L" + i);
+            }
+        }
+        return ids;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> pageThrough(OrderQueryController controller, String trim, int limit) {
+        List<String> listed = new ArrayList<>();
+        String cursor = null;
+        do {
+            ResponseEntity<Map<String, Object>> response = listOrders(controller, null, null, null, trim, null,
+                    limit, cursor);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            Map<String, Object> body = response.getBody();
+            List<Map<String, Object>> orders = (List<Map<String, Object>>) body.get("orders");
+            assertEquals(orders.size(), body.get("count"));
+            for (Map<String, Object> order : orders) {
+                listed.add((String) order.get("orderId"));
+            }
+            cursor = (String) body.get("nextCursor");
+        } while (cursor != null);
+        return listed;
+    }
+
+    private static ResponseEntity<Map<String, Object>> listOrders(OrderQueryController controller, String from,
+                                                                  String to, Integer level, String trim,
+                                                                  String color, Integer limit, String cursor) {
+        return controller.listOrders(from, to, level, trim, color, null, null, null, limit, cursor);
+    }
+
+    private static void assertBadRequest(ResponseEntity<Map<String, Object>> response) {
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertNotNull(response.getBody().get("error"));
+    }
+}
@@ -0,0 +1,145 @@
+package com.raion.controllers;
+
+import com.raion.models.Order;
+import com.raion.models.signatures.TrailTitanSignature;
+import com.raion.services.ReceiptCompactor;
+import com.raion.services.ReceiptGenerator;
+import com.raion.services.ReceiptStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * receipt downloads answer etags with 304 and single ranges with 206 or 416, the same for
+ * a loose receipt file and for one compacted into its day's segment
+ */
+class ReceiptControllerTest {
+
+    // before every other test's receipts, so compacting up to it touches only this day
+    private static final LocalDate DAY = LocalDate.of(2018, 3, 1);
+
+    private final ReceiptController controller = new ReceiptController();
+
+    @Test
+    void looseAndCompactedReceiptsDownloadTheSame() throws Exception {
+        Order order = new Order("20180301-dl" + System.nanoTime(), new TrailTitanSignature(), DAY.atTime(12, 0));
+        ReceiptGenerator.saveReceiptToFile(order);
+        String orderId = order.getOrderId();
+        byte[] receipt = ReceiptGenerator.readReceipt(orderId);
+        assertNotNull(receipt);
+        assertTrue(Files.exists(ReceiptStore.pathFor(orderId)));
+
+        String looseEtag = assertDownloads(orderId, receipt);
+
+        new ReceiptCompactor(false, 1, 60, Long.MAX_VALUE).compactBefore(DAY.plusDays(1));
+        assertFalse(Files.exists(ReceiptStore.pathFor(orderId)));
+
+        String segmentEtag = assertDownloads(orderId, receipt);
+        assertNotEquals(looseEtag, segmentEtag);
+    }
+
+    @Test
+    void looseFilesGoToSendfileWhenTheServerOffersIt() throws Exception {
+        Order order = new Order("20180301-sf" + System.nanoTime(), new TrailTitanSignature(), DAY.atTime(13, 0));
+        ReceiptGenerator.saveReceiptToFile(order);
+        MockHttpServletRequest request = get(order.getOrderId());
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-14");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertNull(controller.downloadReceipt(order.getOrderId(), request, response));
+        assertEquals(206, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(ReceiptStore.pathFor(order.getOrderId()).toAbsolutePath().toString(),
+                request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(5L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(15L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    @Test
+    void unknownOrInvalidOrderIdsAre404() {
+        for (String orderId : new String[]{"20180301-never-saved", "../../etc/passwd", ""}) {
+            ResponseEntity<Map<String, Object>> response =
+                    controller.downloadReceipt(orderId, get(orderId), new MockHttpServletResponse());
+            assertNotNull(response, orderId);
+            assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode(), orderId);
+        }
+    }
+
+    // every way of asking for the receipt; returns its etag
+    private String assertDownloads(String orderId, byte[] receipt) throws Exception {
+        int length = receipt.length;
+
+        MockHttpServletResponse whole = download(orderId, null, null);
+        assertEquals(200, whole.getStatus());
+        assertArrayEquals(receipt, whole.getContentAsByteArray());
+        assertEquals(length, whole.getContentLengthLong());
+        assertEquals("bytes", whole.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertTrue(whole.getContentType().startsWith("text/plain"));
+        String etag = whole.getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        MockHttpServletResponse notModified = download(orderId, null, etag);
+        assertEquals(304, notModified.getStatus());
+        assertEquals(0, notModified.getContentAsByteArray().length);
+        assertEquals(200, download(orderId, null, "\"other\"").getStatus());
+
+        MockHttpServletResponse partial = download(orderId, "bytes=10-19", null);
+        assertEquals(206, partial.getStatus());
+        assertEquals("bytes 10-19/" + length, partial.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(receipt, 10, 20), partial.getContentAsByteArray());
+
+        MockHttpServletResponse tail = download(orderId, "bytes=-7", null);
+        assertEquals(206, tail.getStatus());
+        assertArrayEquals(Arrays.copyOfRange(receipt, length - 7, length), tail.getContentAsByteArray());
+
+        // malformed and multi-range headers are ignored
+        for (String ignored : new String[]{"bytes=x-y", "bytes=0-1,4-5", "lines=1-2"}) {
+            MockHttpServletResponse response = download(orderId, ignored, null);
+            assertEquals(200, response.getStatus(), ignored);
+            assertArrayEquals(receipt, response.getContentAsByteArray(), ignored);
+        }
+
+        MockHttpServletRequest request = get(orderId);
+        request.addHeader(HttpHeaders.RANGE, "bytes=" + length + "-");
+        ResponseEntity<Map<String, Object>> unsatisfiable =
+                controller.downloadReceipt(orderId, request, new MockHttpServletResponse());
+        assertNotNull(unsatisfiable);
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, unsatisfiable.getStatusCode());
+        assertEquals("bytes */" + length, unsatisfiable.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        return etag;
+    }
+
+    private MockHttpServletResponse download(String orderId, String range, String ifNoneMatch) {
+        MockHttpServletRequest request = get(orderId);
+        if (range != null) {
+            request.addHeader(HttpHeaders.RANGE, range);
+        }
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertNull(controller.downloadReceipt(orderId, request, response));
+        return response;
+    }
+
+    private static MockHttpServletRequest get(String orderId) {
+        return new MockHttpServletRequest("GET", "/api/order/" + orderId + "/receipt");
+    }
+}
@@ -0,0 +1,342 @@
+package com.raion.dto;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raion.controllers.OrderController;
+import com.raion.models.Accessory;
+import com.raion.models.Feature;
+import com.raion.models.Option;
+import com.raion.models.Order;
+import com.raion.models.ServicePackage;
+import com.raion.models.TrimLevel;
+import com.raion.models.Vehicle;
+import com.raion.models.VehicleColor;
+import com.raion.repository.MemoryOrderRepository;
+import com.raion.repository.OrderRepository;
+import com.raion.services.BatchOrderProcessor;
+import com.raion.services.IdempotencyCache;
+import com.raion.services.OrderAssembler;
+import com.raion.services.OrderPipeline;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * the typed request bodies answer every body the way the endpoints did when they bound a
+ * Map: same status, same error message (or exception type for a 500) and the same order
+ *
+ * Legacy below is the Map handling the endpoints had before the typed decoders, cut down
+ * to everything up to the saved receipt
+ */
+class OrderRequestDeserializerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP = new TypeReference<>() {
+    };
+
+    private final OrderRepository repository = new MemoryOrderRepository();
+    private final OrderController controller = new OrderController(new IdempotencyCache(60, 1000),
+            new BatchOrderProcessor(500, repository), new OrderPipeline(false, 1, 1, 2, repository), repository);
+
+    @Test
+    void customOrdersAreAnsweredAsBefore() throws IOException {
+        List<String> bodies = new ArrayList<>(List.of(
+                // well formed, with ids the old lookups trimmed, skipped or didn't know
+                "{\"level\":2,\"trim\":\"Off-Road\",\"color\":\"silver\",\"options\":[\"enhanced-autopilot\",\" FSD \","
+                        + "\"warp-drive\"],\"servicePackages\":[\"warranty-8yr\"],\"accessories\":[\"floor-mats\",null,\"\"]}",
+                // missing fields
+                "{}",
+                "{\"trim\":\"Standard\",\"color\":\"white\"}",
+                "{\"level\":1,\"color\":\"white\"}",
+                "{\"level\":1,\"trim\":\"Standard\"}",
+                // level in every json type
+                "{\"level\":\"2\",\"trim\":\"Standard\",\"color\":\"white\"}",
+                "{\"level\":\"two\",\"trim\":\"Standard\",\"color\":\"white\"}",
+                "{\"level\":2.0,\"trim\":\"Standard\",\"color\":\"white\"}",
+                "{\"level\":3000000000,\"trim\":\"Standard\",\"color\":\"white\"}",
+                "{\"level\":true,\"trim\":\"Standard\",\"color\":\"white\"}",
+                "{\"level\":null,\"trim\":\"Standard\",\"color\":\"white\"}",
+                "{\"level\":[1],\"trim\":\"Standard\",\"color\":\"white\"}",
+                "{\"level\":0,\"trim\":\"Standard\",\"color\":\"white\"}",
+                "{\"level\":5,\"trim\":\"Standard\",\"color\":\"white\"}",
+                // trim and color in the wrong json types - these were a 500
+                "{\"level\":1,\"trim\":5,\"color\":\"white\"}",
+                "{\"level\":1,\"trim\":null,\"color\":\"white\"}",
+                "{\"level\":1,\"trim\":{\"name\":\"Standard\"},\"color\":\"white\"}",
+                "{\"level\":1,\"trim\":[\"Standard\"],\"color\":\"white\"}",
+                "{\"level\":1,\"trim\":\"Standard\",\"color\":7}",
+                "{\"level\":1,\"trim\":\"Standard\",\"color\":null}",
+                // trims and colors the level doesn't offer
+                "{\"level\":1,\"trim\":\"Off-Road\",\"color\":\"white\"}",
+                "{\"level\":4,\"trim\":\"Pro\",\"color\":\"green\"}",
+                // lists in the wrong json types
+                "{\"level\":1,\"trim\":\"Standard\",\"color\":\"white\",\"options\":\"fsd\"}",
+                "{\"level\":1,\"trim\":\"Standard\",\"color\":\"white\",\"options\":null}",
+                "{\"level\":1,\"trim\":\"Standard\",\"color\":\"white\",\"options\":[1]}",
+                "{\"level\":1,\"trim\":\"Standard\",\"color\":\"white\",\"options\":[[\"fsd\"]]}",
+                "{\"level\":1,\"trim\":\"Standard\",\"color\":\"white\",\"servicePackages\":5}",
+                "{\"level\":1,\"trim\":\"Standard\",\"color\":\"white\",\"accessories\":[true]}",
+                // a bad element after a valid prefix: the prefix is applied first, so a feature
+                // the level doesn't offer still wins over the bad element
+                "{\"level\":1,\"trim\":\"Standard\",\"color\":\"white\",\"options\":[\"fsd\",{}]}",
+                "{\"level\":1,\"trim\":\"Standard\",\"color\":\"white\",\"options\":[\"track-package\",3]}",
+                "{\"level\":1,\"trim\":\"Standard\",\"color\":\"white\",\"options\":[\"fsd\",3],\"accessories\":7}",
+                "{\"level\":1,\"trim\":\"Standard\",\"color\":\"white\",\"options\":[\"fsd\"],\"servicePackages\":[\"x\",1]}",
+                // unknown fields are ignored, and a repeated field keeps its last value
+                "{\"model\":\"x\",\"level\":3,\"extra\":{\"nested\":[1,{\"a\":null}]},\"trim\":\"max\",\"color\":\"blue\"}",
+                "{\"level\":\"x\",\"level\":3,\"trim\":\"Pro\",\"color\":\"black\"}",
+                "{\"level\":3,\"trim\":\"Pro\",\"trim\":7,\"color\":\"black\"}"));
+
+        // every trim and color in the spellings clients send, plus a few nobody should
+        for (TrimLevel trim : TrimLevel.values()) {
+            for (String alias : aliases(trim.name(), trim.getDisplayName())) {
+                bodies.add("{\"level\":" + levelOf(trim) + ",\"trim\":\"" + alias + "\",\"color\":\"white\"}");
+            }
+        }
+        for (VehicleColor color : VehicleColor.values()) {
+            for (String alias : aliases(color.name(), color.getDisplayName())) {
+                bodies.add("{\"level\":4,\"trim\":\"Flagship\",\"color\":\"" + alias + "\"}");
+            }
+        }
+        for (String odd : List.of("", " ", "off road", "Off_Road", "standard-", "-standard", "Sport", "st andard")) {
+            bodies.add("{\"level\":2,\"trim\":\"" + odd + "\",\"color\":\"white\"}");
+            bodies.add("{\"level\":2,\"trim\":\"Standard\",\"color\":\"" + odd + "\"}");
+        }
+
+        for (String body : bodies) {
+            String expected = Legacy.placeCustomOrder(MAPPER.readValue(body, MAP));
+            String actual = outcome(controller.placeCustomOrder(null, MAPPER.readValue(body, CustomOrderRequest.class)));
+            assertEquals(expected, actual, body);
+        }
+    }
+
+    @Test
+    void signatureOrdersAreAnsweredAsBefore() throws IOException {
+        List<String> bodies = List.of(
+                "{\"signatureName\":\"executive\"}",
+                "{\"signatureName\":\" Track-Beast \",\"additionalOptions\":[\"custom-paint\"],"
+                        + "\"accessories\":[\"home-charger\",\"nope\",null]}",
+                "{\"signatureName\":\"trail-titan\",\"additionalOptions\":[\"massage-seats\"]}",
+                "{\"signatureName\":\"urban-commuter\",\"additionalOptions\":[\"track-package\"]}",
+                "{}",
+                "{\"signatureName\":null}",
+                "{\"signatureName\":5}",
+                "{\"signatureName\":[\"executive\"]}",
+                "{\"signatureName\":\"\"}",
+                "{\"signatureName\":\"trailtitan\"}",
+                "{\"signatureName\":\"executive\",\"additionalOptions\":\"fsd\"}",
+                "{\"signatureName\":\"executive\",\"additionalOptions\":null}",
+                "{\"signatureName\":\"executive\",\"additionalOptions\":[1]}",
+                "{\"signatureName\":\"executive\",\"additionalOptions\":[\"fsd\",2]}",
+                "{\"signatureName\":\"urban-commuter\",\"additionalOptions\":[\"track-package\",2]}",
+                "{\"signatureName\":\"executive\",\"accessories\":{}}",
+                "{\"signatureName\":\"executive\",\"accessories\":[\"floor-mats\",false]}",
+                "{\"level\":9,\"signatureName\":\"executive\",\"extra\":[[{}]],\"accessories\":[]}");
+
+        for (String body : bodies) {
+            String expected = Legacy.placeSignatureOrder(MAPPER.readValue(body, MAP));
+            String actual = outcome(controller.placeSignatureOrder(null,
+                    MAPPER.readValue(body, SignatureOrderRequest.class)));
+            assertEquals(expected, actual, body);
+        }
+    }
+
+    @Test
+    void bodiesThatAreNotObjectsAreStillRejected() {
+        for (String body : List.of("[]", "\"executive\"", "7", "[{\"level\":1}]")) {
+            assertThrows(IOException.class, () -> MAPPER.readValue(body, MAP), body);
+            assertThrows(IOException.class, () -> MAPPER.readValue(body, CustomOrderRequest.class), body);
+            assertThrows(IOException.class, () -> MAPPER.readValue(body, SignatureOrderRequest.class), body);
+        }
+    }
+
+    private static List<String> aliases(String name, String displayName) {
+        return List.of(name, name.toLowerCase(Locale.ROOT), displayName, displayName.toLowerCase(Locale.ROOT),
+                displayName.toUpperCase(Locale.ROOT), " " + displayName + " ");
+    }
+
+    private static int levelOf(TrimLevel trim) {
+        if (trim.isLevel1Trim()) {
+            return 1;
+        }
+        if (trim.isLevel2Trim()) {
+            return 2;
+        }
+        return trim.isLevel3Trim() ? 3 : 4;
+    }
+
+    // status plus what a client can tell apart: the order placed, the error, or the failure type
+    private static String outcome(ResponseEntity<?> response) throws IOException {
+        int status = response.getStatusCode().value();
+        Object body = response.getBody();
+        if (status != 201) {
+            Map<?, ?> error = (Map<?, ?>) body;
+            return status + " " + (status == 500 ? error.get("type") : error.get("error"));
+        }
+
+        JsonNode json = body instanceof byte[] bytes ? MAPPER.readTree(bytes) : MAPPER.valueToTree(body);
+        List<String> features = new ArrayList<>();
+        json.path("features").forEach(feature -> features.add(feature.path("name").asText()));
+        return status + " " + json.path("vehicle").path("model").asText() + " " + features;
+    }
+
+    private static String placed(Order order) {
+        List<String> features = new ArrayList<>();
+        for (Feature feature : order.getFeatures()) {
+            features.add(feature.getName());
+        }
+        return "201 " + order.getVehicle().getModelName() + " " + features;
+    }
+
+    // the Map-bound endpoints as they were, answering with what outcome() reports
+    @SuppressWarnings("unchecked")
+    private static final class Legacy {
+
+        static String placeCustomOrder(Map<String, Object> orderRequest) {
+            try {
+                if (!orderRequest.containsKey("level") || !orderRequest.containsKey("trim")
+                        || !orderRequest.containsKey("color")) {
+                    return "400 missing required fields: level, trim, color";
+                }
+
+                int level;
+                Object levelObj = orderRequest.get("level");
+                if (levelObj instanceof Integer) {
+                    level = (Integer) levelObj;
+                } else if (levelObj instanceof String) {
+                    try {
+                        level = Integer.parseInt((String) levelObj);
+                    } catch (NumberFormatException e) {
+                        return "400 invalid level format";
+                    }
+                } else {
+                    return "400 invalid level format";
+                }
+                if (level < 1 || level > 4) {
+                    return "400 invalid level. must be 1, 2, 3, or 4";
+                }
+
+                String trimStr = ((String) orderRequest.get("trim")).trim();
+                String colorStr = ((String) orderRequest.get("color")).trim();
+                TrimLevel trim = parseTrimLevel(trimStr);
+                if (trim == null) {
+                    return "400 invalid trim: " + trimStr;
+                }
+                VehicleColor color = parseColor(colorStr);
+                if (color == null) {
+                    return "400 invalid color: " + colorStr;
+                }
+                Vehicle vehicle = OrderAssembler.createVehicle(level, trim, color);
+                if (vehicle == null) {
+                    return "400 invalid trim/color combination for this vehicle level";
+                }
+
+                Order order = new Order(vehicle);
+                if (orderRequest.containsKey("options")) {
+                    for (String optionId : (List<String>) orderRequest.get("options")) {
+                        if (optionId != null && !optionId.trim().isEmpty()) {
+                            Option option = OrderAssembler.createOptionById(optionId, level);
+                            if (option != null) {
+                                order.addFeature(option);
+                            }
+                        }
+                    }
+                }
+                if (orderRequest.containsKey("servicePackages")) {
+                    for (String packageId : (List<String>) orderRequest.get("servicePackages")) {
+                        if (packageId != null && !packageId.trim().isEmpty()) {
+                            ServicePackage servicePackage = OrderAssembler.createServicePackageById(packageId);
+                            if (servicePackage != null) {
+                                order.addFeature(servicePackage);
+                            }
+                        }
+                    }
+                }
+                addAccessories(order, orderRequest);
+                return placed(order);
+
+            } catch (IllegalArgumentException e) {
+                return "400 invalid order data: " + e.getMessage();
+            } catch (Exception e) {
+                return "500 " + e.getClass().getSimpleName();
+            }
+        }
+
+        static String placeSignatureOrder(Map<String, Object> orderRequest) {
+            try {
+                if (!orderRequest.containsKey("signatureName")) {
+                    return "400 missing required field: signatureName";
+                }
+                String signatureName = ((String) orderRequest.get("signatureName")).toLowerCase().trim();
+                Vehicle vehicle = OrderAssembler.createSignatureVehicle(signatureName);
+                if (vehicle == null) {
+                    return "400 invalid signature name. must be: urban-commuter, trail-titan, track-beast, or executive";
+                }
+
+                Order order = new Order(vehicle);
+                if (orderRequest.containsKey("additionalOptions")) {
+                    for (String optionId : (List<String>) orderRequest.get("additionalOptions")) {
+                        if (optionId != null && !optionId.trim().isEmpty()) {
+                            Option option = OrderAssembler.createOptionById(optionId, vehicle.getLevel());
+                            if (option != null) {
+                                order.addFeature(option);
+                            }
+                        }
+                    }
+                }
+                addAccessories(order, orderRequest);
+                return placed(order);
+
+            } catch (IllegalArgumentException e) {
+                return "400 invalid signature order data: " + e.getMessage();
+            } catch (Exception e) {
+                return "500 " + e.getClass().getSimpleName();
+            }
+        }
+
+        private static void addAccessories(Order order, Map<String, Object> orderRequest) {
+            if (orderRequest.containsKey("accessories")) {
+                for (String accessoryId : (List<String>) orderRequest.get("accessories")) {
+                    if (accessoryId != null && !accessoryId.trim().isEmpty()) {
+                        Accessory accessory = OrderAssembler.createAccessoryById(accessoryId);
+                        if (accessory != null) {
+                            order.addFeature(accessory);
+                        }
+                    }
+                }
+            }
+        }
+
+        private static TrimLevel parseTrimLevel(String trimStr) {
+            if (trimStr == null || trimStr.isEmpty()) {
+                return null;
+            }
+            String normalized = trimStr.toUpperCase().replace("-", "").replace(" ", "").trim();
+            try {
+                return TrimLevel.valueOf(normalized);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        private static VehicleColor parseColor(String colorStr) {
+            if (colorStr == null || colorStr.isEmpty()) {
+                return null;
+            }
+            try {
+                return VehicleColor.valueOf(colorStr.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+}
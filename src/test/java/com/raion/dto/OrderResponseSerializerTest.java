@@ -0,0 +1,93 @@
+package com.raion.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raion.models.Accessory;
+import com.raion.models.Level2;
+import com.raion.models.Level4;
+import com.raion.models.Option;
+import com.raion.models.Order;
+import com.raion.models.ServicePackage;
+import com.raion.models.TrimLevel;
+import com.raion.models.VehicleColor;
+import com.raion.models.signatures.ExecutiveSignature;
+import com.raion.models.signatures.TrackBeastSignature;
+import com.raion.perf.ResponseSerializationBenchmark;
+import com.raion.services.OrderResponseBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * the streaming serializer writes the same keys, values and number types as the nested-map
+ * response it replaced (the check ResponseSerializationBenchmark runs before measuring)
+ */
+class OrderResponseSerializerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String RECEIPT = "receipts/2025/03/01/ORD-1.txt";
+
+    @Test
+    void customOrdersMatchTheMapResponse() throws IOException {
+        Order order = new Order(new Level2(TrimLevel.OFFROAD, VehicleColor.SILVER));
+        order.addFeature(Option.createEnhancedAutopilot());
+        order.addFeature(Option.createMassageSeats());
+        order.addFeature(ServicePackage.createExtendedWarranty8Year());
+        order.addFeature(Accessory.createPremiumFloorMats());
+        order.addFeature(Accessory.createHomeCharger());
+        assertSameJson(order, false, null);
+
+        // no features - the list is left out of both
+        assertSameJson(new Order(new Level4(VehicleColor.BLACK)), false, null);
+    }
+
+    @Test
+    void signatureOrdersMatchTheMapResponse() throws IOException {
+        Order order = new Order(new TrackBeastSignature());
+        order.addFeature(Option.createCustomPaint());
+        order.addFeature(Accessory.createCeramicCoating());
+        order.addFeature(ServicePackage.createPremiumRoadsideAssistance());
+        assertSameJson(order, true, "track-beast");
+
+        assertSameJson(new Order(new ExecutiveSignature()), true, "executive");
+    }
+
+    private static void assertSameJson(Order order, boolean isSignature, String signatureName) throws IOException {
+        JsonNode expected = MAPPER.readTree(MAPPER.writeValueAsBytes(
+                ResponseSerializationBenchmark.buildMapResponse(order, RECEIPT, isSignature, signatureName)));
+        JsonNode actual = MAPPER.readTree(MAPPER.writeValueAsBytes(
+                OrderResponseBuilder.buildOrderResponse(order, RECEIPT, isSignature, signatureName)));
+        assertSameNode("", expected, actual);
+    }
+
+    // key for key, so a failure names the field; number nodes only match with the same number type
+    private static void assertSameNode(String path, JsonNode expected, JsonNode actual) {
+        assertEquals(expected.getNodeType(), actual.getNodeType(), path);
+        if (expected.isObject()) {
+            assertEquals(fieldNames(expected), fieldNames(actual), path);
+            expected.fields().forEachRemaining(field ->
+                    assertSameNode(path + "." + field.getKey(), field.getValue(), actual.get(field.getKey())));
+        } else if (expected.isArray()) {
+            assertEquals(expected.size(), actual.size(), path);
+            for (int i = 0; i < expected.size(); i++) {
+                assertSameNode(path + "[" + i + "]", expected.get(i), actual.get(i));
+            }
+        } else {
+            assertEquals(expected, actual, path);
+        }
+    }
+
+    private static List<String> fieldNames(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        for (Iterator<String> it = node.fieldNames(); it.hasNext(); ) {
+            names.add(it.next());
+        }
+        names.sort(null);
+        return names;
+    }
+}
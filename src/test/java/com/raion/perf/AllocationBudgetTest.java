@@ -0,0 +1,259 @@
+package com.raion.perf;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.raion.controllers.OrderController;
+import com.raion.controllers.SignatureController;
+import com.raion.controllers.VehicleController;
+import com.raion.dto.CustomOrderRequest;
+import com.raion.dto.SignatureOrderRequest;
+import com.raion.models.*;
+import com.raion.models.signatures.TrailTitanSignature;
+import com.raion.perf.AllocationMeter.Measurement;
+import com.raion.repository.IndexedOrderRepository;
+import com.raion.repository.MemoryOrderRepository;
+import com.raion.repository.OrderRepository;
+import com.raion.services.BatchOrderProcessor;
+import com.raion.services.CatalogCache;
+import com.raion.services.CompiledReceipt;
+import com.raion.services.IdempotencyCache;
+import com.raion.services.OrderPipeline;
+import com.raion.services.OrderResponseBuilder;
+import com.raion.services.PriceCalculator;
+import com.raion.services.ReceiptGenerator;
+import com.raion.services.SignatureTemplates;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * allocation budget regression test for order placement and catalog requests
+ *
+ * places representative custom and signature orders through OrderController and
+ * ReceiptGenerator, measures bytes allocated per operation with ThreadMXBean, prints
+ * a per-phase breakdown and fails if any phase is over its stored budget. a phase under
+ * STALE_FRACTION of its budget is only reported: bytes per op move with the jdk build,
+ * gc and jit state, so a lower bound would fail runs that did nothing wrong.
+ *
+ * budgets live in src/test/resources/perf/allocation-budgets.properties, at
+ * UPDATE_HEADROOM times what was measured. receipts go to the folder the surefire
+ * configuration sets (target/test-receipts)
+ *
+ * usage:
+ *   mvn test                                                         with the other tests
+ *   mvn test -Dtest=AllocationBudgetTest -Draion.perf.update-budgets=true
+ *                                                                    rewrite the budgets file from this run
+ */
+class AllocationBudgetTest {
+
+    private static final String BUDGETS_RESOURCE = "/perf/allocation-budgets.properties";
+    private static final Path BUDGETS_SOURCE = Paths.get("src/test/resources/perf/allocation-budgets.properties");
+    private static final boolean UPDATE = Boolean.getBoolean("raion.perf.update-budgets");
+    private static final double UPDATE_HEADROOM = 1.5;
+    private static final double STALE_FRACTION = 0.5;
+
+    private static final int WARMUP = 3000;
+    private static final int ITERATIONS = 2000;
+
+    @Test
+    void everyPhaseStaysWithinItsBudget() throws Exception {
+        assumeTrue(AllocationMeter.isSupported(), "thread allocation counting is not supported on this jvm");
+
+        List<Measurement> results = measureAll();
+        if (UPDATE) {
+            writeBudgets(results);
+            return;
+        }
+
+        List<String> failures = printReport(results, loadBudgets());
+        assertTrue(failures.isEmpty(), String.join("\n", failures));
+    }
+
+    /**
+     * run every phase and return its measurement
+     * controller output is silenced while measuring so the console stays readable
+     */
+    static List<Measurement> measureAll() throws Exception {
+        CatalogCache catalogCache = new CatalogCache(new ObjectMapper(), true, 300);
+        VehicleController vehicleController = new VehicleController(catalogCache);
+        SignatureController signatureController = new SignatureController(catalogCache);
+        // orders are stored in memory and indexed - what the request thread pays is encoding and
+        // indexing the order, the same for every repository (the disk ones write on their own thread)
+        OrderRepository orderRepository = new IndexedOrderRepository(new MemoryOrderRepository());
+        OrderController orderController = new OrderController(new IdempotencyCache(60, 1000),
+                new BatchOrderProcessor(500, orderRepository), new OrderPipeline(false, 1, 1, 2, orderRepository),
+                orderRepository);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        byte[] customRequestJson = objectMapper.writeValueAsBytes(Map.of(
+                "level", 2,
+                "trim", "Off-Road",
+                "color", "silver",
+                "options", List.of("enhanced-autopilot", "massage-seats"),
+                "servicePackages", List.of("extended-warranty"),
+                "accessories", List.of("floor-mats", "home-charger")
+        ));
+        CustomOrderRequest customRequest = objectMapper.readValue(customRequestJson, CustomOrderRequest.class);
+        SignatureOrderRequest signatureRequest = SignatureOrderRequest.of(
+                "trail-titan", List.of(), List.of("home-charger"));
+        SignatureOrderRequest plainSignatureRequest = SignatureOrderRequest.of("executive", List.of(), List.of());
+
+        ObjectWriter responseWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        OutputStream discard = OutputStream.nullOutputStream();
+
+        Order customOrder = buildCustomOrder();
+        Order signatureOrder = new Order(new TrailTitanSignature());
+
+        List<Measurement> results = new ArrayList<>();
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        PrintStream silent = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(silent);
+        System.setErr(silent);
+        try {
+            // catalog reads
+            results.add(AllocationMeter.measure("catalog.vehicles", WARMUP, ITERATIONS,
+                    vehicleController::getAllVehicles));
+            results.add(AllocationMeter.measure("catalog.vehicle-level", WARMUP, ITERATIONS,
+                    () -> vehicleController.getVehicleByLevel(2)));
+            results.add(AllocationMeter.measure("catalog.signatures", WARMUP, ITERATIONS,
+                    signatureController::getAllSignatures));
+            results.add(AllocationMeter.measure("catalog.signature", WARMUP, ITERATIONS,
+                    () -> signatureController.getSignatureByName("trail-titan")));
+
+            // order phases, cheapest first
+            results.add(AllocationMeter.measure("order.request-decode", WARMUP, ITERATIONS,
+                    () -> objectMapper.readValue(customRequestJson, CustomOrderRequest.class)));
+            results.add(AllocationMeter.measure("order.price-format", WARMUP, ITERATIONS,
+                    () -> PriceCalculator.formatPrice(customOrder.calculateTotal())));
+            results.add(AllocationMeter.measure("order.build", WARMUP, ITERATIONS,
+                    AllocationBudgetTest::buildCustomOrder));
+            results.add(AllocationMeter.measure("order.response-write", WARMUP, ITERATIONS,
+                    () -> responseWriter.writeValue(discard,
+                            OrderResponseBuilder.buildOrderResponse(customOrder, "receipts/x.txt", false, null))));
+            results.add(AllocationMeter.measure("order.receipt-render", WARMUP, ITERATIONS,
+                    () -> ReceiptGenerator.generateReceipt(customOrder)));
+            results.add(AllocationMeter.measure("order.receipt-compiled", WARMUP, ITERATIONS,
+                    () -> CompiledReceipt.render(customOrder)));
+            results.add(AllocationMeter.measure("order.signature-response", WARMUP, ITERATIONS,
+                    () -> SignatureTemplates.renderResponse(signatureOrder, "receipts/x.txt")));
+            results.add(AllocationMeter.measure("order.signature-receipt", WARMUP, ITERATIONS,
+                    () -> SignatureTemplates.renderReceipt(signatureOrder)));
+            results.add(AllocationMeter.measure("order.receipt-save", WARMUP / 4, ITERATIONS / 4,
+                    () -> ReceiptGenerator.saveReceiptToFile(signatureOrder)));
+
+            // end to end through the controllers, response body written as spring would - so the
+            // templated signature-plain path and the serialized ones do the same work
+            results.add(AllocationMeter.measure("order.custom", WARMUP / 4, ITERATIONS / 4,
+                    () -> writeBody(responseWriter, discard, orderController.placeCustomOrder(null, customRequest))));
+            results.add(AllocationMeter.measure("order.signature", WARMUP / 4, ITERATIONS / 4,
+                    () -> writeBody(responseWriter, discard,
+                            orderController.placeSignatureOrder(null, signatureRequest))));
+            results.add(AllocationMeter.measure("order.signature-plain", WARMUP / 4, ITERATIONS / 4,
+                    () -> writeBody(responseWriter, discard,
+                            orderController.placeSignatureOrder(null, plainSignatureRequest))));
+        } finally {
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+        }
+        return results;
+    }
+
+    // a pre-rendered body goes out as it is (ByteArrayHttpMessageConverter), anything else through jackson
+    private static void writeBody(ObjectWriter writer, OutputStream out, ResponseEntity<?> response)
+            throws IOException {
+        if (response.getBody() instanceof byte[] body) {
+            out.write(body);
+        } else {
+            writer.writeValue(out, response.getBody());
+        }
+    }
+
+    // representative custom order: level 2 off-road with two options, a warranty and two accessories
+    private static Order buildCustomOrder() {
+        Order order = new Order(new Level2(TrimLevel.OFFROAD, VehicleColor.SILVER));
+        order.addFeature(Option.createEnhancedAutopilot());
+        order.addFeature(Option.createMassageSeats());
+        order.addFeature(ServicePackage.createExtendedWarranty8Year());
+        order.addFeature(Accessory.createPremiumFloorMats());
+        order.addFeature(Accessory.createHomeCharger());
+        return order;
+    }
+
+    // prints the breakdown, returns one line per phase that failed
+    private static List<String> printReport(List<Measurement> results, Properties budgets) {
+        List<String> failures = new ArrayList<>();
+
+        System.out.println("\n" + "=".repeat(72));
+        System.out.println("ALLOCATION BUDGETS (bytes allocated per operation)");
+        System.out.println("=".repeat(72));
+        System.out.printf("%-24s %12s %12s %10s  %s%n", "phase", "bytes/op", "budget", "ns/op", "status");
+
+        for (Measurement result : results) {
+            String budgetValue = budgets.getProperty(result.name());
+            String status;
+            if (budgetValue == null) {
+                status = "NO BUDGET";
+            } else if (result.bytesPerOp() > Long.parseLong(budgetValue.trim())) {
+                status = "OVER BUDGET";
+            } else if (result.bytesPerOp() < Long.parseLong(budgetValue.trim()) * STALE_FRACTION) {
+                status = "stale (report only)";
+            } else {
+                status = "ok";
+            }
+            if (status.equals("NO BUDGET") || status.equals("OVER BUDGET")) {
+                failures.add(result.name() + ": " + status.toLowerCase() + " - " + result.bytesPerOp()
+                        + " bytes/op, budget " + (budgetValue == null ? "-" : budgetValue.trim()));
+            }
+            System.out.printf("%-24s %12d %12s %10.0f  %s%n",
+                    result.name(), result.bytesPerOp(), budgetValue == null ? "-" : budgetValue.trim(),
+                    result.nanosPerOp(), status);
+        }
+
+        System.out.println("=".repeat(72));
+        System.out.println(!failures.isEmpty()
+                ? "FAILED: regenerate the budgets after an intentional change (see the class comment)"
+                : "all phases within budget");
+        return failures;
+    }
+
+    private static Properties loadBudgets() throws IOException {
+        Properties budgets = new Properties();
+        try (InputStream in = AllocationBudgetTest.class.getResourceAsStream(BUDGETS_RESOURCE)) {
+            if (in == null) {
+                throw new IOException("budgets resource not found: " + BUDGETS_RESOURCE);
+            }
+            budgets.load(in);
+        }
+        return budgets;
+    }
+
+    private static void writeBudgets(List<Measurement> results) throws IOException {
+        Files.createDirectories(BUDGETS_SOURCE.getParent());
+        try (Writer writer = Files.newBufferedWriter(BUDGETS_SOURCE)) {
+            writer.write("# bytes allocated per operation, checked by com.raion.perf.AllocationBudgetTest\n");
+            writer.write("# regenerate with -Draion.perf.update-budgets=true after an intentional change (adds 50% headroom)\n");
+            for (Measurement result : results) {
+                long budget = (long) Math.ceil(result.bytesPerOp() * UPDATE_HEADROOM / 64.0) * 64;
+                writer.write(result.name() + "=" + budget + "\n");
+            }
+        }
+        System.out.println("budgets written to " + BUDGETS_SOURCE.toAbsolutePath());
+    }
+}
@@ -0,0 +1,76 @@
+package com.raion.perf;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * measures heap bytes allocated and time spent per operation on the current thread
+ * uses the hotspot ThreadMXBean allocation counter, which is exact per thread and
+ * cheap enough to read around every batch
+ *
+ * each measurement runs a warmup loop first so the jit has compiled (and escape
+ * analysis has had a chance to remove) whatever it is going to before counting
+ */
+public final class AllocationMeter {
+
+    // result of measuring one operation
+    public record Measurement(String name, long bytesPerOp, double nanosPerOp) {
+
+        public double opsPerSecond() {
+            return nanosPerOp == 0 ? 0 : 1_000_000_000.0 / nanosPerOp;
+        }
+    }
+
+    // operation that may throw checked exceptions (receipt saving does)
+    @FunctionalInterface
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // private constructor - utility class with only static methods
+    private AllocationMeter() {
+        throw new UnsupportedOperationException("utility class cannot be instantiated");
+    }
+
+    /**
+     * check whether this jvm can count allocated bytes per thread
+     */
+    public static boolean isSupported() {
+        return THREAD_BEAN.isThreadAllocatedMemorySupported() && THREAD_BEAN.isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * warm up then measure an operation
+     *
+     * @param name label for the report
+     * @param warmupIterations unmeasured iterations run first
+     * @param iterations measured iterations
+     * @param operation the code to measure
+     * @return bytes allocated and nanoseconds spent per iteration
+     */
+    public static Measurement measure(String name, int warmupIterations, int iterations, Operation operation) {
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("iterations must be positive");
+        }
+
+        try {
+            for (int i = 0; i < warmupIterations; i++) {
+                operation.run();
+            }
+
+            long bytesBefore = THREAD_BEAN.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                operation.run();
+            }
+            long elapsed = System.nanoTime() - start;
+            long bytes = THREAD_BEAN.getCurrentThreadAllocatedBytes() - bytesBefore;
+
+            return new Measurement(name, bytes / iterations, (double) elapsed / iterations);
+        } catch (Exception e) {
+            throw new IllegalStateException("measured operation failed: " + name, e);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.raion.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raion.perf.WorkloadMix.PlannedRequest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * compares placing N orders with one post /api/orders/batch call against N sequential
+ * post /api/order calls - the way fleet and dealer clients submitted them before
+ *
+ * both variants send the same N custom orders (generated by WorkloadMix, so they look
+ * like real frontend orders). each round times the N single calls and then the one
+ * batch call; warm-up rounds are sent first and not reported. the median round of each
+ * variant is reported
+ *
+ * only loopback targets are accepted, like the load generator. every order writes a
+ * real receipt, so point the server at a temp receipts folder
+ *
+ * usage (with the app already running):
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.raion.perf.BatchOrderBenchmark \
+ *       -Dexec.args="--orders=100 --rounds=5"
+ *
+ * options:
+ *   --url=http://localhost:8080   base url (must resolve to a loopback address)
+ *   --orders=100                  orders per round
+ *   --rounds=5                    measured rounds
+ *   --warmup=2                    unmeasured rounds sent first
+ *   --seed=42                     random seed for the generated orders
+ */
+public class BatchOrderBenchmark {
+
+    private final URI baseUri;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public BatchOrderBenchmark(String baseUrl) {
+        this.baseUri = URI.create(baseUrl);
+        LoadGenerator.requireLoopback(baseUri);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadGenerator.parseArgs(args);
+        int orders = Integer.parseInt(options.getOrDefault("orders", "100"));
+        int rounds = Integer.parseInt(options.getOrDefault("rounds", "5"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "2"));
+        if (orders <= 0 || rounds <= 0 || warmup < 0) {
+            throw new IllegalArgumentException("orders and rounds must be positive, warmup cannot be negative");
+        }
+
+        BatchOrderBenchmark benchmark = new BatchOrderBenchmark(options.getOrDefault("url", "http://localhost:8080"));
+        List<String> bodies = generateOrders(orders, Long.parseLong(options.getOrDefault("seed", "42")));
+        String batchBody = "{\"orders\":[" + String.join(",", bodies) + "]}";
+
+        long[] sequentialNanos = new long[rounds];
+        long[] batchNanos = new long[rounds];
+        for (int round = -warmup; round < rounds; round++) {
+            long sequential = benchmark.timeSequential(bodies);
+            long batch = benchmark.timeBatch(batchBody, orders);
+            if (round >= 0) {
+                sequentialNanos[round] = sequential;
+                batchNanos[round] = batch;
+            }
+        }
+
+        double sequentialMillis = median(sequentialNanos) / 1_000_000.0;
+        double batchMillis = median(batchNanos) / 1_000_000.0;
+
+        System.out.println("\n" + "=".repeat(64));
+        System.out.println("BATCH ORDER SUBMISSION (" + orders + " orders, median of " + rounds + " rounds)");
+        System.out.println("=".repeat(64));
+        System.out.printf("%-24s %12s %12s %12s%n", "variant", "total ms", "ms/order", "orders/s");
+        System.out.printf("%-24s %12.1f %12.3f %12.0f%n", orders + " x post /api/order",
+                sequentialMillis, sequentialMillis / orders, orders * 1000.0 / sequentialMillis);
+        System.out.printf("%-24s %12.1f %12.3f %12.0f%n", "1 x post /api/orders/batch",
+                batchMillis, batchMillis / orders, orders * 1000.0 / batchMillis);
+        System.out.println("-".repeat(64));
+        System.out.printf("batch throughput x%.2f%n", sequentialMillis / batchMillis);
+        System.out.println("=".repeat(64));
+    }
+
+    // one post /api/order per order, each waiting for the previous one
+    private long timeSequential(List<String> bodies) throws Exception {
+        long start = System.nanoTime();
+        for (String body : bodies) {
+            HttpResponse<String> response = post("/api/order", body);
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("post /api/order answered " + response.statusCode() + ": " + response.body());
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    // all orders in one post /api/orders/batch
+    private long timeBatch(String batchBody, int orders) throws Exception {
+        long start = System.nanoTime();
+        HttpResponse<String> response = post("/api/orders/batch", batchBody);
+        long elapsed = System.nanoTime() - start;
+
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("post /api/orders/batch answered " + response.statusCode() + ": " + response.body());
+        }
+        JsonNode result = objectMapper.readTree(response.body());
+        if (result.path("succeeded").asInt() != orders) {
+            throw new IllegalStateException("batch placed " + result.path("succeeded").asInt() + " of " + orders + " orders");
+        }
+        return elapsed;
+    }
+
+    private HttpResponse<String> post(String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static List<String> generateOrders(int count, long seed) {
+        WorkloadMix mix = new WorkloadMix("order=1", seed);
+        List<String> bodies = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            PlannedRequest planned = mix.next();
+            bodies.add(planned.body());
+        }
+        return bodies;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
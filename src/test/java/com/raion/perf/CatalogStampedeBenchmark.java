@@ -0,0 +1,125 @@
+package com.raion.perf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raion.controllers.SignatureController;
+import com.raion.controllers.VehicleController;
+import com.raion.services.CatalogCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * cold-start stampede on the catalog endpoints: --threads requests for the same vehicle
+ * level and signature are released at the same instant against an empty CatalogCache,
+ * the way a campaign link lands right after a deploy
+ *
+ * - no cache: every request builds its maps and serializes them (the old behaviour)
+ * - coalescing only (ttl 0): concurrent identical requests share one computation,
+ *   nothing is kept afterwards
+ * - cache + coalescing: the first request per key computes, every other one waits for
+ *   it or reads the stored bytes
+ *
+ * the cache is emptied before every round, so each round is a fresh stampede. reported
+ * per variant: wall time per round, builds per round and the median request latency
+ *
+ * usage:
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.raion.perf.CatalogStampedeBenchmark
+ *   ... -Dexec.args="--threads=64 --rounds=200"
+ */
+public class CatalogStampedeBenchmark {
+
+    private record Result(String name, double roundMillis, double buildsPerRound, double medianMicros) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadGenerator.parseArgs(args);
+        int threads = Integer.parseInt(options.getOrDefault("threads", "64"));
+        int rounds = Integer.parseInt(options.getOrDefault("rounds", "200"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "50"));
+        if (threads <= 0 || rounds <= 0 || warmup < 0) {
+            throw new IllegalArgumentException("threads and rounds must be positive, warmup not negative");
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<Result> results = new ArrayList<>();
+        results.add(run("no cache", new CatalogCache(objectMapper, false, 0), threads, rounds, warmup));
+        results.add(run("coalescing only", new CatalogCache(objectMapper, true, 0), threads, rounds, warmup));
+        results.add(run("cache + coalescing", new CatalogCache(objectMapper, true, 300), threads, rounds, warmup));
+
+        System.out.println("\n" + "=".repeat(72));
+        System.out.println("CATALOG STAMPEDE (" + threads + " simultaneous requests per round, " + rounds + " rounds)");
+        System.out.println("=".repeat(72));
+        System.out.printf("%-22s %14s %16s %16s%n", "variant", "ms/round", "builds/round", "median us/req");
+        for (Result result : results) {
+            System.out.printf("%-22s %14.3f %16.1f %16.1f%n",
+                    result.name(), result.roundMillis(), result.buildsPerRound(), result.medianMicros());
+        }
+        System.out.println("=".repeat(72));
+    }
+
+    // half the threads ask for level 2, half for trail-titan; every round starts on an empty cache
+    private static Result run(String name, CatalogCache cache, int threads, int rounds, int warmup)
+            throws Exception {
+        VehicleController vehicles = new VehicleController(cache);
+        SignatureController signatures = new SignatureController(cache);
+
+        long[][] latencies = new long[threads][rounds];
+        CyclicBarrier start = new CyclicBarrier(threads + 1);
+        CyclicBarrier finish = new CyclicBarrier(threads + 1);
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    for (int round = -warmup; round < rounds; round++) {
+                        start.await();
+                        long begin = System.nanoTime();
+                        if (index % 2 == 0) {
+                            vehicles.getVehicleByLevel(2);
+                        } else {
+                            signatures.getSignatureByName("trail-titan");
+                        }
+                        if (round >= 0) {
+                            latencies[index][round] = System.nanoTime() - begin;
+                        }
+                        finish.await();
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        long measuredNanos = 0;
+        long computedBefore = 0;
+        for (int round = -warmup; round < rounds; round++) {
+            cache.invalidateAll();
+            if (round == 0) {
+                computedBefore = (long) cache.getStats().get("computed");
+            }
+            long begin = System.nanoTime();
+            start.await();
+            finish.await();
+            if (round >= 0) {
+                measuredNanos += System.nanoTime() - begin;
+            }
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // a disabled cache doesn't count - every request built its own response
+        double buildsPerRound = Boolean.TRUE.equals(cache.getStats().get("enabled"))
+                ? (double) ((long) cache.getStats().get("computed") - computedBefore) / rounds
+                : threads;
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        return new Result(name, measuredNanos / 1e6 / rounds, buildsPerRound, all[all.length / 2] / 1e3);
+    }
+}
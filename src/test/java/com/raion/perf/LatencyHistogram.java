@@ -0,0 +1,133 @@
+package com.raion.perf;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * high dynamic range latency histogram (same bucketing idea as hdrhistogram)
+ * values are recorded in microseconds into log-linear buckets, so every
+ * recorded value keeps at least 2 significant decimal digits of precision
+ * from 1 microsecond up to about an hour
+ *
+ * recording is lock-free and safe to call from many threads at once
+ */
+public class LatencyHistogram {
+
+    // 64 distinct sub-buckets per power of two keeps relative error under 1.6%
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+    private static final long MAX_VALUE_MICROS = 3_600_000_000L; // one hour
+
+    private final AtomicLongArray counts;
+
+    public LatencyHistogram() {
+        // number of power-of-two buckets needed to cover the max value
+        int buckets = 1;
+        long covered = SUB_BUCKET_COUNT;
+        while (covered < MAX_VALUE_MICROS) {
+            covered <<= 1;
+            buckets++;
+        }
+        this.counts = new AtomicLongArray((buckets + 1) * SUB_BUCKET_HALF);
+    }
+
+    /**
+     * record a single latency
+     *
+     * @param nanos latency in nanoseconds (clamped to the histogram range)
+     */
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, Math.min(nanos / 1000, MAX_VALUE_MICROS));
+        counts.incrementAndGet(indexFor(micros));
+    }
+
+    /**
+     * get the total number of recorded values
+     */
+    public long getTotalCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * get the latency at a percentile, in microseconds
+     *
+     * @param percentile value between 0 and 100
+     * @return highest equivalent value of the bucket holding that percentile
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = getTotalCount();
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil((percentile / 100.0) * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return highestValueAt(i);
+            }
+        }
+        return MAX_VALUE_MICROS;
+    }
+
+    /**
+     * get the largest recorded latency, in microseconds
+     */
+    public long getMaxValue() {
+        for (int i = counts.length() - 1; i >= 0; i--) {
+            if (counts.get(i) > 0) {
+                return highestValueAt(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * get the mean latency, in microseconds
+     */
+    public double getMean() {
+        long total = 0;
+        double sum = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long count = counts.get(i);
+            if (count > 0) {
+                total += count;
+                sum += (double) count * lowestValueAt(i);
+            }
+        }
+        return total == 0 ? 0 : sum / total;
+    }
+
+    // bucket 0 holds 0..127 linearly, every following bucket holds one power of two
+    // split into 64 sub-buckets (the lower half overlaps the previous bucket)
+    private int indexFor(long value) {
+        int bucket = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        if (bucket == 0) {
+            return (int) value;
+        }
+        int subBucket = (int) (value >>> bucket);
+        return (bucket + 1) * SUB_BUCKET_HALF + (subBucket - SUB_BUCKET_HALF);
+    }
+
+    private long lowestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int bucket = index / SUB_BUCKET_HALF - 1;
+        int subBucket = index % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return (long) subBucket << bucket;
+    }
+
+    private long highestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int bucket = index / SUB_BUCKET_HALF - 1;
+        return lowestValueAt(index) + (1L << bucket) - 1;
+    }
+}
@@ -0,0 +1,88 @@
+package com.raion.perf;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * percentiles within the bucket precision the class promises (under 1.6%), exact below
+ * 128 microseconds, and no recording lost between threads
+ */
+class LatencyHistogramTest {
+
+    private static final double PRECISION = 0.016;
+
+    @Test
+    void percentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int values = 100_000;
+        for (int micros = 1; micros <= values; micros++) {
+            histogram.recordNanos(micros * 1000L);
+        }
+
+        assertEquals(values, histogram.getTotalCount());
+        for (double percentile : new double[]{50, 90, 99, 99.9, 100}) {
+            long expected = (long) Math.ceil(percentile / 100 * values);
+            assertWithin(expected, histogram.getValueAtPercentile(percentile), "p" + percentile);
+        }
+        assertWithin(values, histogram.getMaxValue(), "max");
+        assertWithin(values / 2.0, histogram.getMean(), "mean");
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 0; micros < 128; micros++) {
+            histogram.recordNanos(micros * 1000L + 999);
+        }
+        assertEquals(127, histogram.getMaxValue());
+        assertEquals(63, histogram.getValueAtPercentile(50));
+        assertEquals(0, histogram.getValueAtPercentile(0));
+    }
+
+    @Test
+    void emptyAndOutOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMaxValue());
+        assertEquals(0, histogram.getMean());
+
+        histogram.recordNanos(-5);
+        histogram.recordNanos(Long.MAX_VALUE);
+        assertEquals(2, histogram.getTotalCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        // clamped to an hour
+        assertWithin(3_600_000_000L, histogram.getMaxValue(), "max");
+    }
+
+    @Test
+    void concurrentRecordingLosesNothing() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int threads = 8;
+        int perThread = 50_000;
+        List<Thread> started = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    histogram.recordNanos(1_000_000L);
+                }
+            });
+            thread.start();
+            started.add(thread);
+        }
+        for (Thread thread : started) {
+            thread.join();
+        }
+        assertEquals((long) threads * perThread, histogram.getTotalCount());
+        assertWithin(1000, histogram.getValueAtPercentile(99.99), "p99.99");
+    }
+
+    private static void assertWithin(double expected, double actual, String what) {
+        assertTrue(Math.abs(actual - expected) <= expected * PRECISION,
+                what + ": " + actual + " is not within " + PRECISION * 100 + "% of " + expected);
+    }
+}
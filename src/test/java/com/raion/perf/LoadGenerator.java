@@ -0,0 +1,299 @@
+package com.raion.perf;
+
+import com.raion.perf.WorkloadMix.PlannedRequest;
+import com.raion.perf.WorkloadMix.RequestKind;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * standalone load generator for the configurator api
+ *
+ * uses an open model: requests are started at a constant arrival rate no matter how
+ * slow the server is, and every latency is measured from the moment the request was
+ * *supposed* to start. a stalled server therefore shows up in the percentiles instead
+ * of silently lowering the request rate (no coordinated omission). a request dropped
+ * over --max-in-flight never gets a latency, so once any is dropped the percentiles
+ * would only cover the lucky ones - the report marks them invalid instead of printing
+ * numbers that look better than the server was.
+ *
+ * only loopback targets are accepted so a run can never hit a deployed environment.
+ *
+ * usage (with the app already running):
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.raion.perf.LoadGenerator \
+ *       -Dexec.args="--rate=500 --duration=60 --warmup=10"
+ *
+ * options:
+ *   --url=http://localhost:8080   base url (must resolve to a loopback address)
+ *   --rate=200                    requests per second
+ *   --duration=30                 measured seconds
+ *   --warmup=5                    unmeasured seconds sent before the measured window
+ *   --mix=...                     request mix, see WorkloadMix.DEFAULT_MIX
+ *   --max-in-flight=10000         requests above this are dropped (and the percentiles marked invalid)
+ *   --slo-ms=1000                 only successes within this latency count toward goodput
+ *   --seed=42                     random seed for the mix
+ */
+public class LoadGenerator {
+
+    private final URI baseUri;
+    private final int ratePerSecond;
+    private final int durationSeconds;
+    private final int warmupSeconds;
+    private final int maxInFlight;
+    private final long sloNanos;
+    private final WorkloadMix mix;
+    private final HttpClient client;
+    private final ExecutorService clientExecutor;
+
+    private final Map<RequestKind, LatencyHistogram> histograms = new EnumMap<>(RequestKind.class);
+    private final Map<RequestKind, AtomicLong> errors = new EnumMap<>(RequestKind.class);
+    private final LatencyHistogram overall = new LatencyHistogram();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    // successful responses within the latency slo
+    private final AtomicLong succeeded = new AtomicLong();
+    private double achievedThroughput;
+    private double goodput;
+
+    public LoadGenerator(String baseUrl, int ratePerSecond, int durationSeconds, int warmupSeconds,
+                         int maxInFlight, long sloMillis, WorkloadMix mix) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("rate must be positive");
+        }
+        if (durationSeconds <= 0) {
+            throw new IllegalArgumentException("duration must be positive");
+        }
+        if (warmupSeconds < 0) {
+            throw new IllegalArgumentException("warmup cannot be negative");
+        }
+        if (sloMillis <= 0) {
+            throw new IllegalArgumentException("slo must be positive");
+        }
+
+        this.baseUri = URI.create(baseUrl);
+        requireLoopback(baseUri);
+
+        this.ratePerSecond = ratePerSecond;
+        this.durationSeconds = durationSeconds;
+        this.warmupSeconds = warmupSeconds;
+        this.maxInFlight = maxInFlight;
+        this.sloNanos = TimeUnit.MILLISECONDS.toNanos(sloMillis);
+        this.mix = mix;
+        this.clientExecutor = Executors.newFixedThreadPool(
+                Math.max(4, Runtime.getRuntime().availableProcessors()), daemonFactory());
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(clientExecutor)
+                .build();
+
+        for (RequestKind kind : mix.getKinds()) {
+            histograms.put(kind, new LatencyHistogram());
+            errors.put(kind, new AtomicLong());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+
+        LoadGenerator generator = new LoadGenerator(
+                options.getOrDefault("url", "http://localhost:8080"),
+                Integer.parseInt(options.getOrDefault("rate", "200")),
+                Integer.parseInt(options.getOrDefault("duration", "30")),
+                Integer.parseInt(options.getOrDefault("warmup", "5")),
+                Integer.parseInt(options.getOrDefault("max-in-flight", "10000")),
+                Long.parseLong(options.getOrDefault("slo-ms", "1000")),
+                new WorkloadMix(options.getOrDefault("mix", WorkloadMix.DEFAULT_MIX),
+                        Long.parseLong(options.getOrDefault("seed", "42")))
+        );
+
+        generator.run();
+        generator.printReport();
+    }
+
+    /**
+     * send requests at the configured rate for warmup + duration seconds,
+     * then wait for the stragglers to finish
+     */
+    public void run() throws InterruptedException {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long warmupCount = (long) warmupSeconds * ratePerSecond;
+        long totalCount = warmupCount + (long) durationSeconds * ratePerSecond;
+
+        System.out.println("load test: " + ratePerSecond + " req/s for " + durationSeconds
+                + "s (+" + warmupSeconds + "s warmup) against " + baseUri);
+
+        long start = System.nanoTime();
+        long measureStart = start + warmupCount * intervalNanos;
+        long measureEnd = start + totalCount * intervalNanos;
+
+        for (long i = 0; i < totalCount; i++) {
+            long intendedStart = start + i * intervalNanos;
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            boolean measured = i >= warmupCount;
+            PlannedRequest planned = mix.next();
+
+            // never block the schedule on a slow server - drop the overflow instead. it has no
+            // latency to record, so any drop invalidates the percentiles (see printReport)
+            if (inFlight.get() >= maxInFlight) {
+                if (measured) {
+                    dropped.incrementAndGet();
+                    errors.get(planned.kind()).incrementAndGet();
+                }
+                continue;
+            }
+
+            send(planned, intendedStart, measured);
+        }
+        // throughput is over the send window only - the drain below may take up to 30s
+        // and says nothing about the rate the server sustained
+        long measuredNanos = Math.max(measureEnd, System.nanoTime()) - measureStart;
+
+        // give in-flight requests up to 30 seconds to drain
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+
+        this.achievedThroughput = completed.get() / (measuredNanos / 1e9);
+        this.goodput = succeeded.get() / (measuredNanos / 1e9);
+
+        clientExecutor.shutdownNow();
+    }
+
+    private void send(PlannedRequest planned, long intendedStart, boolean measured) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(baseUri.resolve(planned.path()))
+                .timeout(Duration.ofSeconds(30));
+        if ("POST".equals(planned.method())) {
+            builder.header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(planned.body()));
+        } else {
+            builder.GET();
+        }
+
+        inFlight.incrementAndGet();
+        client.sendAsync(builder.build(), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    long latency = System.nanoTime() - intendedStart;
+                    inFlight.decrementAndGet();
+                    if (!measured) {
+                        return;
+                    }
+
+                    boolean failed = error != null || response.statusCode() >= 400;
+                    if (failed) {
+                        errors.get(planned.kind()).incrementAndGet();
+                    } else if (latency <= sloNanos) {
+                        succeeded.incrementAndGet();
+                    }
+                    histograms.get(planned.kind()).recordNanos(latency);
+                    overall.recordNanos(latency);
+                    completed.incrementAndGet();
+                });
+    }
+
+    /**
+     * print latency percentiles (microseconds) and throughput per request kind
+     */
+    public void printReport() {
+        System.out.println("\n" + "=".repeat(96));
+        System.out.println("LATENCY REPORT (microseconds, measured from intended start time)");
+        System.out.println("=".repeat(96));
+        System.out.printf("%-16s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+                "request", "count", "errors", "mean", "p50", "p90", "p99", "p99.9", "max");
+        for (Map.Entry<RequestKind, LatencyHistogram> entry : histograms.entrySet()) {
+            printRow(entry.getKey().getKey(), entry.getValue(), errors.get(entry.getKey()).get());
+        }
+        long totalErrors = errors.values().stream().mapToLong(AtomicLong::get).sum();
+        printRow("all", overall, totalErrors);
+        System.out.println("-".repeat(96));
+        System.out.printf("target rate: %d req/s, achieved: %.1f req/s, goodput (ok within %d ms): %.1f req/s, dropped: %d%n",
+                ratePerSecond, achievedThroughput, TimeUnit.NANOSECONDS.toMillis(sloNanos), goodput, dropped.get());
+        if (!isLatencyValid()) {
+            System.out.println("✗ percentiles are INVALID: " + dropped.get() + " requests were dropped over --max-in-flight="
+                    + maxInFlight + " and have no latency - lower --rate or raise --max-in-flight");
+        }
+        System.out.println("=".repeat(96));
+    }
+
+    private static void printRow(String name, LatencyHistogram histogram, long errorCount) {
+        System.out.printf("%-16s %9d %7d %9.0f %9d %9d %9d %9d %9d%n",
+                name,
+                histogram.getTotalCount(),
+                errorCount,
+                histogram.getMean(),
+                histogram.getValueAtPercentile(50),
+                histogram.getValueAtPercentile(90),
+                histogram.getValueAtPercentile(99),
+                histogram.getValueAtPercentile(99.9),
+                histogram.getMaxValue());
+    }
+
+    public LatencyHistogram getOverallHistogram() {
+        return overall;
+    }
+
+    public double getAchievedThroughput() {
+        return achievedThroughput;
+    }
+
+    /**
+     * false once a measured request was dropped - the histograms then leave out exactly
+     * the requests that would have been slowest
+     */
+    public boolean isLatencyValid() {
+        return dropped.get() == 0;
+    }
+
+    // refuse anything that isn't this machine
+    static void requireLoopback(URI uri) {
+        try {
+            if (uri.getHost() == null || !InetAddress.getByName(uri.getHost()).isLoopbackAddress()) {
+                throw new IllegalArgumentException("load generator only targets localhost, got: " + uri);
+            }
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("cannot resolve load test host: " + uri.getHost(), e);
+        }
+    }
+
+    static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("expected --name=value, got: " + arg);
+            }
+            int split = arg.indexOf('=');
+            options.put(arg.substring(2, split), arg.substring(split + 1));
+        }
+        return options;
+    }
+
+    private static ThreadFactory daemonFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "load-client-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,238 @@
+package com.raion.perf;
+
+import com.raion.models.*;
+import com.raion.models.signatures.ExecutiveSignature;
+import com.raion.models.signatures.TrackBeastSignature;
+import com.raion.models.signatures.TrailTitanSignature;
+import com.raion.models.signatures.UrbanCommuterSignature;
+import com.raion.repository.OrderIndex;
+import com.raion.repository.OrderIndex.Entry;
+import com.raion.repository.OrderIndex.Page;
+import com.raion.repository.OrderIndex.Query;
+import com.raion.repository.StoredOrder;
+import com.raion.services.FeatureCatalog;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * order listing from OrderIndex against a full scan of the same orders
+ *
+ * indexes --orders orders spread over --days days (about one in ten arriving up to an
+ * hour late, so the date index sees out-of-order inserts), with a mix of vehicles and
+ * accessories. for each query:
+ * - indexed: the first page of --limit orders, median of --runs runs
+ * - full scan: every order checked against the query and the matches sorted newest first,
+ *   which is what answering it without indexes takes
+ * - check: every page is fetched through the cursors and must list exactly the orders
+ *   the full scan found, in the same order
+ *
+ * usage:
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.raion.perf.OrderQueryBenchmark
+ *   ... -Dexec.args="--orders=1000000 --days=365 --limit=50 --runs=200"
+ */
+public class OrderQueryBenchmark {
+
+    // page size when checking a whole result
+    private static final int CHECK_PAGE = 500;
+
+    private static final Vehicle[] VEHICLES = {
+            new Level1(TrimLevel.STANDARD, VehicleColor.WHITE),
+            new Level1(TrimLevel.PREMIUM, VehicleColor.BLUE),
+            new Level1(TrimLevel.PERFORMANCE, VehicleColor.BLACK),
+            new Level2(TrimLevel.PREMIUM, VehicleColor.SILVER),
+            new Level2(TrimLevel.OFFROAD, VehicleColor.SILVER),
+            new Level2(TrimLevel.OFFROAD, VehicleColor.BLACK),
+            new Level3(TrimLevel.PRO, VehicleColor.PURPLE),
+            new Level3(TrimLevel.ULTRA, VehicleColor.GREEN),
+            new Level4(VehicleColor.BLACK),
+            new UrbanCommuterSignature(),
+            new TrailTitanSignature(),
+            new TrackBeastSignature(),
+            new ExecutiveSignature()
+    };
+
+    private static final List<Supplier<Accessory>> ACCESSORIES = List.of(
+            Accessory::createPremiumFloorMats, Accessory::createHomeCharger,
+            Accessory::createPaintProtectionFilm, Accessory::createCeramicCoating
+    );
+
+    // the orders as plain columns, for the full scan
+    private record Columns(String[] orderIds, long[] epochSeconds, long[] totals, int[] levels, TrimLevel[] trims,
+                           VehicleColor[] colors, String[] signatures) {
+    }
+
+    // one query's results
+    private record Run(String name, int matches, int pages, double indexedMicros, double scanMicros) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadGenerator.parseArgs(args);
+        int orders = Integer.parseInt(options.getOrDefault("orders", "1000000"));
+        int days = Integer.parseInt(options.getOrDefault("days", "365"));
+        int limit = Integer.parseInt(options.getOrDefault("limit", "50"));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "200"));
+        if (orders <= 0 || days <= 0 || limit <= 0 || runs <= 0) {
+            throw new IllegalArgumentException("orders, days, limit and runs must be positive");
+        }
+
+        OrderIndex index = new OrderIndex();
+        long start = System.nanoTime();
+        Columns columns = indexOrders(index, orders, days);
+        long indexMillis = (System.nanoTime() - start) / 1_000_000;
+
+        long today = LocalDate.now().atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        long day = 86_400;
+        Map<String, Query> queries = new LinkedHashMap<>();
+        queries.put("latest", Query.ALL);
+        queries.put("one day", new Query(today - 30 * day, today - 29 * day, 0, null, null, null, 0, Long.MAX_VALUE));
+        queries.put("level 3", new Query(Long.MIN_VALUE, Long.MAX_VALUE, 3, null, null, null, 0, Long.MAX_VALUE));
+        queries.put("offroad silver", new Query(Long.MIN_VALUE, Long.MAX_VALUE, 0, TrimLevel.OFFROAD,
+                VehicleColor.SILVER, null, 0, Long.MAX_VALUE));
+        queries.put("executive, 30 days", new Query(today - 30 * day, Long.MAX_VALUE, 0, null, null, "executive",
+                0, Long.MAX_VALUE));
+        queries.put("total band", new Query(Long.MIN_VALUE, Long.MAX_VALUE, 0, null, null, null,
+                10_000_000, 10_100_000));
+        queries.put("total over 200k", new Query(Long.MIN_VALUE, Long.MAX_VALUE, 0, null, null, null,
+                20_000_000, Long.MAX_VALUE));
+        queries.put("level 1 blue, week, band", new Query(today - 60 * day, today - 53 * day, 1, null,
+                VehicleColor.BLUE, "none", 5_000_000, 6_000_000));
+
+        List<Run> results = new ArrayList<>();
+        for (Map.Entry<String, Query> query : queries.entrySet()) {
+            results.add(run(query.getKey(), query.getValue(), index, columns, limit, runs));
+        }
+
+        System.out.println("\n" + "=".repeat(80));
+        System.out.println("ORDER QUERIES (" + orders + " orders over " + days + " days, indexed in "
+                + indexMillis + " ms, pages of " + limit + ")");
+        System.out.println("=".repeat(80));
+        System.out.printf("%-26s %9s %7s %14s %14s %8s%n",
+                "query", "matches", "pages", "first page", "full scan", "speedup");
+        for (Run run : results) {
+            System.out.printf("%-26s %9d %7d %12.1fus %12.1fus %7.0fx%n", run.name(), run.matches(), run.pages(),
+                    run.indexedMicros(), run.scanMicros(), run.scanMicros() / Math.max(run.indexedMicros(), 0.1));
+        }
+        System.out.println("-".repeat(80));
+        System.out.println("every query paged through (" + CHECK_PAGE + " a page) exactly the orders the full scan found, newest first");
+        System.out.println("=".repeat(80));
+    }
+
+    private static Run run(String name, Query query, OrderIndex index, Columns columns, int limit, int runs) {
+        int[] expected = fullScan(query, columns);
+
+        // the whole result through the cursors must be the full scan's, in order
+        int pages = 0;
+        int position = 0;
+        String cursor = null;
+        do {
+            Page page = index.query(query, cursor, CHECK_PAGE);
+            for (Entry entry : page.orders()) {
+                if (position >= expected.length || !entry.orderId().equals(columns.orderIds()[expected[position]])) {
+                    throw new IllegalStateException(name + ": page " + pages + " differs from the full scan at "
+                            + position);
+                }
+                position++;
+            }
+            pages++;
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        if (position != expected.length) {
+            throw new IllegalStateException(name + ": paged through " + position + " of " + expected.length + " orders");
+        }
+
+        long[] indexed = new long[runs];
+        long[] scanned = new long[Math.max(1, runs / 20)];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            index.query(query, null, limit);
+            indexed[i] = System.nanoTime() - start;
+        }
+        for (int i = 0; i < scanned.length; i++) {
+            long start = System.nanoTime();
+            fullScan(query, columns);
+            scanned[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(indexed);
+        Arrays.sort(scanned);
+        return new Run(name, expected.length, pages, indexed[runs / 2] / 1000.0, scanned[scanned.length / 2] / 1000.0);
+    }
+
+    // every matching order, newest first (later orders first among orders of the same second)
+    private static int[] fullScan(Query query, Columns columns) {
+        int[] matches = new int[columns.orderIds().length];
+        int count = 0;
+        for (int i = 0; i < matches.length; i++) {
+            long date = columns.epochSeconds()[i];
+            long total = columns.totals()[i];
+            String signature = columns.signatures()[i];
+            if (date >= query.fromEpochSecond() && date < query.toEpochSecond()
+                    && total >= query.minTotalCents() && total <= query.maxTotalCents()
+                    && (query.level() == 0 || columns.levels()[i] == query.level())
+                    && (query.trim() == null || columns.trims()[i] == query.trim())
+                    && (query.color() == null || columns.colors()[i] == query.color())
+                    && (query.signature() == null || query.signature().equals(signature == null ? "none" : signature))) {
+                matches[count++] = i;
+            }
+        }
+
+        Integer[] sorted = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = matches[i];
+        }
+        Arrays.sort(sorted, (a, b) -> {
+            int byDate = Long.compare(columns.epochSeconds()[b], columns.epochSeconds()[a]);
+            return byDate != 0 ? byDate : Integer.compare(b, a);
+        });
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = sorted[i];
+        }
+        return result;
+    }
+
+    // orders oldest first, one every few seconds, about one in ten arriving up to an hour late
+    private static Columns indexOrders(OrderIndex index, int count, int days) throws IOException {
+        Columns columns = new Columns(new String[count], new long[count], new long[count], new int[count],
+                new TrimLevel[count], new VehicleColor[count], new String[count]);
+        Random random = new Random(42);
+        LocalDateTime first = LocalDate.now().atStartOfDay().minusDays(days);
+        double spacing = days * 86_400.0 / count;
+
+        for (int i = 0; i < count; i++) {
+            LocalDateTime date = first.plusSeconds((long) (i * spacing));
+            if (random.nextInt(10) == 0) {
+                date = date.minusSeconds(random.nextInt(3600));
+            }
+            Vehicle vehicle = VEHICLES[random.nextInt(VEHICLES.length)];
+            Order order = new Order("Q" + i, vehicle, date);
+            int accessories = random.nextInt(1 << ACCESSORIES.size());
+            for (int a = 0; a < ACCESSORIES.size(); a++) {
+                Accessory accessory = ACCESSORIES.get(a).get();
+                if ((accessories & 1 << a) != 0 && accessory.isEligibleFor(vehicle.getLevel())) {
+                    order.addFeature(accessory);
+                }
+            }
+            index.add(StoredOrder.of(order));
+
+            int signature = FeatureCatalog.signatureCode(vehicle);
+            columns.orderIds()[i] = order.getOrderId();
+            columns.epochSeconds()[i] = date.toEpochSecond(ZoneOffset.UTC);
+            columns.totals()[i] = Math.round(order.calculateTotal() * 100);
+            columns.levels()[i] = vehicle.getLevel();
+            columns.trims()[i] = vehicle.getTrimLevel();
+            columns.colors()[i] = vehicle.getColor();
+            columns.signatures()[i] = signature == 0 ? null : FeatureCatalog.signatureId(signature);
+        }
+        return columns;
+    }
+}
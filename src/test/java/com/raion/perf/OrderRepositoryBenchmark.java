@@ -0,0 +1,215 @@
+package com.raion.perf;
+
+import com.raion.models.*;
+import com.raion.models.signatures.ExecutiveSignature;
+import com.raion.models.signatures.TrackBeastSignature;
+import com.raion.repository.FileLogOrderRepository;
+import com.raion.repository.JdbcOrderRepository;
+import com.raion.repository.MemoryOrderRepository;
+import com.raion.repository.OrderRepository;
+import com.raion.repository.OrderRepositoryConfiguration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * write throughput and read latency of the order repositories, all on the same orders
+ *
+ * for each repository type (in a fresh temp folder):
+ * 1. --threads threads save --orders orders between them as fast as save returns, then
+ *    wait for the writer to store everything - orders per second over the whole run
+ * 2. --reads random orders are read back one at a time; every read order must have the
+ *    id, vehicle, features and total it was saved with
+ * 3. the disk repositories are closed and reopened, and must still count every order
+ *
+ * usage:
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.raion.perf.OrderRepositoryBenchmark
+ *   ... -Dexec.args="--orders=100000 --threads=4 --reads=20000 --types=memory,log,jdbc --fsync=false"
+ */
+public class OrderRepositoryBenchmark {
+
+    private static final int BATCH_SIZE = 256;
+    private static final int QUEUE_CAPACITY = 10_000;
+
+    // one repository type's results
+    private record Run(String type, double writesPerSecond, Object averageBatch, double readMeanMicros,
+                       double readP50Micros, double readP99Micros, long reopenMillis, long bytes) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadGenerator.parseArgs(args);
+        int orders = Integer.parseInt(options.getOrDefault("orders", "100000"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        int reads = Integer.parseInt(options.getOrDefault("reads", "20000"));
+        List<String> types = List.of(options.getOrDefault("types", "memory,log,jdbc").split(","));
+        boolean fsync = Boolean.parseBoolean(options.getOrDefault("fsync", "false"));
+        if (orders <= 0 || threads <= 0 || reads <= 0) {
+            throw new IllegalArgumentException("orders, threads and reads must be positive");
+        }
+
+        Order[] placed = buildOrders(orders);
+        List<Run> runs = new ArrayList<>();
+        for (String type : types) {
+            Path folder = Files.createTempDirectory("raion-orders");
+            try {
+                runs.add(run(type, folder, placed, threads, reads, fsync));
+            } finally {
+                deleteRecursively(folder);
+            }
+        }
+
+        System.out.println("\n" + "=".repeat(84));
+        System.out.println("ORDER REPOSITORIES (" + orders + " orders from " + threads + " threads, "
+                + reads + " random reads" + (fsync ? ", fsync" : "") + ")");
+        System.out.println("=".repeat(84));
+        System.out.printf("%-8s %12s %9s %11s %10s %10s %11s %10s%n",
+                "type", "writes/s", "batch", "read mean", "read p50", "read p99", "reopen ms", "bytes");
+        for (Run run : runs) {
+            System.out.printf("%-8s %12.0f %9s %9.1fus %8.1fus %8.1fus %11s %10s%n", run.type(),
+                    run.writesPerSecond(), run.averageBatch(), run.readMeanMicros(), run.readP50Micros(),
+                    run.readP99Micros(), run.reopenMillis() < 0 ? "-" : run.reopenMillis(),
+                    run.bytes() < 0 ? "-" : run.bytes());
+        }
+        System.out.println("-".repeat(84));
+        System.out.println("every read order matched what was saved; reopened repositories counted all " + orders);
+        System.out.println("=".repeat(84));
+    }
+
+    private static Run run(String type, Path folder, Order[] placed, int threads, int reads, boolean fsync)
+            throws Exception {
+        Run run;
+        try (OrderRepository repository = open(type, folder, fsync)) {
+            run = measure(type, repository, placed, threads, reads);
+        }
+        if (type.equals("memory")) {
+            return run;
+        }
+
+        // what's left after a restart
+        long start = System.nanoTime();
+        try (OrderRepository repository = open(type, folder, fsync)) {
+            long reopenMillis = (System.nanoTime() - start) / 1_000_000;
+            if (repository.count() != placed.length) {
+                throw new IllegalStateException(type + " counted " + repository.count() + " orders after reopening");
+            }
+            check(type, placed[0], repository.findById(placed[0].getOrderId()));
+            return new Run(type, run.writesPerSecond(), run.averageBatch(), run.readMeanMicros(),
+                    run.readP50Micros(), run.readP99Micros(), reopenMillis, size(folder));
+        }
+    }
+
+    private static Run measure(String type, OrderRepository repository, Order[] placed, int threads, int reads)
+            throws Exception {
+        // writes: save returns once queued, so the clock stops when everything is stored
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            writers.add(CompletableFuture.runAsync(() -> {
+                for (int i = first; i < placed.length; i += threads) {
+                    repository.save(placed[i]);
+                }
+            }));
+        }
+        CompletableFuture.allOf(writers.toArray(CompletableFuture[]::new)).join();
+        repository.flush();
+        double writeSeconds = (System.nanoTime() - start) / 1e9;
+        if (repository.count() != placed.length) {
+            throw new IllegalStateException(type + " stored " + repository.count() + " of " + placed.length + " orders");
+        }
+
+        // reads, each timed on its own
+        Random random = new Random(42);
+        long[] nanos = new long[reads];
+        for (int i = 0; i < reads; i++) {
+            Order expected = placed[random.nextInt(placed.length)];
+            long readStart = System.nanoTime();
+            Order found = repository.findById(expected.getOrderId());
+            nanos[i] = System.nanoTime() - readStart;
+            check(type, expected, found);
+        }
+        Arrays.sort(nanos);
+
+        return new Run(type, placed.length / writeSeconds, repository.getStats().getOrDefault("averageBatch", "-"),
+                Arrays.stream(nanos).average().orElse(0) / 1000, nanos[reads / 2] / 1000.0,
+                nanos[(int) (reads * 0.99)] / 1000.0, -1, -1);
+    }
+
+    private static OrderRepository open(String type, Path folder, boolean fsync) throws IOException {
+        return switch (type) {
+            case "memory" -> new MemoryOrderRepository();
+            case "log" -> new FileLogOrderRepository(folder, fsync, BATCH_SIZE, QUEUE_CAPACITY);
+            case "jdbc" -> new JdbcOrderRepository(OrderRepositoryConfiguration.embeddedUrl(folder),
+                    BATCH_SIZE, QUEUE_CAPACITY);
+            default -> throw new IllegalArgumentException("unknown repository type: " + type);
+        };
+    }
+
+    private static void check(String type, Order expected, Order found) {
+        if (found == null
+                || !found.getOrderId().equals(expected.getOrderId())
+                || !found.getVehicle().getModelName().equals(expected.getVehicle().getModelName())
+                || found.getFeatureCount() != expected.getFeatureCount()
+                || Math.round(found.calculateTotal() * 100) != Math.round(expected.calculateTotal() * 100)) {
+            throw new IllegalStateException(type + " read back a different order for " + expected.getOrderId());
+        }
+    }
+
+    // one order per second, going back from yesterday, cycling through a few typical configurations
+    private static Order[] buildOrders(int count) {
+        Order[] orders = new Order[count];
+        LocalDateTime last = LocalDate.now().atStartOfDay().minusSeconds(1);
+        for (int i = 0; i < count; i++) {
+            Order order = new Order(vehicleFor(i), last.minusSeconds(i));
+            if (i % 3 == 0) {
+                order.addFeature(Option.createEnhancedAutopilot());
+                order.addFeature(Accessory.createHomeCharger());
+            }
+            orders[i] = order;
+        }
+        return orders;
+    }
+
+    private static Vehicle vehicleFor(int i) {
+        return switch (i % 4) {
+            case 0 -> new Level1(TrimLevel.PREMIUM, VehicleColor.BLUE);
+            case 1 -> new Level2(TrimLevel.OFFROAD, VehicleColor.SILVER);
+            case 2 -> new TrackBeastSignature();
+            default -> new ExecutiveSignature();
+        };
+    }
+
+    private static long size(Path folder) throws IOException {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            long bytes = 0;
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (Files.isRegularFile(path)) {
+                    bytes += Files.size(path);
+                }
+            }
+            return bytes;
+        }
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        try (var paths = Files.walk(root)) {
+            paths.sorted((a, b) -> b.getNameCount() - a.getNameCount()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    System.err.println("could not delete " + path + ": " + e.getMessage());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.raion.perf;
+
+import com.raion.models.*;
+import com.raion.models.signatures.ExecutiveSignature;
+import com.raion.models.signatures.TrailTitanSignature;
+import com.raion.repository.FileLogOrderRepository;
+import com.raion.repository.IndexedOrderRepository;
+import com.raion.repository.OrderIndex;
+import com.raion.repository.OrderIndex.Page;
+import com.raion.repository.OrderIndex.Query;
+import com.raion.repository.OrderSnapshot;
+import com.raion.repository.StoredOrder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * restart time of the order log repository against the number of orders it holds:
+ * replaying the whole log, against loading a snapshot and replaying the log after it
+ *
+ * for each size (in a fresh temp folder):
+ * 1. the orders are saved through an IndexedOrderRepository on a FileLogOrderRepository;
+ *    with --tail orders to go, a snapshot (OrderSnapshot) is taken on another thread
+ *    while the saving carries on, so the tail is logged after, or during, the snapshot
+ * 2. full replay: the log is reopened and the index rebuilt from all of it - what every
+ *    restart cost before snapshots
+ * 3. snapshot: the snapshot is read, the log reopened from it and only the records after
+ *    it replayed
+ * both restarts are timed --runs times (median), from nothing to an index ready for
+ * queries. every snapshot restart must count the same orders and list exactly the same
+ * orders, in the same order, as the full replay
+ *
+ * usage:
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.raion.perf.OrderRestartBenchmark
+ *   ... -Dexec.args="--sizes=100000,250000,500000,1000000 --tail=10000 --runs=3"
+ */
+public class OrderRestartBenchmark {
+
+    private static final int BATCH_SIZE = 256;
+    private static final int QUEUE_CAPACITY = 10_000;
+    // page size when comparing two indexes
+    private static final int CHECK_PAGE = 1000;
+
+    // one size's results
+    private record Run(int orders, long logBytes, long snapshotBytes, long snapshotMillis, int replayed,
+                       double fullMillis, double snapshotRestartMillis) {
+    }
+
+    // a reopened repository, and how long reopening took
+    private record Restart(IndexedOrderRepository repository, long nanos, int replayed) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadGenerator.parseArgs(args);
+        int[] sizes = Arrays.stream(options.getOrDefault("sizes", "100000,250000,500000,1000000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int tail = Integer.parseInt(options.getOrDefault("tail", "10000"));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+        if (tail < 0 || runs <= 0) {
+            throw new IllegalArgumentException("tail can't be negative and runs must be positive");
+        }
+
+        List<Run> results = new ArrayList<>();
+        for (int size : sizes) {
+            Path folder = Files.createTempDirectory("raion-restart");
+            try {
+                results.add(run(folder, size, Math.min(tail, size), runs));
+            } finally {
+                deleteRecursively(folder);
+            }
+        }
+
+        System.out.println("\n" + "=".repeat(90));
+        System.out.println("ORDER RESTART (log repository, snapshot " + tail + " orders before the end, median of "
+                + runs + " runs)");
+        System.out.println("=".repeat(90));
+        System.out.printf("%10s %9s %11s %11s %9s %12s %12s %8s%n", "orders", "log MB", "snapshot MB",
+                "snapshot ms", "replayed", "full replay", "snapshot", "speedup");
+        for (Run run : results) {
+            System.out.printf("%10d %9.1f %11.1f %11d %9d %10.0fms %10.0fms %7.1fx%n", run.orders(),
+                    run.logBytes() / 1e6, run.snapshotBytes() / 1e6, run.snapshotMillis(), run.replayed(),
+                    run.fullMillis(), run.snapshotRestartMillis(),
+                    run.fullMillis() / Math.max(run.snapshotRestartMillis(), 0.1));
+        }
+        System.out.println("-".repeat(90));
+        System.out.println("replayed: log records after the snapshot; snapshot ms: writing it while orders were saved");
+        System.out.println("every snapshot restart listed exactly the orders of the full replay");
+        System.out.println("=".repeat(90));
+    }
+
+    private static Run run(Path folder, int size, int tail, int runs) throws Exception {
+        FileLogOrderRepository log = new FileLogOrderRepository(folder, false, BATCH_SIZE, QUEUE_CAPACITY);
+        IndexedOrderRepository repository = new IndexedOrderRepository(log);
+        for (int i = 0; i < size - tail; i++) {
+            repository.save(StoredOrder.of(orderFor(i)));
+        }
+
+        // the snapshot is taken while the tail is saved
+        OrderSnapshot.Written[] written = new OrderSnapshot.Written[1];
+        long[] snapshotNanos = new long[1];
+        Exception[] failure = new Exception[1];
+        Thread snapshotter = new Thread(() -> {
+            long start = System.nanoTime();
+            try {
+                written[0] = OrderSnapshot.write(folder, log, repository);
+            } catch (Exception e) {
+                failure[0] = e;
+            }
+            snapshotNanos[0] = System.nanoTime() - start;
+        }, "order-snapshot");
+        snapshotter.start();
+        for (int i = size - tail; i < size; i++) {
+            repository.save(StoredOrder.of(orderFor(i)));
+        }
+        snapshotter.join();
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        repository.flush();
+        repository.close();
+        long logBytes = Files.size(folder.resolve(FileLogOrderRepository.LOG_FILE));
+        long snapshotBytes = Files.size(folder.resolve(OrderSnapshot.SNAPSHOT_FILE));
+
+        // the first full replay is the reference every snapshot restart is checked against
+        Restart reference = fullReplay(folder);
+        if (reference.repository().getIndex().size() != size) {
+            throw new IllegalStateException("full replay indexed " + reference.repository().getIndex().size()
+                    + " of " + size + " orders");
+        }
+        long[] full = new long[runs];
+        long[] fromSnapshot = new long[runs];
+        int replayed = 0;
+        full[0] = reference.nanos();
+        for (int i = 1; i < runs; i++) {
+            Restart restart = fullReplay(folder);
+            full[i] = restart.nanos();
+            restart.repository().close();
+        }
+        for (int i = 0; i < runs; i++) {
+            Restart restart = fromSnapshot(folder);
+            fromSnapshot[i] = restart.nanos();
+            replayed = restart.replayed();
+            check(reference.repository(), restart.repository());
+            restart.repository().close();
+        }
+        reference.repository().close();
+
+        Arrays.sort(full);
+        Arrays.sort(fromSnapshot);
+        return new Run(size, logBytes, snapshotBytes, snapshotNanos[0] / 1_000_000, replayed,
+                full[runs / 2] / 1e6, fromSnapshot[runs / 2] / 1e6);
+    }
+
+    // restart as without a snapshot: scan the log, index all of it
+    private static Restart fullReplay(Path folder) throws IOException {
+        System.gc();
+        long start = System.nanoTime();
+        FileLogOrderRepository log = new FileLogOrderRepository(folder, false, BATCH_SIZE, QUEUE_CAPACITY);
+        IndexedOrderRepository repository = new IndexedOrderRepository(log);
+        repository.rebuild();
+        return new Restart(repository, System.nanoTime() - start, 0);
+    }
+
+    // restart as OrderRepositoryConfiguration does: the snapshot, then the log after it
+    private static Restart fromSnapshot(Path folder) throws IOException {
+        System.gc();
+        long start = System.nanoTime();
+        OrderSnapshot snapshot = OrderSnapshot.read(folder);
+        if (snapshot == null) {
+            throw new IllegalStateException("the snapshot could not be read");
+        }
+        FileLogOrderRepository log = new FileLogOrderRepository(folder, false, BATCH_SIZE, QUEUE_CAPACITY, snapshot);
+        IndexedOrderRepository repository = new IndexedOrderRepository(log, snapshot.index());
+        int[] replayed = {0};
+        repository.rebuild(action -> log.forEach(snapshot.logEnd(), stored -> {
+            replayed[0]++;
+            action.accept(stored);
+        }));
+        return new Restart(repository, System.nanoTime() - start, replayed[0]);
+    }
+
+    // same count, same orders listed in the same order
+    private static void check(IndexedOrderRepository expected, IndexedOrderRepository actual) {
+        if (expected.count() != actual.count() || expected.getIndex().size() != actual.getIndex().size()) {
+            throw new IllegalStateException("snapshot restart holds " + actual.count() + " orders ("
+                    + actual.getIndex().size() + " indexed), full replay " + expected.count() + " ("
+                    + expected.getIndex().size() + ")");
+        }
+        OrderIndex want = expected.getIndex();
+        OrderIndex got = actual.getIndex();
+        String wantCursor = null;
+        String gotCursor = null;
+        int position = 0;
+        do {
+            Page wantPage = want.query(Query.ALL, wantCursor, CHECK_PAGE);
+            Page gotPage = got.query(Query.ALL, gotCursor, CHECK_PAGE);
+            if (!wantPage.orders().equals(gotPage.orders())) {
+                throw new IllegalStateException("snapshot restart lists different orders after " + position);
+            }
+            position += wantPage.orders().size();
+            wantCursor = wantPage.nextCursor();
+            gotCursor = gotPage.nextCursor();
+            if ((wantCursor == null) != (gotCursor == null)) {
+                throw new IllegalStateException("snapshot restart lists a different number of orders");
+            }
+        } while (wantCursor != null);
+    }
+
+    // the same order for the same n, every time - a few seconds apart, a mix of vehicles
+    private static Order orderFor(int n) {
+        Vehicle vehicle = switch (n % 5) {
+            case 0 -> new Level1(TrimLevel.PREMIUM, VehicleColor.BLUE);
+            case 1 -> new Level2(TrimLevel.OFFROAD, VehicleColor.SILVER);
+            case 2 -> new Level3(TrimLevel.ULTRA, VehicleColor.GREEN);
+            case 3 -> new TrailTitanSignature();
+            default -> new ExecutiveSignature();
+        };
+        Order order = new Order("20260101-" + n, vehicle, LocalDateTime.of(2026, 1, 1, 0, 0).plusSeconds(n * 3L));
+        order.addFeature(Accessory.createPremiumFloorMats());
+        if (n % 2 == 0) {
+            order.addFeature(Accessory.createHomeCharger());
+        }
+        return order;
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        try (var paths = Files.walk(root)) {
+            paths.sorted((a, b) -> b.getNameCount() - a.getNameCount()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    System.err.println("could not delete " + path + ": " + e.getMessage());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.raion.perf;
+
+import com.raion.perf.AllocationMeter.Measurement;
+import com.raion.services.EndpointClass;
+import com.raion.services.RateLimiter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * measures the cost of one RateLimiter decision and how the counter table holds up
+ * with a very large number of distinct clients
+ *
+ * - hot client: the same address over and over (counter stays in cache)
+ * - distinct clients: cycles through --clients addresses, so almost every decision
+ *   touches a cold slot, the way a scraper farm or a big partner base would
+ * - concurrent: --threads threads deciding for disjoint client ranges at once
+ * - sweep: time to free one stripe of the table
+ *
+ * usage:
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.raion.perf.RateLimiterBenchmark
+ *   ... -Dexec.args="--clients=1000000 --iterations=5000000 --threads=4"
+ */
+public class RateLimiterBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadGenerator.parseArgs(args);
+        int clients = Integer.parseInt(options.getOrDefault("clients", "1000000"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "5000000"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        if (clients <= 0 || iterations <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("clients, iterations and threads must be positive");
+        }
+        if (clients > (1 << 24)) {
+            throw new IllegalArgumentException("at most " + (1 << 24) + " clients (one per 10.x.x.x address)");
+        }
+
+        if (!AllocationMeter.isSupported()) {
+            System.err.println("thread allocation counting is not supported on this jvm");
+            System.exit(2);
+        }
+
+        String[] addresses = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            addresses[i] = "10." + ((i >>> 16) & 0xff) + "." + ((i >>> 8) & 0xff) + "." + (i & 0xff);
+        }
+
+        RateLimiter limiter = new RateLimiter(true, 60, 600, 60, clients, "");
+        try {
+            List<Measurement> results = new ArrayList<>();
+            results.add(AllocationMeter.measure("hot client", iterations / 5, iterations,
+                    () -> limiter.tryAcquire("10.0.0.1", "10.0.0.1", EndpointClass.READ)));
+
+            int[] next = {0};
+            results.add(AllocationMeter.measure("distinct clients", Math.min(iterations, clients), iterations, () -> {
+                limiter.tryAcquire(addresses[next[0]], addresses[next[0]], EndpointClass.READ);
+                next[0] = next[0] + 1 == clients ? 0 : next[0] + 1;
+            }));
+
+            double concurrentNanos = measureConcurrent(limiter, addresses, threads, iterations);
+
+            long sweepStart = System.nanoTime();
+            for (int i = 0; i < 64; i++) {
+                limiter.sweepNextStripe();
+            }
+            double sweepMillisPerStripe = (System.nanoTime() - sweepStart) / 64 / 1e6;
+
+            Map<String, Object> stats = limiter.getStats();
+            System.out.println("\n" + "=".repeat(64));
+            System.out.println("RATE LIMITER DECISIONS (" + iterations + " per variant, " + clients + " clients)");
+            System.out.println("=".repeat(64));
+            System.out.printf("%-22s %14s %12s %12s%n", "variant", "decisions/s", "ns/op", "bytes/op");
+            for (Measurement result : results) {
+                System.out.printf("%-22s %14.0f %12.1f %12d%n",
+                        result.name(), result.opsPerSecond(), result.nanosPerOp(), result.bytesPerOp());
+            }
+            System.out.printf("%-22s %14.0f %12.1f %12s%n", threads + " threads (total)",
+                    1e9 / concurrentNanos, concurrentNanos, "-");
+            System.out.println("-".repeat(64));
+            System.out.printf("table: %d MiB, tracked counters: %s, overflow decisions: %s%n",
+                    limiter.getTableBytes() >> 20, stats.get("trackedCounters"), stats.get("overflowed"));
+            System.out.printf("sweep: %.2f ms per stripe (64 stripes)%n", sweepMillisPerStripe);
+            System.out.println("=".repeat(64));
+        } finally {
+            limiter.shutdown();
+        }
+    }
+
+    // wall-clock nanoseconds per decision with every thread deciding for its own slice of clients
+    private static double measureConcurrent(RateLimiter limiter, String[] addresses, int threads, int iterations)
+            throws InterruptedException {
+        int perThread = iterations / threads;
+        int slice = addresses.length / threads;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int from = t * slice;
+            int size = Math.max(1, slice);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    String address = addresses[from + i % size];
+                    limiter.tryAcquire(address, address, EndpointClass.ORDER);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return (double) (System.nanoTime() - begin) / ((long) perThread * threads);
+    }
+}
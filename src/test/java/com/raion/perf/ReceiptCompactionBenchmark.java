@@ -0,0 +1,155 @@
+package com.raion.perf;
+
+import com.raion.models.*;
+import com.raion.models.signatures.ExecutiveSignature;
+import com.raion.models.signatures.TrackBeastSignature;
+import com.raion.models.signatures.UrbanCommuterSignature;
+import com.raion.services.ReceiptCompactor;
+import com.raion.services.ReceiptGenerator;
+import com.raion.services.ReceiptStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * what compaction does to one day of receipts: files and bytes on disk before and after,
+ * how fast the compactor rolls them up, and what a receipt read costs from a loose file
+ * versus from the day's segment
+ *
+ * writes --receipts receipts dated 30 days ago into a temp receipts folder (a rotating
+ * mix of custom and signature orders), reads a random sample, compacts the day with the
+ * throttle off, then reads the same sample again and checks every byte matches
+ *
+ * usage:
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.raion.perf.ReceiptCompactionBenchmark
+ *   ... -Dexec.args="--receipts=20000 --reads=5000"
+ */
+public class ReceiptCompactionBenchmark {
+
+    // on-disk footprint of a folder
+    private record Footprint(long files, long directories, long bytes) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadGenerator.parseArgs(args);
+        int receipts = Integer.parseInt(options.getOrDefault("receipts", "20000"));
+        int reads = Integer.parseInt(options.getOrDefault("reads", "5000"));
+        if (receipts <= 0 || receipts > 86_400 || reads <= 0) {
+            throw new IllegalArgumentException("receipts must be 1 to 86400 (one per second of the day), reads positive");
+        }
+
+        Path folder = Files.createTempDirectory("raion-compaction");
+        System.setProperty("raion.receipts.folder", folder.toString());
+        try {
+            LocalDate day = LocalDate.now().minusDays(30);
+            String[] orderIds = writeReceipts(day, receipts);
+            Footprint before = footprint(folder);
+
+            int[] sample = new Random(42).ints(reads, 0, receipts).toArray();
+            byte[][] expected = new byte[reads][];
+            double looseMicros = readSample(orderIds, sample, expected, false);
+
+            ReceiptCompactor compactor = new ReceiptCompactor(false, 1, 60, Long.MAX_VALUE);
+            long start = System.nanoTime();
+            ReceiptCompactor.Result result = compactor.compactBefore(day.plusDays(1));
+            double compactMillis = (System.nanoTime() - start) / 1e6;
+            Footprint after = footprint(folder);
+
+            double segmentMicros = readSample(orderIds, sample, expected, true);
+
+            System.out.println("\n" + "=".repeat(64));
+            System.out.println("RECEIPT COMPACTION (" + receipts + " receipts in one day)");
+            System.out.println("=".repeat(64));
+            System.out.printf("%-18s %12s %14s %14s%n", "", "files", "directories", "bytes");
+            System.out.printf("%-18s %12d %14d %14d%n", "loose", before.files(), before.directories(), before.bytes());
+            System.out.printf("%-18s %12d %14d %14d%n", "compacted", after.files(), after.directories(), after.bytes());
+            System.out.println("-".repeat(64));
+            System.out.printf("compaction: %d receipts in %.0f ms (%.0f receipts/s), %.1fx smaller%n",
+                    result.receipts(), compactMillis, result.receipts() / (compactMillis / 1000),
+                    (double) result.bytesBefore() / result.bytesAfter());
+            System.out.printf("random read: %.1f us loose, %.1f us from segment (%d reads, all identical)%n",
+                    looseMicros, segmentMicros, reads);
+            System.out.println("=".repeat(64));
+        } finally {
+            deleteRecursively(folder);
+        }
+    }
+
+    // one receipt per second of the day, cycling through a few typical configurations
+    private static String[] writeReceipts(LocalDate day, int receipts) throws IOException {
+        String[] orderIds = new String[receipts];
+        LocalDateTime midnight = day.atStartOfDay();
+        for (int i = 0; i < receipts; i++) {
+            Order order = new Order(vehicleFor(i), midnight.plusSeconds(i));
+            if (i % 3 == 0) {
+                order.addFeature(Option.createEnhancedAutopilot());
+                order.addFeature(Accessory.createHomeCharger());
+            }
+            ReceiptGenerator.saveReceiptToFile(order);
+            orderIds[i] = order.getOrderId();
+        }
+        return orderIds;
+    }
+
+    private static Vehicle vehicleFor(int i) {
+        return switch (i % 5) {
+            case 0 -> new Level1(TrimLevel.PREMIUM, VehicleColor.BLUE);
+            case 1 -> new Level2(TrimLevel.OFFROAD, VehicleColor.SILVER);
+            case 2 -> new TrackBeastSignature();
+            case 3 -> new UrbanCommuterSignature();
+            default -> new ExecutiveSignature();
+        };
+    }
+
+    // mean microseconds per read; the first pass records the content, the second compares
+    private static double readSample(String[] orderIds, int[] sample, byte[][] expected, boolean verify)
+            throws IOException {
+        long start = System.nanoTime();
+        for (int i = 0; i < sample.length; i++) {
+            byte[] content = ReceiptGenerator.readReceipt(orderIds[sample[i]]);
+            if (!verify) {
+                expected[i] = content;
+            } else if (!Arrays.equals(expected[i], content)) {
+                throw new IllegalStateException("receipt changed by compaction: " + orderIds[sample[i]]);
+            }
+        }
+        return (System.nanoTime() - start) / 1e3 / sample.length;
+    }
+
+    // receipts and segments only - the manifest and checkpoint don't change with compaction
+    private static Footprint footprint(Path folder) throws IOException {
+        long files = 0;
+        long directories = 0;
+        long bytes = 0;
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (Files.isDirectory(path)) {
+                    directories++;
+                } else if (!path.getParent().equals(folder)) {
+                    files++;
+                    bytes += Files.size(path);
+                }
+            }
+        }
+        return new Footprint(files, directories, bytes);
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        try (var paths = Files.walk(root)) {
+            paths.sorted((a, b) -> b.getNameCount() - a.getNameCount()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    System.err.println("could not delete " + path + ": " + e.getMessage());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.raion.perf;
+
+import com.raion.models.*;
+import com.raion.services.ReceiptGenerator;
+import com.raion.services.ReceiptRecovery;
+import com.raion.services.ReceiptStore;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * how long the startup recovery pass (ReceiptRecovery) takes on a big receipts folder,
+ * checking everything and checking only what changed since the last checkpoint
+ *
+ * writes --receipts receipts spread over --days days into a temp receipts folder (written
+ * straight to their paths, so setting up a million doesn't take the order path's time),
+ * dates every bucket directory a day back, and plants --damage orphaned temp files from
+ * an earlier session plus --damage truncated receipts. then:
+ * - full pass: must delete every orphan and move aside every truncated receipt
+ * - incremental pass after planting the same damage again: the same, opening only the
+ *   buckets that were touched
+ *
+ * usage:
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.raion.perf.ReceiptRecoveryBenchmark
+ *   ... -Dexec.args="--receipts=200000 --days=10 --damage=50 --threads=0"
+ */
+public class ReceiptRecoveryBenchmark {
+
+    // what was planted, to check the pass found exactly that
+    private record Damage(int orphans, int truncated) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadGenerator.parseArgs(args);
+        int receipts = Integer.parseInt(options.getOrDefault("receipts", "200000"));
+        int days = Integer.parseInt(options.getOrDefault("days", "10"));
+        int damage = Integer.parseInt(options.getOrDefault("damage", "50"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "0"));
+        if (receipts <= 0 || days <= 0 || (long) receipts > 86_400L * days || damage < 0 || damage > receipts / 2) {
+            throw new IllegalArgumentException(
+                    "receipts must be 1 to 86400 per day, days positive, damage 0 to half the receipts");
+        }
+
+        Path folder = Files.createTempDirectory("raion-recovery");
+        System.setProperty("raion.receipts.folder", folder.toString());
+        try {
+            long start = System.nanoTime();
+            List<Path> receiptPaths = writeReceipts(receipts, days);
+            int buckets = ageBuckets(folder);
+            double setupSeconds = (System.nanoTime() - start) / 1e9;
+
+            ReceiptRecovery recovery = new ReceiptRecovery(true, false, threads);
+            Random random = new Random(42);
+
+            Damage planted = plantDamage(receiptPaths, damage, random);
+            ReceiptRecovery.Result full = recovery.recover(true);
+            check("full", full, planted);
+
+            planted = plantDamage(receiptPaths, damage, random);
+            ReceiptRecovery.Result incremental = recovery.recover(false);
+            check("incremental", incremental, planted);
+
+            System.out.println("\n" + "=".repeat(72));
+            System.out.println("RECEIPT RECOVERY (" + receipts + " receipts over " + days + " days, "
+                    + buckets + " bucket directories, set up in " + String.format("%.1f", setupSeconds) + " s)");
+            System.out.println("=".repeat(72));
+            System.out.printf("%-12s %10s %10s %10s %9s %11s %9s%n",
+                    "pass", "scanned", "skipped", "files", "orphans", "incomplete", "ms");
+            for (Object[] row : List.of(new Object[]{"full", full}, new Object[]{"incremental", incremental})) {
+                ReceiptRecovery.Result result = (ReceiptRecovery.Result) row[1];
+                System.out.printf("%-12s %10d %10d %10d %9d %11d %9d%n", row[0], result.directories(),
+                        result.directoriesSkipped(), result.files(), result.orphansDeleted(),
+                        result.incomplete(), result.millis());
+            }
+            System.out.println("-".repeat(72));
+            System.out.printf("full pass: %.0f files/s; both passes found exactly the planted damage%n",
+                    full.files() / Math.max(full.millis() / 1000.0, 0.001));
+            System.out.println("=".repeat(72));
+        } finally {
+            deleteRecursively(folder);
+        }
+    }
+
+    // the same few receipt bodies under every order id - only the files' endings matter here
+    private static List<Path> writeReceipts(int receipts, int days) throws IOException {
+        byte[][] bodies = new byte[3][];
+        bodies[0] = body(new Order(new Level1(TrimLevel.PREMIUM, VehicleColor.BLUE)));
+        bodies[1] = body(new Order(new Level2(TrimLevel.OFFROAD, VehicleColor.SILVER)));
+        Order custom = new Order(new Level3(TrimLevel.PRO, VehicleColor.PURPLE));
+        custom.addFeature(Option.createEnhancedAutopilot());
+        custom.addFeature(Accessory.createHomeCharger());
+        bodies[2] = body(custom);
+
+        List<Path> paths = new ArrayList<>(receipts);
+        LocalDateTime firstDay = LocalDate.now().minusDays(days + 1).atStartOfDay();
+        int perDay = (receipts + days - 1) / days;
+        Vehicle vehicle = new Level1(TrimLevel.STANDARD, VehicleColor.BLUE);
+        Set<Path> created = new HashSet<>();
+        for (int i = 0; i < receipts; i++) {
+            LocalDateTime date = firstDay.plusDays(i / perDay).plusSeconds(i % perDay);
+            Path path = ReceiptStore.pathFor(new Order(vehicle, date).getOrderId());
+            if (created.add(path.getParent())) {
+                Files.createDirectories(path.getParent());
+            }
+            Files.write(path, bodies[i % bodies.length]);
+            paths.add(path);
+        }
+        return paths;
+    }
+
+    private static byte[] body(Order order) {
+        return ReceiptGenerator.generateReceipt(order).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // as if the receipts had been written the day before the last checkpoint
+    private static int ageBuckets(Path folder) throws IOException {
+        FileTime yesterday = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1));
+        int buckets = 0;
+        try (Stream<Path> paths = Files.walk(folder, 5)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (folder.relativize(path).getNameCount() == 4 && Files.isDirectory(path)) {
+                    Files.setLastModifiedTime(path, yesterday);
+                    buckets++;
+                }
+            }
+        }
+        return buckets;
+    }
+
+    // temp files a crashed earlier session left behind, and receipts cut off mid-write
+    private static Damage plantDamage(List<Path> receiptPaths, int damage, Random random) throws IOException {
+        int orphans = 0;
+        int truncated = 0;
+        Set<Path> cut = new HashSet<>();
+        for (int i = 0; i < damage; i++) {
+            Path receipt = receiptPaths.get(random.nextInt(receiptPaths.size()));
+            Path orphan = receipt.resolveSibling(receipt.getFileName() + ".0123abcd-" + i + ReceiptStore.TEMP_SUFFIX);
+            if (Files.exists(receipt) && !Files.exists(orphan)) {
+                Files.write(orphan, new byte[]{'R'});
+                orphans++;
+            }
+
+            // the rename reached the disk but not all of the data (power loss without fsync)
+            receipt = receiptPaths.get(random.nextInt(receiptPaths.size()));
+            if (Files.exists(receipt) && cut.add(receipt)) {
+                byte[] content = Files.readAllBytes(receipt);
+                Path temp = receipt.resolveSibling(receipt.getFileName() + ".cut");
+                Files.write(temp, Arrays.copyOf(content, content.length / 2));
+                Files.move(temp, receipt, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                truncated++;
+            }
+        }
+        return new Damage(orphans, truncated);
+    }
+
+    private static void check(String pass, ReceiptRecovery.Result result, Damage planted) {
+        if (result.orphansDeleted() != planted.orphans() || result.incomplete() != planted.truncated()) {
+            throw new IllegalStateException(pass + " pass found " + result.orphansDeleted() + " orphans and "
+                    + result.incomplete() + " incomplete receipts, planted " + planted.orphans() + " and "
+                    + planted.truncated());
+        }
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        try (var paths = Files.walk(root)) {
+            paths.sorted((a, b) -> b.getNameCount() - a.getNameCount()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    System.err.println("could not delete " + path + ": " + e.getMessage());
+                }
+            });
+        }
+    }
+}
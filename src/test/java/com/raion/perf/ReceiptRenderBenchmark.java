@@ -0,0 +1,149 @@
+package com.raion.perf;
+
+import com.raion.models.*;
+import com.raion.perf.AllocationMeter.Measurement;
+import com.raion.services.CompiledReceipt;
+import com.raion.services.FeatureCatalog;
+import com.raion.services.ReceiptGenerator;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * compares the compiled receipt layout (CompiledReceipt) with rendering through
+ * ReceiptGenerator.generateReceipt and encoding the string to utf-8
+ *
+ * before measuring, every trim and color of every level is rendered both ways with a
+ * random set of features and a random date, and the bytes must match. each variant
+ * is then measured in several rounds on the representative custom order and the
+ * median round is reported
+ *
+ * usage:
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.raion.perf.ReceiptRenderBenchmark
+ *   ... -Dexec.args="--rounds=5 --iterations=50000 --checks=20000"
+ */
+public class ReceiptRenderBenchmark {
+
+    public static void main(String[] args) {
+        Map<String, String> options = LoadGenerator.parseArgs(args);
+        int rounds = Integer.parseInt(options.getOrDefault("rounds", "5"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "50000"));
+        int checks = Integer.parseInt(options.getOrDefault("checks", "20000"));
+
+        if (!AllocationMeter.isSupported()) {
+            System.err.println("thread allocation counting is not supported on this jvm");
+            System.exit(2);
+        }
+        if (!CompiledReceipt.isAvailable()) {
+            System.err.println("the compiled receipt is switched off (see the startup message)");
+            System.exit(1);
+        }
+
+        checkSameBytes(checks);
+
+        Order order = buildCustomOrder();
+        List<Measurement> builderRounds = new ArrayList<>();
+        List<Measurement> compiledRounds = new ArrayList<>();
+        for (int round = 0; round < rounds; round++) {
+            builderRounds.add(AllocationMeter.measure("string builder", iterations / 5, iterations,
+                    () -> ReceiptGenerator.generateReceipt(order).getBytes(StandardCharsets.UTF_8)));
+            compiledRounds.add(AllocationMeter.measure("compiled", iterations / 5, iterations,
+                    () -> CompiledReceipt.render(order)));
+        }
+
+        Measurement builder = median(builderRounds);
+        Measurement compiled = median(compiledRounds);
+        int receiptBytes = CompiledReceipt.render(order).length;
+
+        System.out.println("\n" + "=".repeat(64));
+        System.out.println("RECEIPT RENDERING (median of " + rounds + " rounds x " + iterations + " ops, "
+                + receiptBytes + " byte receipt)");
+        System.out.println("=".repeat(64));
+        System.out.printf("%-16s %14s %12s %12s%n", "variant", "ops/s", "ns/op", "bytes/op");
+        for (Measurement result : List.of(builder, compiled)) {
+            System.out.printf("%-16s %14.0f %12.0f %12d%n",
+                    result.name(), result.opsPerSecond(), result.nanosPerOp(), result.bytesPerOp());
+        }
+        System.out.println("-".repeat(64));
+        System.out.printf("throughput x%.2f, allocation %.0f%% of the string builder%n",
+                compiled.opsPerSecond() / builder.opsPerSecond(),
+                100.0 * compiled.bytesPerOp() / builder.bytesPerOp());
+        System.out.println("checked " + checks + " random orders byte for byte");
+        System.out.println("=".repeat(64));
+    }
+
+    // random orders over every valid level, trim and color must render identically both ways
+    private static void checkSameBytes(int checks) {
+        List<Vehicle> vehicles = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < checks; i++) {
+            Vehicle vehicle = vehicleFor(i);
+            if (vehicle == null) {
+                continue;
+            }
+            vehicles.add(vehicle);
+
+            LocalDateTime date = LocalDateTime.of(1990 + random.nextInt(60), 1 + random.nextInt(12), 1, 0, 0)
+                    .plusDays(random.nextInt(28)).plusSeconds(random.nextInt(86_400));
+            Order order = new Order(vehicle, date);
+            for (int code = 1; FeatureCatalog.createFeature(code) != null; code++) {
+                Feature feature = FeatureCatalog.createFeature(code);
+                if (random.nextInt(3) == 0 && feature.isEligibleFor(vehicle.getLevel())) {
+                    order.addFeature(feature);
+                }
+            }
+
+            byte[] expected = ReceiptGenerator.generateReceipt(order).getBytes(StandardCharsets.UTF_8);
+            if (!Arrays.equals(expected, CompiledReceipt.render(order))) {
+                throw new IllegalStateException("compiled receipt differs from generateReceipt:\n"
+                        + new String(expected, StandardCharsets.UTF_8) + "\n"
+                        + new String(CompiledReceipt.render(order), StandardCharsets.UTF_8));
+            }
+        }
+        if (vehicles.isEmpty()) {
+            throw new IllegalStateException("no vehicles to check");
+        }
+    }
+
+    // cycles through every level x trim x color, null where the combination isn't offered
+    private static Vehicle vehicleFor(int i) {
+        TrimLevel[] trims = TrimLevel.values();
+        VehicleColor[] colors = VehicleColor.values();
+        int level = 1 + i % 4;
+        TrimLevel trim = trims[i / 4 % trims.length];
+        VehicleColor color = colors[i / 4 / trims.length % colors.length];
+        try {
+            return switch (level) {
+                case 1 -> new Level1(trim, color);
+                case 2 -> new Level2(trim, color);
+                case 3 -> new Level3(trim, color);
+                default -> new Level4(color);
+            };
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Measurement median(List<Measurement> rounds) {
+        List<Measurement> sorted = new ArrayList<>(rounds);
+        sorted.sort(Comparator.comparingDouble(Measurement::nanosPerOp));
+        return sorted.get(sorted.size() / 2);
+    }
+
+    // representative custom order: level 2 off-road with two options, a warranty and two accessories
+    private static Order buildCustomOrder() {
+        Order order = new Order(new Level2(TrimLevel.OFFROAD, VehicleColor.SILVER));
+        order.addFeature(Option.createEnhancedAutopilot());
+        order.addFeature(Option.createMassageSeats());
+        order.addFeature(ServicePackage.createExtendedWarranty8Year());
+        order.addFeature(Accessory.createPremiumFloorMats());
+        order.addFeature(Accessory.createHomeCharger());
+        return order;
+    }
+}
@@ -0,0 +1,176 @@
+package com.raion.perf;
+
+import com.raion.models.*;
+import com.raion.models.signatures.ExecutiveSignature;
+import com.raion.models.signatures.TrailTitanSignature;
+import com.raion.repository.OrderIndex;
+import com.raion.repository.StoredOrder;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * garbage collection cost of keeping orders resident: off-heap records (OrderIndex on an
+ * OffHeapOrderStore) against the same orders kept as Order objects in a HashMap
+ *
+ * for each store and each resident count:
+ * 1. the orders are loaded, then a full gc settles the heap - heap and direct memory in use
+ * 2. --gcs full collections are timed one by one (System.gc) - the median is the pause a
+ *    full collection costs with that many orders resident
+ * 3. --lookups random orders are looked up and re-hydrated, which makes short-lived
+ *    garbage - young collections during that phase, and the mean lookup time
+ * every looked-up order must have the id and total it was loaded with
+ *
+ * usage:
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.raion.perf.ResidentOrderBenchmark
+ *   ... -Dexec.args="--sizes=250000,500000,1000000,2000000 --heap-sizes=250000,500000,1000000 --gcs=5 --lookups=500000"
+ */
+public class ResidentOrderBenchmark {
+
+    // somewhere to keep orders, and the one lookup both stores answer
+    private interface Store {
+        Order find(String orderId) throws Exception;
+    }
+
+    // one store at one size
+    private record Run(String store, int orders, long heapBytes, long directBytes, double fullGcMillis,
+                       long youngGcs, double youngGcMillis, double lookupNanos) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadGenerator.parseArgs(args);
+        int[] sizes = parseSizes(options.getOrDefault("sizes", "250000,500000,1000000,2000000"));
+        int[] heapSizes = parseSizes(options.getOrDefault("heap-sizes", "250000,500000,1000000"));
+        int gcs = Integer.parseInt(options.getOrDefault("gcs", "5"));
+        int lookups = Integer.parseInt(options.getOrDefault("lookups", "500000"));
+        if (gcs <= 0 || lookups <= 0) {
+            throw new IllegalArgumentException("gcs and lookups must be positive");
+        }
+
+        List<Run> runs = new ArrayList<>();
+        for (int size : sizes) {
+            OrderIndex index = new OrderIndex();
+            for (int i = 0; i < size; i++) {
+                index.add(StoredOrder.of(orderFor(i)));
+            }
+            runs.add(measure("off-heap", size, index::findOrder, gcs, lookups));
+        }
+        for (int size : heapSizes) {
+            Map<String, Order> orders = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                Order order = orderFor(i);
+                orders.put(order.getOrderId(), order);
+            }
+            runs.add(measure("heap", size, orders::get, gcs, lookups));
+        }
+
+        System.out.println("\n" + "=".repeat(92));
+        System.out.println("RESIDENT ORDERS (" + gcs + " timed full gcs, " + lookups + " lookups per run)");
+        System.out.println("=".repeat(92));
+        System.out.printf("%-9s %10s %11s %11s %12s %11s %13s %11s%n", "store", "orders", "heap MB", "direct MB",
+                "full gc ms", "young gcs", "young gc ms", "lookup ns");
+        for (Run run : runs) {
+            System.out.printf("%-9s %10d %11.1f %11.1f %12.1f %11d %13.2f %11.0f%n", run.store(), run.orders(),
+                    run.heapBytes() / 1e6, run.directBytes() / 1e6, run.fullGcMillis(), run.youngGcs(),
+                    run.youngGcMillis(), run.lookupNanos());
+        }
+        System.out.println("-".repeat(92));
+        System.out.println("young gc ms is the mean pause of the young collections during the lookups");
+        System.out.println("=".repeat(92));
+    }
+
+    private static Run measure(String name, int size, Store store, int gcs, int lookups) throws Exception {
+        System.gc();
+        long heapBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        long directBytes = directMemoryUsed();
+
+        long[] pauses = new long[gcs];
+        for (int i = 0; i < gcs; i++) {
+            long start = System.nanoTime();
+            System.gc();
+            pauses[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(pauses);
+
+        long[] before = gcTotals();
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            int n = random.nextInt(size);
+            Order order = store.find(orderId(n));
+            if (order == null || Math.round(order.calculateTotal() * 100) != Math.round(orderFor(n).calculateTotal() * 100)) {
+                throw new IllegalStateException(name + " returned a different order for " + orderId(n));
+            }
+        }
+        double lookupNanos = (double) (System.nanoTime() - start) / lookups;
+        long[] after = gcTotals();
+
+        long youngGcs = after[0] - before[0];
+        double youngGcMillis = youngGcs == 0 ? 0 : (double) (after[1] - before[1]) / youngGcs;
+        return new Run(name, size, heapBytes, directBytes, pauses[gcs / 2] / 1e6, youngGcs, youngGcMillis,
+                lookupNanos);
+    }
+
+    // collections and milliseconds spent in them so far, across the young collectors
+    private static long[] gcTotals() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (isYoung(collector.getName())) {
+                count += collector.getCollectionCount();
+                millis += collector.getCollectionTime();
+            }
+        }
+        return new long[]{count, millis};
+    }
+
+    private static boolean isYoung(String collector) {
+        return collector.equals("Copy") || collector.equals("PS Scavenge") || collector.equals("ParNew")
+                || collector.equals("G1 Young Generation");
+    }
+
+    private static long directMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+
+    // the same order for the same n, every time - each with its own vehicle, like placed orders
+    private static Order orderFor(int n) {
+        Vehicle vehicle = switch (n % 5) {
+            case 0 -> new Level1(TrimLevel.PREMIUM, VehicleColor.BLUE);
+            case 1 -> new Level2(TrimLevel.OFFROAD, VehicleColor.SILVER);
+            case 2 -> new Level3(TrimLevel.ULTRA, VehicleColor.GREEN);
+            case 3 -> new TrailTitanSignature();
+            default -> new ExecutiveSignature();
+        };
+        Order order = new Order(orderId(n), vehicle, LocalDateTime.of(2026, 1, 1, 0, 0).plusSeconds(n));
+        order.addFeature(Accessory.createPremiumFloorMats());
+        if (n % 2 == 0) {
+            order.addFeature(Accessory.createHomeCharger());
+        }
+        if (n % 3 == 0 && Option.createEnhancedAutopilot().isEligibleFor(vehicle.getLevel())) {
+            order.addFeature(Option.createEnhancedAutopilot());
+        }
+        return order;
+    }
+
+    private static String orderId(int n) {
+        return "20260101-" + n;
+    }
+
+    private static int[] parseSizes(String sizes) {
+        return sizes.isEmpty() ? new int[0] : Arrays.stream(sizes.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+}
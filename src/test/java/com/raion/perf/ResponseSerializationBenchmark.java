@@ -0,0 +1,195 @@
+package com.raion.perf;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.raion.dto.OrderResponse;
+import com.raion.models.*;
+import com.raion.models.signatures.ExecutiveSignature;
+import com.raion.perf.AllocationMeter.Measurement;
+import com.raion.services.EnvironmentalCalculator;
+import com.raion.services.OrderResponseBuilder;
+import com.raion.services.PriceCalculator;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * compares the streaming OrderResponse serializer with the nested-map response the
+ * order endpoints used to build and let jackson reflect over
+ *
+ * both variants build the response and write it to a discarding stream, the same
+ * way the http message converter streams it to the socket. each variant is measured
+ * in several rounds and the median round is reported. before measuring, the two
+ * outputs are checked to be the same json
+ *
+ * usage:
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.raion.perf.ResponseSerializationBenchmark
+ *   ... -Dexec.args="--rounds=5 --iterations=50000"
+ */
+public class ResponseSerializationBenchmark {
+
+    private static final OutputStream DISCARD = OutputStream.nullOutputStream();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadGenerator.parseArgs(args);
+        int rounds = Integer.parseInt(options.getOrDefault("rounds", "5"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "50000"));
+
+        if (!AllocationMeter.isSupported()) {
+            System.err.println("thread allocation counting is not supported on this jvm");
+            System.exit(2);
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        // the server keeps the connection open after writing a body - so do we
+        ObjectWriter writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        Order customOrder = buildCustomOrder();
+        Order signatureOrder = new Order(new ExecutiveSignature());
+
+        checkSameJson(objectMapper, customOrder, false, null);
+        checkSameJson(objectMapper, signatureOrder, true, "executive");
+
+        List<Measurement> mapRounds = new ArrayList<>();
+        List<Measurement> streamingRounds = new ArrayList<>();
+        for (int round = 0; round < rounds; round++) {
+            mapRounds.add(AllocationMeter.measure("nested maps", iterations / 5, iterations,
+                    () -> writer.writeValue(DISCARD,
+                            buildMapResponse(customOrder, "receipts/x.txt", false, null))));
+            streamingRounds.add(AllocationMeter.measure("streaming dto", iterations / 5, iterations,
+                    () -> writer.writeValue(DISCARD,
+                            OrderResponseBuilder.buildOrderResponse(customOrder, "receipts/x.txt", false, null))));
+        }
+
+        Measurement maps = median(mapRounds);
+        Measurement streaming = median(streamingRounds);
+
+        System.out.println("\n" + "=".repeat(64));
+        System.out.println("ORDER RESPONSE SERIALIZATION (median of " + rounds + " rounds x " + iterations + " ops)");
+        System.out.println("=".repeat(64));
+        System.out.printf("%-16s %14s %12s %12s%n", "variant", "ops/s", "ns/op", "bytes/op");
+        for (Measurement result : List.of(maps, streaming)) {
+            System.out.printf("%-16s %14.0f %12.0f %12d%n",
+                    result.name(), result.opsPerSecond(), result.nanosPerOp(), result.bytesPerOp());
+        }
+        System.out.println("-".repeat(64));
+        System.out.printf("throughput x%.2f, allocation %.0f%% of the map version%n",
+                streaming.opsPerSecond() / maps.opsPerSecond(),
+                100.0 * streaming.bytesPerOp() / maps.bytesPerOp());
+        System.out.println("=".repeat(64));
+    }
+
+    // the two variants must produce the same fields, values and number types
+    private static void checkSameJson(ObjectMapper objectMapper, Order order, boolean isSignature, String signatureName)
+            throws Exception {
+        JsonNode expected = objectMapper.readTree(objectMapper.writeValueAsBytes(
+                buildMapResponse(order, "receipts/check.txt", isSignature, signatureName)));
+        OrderResponse response = OrderResponseBuilder.buildOrderResponse(
+                order, "receipts/check.txt", isSignature, signatureName);
+        JsonNode actual = objectMapper.readTree(objectMapper.writeValueAsBytes(response));
+
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("streaming response differs from the map response:\n"
+                    + expected + "\n" + actual);
+        }
+    }
+
+    private static Measurement median(List<Measurement> rounds) {
+        List<Measurement> sorted = new ArrayList<>(rounds);
+        sorted.sort(Comparator.comparingDouble(Measurement::nanosPerOp));
+        return sorted.get(sorted.size() / 2);
+    }
+
+    // representative custom order: level 2 off-road with two options, a warranty and two accessories
+    private static Order buildCustomOrder() {
+        Order order = new Order(new Level2(TrimLevel.OFFROAD, VehicleColor.SILVER));
+        order.addFeature(Option.createEnhancedAutopilot());
+        order.addFeature(Option.createMassageSeats());
+        order.addFeature(ServicePackage.createExtendedWarranty8Year());
+        order.addFeature(Accessory.createPremiumFloorMats());
+        order.addFeature(Accessory.createHomeCharger());
+        return order;
+    }
+
+    /**
+     * the nested-map response the order endpoints built before OrderResponse existed
+     * kept here as the baseline and as the reference for the json shape
+     */
+    public static Map<String, Object> buildMapResponse(Order order, String receiptPath, boolean isSignature,
+                                                       String signatureName) {
+        Map<String, Object> response = new HashMap<>();
+
+        Vehicle vehicle = order.getVehicle();
+
+        response.put("orderId", order.getOrderId());
+        response.put("orderDate", order.getFormattedOrderDate());
+        response.put("receiptFile", receiptPath);
+        response.put("isSignature", isSignature);
+
+        if (isSignature && signatureName != null) {
+            response.put("signatureName", OrderResponseBuilder.formatSignatureName(signatureName));
+        }
+
+        Map<String, Object> vehicleInfo = new HashMap<>();
+        vehicleInfo.put("model", vehicle.getModelName());
+        vehicleInfo.put("trim", vehicle.getTrimLevel().getDisplayName());
+        vehicleInfo.put("color", vehicle.getColor().getDisplayName());
+        vehicleInfo.put("level", vehicle.getLevel());
+        response.put("vehicle", vehicleInfo);
+
+        Map<String, Object> pricing = new HashMap<>();
+        pricing.put("basePrice", vehicle.calculatePrice());
+        pricing.put("featuresTotal", order.calculateFeaturesTotal());
+        pricing.put("subtotal", order.calculateSubtotal());
+        pricing.put("tax", order.calculateTax());
+        pricing.put("taxRate", PriceCalculator.getTaxRatePercentage());
+        pricing.put("total", order.calculateTotal());
+        response.put("pricing", pricing);
+
+        Map<String, Object> payment = new HashMap<>();
+        payment.put("monthlyPayment", Math.round(order.calculateMonthlyPayment() * 100.0) / 100.0);
+        payment.put("loanTerm", 60);
+        payment.put("downPayment", 10000);
+        payment.put("apr", 5.9);
+        response.put("paymentEstimate", payment);
+
+        Map<String, Object> specs = new HashMap<>();
+        specs.put("power", vehicle.getPower());
+        specs.put("acceleration", vehicle.getAcceleration());
+        specs.put("topSpeed", vehicle.getTopSpeed());
+        specs.put("range", vehicle.getRange());
+        specs.put("battery", vehicle.getBatteryCapacity());
+        specs.put("drivetrain", vehicle.getDrivetrain());
+        response.put("specifications", specs);
+
+        Map<String, Object> charging = new HashMap<>();
+        charging.put("homeChargingTime", Math.round(vehicle.getHomeChargingTime() * 10.0) / 10.0);
+        charging.put("fastChargingTime", Math.round(vehicle.getFastChargingTime()));
+        response.put("charging", charging);
+
+        Map<String, Object> environmental = new HashMap<>();
+        double co2Saved = EnvironmentalCalculator.calculateCO2Saved(vehicle);
+        environmental.put("co2Saved", Math.round(co2Saved));
+        environmental.put("treesEquivalent", EnvironmentalCalculator.calculateTreesEquivalent(co2Saved));
+        response.put("environmental", environmental);
+
+        if (!order.getFeatures().isEmpty()) {
+            List<Map<String, Object>> features = new ArrayList<>();
+            for (Feature feature : order.getFeatures()) {
+                Map<String, Object> featureInfo = new HashMap<>();
+                featureInfo.put("name", feature.getName());
+                featureInfo.put("price", feature.getPrice());
+                featureInfo.put("category", feature.getCategory());
+                features.add(featureInfo);
+            }
+            response.put("features", features);
+        }
+
+        return response;
+    }
+}
@@ -0,0 +1,99 @@
+package com.raion.perf;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * startup benchmark - reports time-to-first-request for a server command
+ *
+ * launches the command, polls a url every few milliseconds and stops the clock at the
+ * first successful response. the server is killed after each run. results are the
+ * min / median / max over all runs so jitter from disk caches is visible.
+ *
+ * usage:
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.raion.perf.StartupBenchmark \
+ *       -Dexec.args="--runs=5 --cmd='scripts/run-fast.sh'"
+ *
+ * options:
+ *   --cmd="java -jar target/raion-ev-configurator-1.0.0.jar"   command that starts the server
+ *   --url=http://localhost:8080/api/vehicles                  first request to wait for
+ *   --runs=5                                                  number of cold starts
+ *   --timeout=60                                              seconds before a run is failed
+ */
+public class StartupBenchmark {
+
+    private static final long POLL_INTERVAL_MILLIS = 5;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadGenerator.parseArgs(args);
+        String command = options.getOrDefault("cmd", "java -jar target/raion-ev-configurator-1.0.0.jar");
+        URI url = URI.create(options.getOrDefault("url", "http://localhost:8080/api/vehicles"));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        int timeoutSeconds = Integer.parseInt(options.getOrDefault("timeout", "60"));
+
+        List<Long> results = new ArrayList<>();
+        for (int run = 1; run <= runs; run++) {
+            long millis = measureOnce(command, url, timeoutSeconds);
+            System.out.println("run " + run + ": first request served after " + millis + " ms");
+            results.add(millis);
+        }
+
+        Collections.sort(results);
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("TIME TO FIRST REQUEST (" + runs + " runs)");
+        System.out.println("command: " + command);
+        System.out.println("min:    " + results.get(0) + " ms");
+        System.out.println("median: " + results.get(results.size() / 2) + " ms");
+        System.out.println("max:    " + results.get(results.size() - 1) + " ms");
+        System.out.println("=".repeat(60));
+    }
+
+    /**
+     * start the server once and return milliseconds until the first 2xx response
+     */
+    static long measureOnce(String command, URI url, int timeoutSeconds) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(200))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(url).timeout(Duration.ofSeconds(5)).GET().build();
+
+        long start = System.nanoTime();
+        Process server = new ProcessBuilder(Arrays.asList(command.split("\\s+")))
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            long deadline = start + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+            while (System.nanoTime() < deadline) {
+                if (!server.isAlive()) {
+                    throw new IllegalStateException("server exited with status " + server.exitValue());
+                }
+                try {
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() < 300) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (IOException e) {
+                    // not listening yet
+                }
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            }
+            throw new IllegalStateException("server did not answer within " + timeoutSeconds + " seconds");
+        } finally {
+            server.destroy();
+            if (!server.waitFor(10, TimeUnit.SECONDS)) {
+                server.destroyForcibly().waitFor();
+            }
+        }
+    }
+}
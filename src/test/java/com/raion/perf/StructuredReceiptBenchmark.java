@@ -0,0 +1,150 @@
+package com.raion.perf;
+
+import com.raion.models.*;
+import com.raion.models.signatures.ExecutiveSignature;
+import com.raion.models.signatures.TrackBeastSignature;
+import com.raion.models.signatures.UrbanCommuterSignature;
+import com.raion.services.OrderCodec;
+import com.raion.services.ReceiptGenerator;
+import com.raion.services.ReceiptRenderCache;
+import com.raion.services.ReceiptStore;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * what saving structured orders instead of rendered receipts does to the write path,
+ * and what the deferred rendering costs when a receipt is finally read
+ *
+ * saves the same --orders orders twice into a temp receipts folder (a rotating mix of
+ * custom and signature orders, on two different days so the ids don't collide): once
+ * as rendered text receipts, once as structured orders (see OrderCodec). then reads
+ * every structured order's receipt twice - the first read renders it, the second comes
+ * from ReceiptRenderCache - and checks each one is byte for byte the receipt
+ * generateReceipt gives for the order
+ *
+ * run with -Draion.receipts.render-cache-size at least --orders so the second pass hits
+ *
+ * usage:
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.raion.perf.StructuredReceiptBenchmark \
+ *       -Draion.receipts.render-cache-size=20000
+ *   ... -Dexec.args="--orders=20000"
+ */
+public class StructuredReceiptBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadGenerator.parseArgs(args);
+        int orders = Integer.parseInt(options.getOrDefault("orders", "20000"));
+        if (orders <= 0 || orders > 86_400) {
+            throw new IllegalArgumentException("orders must be 1 to 86400 (one per second of the day)");
+        }
+
+        Path folder = Files.createTempDirectory("raion-structured");
+        System.setProperty("raion.receipts.folder", folder.toString());
+        try {
+            LocalDate textDay = LocalDate.now().minusDays(2);
+            LocalDate structuredDay = LocalDate.now().minusDays(1);
+
+            // render + write, like the order path does today
+            long textBytes = 0;
+            String[] textIds = new String[orders];
+            long start = System.nanoTime();
+            for (int i = 0; i < orders; i++) {
+                Order order = orderFor(i, textDay);
+                byte[] receipt = ReceiptGenerator.generateReceipt(order).getBytes(StandardCharsets.UTF_8);
+                ReceiptStore.write(order.getOrderId(), receipt);
+                textBytes += receipt.length;
+                textIds[i] = order.getOrderId();
+            }
+            double textMicros = (System.nanoTime() - start) / 1e3 / orders;
+
+            // encode + write
+            long structuredBytes = 0;
+            Order[] structuredOrders = new Order[orders];
+            String[] structuredIds = new String[orders];
+            start = System.nanoTime();
+            for (int i = 0; i < orders; i++) {
+                Order order = orderFor(i, structuredDay);
+                byte[] encoded = OrderCodec.encode(order);
+                ReceiptStore.writeOrder(order.getOrderId(), encoded);
+                structuredBytes += encoded.length;
+                structuredOrders[i] = order;
+                structuredIds[i] = order.getOrderId();
+            }
+            double structuredMicros = (System.nanoTime() - start) / 1e3 / orders;
+
+            double textReadMicros = readAll(textIds);
+            double firstReadMicros = readAll(structuredIds);
+            double cachedReadMicros = readAll(structuredIds);
+            for (Order order : structuredOrders) {
+                byte[] expected = ReceiptGenerator.generateReceipt(order).getBytes(StandardCharsets.UTF_8);
+                if (!Arrays.equals(expected, ReceiptGenerator.readReceipt(order.getOrderId()))) {
+                    throw new IllegalStateException("rendered receipt differs: " + order.getOrderId());
+                }
+            }
+
+            System.out.println("\n" + "=".repeat(64));
+            System.out.println("STRUCTURED ORDERS (" + orders + " orders)");
+            System.out.println("=".repeat(64));
+            System.out.printf("%-22s %14s %14s %10s%n", "", "bytes written", "per order", "save us");
+            System.out.printf("%-22s %14d %14.1f %10.1f%n", "text receipts", textBytes,
+                    (double) textBytes / orders, textMicros);
+            System.out.printf("%-22s %14d %14.1f %10.1f%n", "structured orders", structuredBytes,
+                    (double) structuredBytes / orders, structuredMicros);
+            System.out.println("-".repeat(64));
+            System.out.printf("write path: %.0fx fewer bytes%n", (double) textBytes / structuredBytes);
+            System.out.printf("read: %.1f us text file, %.1f us first structured read (renders), "
+                    + "%.1f us cached%n", textReadMicros, firstReadMicros, cachedReadMicros);
+            System.out.println("render cache: " + ReceiptRenderCache.getStats());
+            System.out.println("=".repeat(64));
+        } finally {
+            deleteRecursively(folder);
+        }
+    }
+
+    // one order per second of the day, cycling through a few typical configurations
+    private static Order orderFor(int i, LocalDate day) {
+        Vehicle vehicle = switch (i % 5) {
+            case 0 -> new Level1(TrimLevel.PREMIUM, VehicleColor.BLUE);
+            case 1 -> new Level2(TrimLevel.OFFROAD, VehicleColor.SILVER);
+            case 2 -> new TrackBeastSignature();
+            case 3 -> new UrbanCommuterSignature();
+            default -> new ExecutiveSignature();
+        };
+        Order order = new Order(vehicle, day.atStartOfDay().plusSeconds(i));
+        if (i % 3 == 0) {
+            order.addFeature(Option.createEnhancedAutopilot());
+            order.addFeature(Accessory.createHomeCharger());
+        }
+        return order;
+    }
+
+    // mean microseconds per read
+    private static double readAll(String[] orderIds) throws IOException {
+        long start = System.nanoTime();
+        for (String orderId : orderIds) {
+            if (ReceiptGenerator.readReceipt(orderId) == null) {
+                throw new IllegalStateException("no receipt for " + orderId);
+            }
+        }
+        return (System.nanoTime() - start) / 1e3 / orderIds.length;
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted((a, b) -> b.getNameCount() - a.getNameCount()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    System.err.println("could not delete " + path + ": " + e.getMessage());
+                }
+            });
+        }
+    }
+}
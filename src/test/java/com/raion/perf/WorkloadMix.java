@@ -0,0 +1,226 @@
+package com.raion.perf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * weighted mix of api calls that mirrors how the frontend actually uses the backend
+ *
+ * the configurator page loads /api/vehicles/{level} whenever a model card is clicked,
+ * the signature page loads /api/signatures/{name}, and only a fraction of visitors
+ * go on to submit an order. the default weights reflect that funnel.
+ *
+ * mix format: "vehicles=5,vehicle=45,signature=25,order=15,signature-order=10"
+ */
+public class WorkloadMix {
+
+    public static final String DEFAULT_MIX = "vehicles=5,vehicle=45,signature=25,order=15,signature-order=10";
+
+    // every kind of request the load generator can send
+    public enum RequestKind {
+        VEHICLES("vehicles"),
+        VEHICLE("vehicle"),
+        SIGNATURE("signature"),
+        ORDER("order"),
+        SIGNATURE_ORDER("signature-order");
+
+        private final String key;
+
+        RequestKind(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        static RequestKind fromKey(String key) {
+            for (RequestKind kind : values()) {
+                if (kind.key.equals(key)) {
+                    return kind;
+                }
+            }
+            throw new IllegalArgumentException("unknown request kind in mix: " + key);
+        }
+    }
+
+    // one request ready to be sent (body is null for gets)
+    public record PlannedRequest(RequestKind kind, String method, String path, String body) {
+    }
+
+    private static final String[] SIGNATURES = {"urban-commuter", "trail-titan", "track-beast", "executive"};
+
+    // share of model card clicks per level (entry models are browsed the most)
+    private static final int[] LEVEL_WEIGHTS = {40, 30, 20, 10};
+
+    private static final String[][] TRIMS = {
+            {"Standard", "Premium", "Performance"},
+            {"Standard", "Premium", "Off-Road"},
+            {"Pro", "Max", "Ultra"},
+            {"Flagship"}
+    };
+
+    private static final String[][] COLORS = {
+            {"white", "black", "silver", "blue"},
+            {"white", "black", "silver", "blue"},
+            {"purple", "burgundy", "green"},
+            {"black"}
+    };
+
+    private final RequestKind[] kinds;
+    private final int[] cumulativeWeights;
+    private final int totalWeight;
+    private final Random random;
+
+    /**
+     * create a mix from a spec string
+     *
+     * @param spec comma separated kind=weight pairs
+     * @param seed random seed so runs are reproducible
+     * @throws IllegalArgumentException if the spec is malformed
+     */
+    public WorkloadMix(String spec, long seed) {
+        if (spec == null || spec.isBlank()) {
+            throw new IllegalArgumentException("mix spec cannot be empty");
+        }
+
+        List<RequestKind> parsedKinds = new ArrayList<>();
+        List<Integer> parsedWeights = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("invalid mix entry: " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("mix weight cannot be negative: " + part);
+            }
+            if (weight > 0) {
+                parsedKinds.add(RequestKind.fromKey(pair[0].trim()));
+                parsedWeights.add(weight);
+            }
+        }
+        if (parsedKinds.isEmpty()) {
+            throw new IllegalArgumentException("mix must contain at least one positive weight");
+        }
+
+        this.kinds = parsedKinds.toArray(new RequestKind[0]);
+        this.cumulativeWeights = new int[kinds.length];
+        int running = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            running += parsedWeights.get(i);
+            cumulativeWeights[i] = running;
+        }
+        this.totalWeight = running;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * pick the next request according to the mix weights
+     * not thread safe - the scheduler thread is the only caller
+     */
+    public PlannedRequest next() {
+        int roll = random.nextInt(totalWeight);
+        RequestKind kind = kinds[kinds.length - 1];
+        for (int i = 0; i < kinds.length; i++) {
+            if (roll < cumulativeWeights[i]) {
+                kind = kinds[i];
+                break;
+            }
+        }
+
+        switch (kind) {
+            case VEHICLES:
+                return new PlannedRequest(kind, "GET", "/api/vehicles", null);
+            case VEHICLE:
+                return new PlannedRequest(kind, "GET", "/api/vehicles/" + pickLevel(), null);
+            case SIGNATURE:
+                return new PlannedRequest(kind, "GET", "/api/signatures/" + pickSignature(), null);
+            case ORDER:
+                return new PlannedRequest(kind, "POST", "/api/order", customOrderBody());
+            case SIGNATURE_ORDER:
+                return new PlannedRequest(kind, "POST", "/api/order/signature", signatureOrderBody());
+            default:
+                throw new IllegalStateException("unexpected request kind: " + kind);
+        }
+    }
+
+    public RequestKind[] getKinds() {
+        return kinds.clone();
+    }
+
+    private int pickLevel() {
+        int roll = random.nextInt(100);
+        int running = 0;
+        for (int i = 0; i < LEVEL_WEIGHTS.length; i++) {
+            running += LEVEL_WEIGHTS[i];
+            if (roll < running) {
+                return i + 1;
+            }
+        }
+        return 1;
+    }
+
+    private String pickSignature() {
+        return SIGNATURES[random.nextInt(SIGNATURES.length)];
+    }
+
+    // same shape handleOrderSubmission() builds in script.js
+    private String customOrderBody() {
+        int level = pickLevel();
+        String[] trims = TRIMS[level - 1];
+        String[] colors = COLORS[level - 1];
+
+        List<String> options = new ArrayList<>();
+        maybeAdd(options, "enhanced-autopilot", 35);
+        maybeAdd(options, "full-self-driving", 20);
+        maybeAdd(options, "custom-paint", 10);
+        if (level >= 2) {
+            maybeAdd(options, "massage-seats", 25);
+        }
+        if (level == 3) {
+            maybeAdd(options, "track-package", 30);
+        }
+
+        return "{\"level\":" + level +
+                ",\"trim\":\"" + trims[random.nextInt(trims.length)] + "\"" +
+                ",\"color\":\"" + colors[random.nextInt(colors.length)] + "\"" +
+                ",\"options\":" + toJsonArray(options) +
+                ",\"servicePackages\":[]" +
+                ",\"accessories\":" + toJsonArray(pickAccessories()) + "}";
+    }
+
+    // same shape handleSignatureOrderSubmission() builds in script.js
+    private String signatureOrderBody() {
+        return "{\"signatureName\":\"" + pickSignature() + "\"" +
+                ",\"additionalOptions\":[]" +
+                ",\"accessories\":" + toJsonArray(pickAccessories()) + "}";
+    }
+
+    private List<String> pickAccessories() {
+        List<String> accessories = new ArrayList<>();
+        maybeAdd(accessories, "floor-mats", 50);
+        maybeAdd(accessories, "home-charger", 60);
+        maybeAdd(accessories, "paint-protection", 20);
+        maybeAdd(accessories, "ceramic-coating", 15);
+        return accessories;
+    }
+
+    private void maybeAdd(List<String> target, String id, int percent) {
+        if (random.nextInt(100) < percent) {
+            target.add(id);
+        }
+    }
+
+    private static String toJsonArray(List<String> ids) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"').append(ids.get(i)).append('"');
+        }
+        return json.append(']').toString();
+    }
+}
@@ -0,0 +1,143 @@
+package com.raion.repository;
+
+import com.raion.models.Level1;
+import com.raion.models.Level2;
+import com.raion.models.Level3;
+import com.raion.models.Level4;
+import com.raion.models.Order;
+import com.raion.models.TrimLevel;
+import com.raion.models.Vehicle;
+import com.raion.models.VehicleColor;
+import com.raion.models.signatures.ExecutiveSignature;
+import com.raion.models.signatures.TrackBeastSignature;
+import com.raion.models.signatures.UrbanCommuterSignature;
+import com.raion.repository.OrderIndex.Entry;
+import com.raion.repository.OrderIndex.Page;
+import com.raion.repository.OrderIndex.Query;
+import com.raion.services.FeatureCatalog;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * paging through a query by its cursors lists exactly the orders a full scan finds, newest
+ * first (the check OrderQueryBenchmark runs)
+ */
+class OrderIndexTest {
+
+    private static final int ORDERS = 2000;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Test
+    void pagesMatchTheFullScanForEveryKindOfQuery() throws IOException {
+        OrderIndex index = new OrderIndex();
+        List<Entry> orders = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < ORDERS; i++) {
+            // several orders a second, so the cursors have to break ties
+            Order order = new Order("Q" + i, vehicleFor(random), START.plusSeconds(random.nextInt(ORDERS / 4)));
+            StoredOrder stored = StoredOrder.of(order);
+            index.add(stored);
+            orders.add(entryOf(order, stored));
+        }
+        assertEquals(ORDERS, index.size());
+
+        long day = 86_400;
+        long start = START.toEpochSecond(ZoneOffset.UTC);
+        List<Query> queries = List.of(
+                Query.ALL,
+                new Query(start + 100, start + 300, 0, null, null, null, 0, Long.MAX_VALUE),
+                new Query(Long.MIN_VALUE, Long.MAX_VALUE, 2, TrimLevel.OFFROAD, null, null, 0, Long.MAX_VALUE),
+                new Query(Long.MIN_VALUE, Long.MAX_VALUE, 0, null, VehicleColor.SILVER, "none", 0, Long.MAX_VALUE),
+                new Query(start, start + day, 0, null, null, "executive", 0, Long.MAX_VALUE),
+                new Query(Long.MIN_VALUE, Long.MAX_VALUE, 0, null, null, null, 6_000_000, 9_000_000),
+                new Query(start + 50, start + 400, 1, null, VehicleColor.BLUE, "none", 4_000_000, 8_000_000));
+
+        for (Query query : queries) {
+            List<Entry> expected = fullScan(orders, query);
+            assertFalse(expected.isEmpty(), "nothing matches " + query);
+            for (int limit : new int[]{1, 7, 100, ORDERS + 1}) {
+                assertEquals(expected, pageThrough(index, query, limit), query + " in pages of " + limit);
+            }
+        }
+    }
+
+    @Test
+    void malformedCursorsAndLimitsAreRejected() {
+        OrderIndex index = new OrderIndex();
+        assertThrows(IllegalArgumentException.class, () -> index.query(Query.ALL, "not a cursor", 10));
+        assertThrows(IllegalArgumentException.class, () -> index.query(Query.ALL, null, 0));
+        assertThrows(IllegalArgumentException.class, () -> index.query(new Query(Long.MIN_VALUE, Long.MAX_VALUE, 0,
+                null, null, "no-such-signature", 0, Long.MAX_VALUE), null, 10));
+        assertNull(index.query(Query.ALL, null, 10).nextCursor());
+    }
+
+    private static List<Entry> pageThrough(OrderIndex index, Query query, int limit) {
+        List<Entry> listed = new ArrayList<>();
+        String cursor = null;
+        do {
+            Page page = index.query(query, cursor, limit);
+            listed.addAll(page.orders());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return listed;
+    }
+
+    // every matching order, newest first (later orders first among orders of the same second)
+    private static List<Entry> fullScan(List<Entry> orders, Query query) {
+        List<Entry> matches = new ArrayList<>();
+        for (int i = orders.size() - 1; i >= 0; i--) {
+            Entry entry = orders.get(i);
+            long date = entry.orderDate().toEpochSecond(ZoneOffset.UTC);
+            if (date >= query.fromEpochSecond() && date < query.toEpochSecond()
+                    && entry.totalCents() >= query.minTotalCents() && entry.totalCents() <= query.maxTotalCents()
+                    && (query.level() == 0 || entry.level() == query.level())
+                    && (query.trim() == null || entry.trim() == query.trim())
+                    && (query.color() == null || entry.color() == query.color())
+                    && (query.signature() == null || query.signature().equals(
+                            entry.signature() == null ? "none" : entry.signature()))) {
+                matches.add(entry);
+            }
+        }
+        // stable, so orders of the same second stay latest first
+        matches.sort(Comparator.comparing(Entry::orderDate).reversed());
+        return matches;
+    }
+
+    private static Entry entryOf(Order order, StoredOrder stored) {
+        Vehicle vehicle = order.getVehicle();
+        int signature = FeatureCatalog.signatureCode(vehicle);
+        return new Entry(order.getOrderId(), order.getOrderDate(), vehicle.getLevel(), vehicle.getTrimLevel(),
+                vehicle.getColor(), signature == 0 ? null : FeatureCatalog.signatureId(signature), stored.totalCents());
+    }
+
+    // a random vehicle, drawing again when the level doesn't offer the trim or color
+    private static Vehicle vehicleFor(Random random) {
+        TrimLevel trim = TrimLevel.values()[random.nextInt(TrimLevel.values().length)];
+        VehicleColor color = VehicleColor.values()[random.nextInt(VehicleColor.values().length)];
+        try {
+            return switch (random.nextInt(7)) {
+                case 0 -> new Level1(trim, color);
+                case 1 -> new Level2(trim, color);
+                case 2 -> new Level3(trim, color);
+                case 3 -> new Level4(color);
+                case 4 -> new TrackBeastSignature();
+                case 5 -> new UrbanCommuterSignature();
+                default -> new ExecutiveSignature();
+            };
+        } catch (IllegalArgumentException e) {
+            return vehicleFor(random);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.raion.repository;
+
+import com.raion.models.Accessory;
+import com.raion.models.Level2;
+import com.raion.models.Option;
+import com.raion.models.Order;
+import com.raion.models.TrimLevel;
+import com.raion.models.VehicleColor;
+import com.raion.models.signatures.ExecutiveSignature;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * every backend reads back what it stored, the persistent ones after a restart too (what
+ * OrderRepositoryBenchmark times), and the order log opens past the damage a crash or a
+ * bad disk leaves
+ */
+class OrderRepositoryTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2025, 3, 1, 9, 0);
+    private static final int ORDERS = 50;
+
+    @TempDir
+    Path folder;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"memory", "log", "jdbc"})
+    void storedOrdersReadBack(String type) throws Exception {
+        List<Order> orders = new ArrayList<>();
+        try (OrderRepository repository = open(type)) {
+            for (int i = 0; i < ORDERS; i++) {
+                Order order = orderFor(i);
+                repository.save(order).join();
+                orders.add(order);
+            }
+            // saving an id again replaces its order
+            Order replacement = new Order(orders.get(0).getOrderId(), new ExecutiveSignature(), DATE);
+            repository.save(replacement).join();
+            orders.set(0, replacement);
+            repository.flush();
+
+            assertEquals(ORDERS, repository.count());
+            assertSameOrders(orders, repository);
+            assertNull(repository.findById("no-such-order"));
+        }
+
+        if (!type.equals("memory")) {
+            try (OrderRepository reopened = open(type)) {
+                assertEquals(ORDERS, reopened.count());
+                assertSameOrders(orders, reopened);
+                List<String> listed = new ArrayList<>();
+                reopened.forEach(stored -> listed.add(stored.orderId()));
+                assertEquals(ORDERS, listed.size());
+            }
+        }
+    }
+
+    @Test
+    void jdbcStatsNameTheDatabaseOnly() throws Exception {
+        assertEquals("jdbc:postgresql:orders", JdbcOrderRepository.describe("jdbc:postgresql://app:secret@db:5432/orders?ssl=true"));
+        assertEquals("jdbc:h2:orders", JdbcOrderRepository.describe("jdbc:h2:file:/var/raion/orders;USER=sa;PASSWORD=secret"));
+        assertEquals("jdbc:oracle:ORCL", JdbcOrderRepository.describe("jdbc:oracle:thin:scott/tiger@db:1521:ORCL"));
+        assertEquals("jdbc:mysql", JdbcOrderRepository.describe("jdbc:mysql://db:3306/"));
+        assertEquals("jdbc", JdbcOrderRepository.describe("postgres://app:secret@db/orders"));
+
+        try (OrderRepository repository = open("jdbc")) {
+            Map<String, Object> stats = repository.getStats();
+            assertFalse(stats.containsKey("url"));
+            assertFalse(stats.get("database").toString().contains(folder.toString()));
+        }
+    }
+
+    @Test
+    void damagedRecordInsideTheLogIsSkipped() throws Exception {
+        long[] records = writeLog();
+        // flip a byte of the third order's payload
+        byte[] log = Files.readAllBytes(logFile());
+        log[(int) records[2] + Integer.BYTES + 3] ^= 0x55;
+        Files.write(logFile(), log);
+
+        try (FileLogOrderRepository reopened = openLog()) {
+            assertEquals(ORDERS - 1, reopened.count());
+            assertNull(reopened.findById(orderFor(2).getOrderId()));
+            assertNotNull(reopened.findById(orderFor(3).getOrderId()));
+            // the damaged record stays where it is
+            assertEquals(log.length, Files.size(logFile()));
+        }
+    }
+
+    @Test
+    void tornTailIsTruncated() throws Exception {
+        long[] records = writeLog();
+        long last = records[ORDERS - 1];
+        byte[] log = Files.readAllBytes(logFile());
+        Files.write(logFile(), Arrays.copyOf(log, (int) (last + (log.length - last) / 2)));
+
+        try (FileLogOrderRepository reopened = openLog()) {
+            assertEquals(ORDERS - 1, reopened.count());
+            assertEquals(last, Files.size(logFile()));
+            // the next save goes where the torn record was
+            reopened.save(orderFor(ORDERS - 1)).join();
+            reopened.flush();
+        }
+        try (FileLogOrderRepository reopened = openLog()) {
+            assertEquals(ORDERS, reopened.count());
+            assertEquals(log.length, Files.size(logFile()));
+        }
+    }
+
+    @Test
+    void unreadableRemainderIsMovedAside() throws Exception {
+        long[] records = writeLog();
+        long bad = records[ORDERS - 10];
+        byte[] log = Files.readAllBytes(logFile());
+        ByteBuffer.wrap(log).putInt((int) bad, Integer.MAX_VALUE);
+        Files.write(logFile(), log);
+
+        try (FileLogOrderRepository reopened = openLog()) {
+            assertEquals(ORDERS - 10, reopened.count());
+            assertEquals(bad, Files.size(logFile()));
+        }
+        Path aside = folder.resolve(FileLogOrderRepository.LOG_FILE + "." + bad + ".damaged");
+        assertTrue(Files.exists(aside));
+        assertArrayEquals(Arrays.copyOfRange(log, (int) bad, log.length), Files.readAllBytes(aside));
+    }
+
+    @Test
+    void zerosAfterTheLastRecordAreDropped() throws Exception {
+        writeLog();
+        long size = Files.size(logFile());
+        Files.write(logFile(), new byte[4096], StandardOpenOption.APPEND);
+
+        try (FileLogOrderRepository reopened = openLog()) {
+            assertEquals(ORDERS, reopened.count());
+            assertEquals(size, Files.size(logFile()));
+        }
+        try (Stream<Path> files = Files.list(folder)) {
+            assertFalse(files.anyMatch(path -> path.toString().endsWith(".damaged")));
+        }
+    }
+
+    private OrderRepository open(String type) throws IOException {
+        return switch (type) {
+            case "memory" -> new MemoryOrderRepository();
+            case "log" -> openLog();
+            default -> new JdbcOrderRepository(OrderRepositoryConfiguration.embeddedUrl(folder), 16, 1000);
+        };
+    }
+
+    private FileLogOrderRepository openLog() throws IOException {
+        return new FileLogOrderRepository(folder, false, 16, 1000);
+    }
+
+    private Path logFile() {
+        return folder.resolve(FileLogOrderRepository.LOG_FILE);
+    }
+
+    // a log of ORDERS orders; returns where each record starts
+    private long[] writeLog() throws Exception {
+        try (FileLogOrderRepository log = openLog()) {
+            for (int i = 0; i < ORDERS; i++) {
+                log.save(orderFor(i)).join();
+            }
+            log.flush();
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(logFile()));
+        long[] records = new long[ORDERS];
+        for (int i = 0; i < ORDERS; i++) {
+            records[i] = bytes.position();
+            // length, payload, crc
+            bytes.position(bytes.position() + Integer.BYTES + bytes.getInt() + Integer.BYTES);
+        }
+        assertFalse(bytes.hasRemaining());
+        return records;
+    }
+
+    private static Order orderFor(int i) {
+        Order order = new Order("R" + i, new Level2(TrimLevel.OFFROAD, VehicleColor.SILVER), DATE.plusSeconds(i));
+        if (i % 2 == 0) {
+            order.addFeature(Option.createEnhancedAutopilot());
+            order.addFeature(Accessory.createHomeCharger());
+        }
+        return order;
+    }
+
+    private static void assertSameOrders(List<Order> expected, OrderRepository repository) throws IOException {
+        for (Order order : expected) {
+            Order stored = repository.findById(order.getOrderId());
+            assertNotNull(stored, order.getOrderId());
+            assertEquals(order.getOrderDate(), stored.getOrderDate());
+            assertEquals(order.getVehicle().getClass(), stored.getVehicle().getClass());
+            assertEquals(order.getFeatures(), stored.getFeatures());
+            assertEquals(Math.round(order.calculateTotal() * 100), Math.round(stored.calculateTotal() * 100));
+        }
+    }
+}
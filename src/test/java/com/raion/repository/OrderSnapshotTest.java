@@ -0,0 +1,143 @@
+package com.raion.repository;
+
+import com.raion.models.Level1;
+import com.raion.models.Level3;
+import com.raion.models.Order;
+import com.raion.models.TrimLevel;
+import com.raion.models.VehicleColor;
+import com.raion.models.signatures.TrackBeastSignature;
+import com.raion.repository.OrderIndex.Entry;
+import com.raion.repository.OrderIndex.Page;
+import com.raion.repository.OrderIndex.Query;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * restarting from a snapshot and the log after it gives the repository a full replay of
+ * the log gives (the check OrderRestartBenchmark runs)
+ */
+class OrderSnapshotTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2026, 1, 1, 0, 0);
+    private static final int BEFORE = 500;
+    private static final int AFTER = 100;
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void snapshotRestartListsWhatAFullReplayLists() throws Exception {
+        FileLogOrderRepository log = new FileLogOrderRepository(folder, false, 64, 1000);
+        try (IndexedOrderRepository repository = new IndexedOrderRepository(log)) {
+            for (int i = 0; i < BEFORE; i++) {
+                repository.save(orderFor(i, i)).join();
+            }
+            OrderSnapshot.Written written = OrderSnapshot.write(folder, log, repository);
+            assertEquals(BEFORE, written.orders());
+
+            // orders after the snapshot, some of them replacing orders in it
+            for (int i = BEFORE; i < BEFORE + AFTER; i++) {
+                repository.save(orderFor(i % 3 == 0 ? i - BEFORE : i, i)).join();
+            }
+            repository.flush();
+        }
+
+        try (IndexedOrderRepository replayed = fullReplay(); IndexedOrderRepository restarted = fromSnapshot()) {
+            assertEquals(replayed.count(), restarted.count());
+            assertEquals(replayed.getIndex().size(), restarted.getIndex().size());
+            assertEquals(listAll(replayed.getIndex()), listAll(restarted.getIndex()));
+            assertEquals(replayed.findById("S0").calculateTotal(), restarted.findById("S0").calculateTotal());
+        }
+    }
+
+    @Test
+    void snapshotOfAnotherLogIsIgnored() throws Exception {
+        FileLogOrderRepository log = new FileLogOrderRepository(folder, false, 64, 1000);
+        try (IndexedOrderRepository repository = new IndexedOrderRepository(log)) {
+            for (int i = 0; i < 10; i++) {
+                repository.save(orderFor(i, i)).join();
+            }
+            OrderSnapshot.write(folder, log, repository);
+        }
+        assertNotNull(OrderSnapshot.read(folder));
+
+        // the log is replaced by one with different records up to the snapshot's end
+        Files.delete(folder.resolve(FileLogOrderRepository.LOG_FILE));
+        try (FileLogOrderRepository other = new FileLogOrderRepository(folder, false, 64, 1000)) {
+            for (int i = 0; i < 10; i++) {
+                other.save(orderFor(i, 100 + i)).join();
+            }
+            other.flush();
+        }
+        assertNull(OrderSnapshot.read(folder));
+    }
+
+    @Test
+    void snapshotMostlyOfReplacedOrdersIsIgnored() throws Exception {
+        FileLogOrderRepository log = new FileLogOrderRepository(folder, false, 64, 1000);
+        try (IndexedOrderRepository repository = new IndexedOrderRepository(log)) {
+            for (int n = 0; n < 40; n++) {
+                repository.save(orderFor(n % 10, n)).join();
+            }
+            OrderSnapshot.write(folder, log, repository);
+            Map<String, Object> stats = repository.getIndex().getStats();
+            assertEquals(10, stats.get("orders"));
+            assertEquals(40, stats.get("rows"));
+            assertEquals(30, stats.get("deadRows"));
+        }
+        assertNull(OrderSnapshot.read(folder));
+
+        // the full replay takes only each order's latest record
+        try (IndexedOrderRepository replayed = fullReplay()) {
+            assertEquals(10, replayed.getIndex().size());
+            assertEquals(0, replayed.getIndex().deadRows());
+        }
+    }
+
+    private IndexedOrderRepository fullReplay() throws IOException {
+        FileLogOrderRepository log = new FileLogOrderRepository(folder, false, 64, 1000);
+        IndexedOrderRepository repository = new IndexedOrderRepository(log);
+        repository.rebuild();
+        return repository;
+    }
+
+    private IndexedOrderRepository fromSnapshot() throws IOException {
+        OrderSnapshot snapshot = OrderSnapshot.read(folder);
+        assertNotNull(snapshot, "the snapshot could not be read");
+        FileLogOrderRepository log = new FileLogOrderRepository(folder, false, 64, 1000, snapshot);
+        IndexedOrderRepository repository = new IndexedOrderRepository(log, snapshot.index());
+        repository.rebuild(action -> log.forEach(snapshot.logEnd(), action));
+        return repository;
+    }
+
+    private static List<Entry> listAll(OrderIndex index) {
+        List<Entry> listed = new ArrayList<>();
+        String cursor = null;
+        do {
+            Page page = index.query(Query.ALL, cursor, 64);
+            listed.addAll(page.orders());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return listed;
+    }
+
+    private static Order orderFor(int id, int n) {
+        return new Order("S" + id, switch (n % 3) {
+            case 0 -> new Level1(TrimLevel.PREMIUM, VehicleColor.BLUE);
+            case 1 -> new Level3(TrimLevel.PRO, VehicleColor.GREEN);
+            default -> new TrackBeastSignature();
+        }, DATE.plusSeconds(n * 3L));
+    }
+}
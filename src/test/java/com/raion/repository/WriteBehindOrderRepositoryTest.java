@@ -0,0 +1,151 @@
+package com.raion.repository;
+
+import com.raion.models.Order;
+import com.raion.models.signatures.ExecutiveSignature;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * every save completes - stored, or failed once the writer is gone - and flush returns
+ * rather than waiting for a writer that died
+ */
+class WriteBehindOrderRepositoryTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2025, 3, 1, 9, 0);
+
+    @Test
+    void savesAfterCloseFail() {
+        MapRepository repository = new MapRepository(4, 8);
+        repository.save(order("before")).join();
+        repository.close();
+
+        CompletableFuture<Void> late = repository.save(order("after"));
+        ExecutionException failure = assertThrows(ExecutionException.class, late::get);
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    void savesRacingCloseAllComplete() {
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            for (int round = 0; round < 20; round++) {
+                MapRepository repository = new MapRepository(2, 4);
+                List<CompletableFuture<Void>> saves = new ArrayList<>();
+                CountDownLatch go = new CountDownLatch(1);
+                List<Thread> savers = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    int saver = t;
+                    Thread thread = new Thread(() -> {
+                        try {
+                            go.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        for (int i = 0; i < 50; i++) {
+                            CompletableFuture<Void> saved = repository.save(order(saver + "-" + i));
+                            synchronized (saves) {
+                                saves.add(saved);
+                            }
+                        }
+                    });
+                    thread.start();
+                    savers.add(thread);
+                }
+                go.countDown();
+                repository.close();
+                for (Thread thread : savers) {
+                    thread.join();
+                }
+
+                int stored = 0;
+                for (CompletableFuture<Void> saved : saves) {
+                    try {
+                        saved.get(10, TimeUnit.SECONDS);
+                        stored++;
+                    } catch (ExecutionException e) {
+                        assertInstanceOf(IllegalStateException.class, e.getCause());
+                    }
+                }
+                assertEquals(stored, repository.count());
+            }
+        });
+    }
+
+    @Test
+    void flushDoesNotWaitForADeadWriter() {
+        MapRepository repository = new MapRepository(4, 8);
+        repository.dying = true;
+        CompletableFuture<Void> lost = repository.save(order("lost"));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            assertThrows(IllegalStateException.class, repository::flush);
+            assertThrows(ExecutionException.class, lost::get);
+            assertThrows(ExecutionException.class, () -> repository.save(order("later")).get());
+            assertNull(repository.findById("later"));
+            repository.close();
+        });
+    }
+
+    private static Order order(String id) {
+        return new Order(id, new ExecutiveSignature(), DATE);
+    }
+
+    // stores in a map, or dies with an error on the first batch once dying is set
+    private static final class MapRepository extends WriteBehindOrderRepository {
+
+        private final Map<String, byte[]> stored = new ConcurrentHashMap<>();
+        volatile boolean dying;
+
+        MapRepository(int batchSize, int queueCapacity) {
+            super("map", batchSize, queueCapacity);
+            start();
+        }
+
+        @Override
+        protected void writeBatch(List<StoredOrder> orders) {
+            if (dying) {
+                throw new AssertionError("writer died");
+            }
+            for (StoredOrder order : orders) {
+                stored.put(order.orderId(), order.data());
+            }
+        }
+
+        @Override
+        protected byte[] read(String orderId) {
+            return stored.get(orderId);
+        }
+
+        @Override
+        protected long storedCount() {
+            return stored.size();
+        }
+
+        @Override
+        protected void closeStorage() {
+        }
+
+        @Override
+        public void forEach(Consumer<StoredOrder> action) throws IOException {
+            throw new IOException("not listed");
+        }
+    }
+}
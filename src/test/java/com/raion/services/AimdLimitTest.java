@@ -0,0 +1,77 @@
+package com.raion.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * the admission limit refuses past its limit, grows while responses are fast and the limit
+ * is in use, and backs off when they are slow
+ */
+class AimdLimitTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void requestsOverTheLimitAreRefused() {
+        AimdLimit limit = new AimdLimit("order", 4, 1, 100, 50);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+        assertFalse(limit.tryAcquire());
+        assertEquals(1, limit.getRejectedCount());
+        assertEquals(4, limit.getInFlight());
+
+        limit.release(FAST);
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    void limitGrowsOnlyWhileItIsInUse() {
+        AimdLimit limit = new AimdLimit("read", 10, 1, 100, 50);
+        // one request at a time doesn't use the limit - it stays put
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(FAST);
+        }
+        assertEquals(10, limit.getLimit());
+
+        // at the limit, the releases made while half of it is in use add about a half per round
+        for (int round = 0; round < 20; round++) {
+            int slots = limit.getLimit();
+            for (int i = 0; i < slots; i++) {
+                assertTrue(limit.tryAcquire());
+            }
+            for (int i = 0; i < slots; i++) {
+                limit.release(FAST);
+            }
+        }
+        assertTrue(limit.getLimit() >= 15, "limit " + limit.getLimit());
+        assertTrue(limit.getLimit() <= 100);
+    }
+
+    @Test
+    void slowResponsesBackOffToTheMinimum() throws InterruptedException {
+        AimdLimit limit = new AimdLimit("order", 50, 5, 100, 1);
+        for (int i = 0; i < 200; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(SLOW);
+            // at most one decrease per latency target
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        assertEquals(5, limit.getLimit());
+    }
+
+    @Test
+    void invalidBoundsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new AimdLimit("x", 1, 0, 10, 50));
+        assertThrows(IllegalArgumentException.class, () -> new AimdLimit("x", 20, 1, 10, 50));
+        assertThrows(IllegalArgumentException.class, () -> new AimdLimit("x", 5, 1, 10, 0));
+    }
+}
@@ -0,0 +1,84 @@
+package com.raion.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raion.controllers.OrderController;
+import com.raion.dto.BatchOrderRequest;
+import com.raion.dto.BatchOrderResponse;
+import com.raion.dto.BatchOrderResponse.Result;
+import com.raion.repository.MemoryOrderRepository;
+import com.raion.repository.OrderRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * a batch answers each order the way its single endpoint would, and only the orders that
+ * pass get a receipt and a stored record (what BatchOrderBenchmark sends)
+ */
+class BatchOrderProcessorTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final OrderRepository repository = new MemoryOrderRepository();
+    private final BatchOrderProcessor processor = new BatchOrderProcessor(5, repository);
+
+    @Test
+    void eachOrderGetsItsOwnResult() throws IOException {
+        BatchOrderRequest request = MAPPER.readValue("{\"orders\":["
+                + "{\"level\":2,\"trim\":\"Premium\",\"color\":\"white\",\"options\":[\"fsd\"]},"
+                + "{\"level\":9,\"trim\":\"Standard\",\"color\":\"white\"},"
+                + "{\"level\":1,\"trim\":5,\"color\":\"white\"},"
+                + "\"not an order\","
+                + "{\"signatureName\":\"trail-titan\",\"accessories\":[\"floor-mats\"]}"
+                + "]}", BatchOrderRequest.class);
+        long receiptsBefore = ReceiptStore.count();
+
+        BatchOrderResponse response = processor.process(request);
+
+        assertEquals(5, response.total());
+        assertEquals(2, response.succeeded());
+        assertEquals(3, response.failed());
+        List<Result> results = response.results();
+        assertEquals(List.of(201, 400, 500, 400, 201), results.stream().map(Result::status).toList());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).index());
+        }
+        assertEquals("invalid level. must be 1, 2, 3, or 4", results.get(1).error());
+        assertEquals("failed to process order", results.get(2).error());
+        assertEquals("each order must be a json object", results.get(3).error());
+        assertNull(results.get(1).order());
+
+        // only the two placed orders are stored and have receipts
+        assertEquals(2, repository.count());
+        assertEquals(2, ReceiptStore.count() - receiptsBefore);
+        for (Result placed : List.of(results.get(0), results.get(4))) {
+            String orderId = placed.order().order().getOrderId();
+            assertNotNull(repository.findById(orderId), orderId);
+            assertNotNull(ReceiptGenerator.readReceipt(orderId), orderId);
+            assertNotNull(placed.order().receiptFile());
+        }
+        assertEquals("Trail Titan", results.get(4).order().signatureName());
+    }
+
+    @Test
+    void emptyOrOversizedBatchesGet400() throws IOException {
+        OrderController controller = new OrderController(new IdempotencyCache(60, 1000), processor,
+                new OrderPipeline(false, 1, 1, 2, repository), repository);
+        String order = "{\"signatureName\":\"executive\"}";
+        for (String body : List.of("{}", "{\"orders\":null}", "{\"orders\":{}}", "{\"orders\":[]}",
+                "{\"orders\":[" + String.join(",", order, order, order, order, order, order) + "]}")) {
+            ResponseEntity<?> response = controller.placeBatchOrder(null, MAPPER.readValue(body, BatchOrderRequest.class));
+            assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode(), body);
+            assertNotNull(((Map<?, ?>) response.getBody()).get("error"), body);
+        }
+        assertEquals(0, repository.count());
+    }
+}
@@ -0,0 +1,90 @@
+package com.raion.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * a stampede on a cold key builds its response once (what CatalogStampedeBenchmark
+ * measures), and a failed build isn't kept
+ */
+class CatalogCacheTest {
+
+    private static final int THREADS = 16;
+
+    @Test
+    void concurrentRequestsForAColdKeyShareOneComputation() throws InterruptedException {
+        CatalogCache cache = new CatalogCache(new ObjectMapper(), true, 300);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        byte[][] bodies = new byte[THREADS][];
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int index = t;
+            Thread thread = new Thread(() -> bodies[index] = cache.respond("vehicle:2", () -> {
+                loads.incrementAndGet();
+                awaitQuietly(release);
+                return Map.of("level", 2);
+            }).getBody());
+            thread.start();
+            threads.add(thread);
+        }
+        // let every thread reach the cache before the computation finishes
+        while (loads.get() == 0) {
+            Thread.onSpinWait();
+        }
+        Thread.sleep(100);
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, loads.get());
+        for (byte[] body : bodies) {
+            assertSame(bodies[0], body);
+        }
+        assertArrayEquals("{\"level\":2}".getBytes(), bodies[0]);
+        // later requests are hits
+        assertSame(bodies[0], cache.respond("vehicle:2", () -> Map.of("level", -1)).getBody());
+        assertEquals(1L, cache.getStats().get("computed"));
+    }
+
+    @Test
+    void failedComputationIsNotKept() {
+        CatalogCache cache = new CatalogCache(new ObjectMapper(), true, 300);
+        assertThrows(IllegalStateException.class, () -> cache.respond("signature:x", () -> {
+            throw new IllegalStateException("catalog unavailable");
+        }));
+        assertArrayEquals("\"ok\"".getBytes(), cache.respond("signature:x", () -> "ok").getBody());
+    }
+
+    @Test
+    void zeroTtlKeepsNothing() {
+        CatalogCache cache = new CatalogCache(new ObjectMapper(), true, 0);
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            cache.respond("vehicles", () -> loads.incrementAndGet());
+        }
+        assertEquals(3, loads.get());
+        assertEquals(0, cache.getStats().get("entries"));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.raion.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raion.models.*;
+import com.raion.models.signatures.ExecutiveSignature;
+import com.raion.models.signatures.TrackBeastSignature;
+import com.raion.models.signatures.TrailTitanSignature;
+import com.raion.models.signatures.UrbanCommuterSignature;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * the compiled layout and the signature templates must give exactly the bytes
+ * generateReceipt and the response builder give (the check ReceiptRenderBenchmark runs
+ * before measuring)
+ */
+class CompiledReceiptTest {
+
+    private static final int CHECKS = 2000;
+
+    @Test
+    void compiledReceiptMatchesGenerateReceiptForEveryVehicle() {
+        Random random = new Random(42);
+        int checked = 0;
+        for (int i = 0; i < CHECKS; i++) {
+            Vehicle vehicle = vehicleFor(i);
+            if (vehicle == null) {
+                continue;
+            }
+
+            LocalDateTime date = LocalDateTime.of(1990 + random.nextInt(60), 1 + random.nextInt(12), 1, 0, 0)
+                    .plusDays(random.nextInt(28)).plusSeconds(random.nextInt(86_400));
+            Order order = new Order(vehicle, date);
+            for (int code = 1; FeatureCatalog.createFeature(code) != null; code++) {
+                Feature feature = FeatureCatalog.createFeature(code);
+                if (random.nextInt(3) == 0 && feature.isEligibleFor(vehicle.getLevel())) {
+                    order.addFeature(feature);
+                }
+            }
+
+            byte[] expected = ReceiptGenerator.generateReceipt(order).getBytes(StandardCharsets.UTF_8);
+            assertArrayEquals(expected, CompiledReceipt.render(order), () -> "compiled receipt differs:\n"
+                    + new String(expected, StandardCharsets.UTF_8));
+            checked++;
+        }
+        assertTrue(checked > 0, "no vehicles to check");
+    }
+
+    @Test
+    void signatureTemplatesMatchTheRenderedReceiptAndResponse() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        for (Vehicle signature : List.of(new UrbanCommuterSignature(), new TrailTitanSignature(),
+                new TrackBeastSignature(), new ExecutiveSignature())) {
+            Order order = new Order(signature);
+
+            assertArrayEquals(ReceiptGenerator.generateReceipt(order).getBytes(StandardCharsets.UTF_8),
+                    SignatureTemplates.renderReceipt(order), signature.getModelName());
+
+            String signatureName = FeatureCatalog.signatureId(FeatureCatalog.signatureCode(signature));
+            byte[] templated = SignatureTemplates.renderResponse(order, "receipts/check.txt");
+            assertNotNull(templated, signature.getModelName());
+            assertEquals(objectMapper.readTree(objectMapper.writeValueAsBytes(OrderResponseBuilder.buildOrderResponse(
+                            order, "receipts/check.txt", true, signatureName))),
+                    objectMapper.readTree(templated), signature.getModelName());
+        }
+    }
+
+    @Test
+    void signatureWithExtrasIsNotTemplated() {
+        Order order = new Order(new TrailTitanSignature());
+        order.addFeature(Accessory.createHomeCharger());
+
+        assertNull(SignatureTemplates.renderReceipt(order));
+        assertNull(SignatureTemplates.renderResponse(order, "receipts/check.txt"));
+    }
+
+    // cycles through every level x trim x color, null where the combination isn't offered
+    static Vehicle vehicleFor(int i) {
+        TrimLevel[] trims = TrimLevel.values();
+        VehicleColor[] colors = VehicleColor.values();
+        int level = 1 + i % 4;
+        TrimLevel trim = trims[i / 4 % trims.length];
+        VehicleColor color = colors[i / 4 / trims.length % colors.length];
+        try {
+            return switch (level) {
+                case 1 -> new Level1(trim, color);
+                case 2 -> new Level2(trim, color);
+                case 3 -> new Level3(trim, color);
+                default -> new Level4(color);
+            };
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.raion.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * a key runs its order once: retries wait for or replay the first response, a different
+ * request under the same key gets 422, and server errors leave the key free to retry
+ */
+class IdempotencyCacheTest {
+
+    @Test
+    void retriesWaitForTheFirstResponseInsteadOfRunningAgain() {
+        IdempotencyCache cache = new IdempotencyCache(60, 100);
+        Action action = new Action();
+
+        CompletableFuture<ResponseEntity<?>> first = cache.execute("k1", "order-a", action);
+        CompletableFuture<ResponseEntity<?>> waiting = cache.execute("k1", "order-a", action);
+        assertEquals(1, action.calls.get());
+        assertFalse(waiting.isDone());
+
+        action.pending.complete(ResponseEntity.status(HttpStatus.CREATED).body("placed"));
+        assertEquals(HttpStatus.CREATED, first.join().getStatusCode());
+        assertNull(first.join().getHeaders().getFirst(IdempotencyCache.REPLAYED_HEADER));
+        assertReplayed(waiting.join());
+        assertReplayed(cache.execute("k1", "order-a", action).join());
+        assertEquals(1, action.calls.get());
+    }
+
+    @Test
+    void keyReusedForADifferentRequestIsRejected() {
+        IdempotencyCache cache = new IdempotencyCache(60, 100);
+        Action action = new Action();
+        cache.execute("k1", "order-a", action);
+        action.pending.complete(ResponseEntity.status(HttpStatus.CREATED).body("placed"));
+
+        ResponseEntity<?> reused = cache.execute("k1", "order-b", action).join();
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, reused.getStatusCode());
+        assertEquals(1, action.calls.get());
+    }
+
+    @Test
+    void serverErrorsGoToWaitersButAreNotKept() {
+        IdempotencyCache cache = new IdempotencyCache(60, 100);
+        Action action = new Action();
+        cache.execute("k1", "order-a", action);
+        CompletableFuture<ResponseEntity<?>> waiting = cache.execute("k1", "order-a", action);
+
+        action.pending.complete(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, waiting.join().getStatusCode());
+        assertEquals(0, cache.size());
+
+        // the next retry runs the order again
+        action.pending = new CompletableFuture<>();
+        CompletableFuture<ResponseEntity<?>> retry = cache.execute("k1", "order-a", action);
+        assertEquals(2, action.calls.get());
+        action.pending.complete(ResponseEntity.status(HttpStatus.CREATED).body("placed"));
+        assertEquals(HttpStatus.CREATED, retry.join().getStatusCode());
+    }
+
+    @Test
+    void actionThatThrowsReleasesItsWaiters() {
+        IdempotencyCache cache = new IdempotencyCache(60, 100);
+        AtomicInteger calls = new AtomicInteger();
+        AtomicReference<CompletableFuture<ResponseEntity<?>>> waiting = new AtomicReference<>();
+        Supplier<CompletableFuture<ResponseEntity<?>>> failing = () -> {
+            calls.incrementAndGet();
+            // a retry arriving while the first request is still running
+            waiting.set(cache.execute("k1", "order-a", Action::unexpected));
+            throw new StackOverflowError();
+        };
+
+        assertThrows(StackOverflowError.class, () -> cache.execute("k1", "order-a", failing));
+        CompletionException failed = assertThrows(CompletionException.class, waiting.get()::join);
+        assertTrue(failed.getCause() instanceof StackOverflowError);
+        assertEquals(0, cache.size());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void evictionKeepsKeysWhoseRequestIsStillRunning() {
+        IdempotencyCache cache = new IdempotencyCache(60, 1);
+        Action running = new Action();
+        cache.execute("running", "order-a", running);
+        for (int i = 0; i < 10; i++) {
+            Action done = new Action();
+            cache.execute("done-" + i, "order-" + i, done);
+            done.pending.complete(ResponseEntity.status(HttpStatus.CREATED).body("placed"));
+        }
+
+        // the running key is still there, so its retry joins it
+        CompletableFuture<ResponseEntity<?>> retry = cache.execute("running", "order-a", running);
+        assertEquals(1, running.calls.get());
+        running.pending.complete(ResponseEntity.status(HttpStatus.CREATED).body("placed"));
+        assertReplayed(retry.join());
+        assertTrue(cache.size() <= 2, "size " + cache.size());
+    }
+
+    @Test
+    void invalidKeysAreRefused() {
+        IdempotencyCache cache = new IdempotencyCache(60, 100);
+        assertEquals(HttpStatus.BAD_REQUEST, cache.execute(" ", "order-a", Action::unexpected).join().getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST,
+                cache.execute("k".repeat(256), "order-a", Action::unexpected).join().getStatusCode());
+        assertThrows(IllegalArgumentException.class, () -> new IdempotencyCache(0, 100));
+        assertThrows(IllegalArgumentException.class, () -> new IdempotencyCache(60, 0));
+    }
+
+    private static void assertReplayed(ResponseEntity<?> response) {
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals("placed", response.getBody());
+        assertEquals("true", response.getHeaders().getFirst(IdempotencyCache.REPLAYED_HEADER));
+    }
+
+    // an order that finishes when the test completes its future
+    private static final class Action implements Supplier<CompletableFuture<ResponseEntity<?>>> {
+
+        final AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<ResponseEntity<?>> pending = new CompletableFuture<>();
+
+        @Override
+        public CompletableFuture<ResponseEntity<?>> get() {
+            calls.incrementAndGet();
+            return pending;
+        }
+
+        static CompletableFuture<ResponseEntity<?>> unexpected() {
+            throw new AssertionError("the order ran again");
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.raion.services;
+
+import com.raion.models.*;
+import com.raion.models.signatures.ExecutiveSignature;
+import com.raion.models.signatures.TrackBeastSignature;
+import com.raion.models.signatures.UrbanCommuterSignature;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * structured orders: every catalog feature has a code, orders decode to what was encoded
+ * (version 1 orders included), and a structured order reads back as the receipt
+ * generateReceipt gives (the check StructuredReceiptBenchmark runs)
+ */
+class OrderCodecTest {
+
+    // receipts of this test are dated here, so their ids don't collide with other tests'
+    private static final LocalDate DAY = LocalDate.of(2020, 1, 2);
+
+    @Test
+    void everyFactoryFeatureHasAFrozenCatalogEntry() {
+        List<Feature> features = List.of(Option.createEnhancedAutopilot(), Option.createFullSelfDriving(),
+                Option.createMassageSeats(), Option.createMassageSeatsLevel4(), Option.createCustomPaint(),
+                Option.createTrackPackage(), ServicePackage.createBasicWarranty(),
+                ServicePackage.createExtendedWarranty8Year(), ServicePackage.createPremiumMaintenance5Year(),
+                ServicePackage.createPremiumRoadsideAssistance(), Accessory.createPremiumFloorMats(),
+                Accessory.createHomeCharger(), Accessory.createPaintProtectionFilm(), Accessory.createCeramicCoating());
+        for (Feature feature : features) {
+            int code = FeatureCatalog.featureCode(feature);
+            assertNotEquals(0, code, feature.getName());
+            Feature entry = FeatureCatalog.createFeature(code);
+            assertEquals(feature, entry);
+            assertEquals(feature.getDescription(), entry.getDescription());
+            assertEquals(feature.getCategory(), entry.getCategory());
+            assertSame(entry, FeatureCatalog.createFeature(code));
+        }
+    }
+
+    @Test
+    void decodedOrderMatchesTheEncodedOne() throws IOException {
+        for (int i = 0; i < 200; i++) {
+            Vehicle vehicle = CompiledReceiptTest.vehicleFor(i);
+            if (vehicle == null) {
+                continue;
+            }
+            Order order = new Order(vehicle, DAY.atStartOfDay().plusSeconds(i));
+            for (int code = 1; FeatureCatalog.createFeature(code) != null; code++) {
+                Feature feature = FeatureCatalog.createFeature(code);
+                if ((i + code) % 3 == 0 && feature.isEligibleFor(vehicle.getLevel())) {
+                    order.addFeature(feature);
+                }
+            }
+
+            byte[] encoded = OrderCodec.encode(order);
+            assertNotNull(encoded, vehicle.getModelName());
+            Order decoded = OrderCodec.decode(order.getOrderId(), encoded);
+            assertEquals(order.getOrderId(), decoded.getOrderId());
+            assertEquals(order.getOrderDate(), decoded.getOrderDate());
+            assertEquals(vehicle.getClass(), decoded.getVehicle().getClass());
+            assertEquals(vehicle.getTrimLevel(), decoded.getVehicle().getTrimLevel());
+            assertEquals(vehicle.getColor(), decoded.getVehicle().getColor());
+            assertEquals(order.getFeatures(), decoded.getFeatures());
+            assertEquals(order.getVehiclePrice(), decoded.getVehiclePrice());
+            assertEquals(Math.round(order.calculateTotal() * 100), Math.round(decoded.calculateTotal() * 100));
+        }
+    }
+
+    @Test
+    void versionOneOrdersStillDecode() throws IOException {
+        Order order = new Order(new Level3(TrimLevel.PRO, VehicleColor.GREEN), DAY.atTime(12, 0));
+        order.addFeature(Option.createTrackPackage());
+        order.addFeature(Accessory.createHomeCharger());
+        byte[] encoded = OrderCodec.encode(order);
+        OrderCodec.Header header = OrderCodec.readHeader(encoded);
+        byte[] codes = Arrays.copyOfRange(encoded, encoded.length - header.featureCount(), encoded.length);
+
+        // the same order as the first version wrote it, without the vehicle price
+        OrderCodec.Header version1 = new OrderCodec.Header(header.signature(), header.level(), header.trim(),
+                header.color(), header.orderEpochSecond(), -1, header.totalCents(), header.featureCount());
+        byte[] old = OrderCodec.encode(version1, codes);
+
+        assertEquals(encoded.length - Integer.BYTES, old.length);
+        assertTrue(OrderCodec.isComplete(old));
+        assertEquals(version1, OrderCodec.readHeader(old));
+        assertEquals(Math.round(order.calculateTotal() * 100),
+                Math.round(OrderCodec.decode(order.getOrderId(), old).calculateTotal() * 100));
+        assertArrayEquals(encoded, OrderCodec.encode(header, codes));
+    }
+
+    @Test
+    void orderThatNoLongerAddsUpIsRejected() {
+        Order order = new Order(new ExecutiveSignature(), DAY.atTime(13, 0));
+        byte[] encoded = OrderCodec.encode(order);
+        OrderCodec.Header header;
+        try {
+            header = OrderCodec.readHeader(encoded);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        // the stored vehicle price no longer matches the stored total
+        ByteBuffer.wrap(encoded).putInt(encoded.length - 1 - header.featureCount() - 2 * Integer.BYTES, 100_00);
+
+        assertThrows(IOException.class, () -> OrderCodec.decode(order.getOrderId(), encoded));
+    }
+
+    @Test
+    void structuredOrderReadsBackAsItsReceipt() throws IOException {
+        for (int i = 0; i < 50; i++) {
+            Vehicle vehicle = switch (i % 5) {
+                case 0 -> new Level1(TrimLevel.PREMIUM, VehicleColor.BLUE);
+                case 1 -> new Level2(TrimLevel.OFFROAD, VehicleColor.SILVER);
+                case 2 -> new TrackBeastSignature();
+                case 3 -> new UrbanCommuterSignature();
+                default -> new ExecutiveSignature();
+            };
+            Order order = new Order(vehicle, DAY.atTime(20, 0).plusSeconds(i));
+            if (i % 3 == 0) {
+                order.addFeature(Option.createEnhancedAutopilot());
+                order.addFeature(Accessory.createHomeCharger());
+            }
+            ReceiptStore.writeOrder(order.getOrderId(), OrderCodec.encode(order));
+            ReceiptRenderCache.invalidate(order.getOrderId());
+
+            byte[] expected = ReceiptGenerator.generateReceipt(order).getBytes(StandardCharsets.UTF_8);
+            assertArrayEquals(expected, ReceiptGenerator.readReceipt(order.getOrderId()), order.getOrderId());
+            // the second read comes from the render cache
+            assertArrayEquals(expected, ReceiptGenerator.readReceipt(order.getOrderId()), order.getOrderId());
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.raion.services;
+
+import com.raion.controllers.OrderStatusController;
+import com.raion.dto.OrderResponse;
+import com.raion.models.Order;
+import com.raion.models.signatures.ExecutiveSignature;
+import com.raion.repository.MemoryOrderRepository;
+import com.raion.repository.StoredOrder;
+import com.raion.services.OrderAssembler.AssembledOrder;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * accepted orders get 202 and a status url that ends in completed or failed, a full
+ * pipeline refuses with 503 and Retry-After, and only the newest statuses are kept
+ */
+class OrderPipelineTest {
+
+    private static final long WAIT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    @Test
+    void acceptedOrdersArePolledToCompletion() throws Exception {
+        BlockingRepository repository = new BlockingRepository();
+        OrderPipeline pipeline = new OrderPipeline(true, 1, 2, 3, repository);
+        OrderStatusController statusController = new OrderStatusController(pipeline);
+        try {
+            List<String> accepted = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                ResponseEntity<?> response = pipeline.accept(signatureOrder());
+                assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+                Map<?, ?> body = (Map<?, ?>) response.getBody();
+                String orderId = (String) body.get("orderId");
+                assertEquals("accepted", body.get("status"));
+                assertEquals("/api/order/" + orderId + "/status", body.get("statusUrl"));
+                assertEquals(body.get("statusUrl"), response.getHeaders().getLocation().toString());
+                accepted.add(orderId);
+                if (i == 0) {
+                    // the one worker holds the first order, the queue the next two
+                    awaitStatus(pipeline, orderId, "processing");
+                }
+            }
+
+            // queue full: refused right away, and never tracked
+            AssembledOrder overflow = signatureOrder();
+            ResponseEntity<?> refused = pipeline.accept(overflow);
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, refused.getStatusCode());
+            assertEquals("1", refused.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+            assertEquals(HttpStatus.NOT_FOUND,
+                    statusController.getOrderStatus(overflow.order().getOrderId()).getStatusCode());
+
+            repository.release.countDown();
+            for (String orderId : accepted) {
+                awaitStatus(pipeline, orderId, "completed");
+                ResponseEntity<Map<String, Object>> status = statusController.getOrderStatus(orderId);
+                assertEquals(HttpStatus.OK, status.getStatusCode());
+                OrderResponse confirmation = assertInstanceOf(OrderResponse.class, status.getBody().get("order"));
+                assertEquals(orderId, confirmation.order().getOrderId());
+                assertNotNull(confirmation.receiptFile());
+                assertNotNull(repository.findById(orderId));
+            }
+        } finally {
+            repository.release.countDown();
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void failedOrdersReportTheirError() throws Exception {
+        BlockingRepository repository = new BlockingRepository();
+        repository.release.countDown();
+        repository.failing = true;
+        OrderPipeline pipeline = new OrderPipeline(true, 1, 2, 3, repository);
+        try {
+            String orderId = (String) ((Map<?, ?>) pipeline.accept(signatureOrder()).getBody()).get("orderId");
+            awaitStatus(pipeline, orderId, "failed");
+            Map<String, Object> status = pipeline.getStatus(orderId);
+            assertEquals("failed to process signature order", status.get("error"));
+            assertEquals("disk full", status.get("details"));
+            assertNull(status.get("order"));
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void onlyTheNewestStatusesAreKept() throws Exception {
+        BlockingRepository repository = new BlockingRepository();
+        repository.release.countDown();
+        OrderPipeline pipeline = new OrderPipeline(true, 1, 2, 3, repository);
+        try {
+            List<String> orderIds = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                String orderId = (String) ((Map<?, ?>) pipeline.accept(signatureOrder()).getBody()).get("orderId");
+                awaitStatus(pipeline, orderId, "completed");
+                orderIds.add(orderId);
+            }
+            for (int i = 0; i < orderIds.size(); i++) {
+                Map<String, Object> status = pipeline.getStatus(orderIds.get(i));
+                if (i < orderIds.size() - 3) {
+                    assertNull(status, orderIds.get(i));
+                } else {
+                    assertEquals("completed", status.get("status"));
+                }
+            }
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void invalidSettingsAreRejected() {
+        MemoryOrderRepository repository = new MemoryOrderRepository();
+        assertThrows(IllegalArgumentException.class, () -> new OrderPipeline(true, 0, 2, 10, repository));
+        assertThrows(IllegalArgumentException.class, () -> new OrderPipeline(true, 2, 0, 10, repository));
+        // fewer statuses than orders in flight would lose some
+        assertThrows(IllegalArgumentException.class, () -> new OrderPipeline(true, 2, 8, 9, repository));
+        OrderPipeline disabled = new OrderPipeline(false, 1, 1, 2, repository);
+        assertThrows(IllegalStateException.class, () -> disabled.accept(signatureOrder()));
+    }
+
+    private static AssembledOrder signatureOrder() {
+        return new AssembledOrder(new Order(new ExecutiveSignature()), "executive");
+    }
+
+    private static void awaitStatus(OrderPipeline pipeline, String orderId, String expected) throws InterruptedException {
+        long deadline = System.nanoTime() + WAIT_NANOS;
+        Map<String, Object> status = pipeline.getStatus(orderId);
+        while (status != null && !expected.equals(status.get("status")) && System.nanoTime() - deadline < 0) {
+            TimeUnit.MILLISECONDS.sleep(5);
+            status = pipeline.getStatus(orderId);
+        }
+        assertNotNull(status, orderId);
+        assertEquals(expected, status.get("status"), orderId);
+    }
+
+    // stores in memory once released, or fails every save
+    private static final class BlockingRepository extends MemoryOrderRepository {
+
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean failing;
+
+        @Override
+        public CompletableFuture<Void> save(StoredOrder order) {
+            try {
+                assertTrue(release.await(10, TimeUnit.SECONDS), "repository never released");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failing) {
+                throw new IllegalStateException("disk full");
+            }
+            return super.save(order);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.raion.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * limits per client and endpoint class, partner keys, and the shared buckets clients fall
+ * back to once the table is full (what RateLimiterBenchmark puts under load)
+ */
+class RateLimiterTest {
+
+    // long enough that no test outlives the first window
+    private static final int WINDOW_SECONDS = 3600;
+
+    @Test
+    void eachClientGetsItsOwnLimitPerEndpointClass() {
+        RateLimiter limiter = new RateLimiter(true, WINDOW_SECONDS, 10, 3, 1000, "");
+        try {
+            assertEquals(3, acquire(limiter, "10.0.0.1", EndpointClass.ORDER, 20));
+            assertEquals(10, acquire(limiter, "10.0.0.1", EndpointClass.READ, 20));
+            assertEquals(3, acquire(limiter, "10.0.0.2", EndpointClass.ORDER, 20));
+            // requests outside both classes are never limited
+            assertTrue(limiter.tryAcquire("10.0.0.1", "10.0.0.1", null));
+            assertEquals(17L + 10 + 17, limiter.getStats().get("rejected"));
+        } finally {
+            limiter.shutdown();
+        }
+    }
+
+    @Test
+    void partnerKeyIsLimitedApartFromItsAddress() {
+        RateLimiter limiter = new RateLimiter(true, WINDOW_SECONDS, 10, 3, 1000, "partner-a, partner-b");
+        try {
+            assertEquals("key:partner-a", limiter.clientKey("partner-a", "10.0.0.1"));
+            assertEquals("10.0.0.1", limiter.clientKey("unknown", "10.0.0.1"));
+            assertEquals("10.0.0.1", limiter.clientKey(null, "10.0.0.1"));
+            assertEquals("10.0.0.1", limiter.clientKey("x".repeat(1000), "10.0.0.1"));
+
+            assertEquals(3, acquire(limiter, "10.0.0.1", EndpointClass.ORDER, 5));
+            assertEquals(3, acquire(limiter, limiter.clientKey("partner-a", "10.0.0.1"), EndpointClass.ORDER, 5));
+            assertEquals(3, acquire(limiter, limiter.clientKey("partner-b", "10.0.0.1"), EndpointClass.ORDER, 5));
+            // an unknown key doesn't get around the address's limit
+            assertFalse(limiter.tryAcquire(limiter.clientKey("unknown", "10.0.0.1"), "10.0.0.1", EndpointClass.ORDER));
+        } finally {
+            limiter.shutdown();
+        }
+    }
+
+    @Test
+    void clientsBeyondTheTableShareTheBucketOfTheirAddress() {
+        RateLimiter limiter = new RateLimiter(true, WINDOW_SECONDS, 10, 1, 1, "");
+        try {
+            int clients = 10_000;
+            int allowed = 0;
+            for (int i = 0; i < clients; i++) {
+                if (limiter.tryAcquire("client-" + i, "10.0.0.9", EndpointClass.ORDER)) {
+                    allowed++;
+                }
+            }
+            long overflowed = (long) limiter.getStats().get("overflowed");
+            assertTrue(overflowed > 0, "no client overflowed the table");
+            // every client with a slot gets its one order, the overflowed ones one between them
+            assertEquals(clients - overflowed + 1, allowed);
+        } finally {
+            limiter.shutdown();
+        }
+    }
+
+    @Test
+    void disabledLimiterAllowsEverything() {
+        RateLimiter limiter = new RateLimiter(false, WINDOW_SECONDS, 1, 1, 1, "");
+        assertEquals(100, acquire(limiter, "10.0.0.1", EndpointClass.ORDER, 100));
+        assertEquals(0L, limiter.getTableBytes());
+        limiter.shutdown();
+    }
+
+    @Test
+    void invalidSettingsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(true, 0, 10, 3, 1000, ""));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(true, 60, 0, 3, 1000, ""));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(true, 60, 10, 3, 0, ""));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(true, 60, 10, 3, 1000, "k".repeat(1000)));
+    }
+
+    private static int acquire(RateLimiter limiter, String clientKey, EndpointClass endpointClass, int requests) {
+        int allowed = 0;
+        for (int i = 0; i < requests; i++) {
+            if (limiter.tryAcquire(clientKey, clientKey, endpointClass)) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+}
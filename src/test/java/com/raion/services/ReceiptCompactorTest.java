@@ -0,0 +1,74 @@
+package com.raion.services;
+
+import com.raion.models.Accessory;
+import com.raion.models.Level1;
+import com.raion.models.Level2;
+import com.raion.models.Option;
+import com.raion.models.Order;
+import com.raion.models.TrimLevel;
+import com.raion.models.Vehicle;
+import com.raion.models.VehicleColor;
+import com.raion.models.signatures.ExecutiveSignature;
+import com.raion.models.signatures.TrackBeastSignature;
+import com.raion.models.signatures.UrbanCommuterSignature;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * compacting a day keeps every receipt readable, byte for byte (the check
+ * ReceiptCompactionBenchmark runs)
+ */
+class ReceiptCompactorTest {
+
+    // before the store, codec and recovery tests' receipts, so compacting up to it leaves
+    // theirs loose (ReceiptControllerTest's older day may be compacted along with it)
+    private static final LocalDate DAY = LocalDate.of(2019, 6, 1);
+    private static final int RECEIPTS = 300;
+
+    @Test
+    void compactedReceiptsReadBackUnchanged() throws Exception {
+        String[] orderIds = new String[RECEIPTS];
+        byte[][] expected = new byte[RECEIPTS][];
+        LocalDateTime midnight = DAY.atStartOfDay();
+        for (int i = 0; i < RECEIPTS; i++) {
+            Order order = new Order(vehicleFor(i), midnight.plusSeconds(i));
+            if (i % 3 == 0) {
+                order.addFeature(Option.createEnhancedAutopilot());
+                order.addFeature(Accessory.createHomeCharger());
+            }
+            ReceiptGenerator.saveReceiptToFile(order);
+            orderIds[i] = order.getOrderId();
+            expected[i] = ReceiptGenerator.readReceipt(orderIds[i]);
+            assertNotNull(expected[i], orderIds[i]);
+        }
+
+        ReceiptCompactor compactor = new ReceiptCompactor(false, 1, 60, Long.MAX_VALUE);
+        ReceiptCompactor.Result result = compactor.compactBefore(DAY.plusDays(1));
+
+        assertTrue(result.receipts() >= RECEIPTS, "compacted " + result.receipts() + " receipts");
+        assertTrue(result.bytesAfter() < result.bytesBefore());
+        assertTrue(Files.exists(ReceiptStore.segmentPath(DAY)));
+        for (int i = 0; i < RECEIPTS; i++) {
+            assertFalse(Files.exists(ReceiptStore.pathFor(orderIds[i])), orderIds[i]);
+            assertArrayEquals(expected[i], ReceiptGenerator.readReceipt(orderIds[i]), orderIds[i]);
+        }
+    }
+
+    private static Vehicle vehicleFor(int i) {
+        return switch (i % 5) {
+            case 0 -> new Level1(TrimLevel.PREMIUM, VehicleColor.BLUE);
+            case 1 -> new Level2(TrimLevel.OFFROAD, VehicleColor.SILVER);
+            case 2 -> new TrackBeastSignature();
+            case 3 -> new UrbanCommuterSignature();
+            default -> new ExecutiveSignature();
+        };
+    }
+}
@@ -0,0 +1,69 @@
+package com.raion.services;
+
+import com.raion.services.ReceiptDownloads.ByteRange;
+import com.raion.services.ReceiptDownloads.StoredReceipt;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * which bytes of a receipt a Range header asks for: one range is honoured, anything the
+ * server may ignore gets the whole receipt, and a range past the end is a 416
+ */
+class ReceiptDownloadsTest {
+
+    private static final String ETAG = "\"64-1a2b\"";
+    private static final StoredReceipt RECEIPT =
+            new StoredReceipt("20250301-090000", null, ByteBuffer.allocate(100), 100, ETAG);
+
+    @Test
+    void singleRangesAreHonoured() {
+        assertEquals(new ByteRange(0, 10), range("bytes=0-9"));
+        assertEquals(new ByteRange(10, 100), range("bytes=10-"));
+        assertEquals(new ByteRange(90, 100), range("bytes=-10"));
+        // an end past the receipt stops at its end
+        assertEquals(new ByteRange(50, 100), range("bytes=50-500"));
+        assertEquals("bytes 50-99/100", range("bytes=50-500").contentRange(100));
+    }
+
+    @Test
+    void theWholeReceiptIsSentWhenTheRangeCanBeIgnored() {
+        assertNull(range(null));
+        assertNull(range(" "));
+        // asks for everything anyway
+        assertNull(range("bytes=0-"));
+        assertNull(range("bytes=0-99"));
+        assertNull(range("bytes=-500"));
+        // malformed - rfc 9110 says to ignore the header
+        assertNull(range("bytes=abc"));
+        assertNull(range("items=0-5"));
+        assertNull(range("bytes=9-2"));
+        assertNull(range("bytes"));
+        // more than one range
+        assertNull(range("bytes=0-1,5-6"));
+        assertNull(range("bytes=0-1, 50-"));
+    }
+
+    @Test
+    void ifRangeMustMatchTheCurrentEtag() {
+        assertEquals(new ByteRange(0, 10), ReceiptDownloads.requestedRange("bytes=0-9", ETAG, RECEIPT));
+        assertNull(ReceiptDownloads.requestedRange("bytes=0-9", "\"stale\"", RECEIPT));
+        assertNull(ReceiptDownloads.requestedRange("bytes=0-9", "Wed, 21 Oct 2015 07:28:00 GMT", RECEIPT));
+    }
+
+    @Test
+    void rangesPastTheEndAreNotSatisfiable() {
+        assertThrows(IllegalArgumentException.class, () -> range("bytes=100-"));
+        assertThrows(IllegalArgumentException.class, () -> range("bytes=200-300"));
+        StoredReceipt empty = new StoredReceipt("20250301-090000", null, ByteBuffer.allocate(0), 0, ETAG);
+        assertThrows(IllegalArgumentException.class, () -> ReceiptDownloads.requestedRange("bytes=0-", null, empty));
+    }
+
+    private static ByteRange range(String header) {
+        return ReceiptDownloads.requestedRange(header, null, RECEIPT);
+    }
+}
@@ -0,0 +1,69 @@
+package com.raion.services;
+
+import com.raion.models.Level1;
+import com.raion.models.Order;
+import com.raion.models.TrimLevel;
+import com.raion.models.VehicleColor;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * a full recovery pass finds exactly the damage planted in the receipts folder: temp files
+ * an earlier session left behind, and receipts cut off mid-write (the check
+ * ReceiptRecoveryBenchmark runs)
+ */
+class ReceiptRecoveryTest {
+
+    private static final LocalDate DAY = LocalDate.of(2020, 1, 5);
+    private static final int RECEIPTS = 100;
+    private static final int DAMAGE = 5;
+
+    @Test
+    void fullPassFindsExactlyThePlantedDamage() throws Exception {
+        Path[] receipts = new Path[RECEIPTS];
+        byte[][] bodies = new byte[RECEIPTS][];
+        for (int i = 0; i < RECEIPTS; i++) {
+            Order order = new Order(new Level1(TrimLevel.PREMIUM, VehicleColor.BLUE), DAY.atStartOfDay().plusSeconds(i));
+            bodies[i] = ReceiptGenerator.generateReceipt(order).getBytes(StandardCharsets.UTF_8);
+            receipts[i] = ReceiptStore.write(order.getOrderId(), bodies[i]).path();
+        }
+
+        Path[] orphans = new Path[DAMAGE];
+        for (int i = 0; i < DAMAGE; i++) {
+            // a temp file of another session: written, never renamed
+            Path receipt = receipts[i * 2];
+            orphans[i] = receipt.resolveSibling(receipt.getFileName() + ".0123abcd-" + i + ReceiptStore.TEMP_SUFFIX);
+            Files.write(orphans[i], new byte[]{'R'});
+
+            // the rename reached the disk but not all of the data
+            Path cut = receipts[i * 2 + 1];
+            Path temp = cut.resolveSibling(cut.getFileName() + ".cut");
+            Files.write(temp, Arrays.copyOf(bodies[i * 2 + 1], bodies[i * 2 + 1].length / 2));
+            Files.move(temp, cut, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        ReceiptRecovery.Result result = new ReceiptRecovery(true, false, 2).recover(true);
+
+        assertEquals(DAMAGE, result.orphansDeleted());
+        assertEquals(DAMAGE, result.incomplete());
+        for (int i = 0; i < DAMAGE; i++) {
+            assertFalse(Files.exists(orphans[i]), orphans[i].toString());
+            Path cut = receipts[i * 2 + 1];
+            assertFalse(Files.exists(cut), cut.toString());
+            assertTrue(Files.exists(cut.resolveSibling(cut.getFileName() + ReceiptRecovery.INCOMPLETE_SUFFIX)));
+            // the receipt next to the orphan is untouched
+            assertArrayEquals(bodies[i * 2], Files.readAllBytes(receipts[i * 2]));
+        }
+    }
+}
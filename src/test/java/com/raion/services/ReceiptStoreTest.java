@@ -0,0 +1,94 @@
+package com.raion.services;
+
+import com.raion.models.Order;
+import com.raion.models.signatures.ExecutiveSignature;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * receipt layout, the manifest and the running count
+ */
+class ReceiptStoreTest {
+
+    @Test
+    void receiptsAreShardedByDateAndHash() {
+        assertTrue(ReceiptStore.relativePathFor("20200103-101500").matches("2020/01/03/[0-9a-f]{2}/20200103-101500\\.txt"));
+        assertTrue(ReceiptStore.relativePathFor("20200103-101500-2", ReceiptStore.ORDER_SUFFIX)
+                .matches("2020/01/03/[0-9a-f]{2}/20200103-101500-2\\.ord"));
+        assertTrue(ReceiptStore.relativePathFor("Q17").matches(ReceiptStore.UNDATED_SHARD + "/[0-9a-f]{2}/Q17\\.txt"));
+    }
+
+    @Test
+    void idsThatCouldEscapeTheFolderAreRejected() {
+        for (String orderId : new String[]{"", "../20200103-101500", "a/b", "a\\b", ".hidden"}) {
+            assertThrows(IllegalArgumentException.class, () -> ReceiptStore.relativePathFor(orderId), orderId);
+            assertThrows(IllegalArgumentException.class, () -> ReceiptStore.recordSaved(List.of(orderId)), orderId);
+        }
+    }
+
+    @Test
+    void newReceiptsAreCountedOnceAndListedInTheManifest() throws IOException {
+        // the test receipts folder outlives a run, so the id is new every time
+        String orderId = "store-" + System.nanoTime();
+        // a whole receipt, so ReceiptRecoveryTest doesn't find it cut off
+        byte[] content = ReceiptGenerator.generateReceipt(new Order(new ExecutiveSignature()))
+                .getBytes(StandardCharsets.UTF_8);
+        long before = ReceiptStore.count();
+        long manifestBefore = manifestLength();
+
+        assertTrue(ReceiptStore.write(orderId, content).created());
+        assertFalse(ReceiptStore.write(orderId, content).created());
+
+        assertArrayEquals(content, Files.readAllBytes(ReceiptStore.pathFor(orderId)));
+        assertEquals(before + 1, ReceiptStore.count());
+        assertEquals(orderId + "\t" + ReceiptStore.relativePathFor(orderId) + "\n", manifestTail(manifestBefore));
+        // no temp file is left next to the receipt
+        try (Stream<Path> siblings = Files.list(ReceiptStore.pathFor(orderId).getParent())) {
+            assertTrue(siblings.noneMatch(path -> path.toString().endsWith(ReceiptStore.TEMP_SUFFIX)));
+        }
+    }
+
+    @Test
+    void manifestLinesMatchRelativePathForEveryKindOfId() throws IOException {
+        List<String> orderIds = new ArrayList<>(List.of("20200103-130000", "20200103-130000-7", "legacy-order",
+                "ordé-1"));
+        // more lines than the manifest buffer holds at once
+        for (int i = 0; i < 300; i++) {
+            orderIds.add("20200103-140000-" + i);
+        }
+        long before = ReceiptStore.count();
+        long manifestBefore = manifestLength();
+
+        ReceiptStore.recordSaved(orderIds);
+
+        StringBuilder expected = new StringBuilder();
+        for (String orderId : orderIds) {
+            expected.append(orderId).append('\t').append(ReceiptStore.relativePathFor(orderId)).append('\n');
+        }
+        assertEquals(expected.toString(), manifestTail(manifestBefore));
+        assertEquals(before + orderIds.size(), ReceiptStore.count());
+    }
+
+    private static long manifestLength() throws IOException {
+        Path manifest = ReceiptStore.root().resolve(ReceiptStore.MANIFEST_FILE);
+        return Files.exists(manifest) ? Files.size(manifest) : 0;
+    }
+
+    private static String manifestTail(long from) throws IOException {
+        byte[] manifest = Files.readAllBytes(ReceiptStore.root().resolve(ReceiptStore.MANIFEST_FILE));
+        return new String(manifest, (int) from, manifest.length - (int) from, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,78 @@
+package com.raion.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raion.models.Level3;
+import com.raion.models.Option;
+import com.raion.models.Order;
+import com.raion.models.TrimLevel;
+import com.raion.models.VehicleColor;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * a plain signature order's templated response and receipt are byte for byte what the
+ * normal path writes, whatever its id, date and receipt path
+ */
+class SignatureTemplatesTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final List<String> SIGNATURE_IDS = List.of("urban-commuter", "trail-titan", "track-beast", "executive");
+    // short and long month names, one and two digit days, every hour width
+    private static final List<LocalDateTime> DATES = List.of(
+            LocalDateTime.of(2025, 5, 1, 0, 0, 0),
+            LocalDateTime.of(2026, 9, 30, 9, 5, 7),
+            LocalDateTime.of(2099, 12, 31, 23, 59, 59));
+    // quotes, backslashes, a control character and non-ascii all need json escaping
+    private static final List<String> RECEIPT_PATHS = List.of(
+            "receipts/2025/05/01/ORD-1.txt",
+            "C:\\raion\\receipts\\\"quoted\" order.txt",
+            "receipts/tab\there/ünïcødé-€.txt");
+
+    @Test
+    void templatesMatchTheNormalRender() throws Exception {
+        int n = 0;
+        for (String signatureId : SIGNATURE_IDS) {
+            for (LocalDateTime date : DATES) {
+                for (String receiptPath : RECEIPT_PATHS) {
+                    Order order = new Order("ORD-" + date.getYear() + "-" + n++,
+                            OrderAssembler.createSignatureVehicle(signatureId), date);
+                    String what = signatureId + " at " + date + " in " + receiptPath;
+
+                    byte[] response = SignatureTemplates.renderResponse(order, receiptPath);
+                    assertNotNull(response, what);
+                    assertArrayEquals(MAPPER.writeValueAsBytes(
+                            OrderResponseBuilder.buildOrderResponse(order, receiptPath, true, signatureId)),
+                            response, what);
+
+                    byte[] receipt = SignatureTemplates.renderReceipt(order);
+                    assertNotNull(receipt, what);
+                    assertArrayEquals(ReceiptGenerator.generateReceipt(order).getBytes(StandardCharsets.UTF_8),
+                            receipt, what);
+                }
+            }
+        }
+    }
+
+    @Test
+    void ordersTheTemplatesDontFitGoTheNormalWay() {
+        Order withExtras = new Order(OrderAssembler.createSignatureVehicle("track-beast"));
+        withExtras.addFeature(Option.createCustomPaint());
+        assertNull(SignatureTemplates.renderResponse(withExtras, "receipts/x.txt"));
+        assertNull(SignatureTemplates.renderReceipt(withExtras));
+
+        Order custom = new Order(new Level3(TrimLevel.MAX, VehicleColor.GREEN));
+        assertNull(SignatureTemplates.renderResponse(custom, "receipts/x.txt"));
+        assertNull(SignatureTemplates.renderReceipt(custom));
+
+        Order plain = new Order(OrderAssembler.createSignatureVehicle("executive"));
+        assertNull(SignatureTemplates.renderResponse(plain, null));
+        assertNull(SignatureTemplates.renderReceipt(null));
+    }
+}
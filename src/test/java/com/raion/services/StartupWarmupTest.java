@@ -0,0 +1,43 @@
+package com.raion.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raion.services.StartupWarmup.SyntheticRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * every warm-up request goes through the order path to a response the endpoint would
+ * send, with a new order each pass and nothing saved
+ */
+class StartupWarmupTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    void everyPassPlacesAFreshOrderWithoutSavingIt() throws Exception {
+        StartupWarmup warmup = new StartupWarmup(MAPPER, true, 1, 5);
+        List<SyntheticRequest> requests = warmup.buildSyntheticRequests();
+        long receiptsBefore = ReceiptStore.count();
+
+        Set<String> orderIds = new HashSet<>();
+        for (int pass = 0; pass < 2; pass++) {
+            for (SyntheticRequest request : requests) {
+                JsonNode response = MAPPER.readTree(warmup.exercise(request));
+                String orderId = response.path("orderId").asText();
+                assertTrue(orderIds.add(orderId), "order reused: " + orderId);
+                assertEquals("receipts/" + orderId + ".txt", response.path("receiptFile").asText());
+                assertEquals(request.signature(), response.path("isSignature").asBoolean(), orderId);
+                assertTrue(response.path("pricing").path("total").asDouble() > 0, orderId);
+            }
+        }
+        assertEquals(2 * requests.size(), orderIds.size());
+        assertEquals(receiptsBefore, ReceiptStore.count());
+    }
+}